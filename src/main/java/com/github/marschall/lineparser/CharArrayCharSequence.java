@@ -14,6 +14,16 @@ final class CharArrayCharSequence implements CharSequence {
     this.array = array;
   }
 
+  /**
+   * Creates a view of a part of an array without copying it.
+   */
+  static CharSequence view(char[] array, int offset, int length) {
+    if (offset == 0) {
+      return new CharArrayPrefixSubSequence(array, length);
+    }
+    return new CharArrayFullSubSequence(array, offset, length);
+  }
+
   @Override
   public String toString() {
     // REVIEW caching the sting value pushes the object size from 16 to 24 bytes
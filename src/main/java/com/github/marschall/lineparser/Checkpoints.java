@@ -0,0 +1,49 @@
+package com.github.marschall.lineparser;
+
+import java.nio.charset.Charset;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Consumer;
+
+/**
+ * Hands the positions of a parse to a callback every few lines and at
+ * the end of every mapping.
+ */
+final class Checkpoints {
+
+  private final int interval;
+  private final Consumer<ParsePosition> callback;
+  private Charset cs;
+  private long fileSize;
+  private BasicFileAttributes attributes;
+
+  /**
+   * The number of the line at the start of which the next checkpoint is
+   * taken at the latest.
+   */
+  long nextLineNumber;
+
+  Checkpoints(int interval, Consumer<ParsePosition> callback) {
+    this.interval = interval;
+    this.callback = callback;
+  }
+
+  /**
+   * Called once the file is opened and the BOM is resolved, before the
+   * first line.
+   */
+  void start(Charset actualCharset, long size, BasicFileAttributes fileAttributes, long firstLineNumber) {
+    this.cs = actualCharset;
+    this.fileSize = size;
+    this.attributes = fileAttributes;
+    this.nextLineNumber = firstLineNumber + this.interval;
+  }
+
+  /**
+   * Called at the start of a line, every line before has been delivered.
+   */
+  void reached(long offset, long lineNumber) {
+    this.nextLineNumber = lineNumber + this.interval;
+    this.callback.accept(new ParsePosition(offset, lineNumber, this.cs, this.fileSize, this.attributes));
+  }
+
+}
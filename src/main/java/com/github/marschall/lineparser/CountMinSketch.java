@@ -0,0 +1,300 @@
+package com.github.marschall.lineparser;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Estimates the most frequent lines or fields with constant memory using
+ * a <a href="https://en.wikipedia.org/wiki/Count%E2%80%93min_sketch">Count-Min sketch</a>
+ * and a heap of the top K values.
+ *
+ * <p>Lines are hashed with {@link Line#hash64()} over their undecoded
+ * bytes, fields with the same hash function over their characters, see
+ * {@link #add(CharSequence)}. Every row of the sketch is indexed with a
+ * different combination of the two halves of the hash. The estimated
+ * count of a value is never lower than its actual count, it is higher by
+ * at most {@code e * n / width} with probability {@code 1 - e^-depth}
+ * where {@code n} is the total count.</p>
+ *
+ * <p>A {@link String} is only created for a value when it enters the top
+ * K, not for every value added. Values in the top K are identified by
+ * their hash. Looking up a value in the top K is linear in K so K
+ * should be small.</p>
+ *
+ * <p>Sketches with the same dimensions can be merged, for example when
+ * parts of a file are parsed in parallel with one sketch per thread.</p>
+ *
+ * <p>Instances of this class are not thread safe.</p>
+ *
+ * <pre><code>
+ * CountMinSketch frequentLines = new CountMinSketch(4096, 4, 10);
+ * parser.forEach(path, cs, frequentLines::add);
+ * Map&lt;String, Long&gt; top10 = frequentLines.getTopK();
+ * </code></pre>
+ */
+public final class CountMinSketch {
+
+  private final int width;
+  private final int depth;
+  private final int k;
+
+  /**
+   * {@code depth} rows of {@code width} counters.
+   */
+  private final long[] counters;
+  private long totalCount;
+
+  // min heap of the top K by estimated count
+  private final long[] heapHashes;
+  private final long[] heapCounts;
+  private final String[] heapValues;
+  private int heapSize;
+
+  /**
+   * Creates a new, empty sketch.
+   *
+   * @param width the number of counters per row, a power of two
+   * @param depth the number of rows, from 1 to 32
+   * @param k the number of most frequent values to track, positive
+   */
+  public CountMinSketch(int width, int depth, int k) {
+    if ((width <= 0) || (Integer.bitCount(width) != 1)) {
+      throw new IllegalArgumentException("width must be a power of two but was " + width);
+    }
+    if ((depth < 1) || (depth > 32)) {
+      throw new IllegalArgumentException("depth must be from 1 to 32 but was " + depth);
+    }
+    if (k <= 0) {
+      throw new IllegalArgumentException("k must be positive but was " + k);
+    }
+    this.width = width;
+    this.depth = depth;
+    this.k = k;
+    this.counters = new long[Math.multiplyExact(width, depth)];
+    this.heapHashes = new long[k];
+    this.heapCounts = new long[k];
+    this.heapValues = new String[k];
+  }
+
+  /**
+   * Adds a line, has to be called from the callback.
+   *
+   * @param line the line to add
+   * @see Line#hash64()
+   */
+  public void add(Line line) {
+    long hash = line.hash64();
+    long estimate = this.increment(hash);
+    if (this.isCandidate(estimate)) {
+      this.offer(hash, estimate, line.getContent());
+    }
+  }
+
+  /**
+   * Adds a character sequence, for example a field of a line.
+   *
+   * <p>The characters are hashed in the UTF-16LE encoding, therefore a
+   * line and its content have the same hash only in files encoded in
+   * UTF-16LE. Lines and fields should not be added to the same
+   * sketch.</p>
+   *
+   * @param s the characters to add
+   */
+  public void add(CharSequence s) {
+    long hash = XxHash64.hash(s, 0, s.length(), 0L);
+    long estimate = this.increment(hash);
+    if (this.isCandidate(estimate)) {
+      this.offer(hash, estimate, s);
+    }
+  }
+
+  /**
+   * Estimates how often a line was added, has to be called from the
+   * callback.
+   *
+   * @param line the line
+   * @return the estimated count, at least the actual count
+   */
+  public long estimate(Line line) {
+    return this.estimate(line.hash64());
+  }
+
+  /**
+   * Estimates how often a character sequence was added.
+   *
+   * @param s the characters
+   * @return the estimated count, at least the actual count
+   */
+  public long estimate(CharSequence s) {
+    return this.estimate(XxHash64.hash(s, 0, s.length(), 0L));
+  }
+
+  /**
+   * Returns the number of values added.
+   *
+   * @return the total count
+   */
+  public long getTotalCount() {
+    return this.totalCount;
+  }
+
+  /**
+   * Returns the most frequent values.
+   *
+   * @return the at most K most frequent values with their estimated
+   *  counts, in descending order of the count
+   */
+  public Map<String, Long> getTopK() {
+    Integer[] order = new Integer[this.heapSize];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> Long.compare(this.heapCounts[b], this.heapCounts[a]));
+    Map<String, Long> topK = new LinkedHashMap<>();
+    for (Integer index : order) {
+      topK.put(this.heapValues[index], this.heapCounts[index]);
+    }
+    return topK;
+  }
+
+  /**
+   * Merges another sketch into this sketch. Afterwards this sketch
+   * estimates the counts of the values added to either sketch. The top
+   * K are chosen from the top K of both sketches.
+   *
+   * @param other the other sketch, not changed
+   * @throws IllegalArgumentException if the dimensions differ
+   */
+  public void merge(CountMinSketch other) {
+    Objects.requireNonNull(other, "other");
+    if ((other.width != this.width) || (other.depth != this.depth) || (other.k != this.k)) {
+      throw new IllegalArgumentException("dimensions do not match");
+    }
+    for (int i = 0; i < this.counters.length; i++) {
+      this.counters[i] += other.counters[i];
+    }
+    this.totalCount += other.totalCount;
+
+    // re-estimate the candidates of both sketches with the merged counters
+    int candidateCount = this.heapSize + other.heapSize;
+    long[] hashes = Arrays.copyOf(this.heapHashes, candidateCount);
+    String[] values = Arrays.copyOf(this.heapValues, candidateCount);
+    System.arraycopy(other.heapHashes, 0, hashes, this.heapSize, other.heapSize);
+    System.arraycopy(other.heapValues, 0, values, this.heapSize, other.heapSize);
+    this.heapSize = 0;
+    for (int i = 0; i < candidateCount; i++) {
+      long estimate = this.estimate(hashes[i]);
+      if (this.isCandidate(estimate)) {
+        this.offer(hashes[i], estimate, values[i]);
+      }
+    }
+  }
+
+  private long increment(long hash) {
+    this.totalCount += 1L;
+    int first = (int) hash;
+    int second = (int) (hash >>> 32);
+    int mask = this.width - 1;
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < this.depth; row++) {
+      int index = (row * this.width) + ((first + (row * second)) & mask);
+      long count = this.counters[index] + 1L;
+      this.counters[index] = count;
+      estimate = Math.min(estimate, count);
+    }
+    return estimate;
+  }
+
+  private long estimate(long hash) {
+    int first = (int) hash;
+    int second = (int) (hash >>> 32);
+    int mask = this.width - 1;
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < this.depth; row++) {
+      int index = (row * this.width) + ((first + (row * second)) & mask);
+      estimate = Math.min(estimate, this.counters[index]);
+    }
+    return estimate;
+  }
+
+  private boolean isCandidate(long estimate) {
+    return (this.heapSize < this.k) || (estimate > this.heapCounts[0]);
+  }
+
+  /**
+   * Updates the count of a value in the top K or adds it.
+   */
+  private void offer(long hash, long estimate, CharSequence value) {
+    for (int i = 0; i < this.heapSize; i++) {
+      if (this.heapHashes[i] == hash) {
+        // the count only increases
+        this.heapCounts[i] = estimate;
+        this.siftDown(i);
+        return;
+      }
+    }
+    int index;
+    if (this.heapSize < this.k) {
+      index = this.heapSize;
+      this.heapSize += 1;
+    } else {
+      // replace the least frequent value
+      index = 0;
+    }
+    this.heapHashes[index] = hash;
+    this.heapCounts[index] = estimate;
+    this.heapValues[index] = value.toString();
+    if (index == 0) {
+      this.siftDown(0);
+    } else {
+      this.siftUp(index);
+    }
+  }
+
+  private void siftUp(int index) {
+    int child = index;
+    while (child > 0) {
+      int parent = (child - 1) >>> 1;
+      if (this.heapCounts[parent] <= this.heapCounts[child]) {
+        return;
+      }
+      this.swap(parent, child);
+      child = parent;
+    }
+  }
+
+  private void siftDown(int index) {
+    int parent = index;
+    while (true) {
+      int smallest = parent;
+      int left = (2 * parent) + 1;
+      int right = left + 1;
+      if ((left < this.heapSize) && (this.heapCounts[left] < this.heapCounts[smallest])) {
+        smallest = left;
+      }
+      if ((right < this.heapSize) && (this.heapCounts[right] < this.heapCounts[smallest])) {
+        smallest = right;
+      }
+      if (smallest == parent) {
+        return;
+      }
+      this.swap(parent, smallest);
+      parent = smallest;
+    }
+  }
+
+  private void swap(int i, int j) {
+    long hash = this.heapHashes[i];
+    this.heapHashes[i] = this.heapHashes[j];
+    this.heapHashes[j] = hash;
+    long count = this.heapCounts[i];
+    this.heapCounts[i] = this.heapCounts[j];
+    this.heapCounts[j] = count;
+    String value = this.heapValues[i];
+    this.heapValues[i] = this.heapValues[j];
+    this.heapValues[j] = value;
+  }
+
+}
@@ -6,18 +6,50 @@ import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Decodes lines into a {@link CharBuffer}.
+ *
+ * <p>The buffer is sized upfront from the length of the line in bytes
+ * so that every line is decoded in a single pass. In order to not
+ * keep a huge buffer alive after a single very long line the buffer
+ * is shrunk again if the lines that follow are much shorter.</p>
  */
 final class DecodingLineReader implements LineReader {
 
+  /**
+   * After how many lines we check whether the buffer can be shrunk.
+   */
+  static final int SHRINK_INTERVAL = 1024;
+
+  /**
+   * By how much the buffer has to be larger than the longest recent
+   * line in order to be shrunk.
+   */
+  private static final int SHRINK_FACTOR = 4;
+
   private final CharsetDecoder decoder;
+  private final boolean utf8;
+  private final float averageCharsPerByte;
+  private final float maxCharsPerByte;
+  private final int initialBufferSize;
   private CharBuffer out;
   private char[] array;
 
+  /**
+   * Longest line in characters since the last shrink check.
+   */
+  private int highWaterMark;
+  private int linesSinceShrinkCheck;
+  private int peakBufferSize;
+
   DecodingLineReader(Charset charset, int bufferSize) {
     this.decoder = charset.newDecoder();
+    this.utf8 = charset.equals(StandardCharsets.UTF_8);
+    this.averageCharsPerByte = this.decoder.averageCharsPerByte();
+    this.maxCharsPerByte = this.decoder.maxCharsPerByte();
+    this.initialBufferSize = bufferSize;
     this.allocateBuffer(bufferSize);
   }
 
@@ -28,6 +60,7 @@ final class DecodingLineReader implements LineReader {
   private void allocateBuffer(int bufferSize) {
     this.array = new char[bufferSize];
     this.out = CharBuffer.wrap(this.array);
+    this.peakBufferSize = Math.max(this.peakBufferSize, bufferSize);
   }
 
   /**
@@ -35,20 +68,59 @@ final class DecodingLineReader implements LineReader {
    */
   @Override
   public CharSequence readLine(ByteBuffer buffer, int start, int length) throws IOException {
+    this.maybeShrink();
     // reset the buffer limit
     buffer.position(start).limit(start + length);
-    this.decode(buffer);
+    this.decode(buffer, length, true);
     // undo buffer limit, position doesn't matter because we only do absolute gets
     buffer.limit(buffer.capacity());
 
+    int charLength = this.out.limit();
+    this.highWaterMark = Math.max(this.highWaterMark, charLength);
+
     // use the backing array of the CharBuffer
-    if (this.out.limit() == this.array.length) {
+    if (charLength == this.array.length) {
       return new CharArrayCharSequence(this.array);
     } else {
-      return new CharArrayPrefixSubSequence(this.array, this.out.limit());
+      return CharArrayCharSequence.view(this.array, 0, charLength);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int characterBoundary(ByteBuffer buffer, int start, int maxLength) throws IOException {
+    if (this.utf8) {
+      return Utf8Decoder.characterBoundary(buffer, start, maxLength);
+    }
+    // no general way to find character boundaries, decode and see
+    // how much the decoder consumed
+    buffer.position(start).limit(start + maxLength);
+    try {
+      this.decode(buffer, maxLength, false);
+      return buffer.position() - start;
+    } finally {
+      buffer.limit(buffer.capacity());
     }
   }
 
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public boolean reusesContent() {
+    return true;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public int getPeakBufferSize() {
+    return this.peakBufferSize;
+  }
+
   /**
    * Gets the current buffer. Only for testing.
    *
@@ -58,25 +130,71 @@ final class DecodingLineReader implements LineReader {
     return this.out;
   }
 
-  private void decode(ByteBuffer in) throws IOException {
-    int originalPosition = in.position();
+  private void maybeShrink() {
+    this.linesSinceShrinkCheck += 1;
+    if (this.linesSinceShrinkCheck < SHRINK_INTERVAL) {
+      return;
+    }
+    // only the lines since the last check count, an outlier before that
+    // should not keep the buffer alive
+    int target = Math.max(this.initialBufferSize, this.highWaterMark);
+    if (this.array.length / SHRINK_FACTOR > target) {
+      this.allocateBuffer(target);
+    }
+    this.linesSinceShrinkCheck = 0;
+    this.highWaterMark = 0;
+  }
+
+  private void decode(ByteBuffer in, int byteLength, boolean endOfInput) throws IOException {
+    int estimate = charCount(byteLength, this.averageCharsPerByte);
+    if (estimate > this.array.length) {
+      // the average is exact for UTF-16 and UTF-32 and an upper bound
+      // for all single byte character sets
+      this.allocateBuffer(estimate);
+    }
+    this.decoder.reset();
     this.out.clear();
-    CoderResult result = this.decoder.decode(in, this.out, true);
-    if (result.isOverflow()) {
-      int newCapacity = this.out.capacity() * 2;
-      // double until it fits
-      // this is not ideal be there isn't a good general way to estimate the required buffer size
-      // using the line length in bytes would wasteful for UTF-16 or UTF-32
-      // we could get creative with #averageCharsPerByte and #maxCharsPerByte
-      // but would have to track if we got it wrong
-      this.allocateBuffer(newCapacity);
-      in.position(originalPosition);
-      this.decode(in);
-    } else if (result.isError()) {
+    CoderResult result = this.decoder.decode(in, this.out, endOfInput);
+    while (result.isOverflow()) {
+      // we underestimated, grow and continue where we left off instead of
+      // decoding from the start again
+      this.grow(charCount(byteLength, this.maxCharsPerByte));
+      result = this.decoder.decode(in, this.out, endOfInput);
+    }
+    if (result.isError()) {
+      // the decoder stops in front of malformed input, reporting it is the
+      // only way to make progress when looking for character boundaries
       result.throwException();
+    }
+    if (!endOfInput) {
+      // we're only looking for character boundaries
+      return;
+    }
+    result = this.decoder.flush(this.out);
+    while (result.isOverflow()) {
+      this.grow(this.array.length + 1);
+      result = this.decoder.flush(this.out);
+    }
+    this.out.flip();
+  }
+
+  private void grow(int minimumCapacity) {
+    int decoded = this.out.position();
+    int newCapacity;
+    if (minimumCapacity > this.array.length) {
+      newCapacity = minimumCapacity;
     } else {
-      this.out.flip();
+      // protect against decoders that report a wrong #maxCharsPerByte
+      newCapacity = (int) Math.min(Integer.MAX_VALUE - 8, this.array.length * 2L);
     }
+    char[] oldArray = this.array;
+    this.allocateBuffer(newCapacity);
+    System.arraycopy(oldArray, 0, this.array, 0, decoded);
+    this.out.position(decoded);
+  }
+
+  private static int charCount(int byteLength, float charsPerByte) {
+    return (int) Math.min(Integer.MAX_VALUE - 8, (long) Math.ceil(byteLength * (double) charsPerByte));
   }
 
 }
@@ -0,0 +1,309 @@
+package com.github.marschall.lineparser;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Splits a line into delimited fields, for example
+ * <a href="https://tools.ietf.org/html/rfc4180">CSV</a> or TSV.
+ *
+ * <p>Instead of allocating a {@link String} for every field only the
+ * start and end of every field is recorded in a reused {@code int[]}.
+ * Fields are returned as {@link CharSequence#subSequence(int, int)} of
+ * the line which for the {@link CharSequence}s returned by
+ * {@link Line#getContent()} are views that do not copy.</p>
+ *
+ * <p>Quoting is simple, a field that starts with the quote character
+ * ends at the next quote character that is not doubled. Since fields
+ * are views doubled quote characters inside a quoted field are not
+ * unescaped. Delimiters inside a quoted field do not end the field.</p>
+ *
+ * <p>If only some columns are required a projection can be configured
+ * with {@link #withColumns(int...)}. Fields of other columns are not
+ * recorded and tokenizing stops after the last required column.</p>
+ *
+ * <p>Instances of this class are not thread safe.</p>
+ *
+ * <pre><code>
+ * FieldTokenizer tokenizer = FieldTokenizer.csv().withColumns(0, 3);
+ * parser.forEach(path, cs, line -&gt; {
+ *   tokenizer.tokenize(line.getContent());
+ *   CharSequence id = tokenizer.getField(0);
+ *   CharSequence name = tokenizer.getField(1);
+ * });
+ * </code></pre>
+ */
+public final class FieldTokenizer {
+
+  private static final int NO_SLOT = -1;
+
+  private final char delimiter;
+  private final boolean quoting;
+  private final char quote;
+
+  /**
+   * For every column up to the last projected column the index into
+   * the projection, {@code null} if all columns are recorded.
+   */
+  private final int[] slots;
+  private final int projectionSize;
+
+  /**
+   * Start and end of every field, start of field i is at 2 * i,
+   * end of field i at 2 * i + 1.
+   */
+  private int[] positions;
+  private int fieldCount;
+  private CharSequence line;
+
+  /**
+   * Creates a new tokenizer without quoting.
+   *
+   * @param delimiter the character that separates fields
+   */
+  public FieldTokenizer(char delimiter) {
+    this(delimiter, false, (char) 0, null, 0);
+  }
+
+  /**
+   * Creates a new tokenizer with quoting.
+   *
+   * @param delimiter the character that separates fields
+   * @param quote the character that quotes fields
+   */
+  public FieldTokenizer(char delimiter, char quote) {
+    this(delimiter, true, quote, null, 0);
+    if (delimiter == quote) {
+      throw new IllegalArgumentException("delimiter and quote must be different");
+    }
+  }
+
+  private FieldTokenizer(char delimiter, boolean quoting, char quote, int[] slots, int projectionSize) {
+    this.delimiter = delimiter;
+    this.quoting = quoting;
+    this.quote = quote;
+    this.slots = slots;
+    this.projectionSize = projectionSize;
+    this.positions = new int[Math.max(projectionSize, 8) * 2];
+  }
+
+  /**
+   * Creates a new tokenizer for comma separated values quoted with
+   * double quotes.
+   *
+   * @return a new CSV tokenizer
+   */
+  public static FieldTokenizer csv() {
+    return new FieldTokenizer(',', '"');
+  }
+
+  /**
+   * Creates a new tokenizer for tab separated values without quoting.
+   *
+   * @return a new TSV tokenizer
+   */
+  public static FieldTokenizer tsv() {
+    return new FieldTokenizer('\t');
+  }
+
+  /**
+   * Returns a tokenizer that only records the given columns.
+   *
+   * <p>Fields are accessed in the order of the given columns, eg. after
+   * {@code withColumns(3, 0)} {@code getField(0)} returns the field of
+   * column 3.</p>
+   *
+   * @param columns the zero based indices of the columns to record
+   * @return a new tokenizer with the same delimiter and quote, this
+   *  tokenizer is not changed
+   */
+  public FieldTokenizer withColumns(int... columns) {
+    Objects.requireNonNull(columns, "columns");
+    if (columns.length == 0) {
+      throw new IllegalArgumentException("at least one column required");
+    }
+    int lastColumn = 0;
+    for (int column : columns) {
+      if (column < 0) {
+        throw new IllegalArgumentException("negative column: " + column);
+      }
+      lastColumn = Math.max(lastColumn, column);
+    }
+    int[] slots = new int[lastColumn + 1];
+    Arrays.fill(slots, NO_SLOT);
+    for (int i = 0; i < columns.length; i++) {
+      if (slots[columns[i]] != NO_SLOT) {
+        throw new IllegalArgumentException("duplicate column: " + columns[i]);
+      }
+      slots[columns[i]] = i;
+    }
+    return new FieldTokenizer(this.delimiter, this.quoting, this.quote, slots, columns.length);
+  }
+
+  /**
+   * Splits a line into fields.
+   *
+   * <p>The previous result is discarded.</p>
+   *
+   * @param line the line to split, usually {@link Line#getContent()}
+   * @return the number of fields, if a projection is configured the
+   *  number of projected columns present in the line
+   */
+  public int tokenize(CharSequence line) {
+    Objects.requireNonNull(line, "line");
+    this.line = line;
+    int[] slots = this.slots;
+    int length = line.length();
+    int column = 0;
+    int found = 0;
+    int fieldStart = 0;
+    while (true) {
+      int fieldEnd;
+      int next;
+      if (this.quoting && (fieldStart < length) && (line.charAt(fieldStart) == this.quote)) {
+        fieldEnd = this.closingQuote(line, fieldStart + 1, length);
+        next = this.nextDelimiter(line, Math.min(fieldEnd + 1, length), length);
+        // exclude the quotes
+        fieldStart += 1;
+      } else {
+        fieldEnd = next = this.nextDelimiter(line, fieldStart, length);
+      }
+
+      int slot;
+      if (slots == null) {
+        slot = column;
+      } else {
+        slot = slots[column];
+      }
+      if (slot != NO_SLOT) {
+        this.record(slot, fieldStart, fieldEnd);
+        found += 1;
+      }
+
+      column += 1;
+      if ((next >= length) || ((slots != null) && (column >= slots.length))) {
+        // end of line or no more projected columns
+        break;
+      }
+      fieldStart = next + 1;
+    }
+    if (slots == null) {
+      this.fieldCount = column;
+      return column;
+    } else {
+      this.fieldCount = this.projectionSize;
+      // columns missing in this line
+      for (int i = column; i < slots.length; i++) {
+        int slot = slots[i];
+        if (slot != NO_SLOT) {
+          this.record(slot, -1, -1);
+        }
+      }
+      return found;
+    }
+  }
+
+  private int nextDelimiter(CharSequence line, int start, int length) {
+    char delimiter = this.delimiter;
+    for (int i = start; i < length; i++) {
+      if (line.charAt(i) == delimiter) {
+        return i;
+      }
+    }
+    return length;
+  }
+
+  private int closingQuote(CharSequence line, int start, int length) {
+    char quote = this.quote;
+    int i = start;
+    while (i < length) {
+      if (line.charAt(i) == quote) {
+        if (((i + 1) < length) && (line.charAt(i + 1) == quote)) {
+          // escaped quote
+          i += 2;
+          continue;
+        }
+        return i;
+      }
+      i += 1;
+    }
+    // unterminated, the field extends to the end of the line
+    return length;
+  }
+
+  private void record(int slot, int start, int end) {
+    int index = slot * 2;
+    if ((index + 1) >= this.positions.length) {
+      this.positions = Arrays.copyOf(this.positions, Math.max(this.positions.length * 2, index + 2));
+    }
+    this.positions[index] = start;
+    this.positions[index + 1] = end;
+  }
+
+  /**
+   * Returns the number of fields of the last line.
+   *
+   * <p>If a projection is configured this is always the number of
+   * projected columns, some of which may be absent.</p>
+   *
+   * @return the number of fields
+   */
+  public int getFieldCount() {
+    return this.fieldCount;
+  }
+
+  /**
+   * Returns a field of the last line.
+   *
+   * @param index the zero based index of the field, if a projection is
+   *  configured the index into the projection
+   * @return a view of the field, quotes are excluded, {@code null} if a
+   *  projected column is absent in the line
+   * @throws IndexOutOfBoundsException if index is negative or not
+   *  less than {@link #getFieldCount()}
+   */
+  public CharSequence getField(int index) {
+    int start = this.getFieldStart(index);
+    if (start == -1) {
+      return null;
+    }
+    return this.line.subSequence(start, this.positions[(index * 2) + 1]);
+  }
+
+  /**
+   * Returns the start of a field of the last line.
+   *
+   * @param index the zero based index of the field, if a projection is
+   *  configured the index into the projection
+   * @return the index of the first character of the field in the line,
+   *  {@code -1} if a projected column is absent in the line
+   * @throws IndexOutOfBoundsException if index is negative or not
+   *  less than {@link #getFieldCount()}
+   */
+  public int getFieldStart(int index) {
+    this.checkIndex(index);
+    return this.positions[index * 2];
+  }
+
+  /**
+   * Returns the end of a field of the last line.
+   *
+   * @param index the zero based index of the field, if a projection is
+   *  configured the index into the projection
+   * @return the index after the last character of the field in the line,
+   *  {@code -1} if a projected column is absent in the line
+   * @throws IndexOutOfBoundsException if index is negative or not
+   *  less than {@link #getFieldCount()}
+   */
+  public int getFieldEnd(int index) {
+    this.checkIndex(index);
+    return this.positions[(index * 2) + 1];
+  }
+
+  private void checkIndex(int index) {
+    if ((index < 0) || (index >= this.fieldCount)) {
+      throw new IndexOutOfBoundsException("index: " + index + " field count: " + this.fieldCount);
+    }
+  }
+
+}
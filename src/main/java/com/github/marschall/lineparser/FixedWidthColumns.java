@@ -0,0 +1,152 @@
+package com.github.marschall.lineparser;
+
+import java.util.Objects;
+
+/**
+ * Slices fixed width columns out of a record, for example one delivered
+ * by {@link LineParser#forEachFixedRecord(java.nio.file.Path, java.nio.charset.Charset, int, int, java.util.function.Consumer)}.
+ *
+ * <p>Columns are defined by their widths in characters. Since the
+ * {@link CharSequence}s returned by {@link Line#getContent()} are views
+ * that do not copy slicing a column does not copy either.</p>
+ *
+ * <p>Instances of this class are immutable and thread safe.</p>
+ *
+ * <pre><code>
+ * FixedWidthColumns columns = new FixedWidthColumns(8, 20, 10);
+ * parser.forEachFixedRecord(path, cs, columns.getRecordLength(), 1, record -&gt; {
+ *   CharSequence id = columns.get(record.getContent(), 0);
+ *   CharSequence name = columns.getTrimmed(record.getContent(), 1);
+ * });
+ * </code></pre>
+ */
+public final class FixedWidthColumns {
+
+  /**
+   * Start of every column followed by the end of the last column.
+   */
+  private final int[] starts;
+
+  /**
+   * Creates new columns.
+   *
+   * @param widths the width in characters of every column, in order
+   */
+  public FixedWidthColumns(int... widths) {
+    Objects.requireNonNull(widths, "widths");
+    if (widths.length == 0) {
+      throw new IllegalArgumentException("at least one column required");
+    }
+    this.starts = new int[widths.length + 1];
+    long start = 0L;
+    for (int i = 0; i < widths.length; i++) {
+      if (widths[i] < 0) {
+        throw new IllegalArgumentException("negative width: " + widths[i]);
+      }
+      this.starts[i] = (int) start;
+      start += widths[i];
+      if (start > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("record too long");
+      }
+    }
+    this.starts[widths.length] = (int) start;
+  }
+
+  /**
+   * Returns the number of columns.
+   *
+   * @return the number of columns
+   */
+  public int getColumnCount() {
+    return this.starts.length - 1;
+  }
+
+  /**
+   * Returns the sum of the widths of all columns.
+   *
+   * <p>For single byte character sets this is the record length in bytes.</p>
+   *
+   * @return the length of a record in characters
+   */
+  public int getRecordLength() {
+    return this.starts[this.starts.length - 1];
+  }
+
+  /**
+   * Returns the index of the first character of a column.
+   *
+   * @param column the zero based index of the column
+   * @return the start of the column in the record
+   * @throws IndexOutOfBoundsException if column is negative or not
+   *  less than {@link #getColumnCount()}
+   */
+  public int getStart(int column) {
+    this.checkColumn(column);
+    return this.starts[column];
+  }
+
+  /**
+   * Returns the index after the last character of a column.
+   *
+   * @param column the zero based index of the column
+   * @return the end of the column in the record
+   * @throws IndexOutOfBoundsException if column is negative or not
+   *  less than {@link #getColumnCount()}
+   */
+  public int getEnd(int column) {
+    this.checkColumn(column);
+    return this.starts[column + 1];
+  }
+
+  /**
+   * Returns a column of a record.
+   *
+   * <p>If the record is shorter than the columns, eg. the last record of a
+   * truncated file, the column is cut short or empty.</p>
+   *
+   * @param record the record, usually {@link Line#getContent()}
+   * @param column the zero based index of the column
+   * @return a view of the column
+   * @throws IndexOutOfBoundsException if column is negative or not
+   *  less than {@link #getColumnCount()}
+   */
+  public CharSequence get(CharSequence record, int column) {
+    this.checkColumn(column);
+    int length = record.length();
+    int start = Math.min(this.starts[column], length);
+    int end = Math.min(this.starts[column + 1], length);
+    return record.subSequence(start, end);
+  }
+
+  /**
+   * Returns a column of a record without leading and trailing spaces.
+   *
+   * <p>Fixed width columns are usually padded with spaces.</p>
+   *
+   * @param record the record, usually {@link Line#getContent()}
+   * @param column the zero based index of the column
+   * @return a view of the column without padding
+   * @throws IndexOutOfBoundsException if column is negative or not
+   *  less than {@link #getColumnCount()}
+   */
+  public CharSequence getTrimmed(CharSequence record, int column) {
+    this.checkColumn(column);
+    int length = record.length();
+    int start = Math.min(this.starts[column], length);
+    int end = Math.min(this.starts[column + 1], length);
+    while ((start < end) && (record.charAt(start) == ' ')) {
+      start += 1;
+    }
+    while ((end > start) && (record.charAt(end - 1) == ' ')) {
+      end -= 1;
+    }
+    return record.subSequence(start, end);
+  }
+
+  private void checkColumn(int column) {
+    if ((column < 0) || (column >= (this.starts.length - 1))) {
+      throw new IndexOutOfBoundsException("column: " + column + " column count: " + (this.starts.length - 1));
+    }
+  }
+
+}
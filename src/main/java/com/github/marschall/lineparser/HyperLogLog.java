@@ -0,0 +1,161 @@
+package com.github.marschall.lineparser;
+
+import java.util.Objects;
+
+/**
+ * Estimates the number of distinct lines or fields with constant memory
+ * using <a href="https://en.wikipedia.org/wiki/HyperLogLog">HyperLogLog</a>.
+ *
+ * <p>Lines are hashed with {@link Line#hash64()} over their undecoded
+ * bytes, fields with the same hash function over their characters, see
+ * {@link #add(CharSequence)}. No {@link String} is created. The standard
+ * error of the estimate is about {@code 1.04 / sqrt(2^precision)}, the
+ * sketch needs {@code 2^precision} bytes.</p>
+ *
+ * <p>Sketches with the same precision can be merged, for example when
+ * parts of a file are parsed in parallel with one sketch per thread.</p>
+ *
+ * <p>Instances of this class are not thread safe.</p>
+ *
+ * <pre><code>
+ * HyperLogLog distinctUsers = new HyperLogLog(14);
+ * FieldTokenizer tokenizer = FieldTokenizer.csv().withColumns(2);
+ * parser.forEach(path, cs, line -&gt; {
+ *   tokenizer.tokenize(line.getContent());
+ *   distinctUsers.add(tokenizer.getField(0));
+ * });
+ * long estimate = distinctUsers.estimate();
+ * </code></pre>
+ */
+public final class HyperLogLog {
+
+  private static final int MIN_PRECISION = 4;
+
+  private static final int MAX_PRECISION = 18;
+
+  private final int precision;
+
+  /**
+   * For every register the maximum rank seen.
+   */
+  private final byte[] registers;
+
+  /**
+   * Creates a new, empty sketch.
+   *
+   * @param precision the number of bits of the hash used to select a
+   *  register, from 4 to 18
+   */
+  public HyperLogLog(int precision) {
+    if ((precision < MIN_PRECISION) || (precision > MAX_PRECISION)) {
+      throw new IllegalArgumentException("precision must be from " + MIN_PRECISION
+              + " to " + MAX_PRECISION + " but was " + precision);
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  /**
+   * Returns the precision of this sketch.
+   *
+   * @return the number of bits used to select a register
+   */
+  public int getPrecision() {
+    return this.precision;
+  }
+
+  /**
+   * Adds a line, has to be called from the callback.
+   *
+   * @param line the line to add
+   * @see Line#hash64()
+   */
+  public void add(Line line) {
+    this.addHash(line.hash64());
+  }
+
+  /**
+   * Adds a character sequence, for example a field of a line.
+   *
+   * <p>The characters are hashed in the UTF-16LE encoding, therefore a
+   * line and its content have the same hash only in files encoded in
+   * UTF-16LE. Lines and fields should not be added to the same
+   * sketch.</p>
+   *
+   * @param s the characters to add
+   */
+  public void add(CharSequence s) {
+    this.addHash(XxHash64.hash(s, 0, s.length(), 0L));
+  }
+
+  /**
+   * Adds a 64 bit hash. The hash has to be uniformly distributed.
+   *
+   * @param hash the hash of the value to add
+   */
+  public void addHash(long hash) {
+    int index = (int) (hash >>> (Long.SIZE - this.precision));
+    // the marker bit limits the rank to the remaining bits
+    long remaining = (hash << this.precision) | (1L << (this.precision - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(remaining) + 1);
+    if (rank > this.registers[index]) {
+      this.registers[index] = rank;
+    }
+  }
+
+  /**
+   * Merges another sketch into this sketch. Afterwards this sketch
+   * estimates the distinct values added to either sketch.
+   *
+   * @param other the other sketch, not changed
+   * @throws IllegalArgumentException if the precisions differ
+   */
+  public void merge(HyperLogLog other) {
+    Objects.requireNonNull(other, "other");
+    if (other.precision != this.precision) {
+      throw new IllegalArgumentException("precision " + other.precision + " does not match " + this.precision);
+    }
+    for (int i = 0; i < this.registers.length; i++) {
+      if (other.registers[i] > this.registers[i]) {
+        this.registers[i] = other.registers[i];
+      }
+    }
+  }
+
+  /**
+   * Estimates the number of distinct values added.
+   *
+   * @return the estimated number of distinct values
+   */
+  public long estimate() {
+    int registerCount = this.registers.length;
+    double sum = 0.0d;
+    int zeros = 0;
+    for (byte register : this.registers) {
+      sum += Double.longBitsToDouble((1023L - register) << 52);
+      if (register == 0) {
+        zeros += 1;
+      }
+    }
+    double estimate = (alpha(registerCount) * registerCount * registerCount) / sum;
+    if ((estimate <= (2.5d * registerCount)) && (zeros > 0)) {
+      // linear counting for small cardinalities
+      estimate = registerCount * Math.log((double) registerCount / zeros);
+    }
+    return Math.round(estimate);
+  }
+
+  private static double alpha(int registerCount) {
+    switch (registerCount) {
+      case 16:
+        return 0.673d;
+      case 32:
+        return 0.697d;
+      case 64:
+        return 0.709d;
+      default:
+        return 0.7213d / (1.0d + (1.079d / registerCount));
+    }
+  }
+
+}
@@ -0,0 +1,234 @@
+package com.github.marschall.lineparser;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A set of keys for a semi-join that only stores hashes of the keys.
+ *
+ * <p>Keys are read from a file with one key per line, empty lines are
+ * ignored. Every key is hashed with {@link Line#hash64()} over its
+ * undecoded bytes. The hashes are added to a
+ * <a href="https://en.wikipedia.org/wiki/Bloom_filter">Bloom filter</a>
+ * that is split into blocks of the size of a cache line, a lookup only
+ * touches a single block. An exact filter additionally keeps the sorted
+ * hashes, candidates that pass the Bloom filter are then looked up with
+ * a binary search.</p>
+ *
+ * <p>Together with
+ * {@link LinePredicate#fieldIn(char, int, KeyFilter)} lines of a large
+ * file can be filtered by a field before they are decoded, instead of
+ * loading a {@code HashSet<String>} of all keys.</p>
+ *
+ * <p>Instances of this class are immutable and thread safe.</p>
+ *
+ * <pre><code>
+ * KeyFilter ids = KeyFilter.exact(idFile, UTF_8);
+ * new LineParser()
+ *   .withLinePredicate(LinePredicate.fieldIn(',', 0, ids))
+ *   .forEach(dataFile, UTF_8, line -&gt; {
+ *     // only lines whose first field is in idFile
+ *   });
+ * </code></pre>
+ */
+public final class KeyFilter {
+
+  /**
+   * The number of {@code long}s in a block, 512 bits.
+   */
+  private static final int BLOCK_SIZE = 8;
+
+  private static final int BLOCK_BITS_MASK = (BLOCK_SIZE * Long.SIZE) - 1;
+
+  /**
+   * The largest number of blocks that fits into a single array.
+   */
+  private static final int MAX_BLOCKS = 1 << 27;
+
+  private final Charset cs;
+
+  private final long[] blocks;
+  private final int blockShift;
+  private final int hashCount;
+
+  /**
+   * The sorted distinct hashes of the keys, {@code null} if not exact.
+   */
+  private final long[] hashes;
+
+  private final long keyCount;
+
+  private KeyFilter(Charset cs, long keyCount, double falsePositiveProbability, long[] hashes) {
+    this.cs = cs;
+    this.keyCount = keyCount;
+    double bitsPerKey = -Math.log(falsePositiveProbability) / (Math.log(2.0d) * Math.log(2.0d));
+    // blocking increases the false positive probability, compensate with more bits
+    double bits = Math.max(1L, keyCount) * bitsPerKey * 1.2d;
+    long blockCount = Long.highestOneBit((long) Math.ceil(bits / (BLOCK_SIZE * Long.SIZE)));
+    if ((blockCount * BLOCK_SIZE * Long.SIZE) < bits) {
+      blockCount *= 2L;
+    }
+    if (blockCount > MAX_BLOCKS) {
+      throw new IllegalArgumentException("too many keys for a false positive probability of " + falsePositiveProbability);
+    }
+    this.blocks = new long[(int) blockCount * BLOCK_SIZE];
+    this.blockShift = Long.SIZE - Long.numberOfTrailingZeros(blockCount);
+    this.hashCount = (int) Math.max(1L, Math.min(16L, Math.round(bitsPerKey * Math.log(2.0d))));
+    this.hashes = hashes;
+  }
+
+  /**
+   * Reads a Bloom filter from a file of keys.
+   *
+   * <p>A Bloom filter has false positives, lines passing the filter may
+   * have to be verified. With a false positive probability of 1% about
+   * 1.5 bytes per key are needed.</p>
+   *
+   * @param keyFile the file containing one key per line
+   * @param cs the character set of the key file, has to be the same as
+   *  the character set of the filtered file
+   * @param falsePositiveProbability the probability that a hash not
+   *  in the set is reported to be in the set, larger than 0 and smaller
+   *  than 1
+   * @return the filter
+   * @throws IOException if an exception happens when reading
+   */
+  public static KeyFilter bloom(Path keyFile, Charset cs, double falsePositiveProbability) throws IOException {
+    if (!((falsePositiveProbability > 0.0d) && (falsePositiveProbability < 1.0d))) {
+      throw new IllegalArgumentException("invalid false positive probability: " + falsePositiveProbability);
+    }
+    Objects.requireNonNull(keyFile, "keyFile");
+    Objects.requireNonNull(cs, "cs");
+    LineParser parser = new LineParser();
+    long[] keyCount = new long[1];
+    parser.forEachUndecoded(keyFile, cs, line -> {
+      if (line.getLength() > 0) {
+        keyCount[0] += 1L;
+      }
+    });
+    KeyFilter filter = new KeyFilter(LineParser.unambiguous(cs), keyCount[0], falsePositiveProbability, null);
+    parser.forEachUndecoded(keyFile, cs, line -> {
+      if (line.getLength() > 0) {
+        filter.put(line.hash64());
+      }
+    });
+    return filter;
+  }
+
+  /**
+   * Reads an exact filter from a file of keys.
+   *
+   * <p>An exact filter only has false positives if two keys have the same
+   * 64 bit hash. It needs 8 bytes per distinct key in addition to a Bloom
+   * filter with a false positive probability of 1%.</p>
+   *
+   * @param keyFile the file containing one key per line
+   * @param cs the character set of the key file, has to be the same as
+   *  the character set of the filtered file
+   * @return the filter
+   * @throws IOException if an exception happens when reading
+   */
+  public static KeyFilter exact(Path keyFile, Charset cs) throws IOException {
+    Objects.requireNonNull(keyFile, "keyFile");
+    Objects.requireNonNull(cs, "cs");
+    LongList hashes = new LongList();
+    new LineParser().forEachUndecoded(keyFile, cs, line -> {
+      if (line.getLength() > 0) {
+        hashes.add(line.hash64());
+      }
+    });
+    long[] sorted = hashes.toSortedDistinctArray();
+    KeyFilter filter = new KeyFilter(LineParser.unambiguous(cs), sorted.length, 0.01d, sorted);
+    for (long hash : sorted) {
+      filter.put(hash);
+    }
+    return filter;
+  }
+
+  Charset getCharset() {
+    return this.cs;
+  }
+
+  /**
+   * Returns the number of keys read, for an exact filter the number of
+   * distinct keys.
+   *
+   * @return the number of keys
+   */
+  public long getKeyCount() {
+    return this.keyCount;
+  }
+
+  private void put(long hash) {
+    int blockStart = this.blockStart(hash);
+    int first = (int) hash;
+    int second = (first >>> 16) | 1;
+    for (int i = 0; i < this.hashCount; i++) {
+      int bit = (first + (i * second)) & BLOCK_BITS_MASK;
+      this.blocks[blockStart + (bit >>> 6)] |= 1L << bit;
+    }
+  }
+
+  /**
+   * Tests whether the hash of a key may be in the set.
+   *
+   * @param hash the hash of the key, see {@link Line#hash64()}
+   * @return {@code false} if the key is definitely not in the set,
+   *  {@code true} if it may be in the set
+   */
+  public boolean mightContain(long hash) {
+    int blockStart = this.blockStart(hash);
+    int first = (int) hash;
+    int second = (first >>> 16) | 1;
+    for (int i = 0; i < this.hashCount; i++) {
+      int bit = (first + (i * second)) & BLOCK_BITS_MASK;
+      if ((this.blocks[blockStart + (bit >>> 6)] & (1L << bit)) == 0L) {
+        return false;
+      }
+    }
+    return (this.hashes == null) || (Arrays.binarySearch(this.hashes, hash) >= 0);
+  }
+
+  private int blockStart(long hash) {
+    // the upper bits select the block, the lower 32 bits the bits in the block
+    int block = (this.blockShift == Long.SIZE) ? 0 : (int) (hash >>> this.blockShift);
+    return block * BLOCK_SIZE;
+  }
+
+  /**
+   * A growable list of {@code long}s.
+   */
+  static final class LongList {
+
+    private long[] values = new long[1024];
+    private int size;
+
+    void add(long value) {
+      if (this.size == this.values.length) {
+        if (this.size == (Integer.MAX_VALUE - 8)) {
+          throw new IllegalStateException("too many values");
+        }
+        this.values = Arrays.copyOf(this.values, (int) Math.min(Integer.MAX_VALUE - 8, this.size * 2L));
+      }
+      this.values[this.size] = value;
+      this.size += 1;
+    }
+
+    long[] toSortedDistinctArray() {
+      Arrays.sort(this.values, 0, this.size);
+      int distinct = 0;
+      for (int i = 0; i < this.size; i++) {
+        if ((distinct == 0) || (this.values[distinct - 1] != this.values[i])) {
+          this.values[distinct] = this.values[i];
+          distinct += 1;
+        }
+      }
+      return Arrays.copyOf(this.values, distinct);
+    }
+
+  }
+
+}
@@ -1,5 +1,6 @@
 package com.github.marschall.lineparser;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 /**
@@ -11,10 +12,33 @@ public final class Line {
   private final int length;
   private final CharSequence line;
 
-  Line(long offset, int length, CharSequence line) {
+  /**
+   * The buffer containing the bytes of this line, {@code null} after the
+   * callback returned as the buffer may be unmapped.
+   */
+  private ByteBuffer buffer;
+  private final int bufferIndex;
+  private final long lineNumber;
+
+  Line(long offset, int length, CharSequence line, ByteBuffer buffer, int bufferIndex) {
+    this(offset, length, line, buffer, bufferIndex, 0L);
+  }
+
+  Line(long offset, int length, CharSequence line, ByteBuffer buffer, int bufferIndex, long lineNumber) {
     this.offset = offset;
     this.length = length;
     this.line = line;
+    this.buffer = buffer;
+    this.bufferIndex = bufferIndex;
+    this.lineNumber = lineNumber;
+  }
+
+  /**
+   * Called after the callback returned, the buffer may be unmapped
+   * afterwards and must no longer be accessed.
+   */
+  void release() {
+    this.buffer = null;
   }
 
   /**
@@ -27,6 +51,27 @@ public final class Line {
     return this.offset;
   }
 
+  /**
+   * The number of this line in the parsed file, the first line has the
+   * number {@code 1}.
+   *
+   * <p>Every line is counted, including lines that were skipped because
+   * of the line predicate or the maximum line length. When parsing in
+   * parallel the line ends before every chunk are counted first.</p>
+   *
+   * <p>Line numbers are only tracked by
+   * {@link LineParser#forEach(java.nio.file.Path, java.nio.charset.Charset, java.util.function.Consumer) forEach},
+   * {@link LineParser#forEachChunk(java.nio.file.Path, java.nio.charset.Charset, LineChunkHandler) forEachChunk},
+   * {@link LineParser#collect(java.nio.file.Path, java.nio.charset.Charset, java.util.stream.Collector) collect} and
+   * {@link LineParser#openCursor(java.nio.file.Path, java.nio.charset.Charset) openCursor}.</p>
+   *
+   * @return the number of this line, {@code 0} if line numbers are not
+   *  tracked
+   */
+  public long getLineNumber() {
+    return this.lineNumber;
+  }
+
   /**
    * The length in bytes of this line.
    *
@@ -55,4 +100,40 @@ public final class Line {
     return this.line;
   }
 
+  /**
+   * Computes a 64 bit hash of the bytes of this line.
+   *
+   * <p>The <a href="https://github.com/Cyan4973/xxHash">xxHash64</a>
+   * with seed {@code 0} of the undecoded bytes of the line is computed.
+   * Unlike {@code getContent().toString().hashCode()} this neither decodes
+   * nor allocates and has much fewer collisions, making it suitable for
+   * deduplicating or partitioning lines. Lines with the same content have
+   * the same hash if they are in the same character set. The line end
+   * is not part of the hash.</p>
+   *
+   * <p>The hash is not cached, callers that need it more than once should
+   * store it.</p>
+   *
+   * @return the hash of the bytes of this line
+   * @throws IllegalStateException if called after the callback returned
+   */
+  public long hash64() {
+    ByteBuffer bytes = this.buffer;
+    if (bytes == null) {
+      throw new IllegalStateException("hash64() can only be called during the callback");
+    }
+    return XxHash64.hash(bytes, this.bufferIndex, this.length, 0L);
+  }
+
+  /**
+   * Computes the hash of the key of this line, called from the callback.
+   */
+  long hash(LineKey key) {
+    ByteBuffer bytes = this.buffer;
+    if (bytes == null) {
+      throw new IllegalStateException("key can only be hashed during the callback");
+    }
+    return key.hash(bytes, this.bufferIndex, this.length);
+  }
+
 }
@@ -0,0 +1,172 @@
+package com.github.marschall.lineparser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Several consecutive lines of a file from the same mapping.
+ *
+ * <p>The offsets and lengths of the lines are stored in primitive arrays
+ * so that they can be processed in a loop without creating an object per
+ * line. The bytes of the lines can be accessed in the buffer returned by
+ * {@link #getBuffer()}, line {@code i} starts at index
+ * {@code getOffsets()[i] - getBufferOffset()}.</p>
+ *
+ * <p>A batch is reused, it and the arrays it returns are only valid
+ * during the callback.</p>
+ *
+ * @see LineParser#forEachBatch(java.nio.file.Path, java.nio.charset.Charset, int, Consumer)
+ */
+public final class LineBatch {
+
+  private final long[] offsets;
+  private final int[] lengths;
+  private final Consumer<LineBatch> batchCallback;
+  private int size;
+
+  /**
+   * The mapping containing the lines, {@code null} outside the callback.
+   */
+  private ByteBuffer buffer;
+  private long bufferOffset;
+  private LineReader reader;
+
+  LineBatch(int capacity, Consumer<LineBatch> batchCallback) {
+    this.offsets = new long[capacity];
+    this.lengths = new int[capacity];
+    this.batchCallback = batchCallback;
+  }
+
+  /**
+   * Adds a line, delivers the batch when it is full.
+   */
+  void add(ByteBuffer mapping, long mapStart, int lineStart, int length, LineReader lineReader) {
+    this.buffer = mapping;
+    this.bufferOffset = mapStart;
+    this.reader = lineReader;
+    this.offsets[this.size] = mapStart + lineStart;
+    this.lengths[this.size] = length;
+    this.size += 1;
+    if (this.size == this.offsets.length) {
+      this.flush();
+    }
+  }
+
+  /**
+   * Delivers the lines in this batch, if any, called before the mapping
+   * is unmapped.
+   */
+  void flush() {
+    if (this.size == 0) {
+      return;
+    }
+    try {
+      this.batchCallback.accept(this);
+    } finally {
+      this.size = 0;
+      this.buffer = null;
+    }
+  }
+
+  /**
+   * Returns the number of lines in this batch.
+   *
+   * @return the number of lines, at least one
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns the byte offsets of the lines into the parsed file.
+   *
+   * <p>The array is not copied, only the first {@link #size()} elements
+   * are valid. It must not be modified.</p>
+   *
+   * @return the byte offsets of the lines
+   */
+  public long[] getOffsets() {
+    return this.offsets;
+  }
+
+  /**
+   * Returns the lengths in bytes of the lines.
+   *
+   * <p>The array is not copied, only the first {@link #size()} elements
+   * are valid. It must not be modified.</p>
+   *
+   * @return the lengths in bytes of the lines
+   */
+  public int[] getLengths() {
+    return this.lengths;
+  }
+
+  /**
+   * Returns the buffer containing the bytes of every line in this batch.
+   *
+   * <p>Use absolute indices, the position and limit must not be changed.</p>
+   *
+   * @return the buffer containing the lines
+   * @see #getBufferOffset()
+   */
+  public ByteBuffer getBuffer() {
+    this.checkValid();
+    return this.buffer;
+  }
+
+  /**
+   * Returns the byte offset into the parsed file of index {@code 0} of
+   * {@link #getBuffer()}.
+   *
+   * @return the offset of the buffer in the file
+   */
+  public long getBufferOffset() {
+    return this.bufferOffset;
+  }
+
+  /**
+   * Decodes the content of a line.
+   *
+   * <p>The content is a view in a mutable buffer that is reused for the
+   * next line decoded, see {@link Line#getContent()}.</p>
+   *
+   * @param index the index of the line in this batch
+   * @return the content of the line
+   * @throws IOException if the line can not be decoded
+   */
+  public CharSequence getContent(int index) throws IOException {
+    this.checkIndex(index);
+    return this.reader.readLine(this.buffer, this.bufferIndex(index), this.lengths[index]);
+  }
+
+  /**
+   * Computes a 64 bit hash of the bytes of a line, the same as
+   * {@link Line#hash64()}.
+   *
+   * @param index the index of the line in this batch
+   * @return the hash of the bytes of the line
+   */
+  public long hash64(int index) {
+    this.checkIndex(index);
+    return XxHash64.hash(this.buffer, this.bufferIndex(index), this.lengths[index], 0L);
+  }
+
+  private int bufferIndex(int index) {
+    return (int) (this.offsets[index] - this.bufferOffset);
+  }
+
+  private void checkIndex(int index) {
+    this.checkValid();
+    if ((index < 0) || (index >= this.size)) {
+      throw new IndexOutOfBoundsException("index: " + index + " size: " + this.size);
+    }
+  }
+
+  private void checkValid() {
+    if (this.buffer == null) {
+      throw new IllegalStateException("batch can only be accessed during the callback");
+    }
+  }
+
+}
@@ -0,0 +1,27 @@
+package com.github.marschall.lineparser;
+
+/**
+ * Callback for lines that may be split into multiple chunks.
+ *
+ * @see LineParser#forEachChunk(java.nio.file.Path, java.nio.charset.Charset, LineChunkHandler)
+ */
+@FunctionalInterface
+public interface LineChunkHandler {
+
+  /**
+   * Called for every chunk of a line.
+   *
+   * <p>A chunk that is neither the first nor the last chunk of a line is
+   * a middle chunk. A line that is not split is a single chunk that is
+   * both the first and the last chunk.</p>
+   *
+   * @param chunk the chunk, {@link Line#getOffset()} and
+   *  {@link Line#getLength()} refer to the chunk, not the entire line
+   * @param lineOffset the byte offset of the first character of the entire
+   *  line into the parsed file
+   * @param first whether this is the first chunk of the line
+   * @param last whether this is the last chunk of the line
+   */
+  void chunk(Line chunk, long lineOffset, boolean first, boolean last);
+
+}
@@ -0,0 +1,219 @@
+package com.github.marschall.lineparser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * The number of occurrences of every distinct line in a file.
+ *
+ * <p>Instead of a {@link String} for every distinct line only the upper
+ * bits of the hash, the offset and the length of the first occurrence of
+ * a line are stored in an open addressing hash table backed by a single
+ * {@code long[]}. A slot takes 16 bytes, as the table is kept between
+ * three eighths and three quarters full a distinct line costs between 21
+ * and 43 bytes independent of its length. The content of a line is only
+ * decoded when the counts are read with
+ * {@link #forEach(ObjLongConsumer)}.</p>
+ *
+ * <p>Offsets are stored in 40 bits, files can be up to 1 TB.</p>
+ *
+ * <p>The file stays mapped until the counter is closed.</p>
+ *
+ * <p>Instances of this class are not thread safe.</p>
+ *
+ * @see LineParser#countDistinct(Path, Charset)
+ */
+public final class LineCounter implements Closeable {
+
+  /**
+   * Every slot consists of the upper bits of the hash and the offset of
+   * a line and of its length and count.
+   */
+  private static final int SLOT_SIZE = 2;
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  /**
+   * The largest number of slots that fits into a single array.
+   */
+  private static final int MAX_CAPACITY = 1 << 29;
+
+  /**
+   * The count is in the lower 32 bits, the length in the upper 32 bits,
+   * an empty slot has a count of {@code 0}.
+   */
+  private static final long COUNT_MASK = 0xFFFF_FFFFL;
+
+  /**
+   * The offset is in the lower 40 bits, the upper 24 bits of the hash
+   * in the upper 24 bits.
+   */
+  private static final long OFFSET_MASK = 0xFF_FFFF_FFFFL;
+
+  private static final long HASH_TAG_MASK = ~OFFSET_MASK;
+
+  private final MappedFile file;
+  private final Charset cs;
+
+  private long[] table;
+  private int mask;
+  private int resizeThreshold;
+  private int distinctCount;
+  private long totalCount;
+
+  private LineCounter(MappedFile file, Charset cs) {
+    this.file = file;
+    this.cs = cs;
+    this.allocateTable(INITIAL_CAPACITY);
+  }
+
+  static LineCounter open(Path path, Charset cs) throws IOException {
+    return new LineCounter(MappedFile.open(path), cs);
+  }
+
+  private void allocateTable(int capacity) {
+    this.table = new long[capacity * SLOT_SIZE];
+    this.mask = capacity - 1;
+    this.resizeThreshold = (capacity / 4) * 3;
+  }
+
+  /**
+   * Counts a line, called from the parse.
+   */
+  void add(Line line) {
+    long hash = line.hash64();
+    long offset = line.getOffset();
+    int length = line.getLength();
+    if (offset > OFFSET_MASK) {
+      throw new IllegalStateException("file larger than " + OFFSET_MASK + " bytes");
+    }
+    long hashTag = hash & HASH_TAG_MASK;
+    long[] slots = this.table;
+    this.totalCount += 1L;
+    int slot = (int) hash & this.mask;
+    while (true) {
+      int index = slot * SLOT_SIZE;
+      long lengthAndCount = slots[index + 1];
+      if (lengthAndCount == 0L) {
+        slots[index] = hashTag | offset;
+        slots[index + 1] = ((long) length << 32) | 1L;
+        this.distinctCount += 1;
+        if (this.distinctCount > this.resizeThreshold) {
+          this.grow();
+        }
+        return;
+      }
+      long tagAndOffset = slots[index];
+      if (((tagAndOffset & HASH_TAG_MASK) == hashTag) && ((int) (lengthAndCount >>> 32) == length)
+              && this.file.regionEquals(tagAndOffset & OFFSET_MASK, offset, length)) {
+        if ((lengthAndCount & COUNT_MASK) == COUNT_MASK) {
+          throw new ArithmeticException("count overflow");
+        }
+        slots[index + 1] = lengthAndCount + 1L;
+        return;
+      }
+      slot = (slot + 1) & this.mask;
+    }
+  }
+
+  /**
+   * Doubles the capacity, the slot of a line depends on the lower bits
+   * of its hash which are not stored and are therefore computed again
+   * from the mapped file.
+   */
+  private void grow() {
+    int capacity = this.mask + 1;
+    if (capacity >= MAX_CAPACITY) {
+      throw new IllegalStateException("more than " + this.resizeThreshold + " distinct lines");
+    }
+    long[] oldTable = this.table;
+    this.allocateTable(capacity * 2);
+    long[] slots = this.table;
+    for (int i = 0; i < oldTable.length; i += SLOT_SIZE) {
+      long lengthAndCount = oldTable[i + 1];
+      if (lengthAndCount != 0L) {
+        long offset = oldTable[i] & OFFSET_MASK;
+        int length = (int) (lengthAndCount >>> 32);
+        long hash = XxHash64.hash(this.file.buffer(offset, length), this.file.index(offset, length), length, 0L);
+        int slot = (int) hash & this.mask;
+        while (slots[(slot * SLOT_SIZE) + 1] != 0L) {
+          slot = (slot + 1) & this.mask;
+        }
+        int index = slot * SLOT_SIZE;
+        slots[index] = oldTable[i];
+        slots[index + 1] = lengthAndCount;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of distinct lines.
+   *
+   * @return the number of distinct lines
+   */
+  public long getDistinctCount() {
+    return this.distinctCount;
+  }
+
+  /**
+   * Returns the number of lines that were counted.
+   *
+   * @return the number of counted lines, the sum of all counts
+   */
+  public long getTotalCount() {
+    return this.totalCount;
+  }
+
+  /**
+   * Calls a callback for every distinct line with the number of times it
+   * occurs.
+   *
+   * <p>The order of the lines is unspecified. The line passed to the
+   * callback is the first occurrence of the line in the file. Only the
+   * distinct lines are decoded.</p>
+   *
+   * @param callback called with every distinct line and its count
+   * @throws IOException if an exception happens when decoding
+   * @throws IllegalStateException if the counter is closed
+   */
+  public void forEach(ObjLongConsumer<Line> callback) throws IOException {
+    Objects.requireNonNull(callback, "callback");
+    if (this.file.isClosed()) {
+      throw new IllegalStateException("closed");
+    }
+    LineReader reader = LineReader.forCharset(this.cs);
+    long[] slots = this.table;
+    for (int i = 0; i < slots.length; i += SLOT_SIZE) {
+      long lengthAndCount = slots[i + 1];
+      if (lengthAndCount != 0L) {
+        long offset = slots[i] & OFFSET_MASK;
+        int length = (int) (lengthAndCount >>> 32);
+        ByteBuffer buffer = this.file.buffer(offset, length);
+        int start = this.file.index(offset, length);
+        Line line = new Line(offset, length, reader.readLine(buffer, start, length), buffer, start);
+        try {
+          callback.accept(line, lengthAndCount & COUNT_MASK);
+        } finally {
+          line.release();
+        }
+      }
+    }
+  }
+
+  /**
+   * Unmaps the file, afterwards {@link #forEach(ObjLongConsumer)} can no
+   * longer be called.
+   *
+   * @throws UnmapFailedException if unampping fails
+   */
+  @Override
+  public void close() throws IOException {
+    this.file.close();
+  }
+
+}
@@ -0,0 +1,330 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.LineParser.continuesWithArray;
+import static com.github.marschall.lineparser.LineParser.startsWithArray;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+
+import com.github.marschall.lineparser.LineParser.FileInfo;
+
+/**
+ * Iterates over the lines of a file on demand.
+ *
+ * <p>Unlike {@link LineParser#forEach(java.nio.file.Path, Charset, java.util.function.Consumer)}
+ * the caller decides when to advance to the next line. At most one
+ * mapping of the file is alive at any time, it is unmapped as soon as
+ * every line in it has been read or the cursor is closed.</p>
+ *
+ * <pre><code>
+ * try (LineCursor cursor = parser.openCursor(path, cs)) {
+ *   while (cursor.next()) {
+ *     Line line = cursor.getLine();
+ *     System.out.println(line.getContent());
+ *   }
+ * }
+ * </code></pre>
+ *
+ * <p>This class is not thread safe.</p>
+ *
+ * @see LineParser#openCursor(java.nio.file.Path, Charset)
+ */
+public final class LineCursor implements Closeable {
+
+  /**
+   * Marks that there is no mapping after the current one.
+   */
+  private static final long FILE_END = -1L;
+
+  private final FileInputStream stream;
+  private final FileInfo fileInfo;
+  private final byte[] cr;
+  private final byte[] lf;
+  private final int maxMapSize;
+  private final int maxLineLength;
+  private final LinePredicate linePredicate;
+
+  /**
+   * The parser that created this cursor, applies the {@link OversizedLinePolicy}.
+   */
+  private final LineParser parser;
+
+  /**
+   * The current mapping, {@code null} if none.
+   */
+  private MappedByteBuffer buffer;
+  private long mapStart;
+  private int mapSize;
+  private boolean lastMapping;
+
+  /**
+   * Whether every line in the current mapping has been read, it is
+   * unmapped on the next call to {@link #next()}.
+   */
+  private boolean exhausted;
+
+  /**
+   * The start of the next mapping or {@link #FILE_END}.
+   */
+  private long nextMapStart;
+  private int mapIndex;
+  private int lineStart;
+
+  /**
+   * The number of the next line.
+   */
+  private long lineNumber;
+
+  /**
+   * The current line, {@code null} if none.
+   */
+  private Line line;
+  private boolean closed;
+
+  LineCursor(FileInputStream stream, FileInfo fileInfo, Charset cs, LineParser parser,
+          int maxMapSize, int maxLineLength, LinePredicate linePredicate) {
+    this.stream = stream;
+    this.fileInfo = fileInfo;
+    Charset encodingCharset = LineParser.unambiguous(cs);
+    this.cr = "\r".getBytes(encodingCharset);
+    this.lf = "\n".getBytes(encodingCharset);
+    this.maxMapSize = maxMapSize;
+    this.maxLineLength = maxLineLength;
+    this.linePredicate = linePredicate;
+    this.parser = parser;
+    this.nextMapStart = (fileInfo.fileSize == 0L) ? FILE_END : 0L;
+    this.lineNumber = 1L;
+  }
+
+  /**
+   * Advances to the next line.
+   *
+   * <p>The previous line is no longer valid afterwards.</p>
+   *
+   * @return {@code true} if there is a next line, {@code false} if the
+   *  end of the file has been reached
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   * @throws IllegalStateException if the cursor is closed
+   */
+  public boolean next() throws IOException {
+    if (this.closed) {
+      throw new IllegalStateException("cursor is closed");
+    }
+    this.releaseLine();
+    while (true) {
+      if (this.exhausted) {
+        this.unmap();
+      }
+      if (this.buffer == null) {
+        if (this.nextMapStart == FILE_END) {
+          return false;
+        }
+        this.map(this.nextMapStart);
+      }
+      if (this.scanMapping()) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Returns the current line.
+   *
+   * <p>The line is only valid until {@link #next()} or {@link #close()}
+   * is called.</p>
+   *
+   * @return the current line
+   * @throws IllegalStateException if there is no current line
+   */
+  public Line getLine() {
+    if (this.line == null) {
+      throw new IllegalStateException("no current line");
+    }
+    return this.line;
+  }
+
+  /**
+   * Returns statistics about the lines read so far.
+   *
+   * @return statistics about the lines read so far
+   */
+  public ParseStatistics getStatistics() {
+    return new ParseStatistics(this.fileInfo.reader.getPeakBufferSize(), this.fileInfo.oversizedLineCount);
+  }
+
+  /**
+   * Scans the current mapping for the next line.
+   *
+   * @return {@code true} if a line was found
+   */
+  private boolean scanMapping() throws IOException {
+    MappedByteBuffer mapping = this.buffer;
+    byte[] crBytes = this.cr;
+    byte[] lfBytes = this.lf;
+    int crLength = crBytes.length;
+    int lfLength = lfBytes.length;
+    int size = this.mapSize;
+    while (this.mapIndex < size) {
+      int index = this.mapIndex;
+      byte value = mapping.get(index);
+
+      if (startsWithArray(value, crBytes, crLength, index, size, mapping)) {
+        if (!this.lastMapping && ((crLength + lfLength) > (size - index))) {
+          // CR LF may span two mappings, map again from the start of the line
+          break;
+        }
+        int newlineLength = crLength;
+        if (continuesWithArray(lfBytes, lfLength, crLength, index, size, mapping)) {
+          newlineLength += lfLength;
+        }
+        int start = this.lineStart;
+        this.mapIndex = this.lineStart = index + newlineLength;
+        if (this.lineFound(start, index)) {
+          return true;
+        }
+
+      } else if (startsWithArray(value, lfBytes, lfLength, index, size, mapping)) {
+        int start = this.lineStart;
+        this.mapIndex = this.lineStart = index + lfLength;
+        if (this.lineFound(start, index)) {
+          return true;
+        }
+      } else {
+        this.mapIndex = index + 1;
+      }
+    }
+
+    this.exhausted = true;
+    if (!this.lastMapping) {
+      if (this.lineStart == 0) {
+        // the line does not fit into a single mapping
+        // mapping again from its start would make no progress
+        return this.oversizedLineAtMappingEnd();
+      }
+      // map again from the start of the last line
+      this.nextMapStart = this.mapStart + this.lineStart;
+      return false;
+    }
+    this.nextMapStart = FILE_END;
+    if ((this.lineStart < size) || this.fileInfo.inOversizedLine) {
+      // the last line didn't end in a newline
+      return this.lineFound(this.lineStart, this.mapIndex);
+    }
+    return false;
+  }
+
+  /**
+   * Called when the end of a line was found.
+   *
+   * @return {@code true} if the line is delivered
+   */
+  private boolean lineFound(int start, int end) throws IOException {
+    boolean delivered = this.lineEnded(start, end);
+    this.lineNumber += 1L;
+    return delivered;
+  }
+
+  private boolean lineEnded(int start, int end) throws IOException {
+    int length = end - start;
+    if (this.fileInfo.inOversizedLine) {
+      // the start of the line was already handled in a previous mapping
+      this.fileInfo.inOversizedLine = false;
+      return false;
+    }
+    if (length <= this.maxLineLength) {
+      LinePredicate predicate = this.linePredicate;
+      if ((predicate == null) || predicate.test(this.buffer, start, length)) {
+        this.setLine(start, length);
+        return true;
+      }
+      return false;
+    }
+    return this.applyOversizedLinePolicy(start, end);
+  }
+
+  /**
+   * Called when a mapping contains no line end.
+   *
+   * @return {@code true} if the start of the line is delivered
+   */
+  private boolean oversizedLineAtMappingEnd() throws IOException {
+    int end = LineParser.oversizedLineEnd(this.mapStart, this.mapSize, this.cr, this.lf.length, this.buffer, this.fileInfo);
+    this.nextMapStart = this.mapStart + end;
+    if (this.fileInfo.inOversizedLine) {
+      return false;
+    }
+    boolean delivered = this.applyOversizedLinePolicy(0, end);
+    // skip the rest of the line
+    this.fileInfo.inOversizedLine = true;
+    return delivered;
+  }
+
+  private boolean applyOversizedLinePolicy(int start, int end) throws IOException {
+    int length = this.parser.oversizedLineLength(start, end, this.mapStart, this.buffer, this.fileInfo);
+    if (length == LineParser.SKIP_LINE) {
+      return false;
+    }
+    this.setLine(start, length);
+    return true;
+  }
+
+  private void setLine(int start, int length) throws IOException {
+    CharSequence content = this.fileInfo.reader.readLine(this.buffer, start, length);
+    this.line = new Line(this.mapStart + start, length, content, this.buffer, start, this.lineNumber);
+  }
+
+  private void releaseLine() {
+    if (this.line != null) {
+      this.line.release();
+      this.line = null;
+    }
+  }
+
+  private void map(long start) throws IOException {
+    this.mapStart = start;
+    this.mapSize = Math.toIntExact(Math.min(this.fileInfo.fileSize - start, this.maxMapSize));
+    this.lastMapping = (start + this.mapSize) == this.fileInfo.fileSize;
+    this.buffer = this.fileInfo.channel.map(MapMode.READ_ONLY, start, this.mapSize);
+    this.mapIndex = 0;
+    this.lineStart = 0;
+  }
+
+  private void unmap() throws IOException {
+    MappedByteBuffer toUnmap = this.buffer;
+    this.buffer = null;
+    this.exhausted = false;
+    if (toUnmap != null) {
+      Unmapper.unmap(toUnmap, this.fileInfo);
+    }
+  }
+
+  /**
+   * Unmaps the current mapping, if any, and closes the file.
+   *
+   * <p>Closing a closed cursor has no effect.</p>
+   *
+   * @throws IOException if closing the file fails
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  @Override
+  public void close() throws IOException {
+    if (this.closed) {
+      return;
+    }
+    this.closed = true;
+    this.releaseLine();
+    try {
+      this.unmap();
+    } finally {
+      this.stream.close();
+    }
+  }
+
+}
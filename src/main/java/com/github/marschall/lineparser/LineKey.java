@@ -0,0 +1,86 @@
+package com.github.marschall.lineparser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Objects;
+
+/**
+ * Computes a 64 bit hash of the key of a line from its undecoded bytes.
+ *
+ * <p>The key is hashed before the line is decoded, for example to
+ * partition lines by a key without creating a {@link String}. Lines
+ * with equal keys have to have equal hashes, the hashes have to be
+ * uniformly distributed.</p>
+ *
+ * <p>Implementations have to be thread safe if the same key is used
+ * from several threads.</p>
+ *
+ * @see LineParser#forEachPartitioned(java.nio.file.Path, Charset, LineKey, int, java.util.function.IntFunction)
+ */
+@FunctionalInterface
+public interface LineKey {
+
+  /**
+   * Computes the hash of the key of a line.
+   *
+   * <p>Implementations must not change the position or limit of
+   * {@code buffer} and must only access the bytes of the line.</p>
+   *
+   * @param buffer contains the line, use absolute indices
+   * @param start the index of the first byte of the line in {@code buffer}
+   * @param length the length of the line in bytes without the line end
+   * @return the hash of the key
+   */
+  long hash(ByteBuffer buffer, int start, int length);
+
+  /**
+   * Returns a key that is the whole line, the hash is the same as
+   * {@link Line#hash64()}.
+   *
+   * @return the key
+   */
+  static LineKey line() {
+    return (buffer, start, length) -> XxHash64.hash(buffer, start, length, 0L);
+  }
+
+  /**
+   * Returns a key that is a fixed range of bytes of the line, for example
+   * a fixed width column. The range is cut off at the end of the line.
+   *
+   * @param from the index of the first byte of the key in the line,
+   *  inclusive, not negative
+   * @param to the index of the last byte of the key in the line,
+   *  exclusive
+   * @return the key
+   */
+  static LineKey bytes(int from, int to) {
+    if ((from < 0) || (to < from)) {
+      throw new IllegalArgumentException("invalid range: " + from + " - " + to);
+    }
+    return new LineKeys.ByteRangeKey(from, to);
+  }
+
+  /**
+   * Returns a key that is a field of the line. Fields are separated by a
+   * single delimiter character, quoting is not supported. Lines with
+   * fewer fields have an empty key.
+   *
+   * @param cs the character set of the file, for UTF-16 and UTF-32 big
+   *  endian is assumed, use the character set with the explicit byte
+   *  order of the file otherwise
+   * @param delimiter the character that separates fields
+   * @param column the index of the field, not negative
+   * @return the key
+   * @throws IllegalArgumentException if the character set is not self
+   *  synchronizing like UTF-8 or UTF-16, a field could then not be found
+   *  without decoding
+   */
+  static LineKey field(Charset cs, char delimiter, int column) {
+    Objects.requireNonNull(cs, "cs");
+    if (column < 0) {
+      throw new IllegalArgumentException("column must not be negative but was " + column);
+    }
+    return new LineKeys.FieldKey(new LineKeys.FieldFinder(LineParser.unambiguous(cs), delimiter, column));
+  }
+
+}
@@ -0,0 +1,133 @@
+package com.github.marschall.lineparser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Implementations of the keys returned by the factory methods in
+ * {@link LineKey}.
+ */
+final class LineKeys {
+
+  private LineKeys() {
+    // utility class
+  }
+
+  /**
+   * A fixed range of bytes of a line.
+   */
+  static final class ByteRangeKey implements LineKey {
+
+    private final int from;
+    private final int to;
+
+    ByteRangeKey(int from, int to) {
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public long hash(ByteBuffer buffer, int start, int length) {
+      int keyStart = Math.min(this.from, length);
+      int keyEnd = Math.min(this.to, length);
+      return XxHash64.hash(buffer, start + keyStart, keyEnd - keyStart, 0L);
+    }
+
+  }
+
+  /**
+   * A delimited field of a line, empty if the line has fewer fields.
+   */
+  static final class FieldKey implements LineKey {
+
+    private final FieldFinder finder;
+
+    FieldKey(FieldFinder finder) {
+      this.finder = finder;
+    }
+
+    @Override
+    public long hash(ByteBuffer buffer, int start, int length) {
+      long range = this.finder.find(buffer, start, length);
+      if (range == FieldFinder.NOT_FOUND) {
+        return XxHash64.hash(buffer, start, 0, 0L);
+      }
+      return XxHash64.hash(buffer, FieldFinder.fieldStart(range), FieldFinder.fieldLength(range), 0L);
+    }
+
+  }
+
+  /**
+   * Finds a delimited field in the undecoded bytes of a line.
+   */
+  static final class FieldFinder {
+
+    static final long NOT_FOUND = -1L;
+
+    private final byte[] delimiter;
+
+    /**
+     * The length of a code unit, characters only start at multiples.
+     */
+    private final int step;
+    private final int column;
+
+    FieldFinder(Charset cs, char delimiter, int column) {
+      if (!LineParser.GrepInfo.isSelfSynchronizing(cs)) {
+        throw new IllegalArgumentException("fields can not be found without decoding in " + cs.name());
+      }
+      this.delimiter = LinePredicates.encode(cs, new String[] {String.valueOf(delimiter)})[0];
+      // UTF-8 delimiters have more than one byte but UTF-8 is self synchronizing on every byte
+      this.step = cs.equals(StandardCharsets.UTF_8) ? 1 : this.delimiter.length;
+      this.column = column;
+    }
+
+    /**
+     * Returns the start of the field in the upper and the length in the
+     * lower 32 bits, {@link #NOT_FOUND} if the line has fewer fields.
+     */
+    long find(ByteBuffer buffer, int start, int length) {
+      int end = start + length;
+      int fieldStart = start;
+      int fieldIndex = 0;
+      int index = start;
+      while (index <= (end - this.delimiter.length)) {
+        if (this.isDelimiter(buffer, index)) {
+          if (fieldIndex == this.column) {
+            return range(fieldStart, index);
+          }
+          fieldIndex += 1;
+          index += this.delimiter.length;
+          fieldStart = index;
+        } else {
+          index += this.step;
+        }
+      }
+      return (fieldIndex == this.column) ? range(fieldStart, end) : NOT_FOUND;
+    }
+
+    private boolean isDelimiter(ByteBuffer buffer, int index) {
+      for (int i = 0; i < this.delimiter.length; i++) {
+        if (buffer.get(index + i) != this.delimiter[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static long range(int fieldStart, int fieldEnd) {
+      return ((long) fieldStart << 32) | (fieldEnd - fieldStart);
+    }
+
+    static int fieldStart(long range) {
+      return (int) (range >>> 32);
+    }
+
+    static int fieldLength(long range) {
+      return (int) range;
+    }
+
+  }
+
+}
@@ -2,15 +2,33 @@ package com.github.marschall.lineparser;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
 import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+import java.util.stream.Collector.Characteristics;
+import java.util.stream.IntStream;
 
 /**
  * Parses a file into multiple lines.
@@ -68,6 +86,67 @@ public final class LineParser {
 
   private static final long FILE_END = -1;
 
+  private static final long NO_RECORD_START = -1L;
+
+  private static final int DELIMITER_SPANS_MAPPINGS = -1;
+
+  /**
+   * Result of {@link #oversizedLineLength(int, int, long, MappedByteBuffer, FileInfo)}
+   * for a line that is skipped.
+   */
+  static final int SKIP_LINE = -1;
+
+  /**
+   * Maximum mapping size when reading the lines of a time range, lines
+   * after the range in the same mapping are still scanned.
+   */
+  private static final int SEEK_MAP_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * Maximum mapping size when searching for the next line during a
+   * binary search.
+   */
+  private static final int PROBE_MAP_SIZE = 1024 * 1024;
+
+  /**
+   * Maximum number of bytes read for parsing a timestamp, enough for
+   * every timestamp in every encoding.
+   */
+  private static final int TIMESTAMP_PREFIX_SIZE = 256;
+
+  /**
+   * Maximum number of bytes per character in any supported encoding.
+   */
+  private static final int MAX_BYTES_PER_CHAR = 4;
+
+  /**
+   * Result of a {@link LineProbe} for a line that can not be compared,
+   * comparable lines have to be probed as {@code -1}, {@code 0} or
+   * {@code 1}.
+   */
+  private static final int NOT_COMPARABLE = Integer.MIN_VALUE;
+
+  /**
+   * Files smaller than this are not split for parallel parsing.
+   */
+  private static final long MIN_PARALLEL_CHUNK_SIZE = 1024L * 1024L;
+
+  /**
+   * Number of lines that can be queued for a partition.
+   */
+  private static final int PARTITION_RING_CAPACITY = 4096;
+
+  /**
+   * Number of batches of lines that can be queued for the workers of a
+   * pipelined parse.
+   */
+  private static final int PIPELINE_RING_CAPACITY = 64;
+
+  /**
+   * 1GB windows for the mapping read by the partitions or workers.
+   */
+  private static final int PARTITION_WINDOW_SHIFT = 30;
+
   static {
 
     UTF_32 = safeLoadCharset("UTF-32");
@@ -86,12 +165,135 @@ public final class LineParser {
 
   private final int maxMapSize;
 
+  private final int maxLineLength;
+
+  private final OversizedLinePolicy oversizedLinePolicy;
+
+  /**
+   * The configured line delimiters, {@code null} for <code>CR</code>,
+   * <code>LF</code> and <code>CR LF</code>.
+   */
+  private final String[] delimiters;
+
+  /**
+   * Evaluated on the bytes of every line before it is read, {@code null}
+   * to read every line.
+   */
+  private final LinePredicate linePredicate;
+
   public LineParser() {
     this(Integer.MAX_VALUE);
   }
 
   LineParser(int maxBufferSize) {
-    this.maxMapSize = maxBufferSize;
+    this(maxBufferSize, Integer.MAX_VALUE, OversizedLinePolicy.FAIL, null, null);
+  }
+
+  private LineParser(int maxMapSize, int maxLineLength, OversizedLinePolicy oversizedLinePolicy,
+          String[] delimiters, LinePredicate linePredicate) {
+    this.maxMapSize = maxMapSize;
+    this.maxLineLength = maxLineLength;
+    this.oversizedLinePolicy = oversizedLinePolicy;
+    this.delimiters = delimiters;
+    this.linePredicate = linePredicate;
+  }
+
+  /**
+   * Returns a parser that limits the length of a line.
+   *
+   * <p>Lines longer than the mapping size of 2GB are always considered
+   * too long as they can not be represented as a single {@link Line}.
+   * Without a configured limit such lines make
+   * {@link #forEach(Path, Charset, Consumer)} fail with a
+   * {@link LineTooLongException}.</p>
+   *
+   * <p>{@link #forEachChunk(Path, Charset, LineChunkHandler)} ignores
+   * the policy and splits lines longer than the limit into chunks of
+   * at most {@code maxLineLength} bytes instead.</p>
+   *
+   * @param maxLineLength the maximum length of a line in bytes, at least 4
+   *  so that every character fits
+   * @param policy what to do with lines that are longer
+   * @return a new parser with the given limit, this parser is not changed
+   */
+  public LineParser withMaxLineLength(int maxLineLength, OversizedLinePolicy policy) {
+    Objects.requireNonNull(policy, "policy");
+    if (maxLineLength < 4) {
+      throw new IllegalArgumentException("maxLineLength must be at least 4 but was " + maxLineLength);
+    }
+    return new LineParser(this.maxMapSize, maxLineLength, policy, this.delimiters, this.linePredicate);
+  }
+
+  /**
+   * Returns a parser that splits lines at the given delimiters instead of
+   * <code>CR</code>, <code>LF</code> and <code>CR LF</code>.
+   *
+   * <p>Delimiters are encoded with the character set of the file. If
+   * several delimiters match at the same position the longest one wins,
+   * so the default behavior is the same as
+   * {@code withDelimiters("\r\n", "\r", "\n")}. Delimiters are not
+   * part of the line content.</p>
+   *
+   * <p>If every delimiter is a single byte in the character set of the
+   * file a simple table lookup is used for every byte, otherwise
+   * candidates are looked up by their first byte.</p>
+   *
+   * <p>Examples:</p>
+   * <ul>
+   *  <li>{@code withDelimiters("\0")} for the output of {@code find -print0}</li>
+   *  <li><code>withDelimiters("&#92;u001E")</code> for
+   *  <a href="https://tools.ietf.org/html/rfc7464">JSON text sequences</a></li>
+   *  <li><code>withDelimiters("\r\n", "\r", "\n", "&#92;u0085", "&#92;u2028", "&#92;u2029")</code>
+   *  to additionally split at NEL and the Unicode line and paragraph
+   *  separators, only for character sets that can encode them</li>
+   * </ul>
+   *
+   * <p>Only {@link #forEach(Path, Charset, Consumer)} and
+   * {@link #forEachChunk(Path, Charset, LineChunkHandler)} use the
+   * delimiters.</p>
+   *
+   * @param delimiters the line delimiters, not empty
+   * @return a new parser with the given delimiters, this parser is not changed
+   * @throws IllegalArgumentException if no delimiter is given or a
+   *  delimiter is empty
+   */
+  public LineParser withDelimiters(String... delimiters) {
+    Objects.requireNonNull(delimiters, "delimiters");
+    if (delimiters.length == 0) {
+      throw new IllegalArgumentException("at least one delimiter required");
+    }
+    for (String delimiter : delimiters) {
+      Objects.requireNonNull(delimiter, "delimiter");
+      if (delimiter.isEmpty()) {
+        throw new IllegalArgumentException("empty delimiter");
+      }
+    }
+    return new LineParser(this.maxMapSize, this.maxLineLength, this.oversizedLinePolicy,
+            delimiters.clone(), this.linePredicate);
+  }
+
+  /**
+   * Returns a parser that only reads lines accepted by a predicate.
+   *
+   * <p>The predicate is evaluated on the undecoded bytes of a line, lines
+   * that are rejected are neither decoded nor is a {@link Line} created
+   * for them. Lines that are longer than the maximum line length are not
+   * passed to the predicate, the {@link OversizedLinePolicy} applies to
+   * them instead.</p>
+   *
+   * <p>Only {@link #forEach(Path, Charset, Consumer)},
+   * {@link #forEachChunk(Path, Charset, LineChunkHandler)} and
+   * {@link #grep(Path, Charset, CharSequence, Consumer)} use the
+   * predicate.</p>
+   *
+   * @param predicate the predicate for lines to read
+   * @return a new parser with the given predicate, this parser is not changed
+   * @see LinePredicate#startsWith(Charset, String...)
+   */
+  public LineParser withLinePredicate(LinePredicate predicate) {
+    Objects.requireNonNull(predicate, "predicate");
+    return new LineParser(this.maxMapSize, this.maxLineLength, this.oversizedLinePolicy,
+            this.delimiters, predicate);
   }
 
   /**
@@ -105,35 +307,1748 @@ public final class LineParser {
    * @throws IOException if an exception happens when reading
    * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
    *   JREs or JREs that are newer than expected or security managers
+   * @see #forEachWithStatistics(Path, Charset, Consumer)
    */
   public void forEach(Path path, Charset cs, Consumer<Line> lineCallback) throws IOException {
+    this.forEachWithStatistics(path, cs, lineCallback);
+  }
+
+  /**
+   * Internal iterator over every line in a file that returns statistics
+   * about the parse.
+   *
+   * <p>The same as {@link #forEach(Path, Charset, Consumer)}, which
+   * keeps returning {@code void} for binary compatibility.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @param lineCallback callback executed for every line
+   * @return statistics about the parse
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  public ParseStatistics forEachWithStatistics(Path path, Charset cs, Consumer<Line> lineCallback) throws IOException {
+    Objects.requireNonNull(lineCallback, "lineCallback");
+    return this.parse(path, cs, lineCallback, null);
+  }
+
+  /**
+   * Internal iterator over every line in a file that periodically hands
+   * out the position of the parse so that it can be resumed.
+   *
+   * <p>A position is handed to the checkpoint callback at the start of a
+   * line once every line before has been delivered to the line callback.
+   * This happens at the latest every {@code checkpointInterval} lines
+   * and in addition whenever the end of a mapping is reached. If the parse
+   * fails or is interrupted it can be resumed from the last position with
+   * {@link #resume(Path, ParsePosition, Consumer)} without reading the
+   * file up to the position again.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @param lineCallback callback executed for every line
+   * @param checkpointInterval the maximum number of lines between two
+   *  positions, positive
+   * @param checkpointCallback callback executed with every position, for
+   *  example to persist it
+   * @return statistics about the parse
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  public ParseStatistics forEach(Path path, Charset cs, Consumer<Line> lineCallback,
+          int checkpointInterval, Consumer<ParsePosition> checkpointCallback) throws IOException {
+    Objects.requireNonNull(cs, "cs");
+    Objects.requireNonNull(lineCallback, "lineCallback");
+    return this.parse(path, cs, lineCallback, null, true, null, null, checkpoints(checkpointInterval, checkpointCallback));
+  }
+
+  /**
+   * Resumes a parse from a position.
+   *
+   * <p>The file is mapped starting at the position, the lines before are
+   * not read again. The line numbers continue from the position. The same
+   * line delimiters, maximum line length and line predicate as in the
+   * original parse should be configured.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to parse
+   * @param position the position to resume from, taken from a parse of
+   *  the same file
+   * @param lineCallback callback executed for every line after the
+   *  position
+   * @return statistics about the resumed parse
+   * @throws IOException if an exception happens when reading
+   * @throws java.nio.file.FileSystemException if the file changed since
+   *   the position was taken
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  public ParseStatistics resume(Path path, ParsePosition position, Consumer<Line> lineCallback) throws IOException {
+    Objects.requireNonNull(position, "position");
+    Objects.requireNonNull(lineCallback, "lineCallback");
+    return this.parse(path, null, lineCallback, null, true, null, position, null);
+  }
+
+  /**
+   * Resumes a parse from a position and periodically hands out further
+   * positions.
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to parse
+   * @param position the position to resume from, taken from a parse of
+   *  the same file
+   * @param lineCallback callback executed for every line after the
+   *  position
+   * @param checkpointInterval the maximum number of lines between two
+   *  positions, positive
+   * @param checkpointCallback callback executed with every position
+   * @return statistics about the resumed parse
+   * @throws IOException if an exception happens when reading
+   * @throws java.nio.file.FileSystemException if the file changed since
+   *   the position was taken
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   * @see #forEach(Path, Charset, Consumer, int, Consumer)
+   * @see #resume(Path, ParsePosition, Consumer)
+   */
+  public ParseStatistics resume(Path path, ParsePosition position, Consumer<Line> lineCallback,
+          int checkpointInterval, Consumer<ParsePosition> checkpointCallback) throws IOException {
+    Objects.requireNonNull(position, "position");
+    Objects.requireNonNull(lineCallback, "lineCallback");
+    return this.parse(path, null, lineCallback, null, true, null, position, checkpoints(checkpointInterval, checkpointCallback));
+  }
+
+  private static Checkpoints checkpoints(int checkpointInterval, Consumer<ParsePosition> checkpointCallback) {
+    Objects.requireNonNull(checkpointCallback, "checkpointCallback");
+    if (checkpointInterval <= 0) {
+      throw new IllegalArgumentException("checkpoint interval must be positive but was " + checkpointInterval);
+    }
+    return new Checkpoints(checkpointInterval, checkpointCallback);
+  }
+
+  /**
+   * Internal iterator over every line in a file that delivers lines that
+   * are too long as multiple chunks.
+   *
+   * <p>Lines that are not longer than the maximum line length are
+   * delivered as a single chunk that is both the first and the last
+   * chunk. Longer lines, including lines that do not fit into a single
+   * mapping, are delivered as a sequence of chunks that are no longer
+   * than the maximum line length. Chunks never split a character for
+   * ISO 8859-1, UTF-8, UTF-16 and UTF-32, other character sets are
+   * decoded with the {@link java.nio.charset.CharsetDecoder} in order
+   * to find character boundaries. The last chunk of a line may be
+   * empty.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @param chunkHandler callback executed for every chunk
+   * @return statistics about the parse
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   * @see #withMaxLineLength(int, OversizedLinePolicy)
+   */
+  public ParseStatistics forEachChunk(Path path, Charset cs, LineChunkHandler chunkHandler) throws IOException {
+    Objects.requireNonNull(chunkHandler, "chunkHandler");
+    Consumer<Line> lineCallback = line -> chunkHandler.chunk(line, line.getOffset(), true, true);
+    return this.parse(path, cs, lineCallback, chunkHandler);
+  }
+
+  /**
+   * Internal iterator over the lines in a file that delivers several
+   * lines at once.
+   *
+   * <p>Instead of invoking a callback for every line the offsets and
+   * lengths of up to {@code batchSize} lines are collected in primitive
+   * arrays of a reused {@link LineBatch} that is then handed to the
+   * callback. No object is created per line and lines are only decoded
+   * if requested. All lines in a batch are from the same mapping, a
+   * batch is therefore delivered when it is full and before the mapping
+   * is unmapped.</p>
+   *
+   * <p>The configured line delimiters, maximum line length and line
+   * predicate are used.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * <pre><code>
+   * parser.forEachBatch(path, ISO_8859_1, 1024, batch -&gt; {
+   *   int[] lengths = batch.getLengths();
+   *   for (int i = 0; i &lt; batch.size(); i++) {
+   *     totalLength += lengths[i];
+   *   }
+   * });
+   * </code></pre>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @param batchSize the maximum number of lines in a batch, positive
+   * @param batchCallback callback executed for every batch, the batch
+   *  is only valid during the callback
+   * @return statistics about the parse
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  public ParseStatistics forEachBatch(Path path, Charset cs, int batchSize, Consumer<LineBatch> batchCallback) throws IOException {
+    Objects.requireNonNull(batchCallback, "batchCallback");
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("batch size must be positive but was " + batchSize);
+    }
+    return this.parse(path, cs, null, null, true, new LineBatch(batchSize, batchCallback));
+  }
+
+  private ParseStatistics parse(Path path, Charset cs, Consumer<Line> lineCallback, LineChunkHandler chunkHandler) throws IOException {
+    return this.parse(path, cs, lineCallback, chunkHandler, true);
+  }
+
+  private ParseStatistics parse(Path path, Charset cs, Consumer<Line> lineCallback, LineChunkHandler chunkHandler,
+          boolean decode) throws IOException {
+    return this.parse(path, cs, lineCallback, chunkHandler, decode, null);
+  }
+
+  private ParseStatistics parse(Path path, Charset cs, Consumer<Line> lineCallback, LineChunkHandler chunkHandler,
+          boolean decode, LineBatch batch) throws IOException {
+    return this.parse(path, cs, lineCallback, chunkHandler, decode, batch, null, null);
+  }
+
+  /**
+   * Parses a file from the start or from a position.
+   *
+   * @param cs the character set, ignored if {@code position} is not
+   *  {@code null}
+   * @param position where to start, {@code null} for the start of the file
+   * @param checkpoints hands out positions, {@code null} for none
+   */
+  private ParseStatistics parse(Path path, Charset cs, Consumer<Line> lineCallback, LineChunkHandler chunkHandler,
+          boolean decode, LineBatch batch, ParsePosition position, Checkpoints checkpoints) throws IOException {
     try (FileInputStream stream = new FileInputStream(path.toFile());
          FileChannel channel = stream.getChannel()) {
       long fileSize = channel.size();
-      LineReader reader = LineReader.forCharset(cs);
-      byte[] cr = "\r".getBytes(cs);
-      byte[] lf = "\n".getBytes(cs);
+      Charset startCharset = cs;
+      long start = 0L;
+      long lineNumber = 1L;
+      if ((position != null) || (checkpoints != null)) {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (position != null) {
+          position.checkSameFile(path, fileSize, attributes);
+          // the BOM was resolved when the position was taken
+          startCharset = position.getCharset();
+          start = position.getOffset();
+          lineNumber = position.getLineNumber();
+        } else {
+          // positions contain the character set after resolving the BOM
+          FileInfo bomInfo = new FileInfo(path, channel, fileSize, null, null, null);
+          startCharset = this.resolveCharset(bomInfo, cs);
+        }
+        if (checkpoints != null) {
+          checkpoints.start(startCharset, fileSize, attributes, lineNumber);
+        }
+      }
+      LineReader reader = lineReader(startCharset, decode);
+      byte[] cr = "\r".getBytes(startCharset);
+      byte[] lf = "\n".getBytes(startCharset);
       boolean useFastPath = (cr.length == 1) && (lf.length == 1);
-      FileInfo fileInfo = new FileInfo(path, channel, fileSize, reader, lineCallback);
-      if (useFastPath) {
+      FileInfo fileInfo = new FileInfo(path, channel, fileSize, reader, lineCallback, chunkHandler);
+      fileInfo.batch = batch;
+      fileInfo.lineNumber = lineNumber;
+      fileInfo.checkpoints = checkpoints;
+      FileInfo actualFileInfo;
+      if (this.delimiters != null) {
+        Charset actualCharset = this.resolveCharset(fileInfo, startCharset);
+        actualFileInfo = fileInfo.withReader(lineReader(actualCharset, decode));
+        DelimiterInfo delimiterInfo = new DelimiterInfo(actualCharset, this.delimiters);
+        long mapStart = firstMapStart(actualFileInfo, start);
+        while (mapStart != FILE_END) {
+          if (delimiterInfo.singleByte != null) {
+            mapStart = mappingDone(actualFileInfo, this.forEachSingleByte(actualFileInfo, delimiterInfo.singleByte, mapStart));
+          } else {
+            mapStart = mappingDone(actualFileInfo, this.forEachDelimited(actualFileInfo, delimiterInfo, mapStart));
+          }
+        }
+      } else if (useFastPath) {
         FastEncodingInfo encodingInfo = new FastEncodingInfo(cr[0], lf[0]);
-        this.forEachFast(fileInfo, encodingInfo);
+        long mapStart = firstMapStart(fileInfo, start);
+        while (mapStart != FILE_END) {
+          mapStart = mappingDone(fileInfo, this.forEachFast(fileInfo, encodingInfo, mapStart));
+        }
+        actualFileInfo = fileInfo;
+      } else {
+        EncodingInfo encodingInfo = new EncodingInfo(startCharset, cr, lf);
+        actualFileInfo = this.forEach(fileInfo, encodingInfo, start);
+      }
+      return new ParseStatistics(actualFileInfo.reader.getPeakBufferSize(), actualFileInfo.oversizedLineCount);
+    }
+  }
+
+  /**
+   * Returns where the first mapping starts, {@link #FILE_END} if there
+   * is nothing to parse after {@code start}.
+   */
+  private static long firstMapStart(FileInfo fileInfo, long start) {
+    return ((start == 0L) || (start < fileInfo.fileSize)) ? start : FILE_END;
+  }
+
+  /**
+   * Called after every mapping of a parse, hands out a position if the
+   * next mapping starts at the start of a line.
+   *
+   * @param nextMapStart where the next mapping starts
+   * @return {@code nextMapStart}
+   */
+  private static long mappingDone(FileInfo fileInfo, long nextMapStart) {
+    Checkpoints checkpoints = fileInfo.checkpoints;
+    if ((checkpoints != null) && (nextMapStart != FILE_END) && !fileInfo.inOversizedLine) {
+      // every line before has been delivered
+      checkpoints.reached(nextMapStart, fileInfo.lineNumber);
+    }
+    return nextMapStart;
+  }
+
+  /**
+   * Internal iterator over every line in a file that does not decode the
+   * lines, {@link Line#getContent()} is always empty.
+   */
+  ParseStatistics forEachUndecoded(Path path, Charset cs, Consumer<Line> lineCallback) throws IOException {
+    Objects.requireNonNull(lineCallback, "lineCallback");
+    return this.parse(path, cs, lineCallback, null, false);
+  }
+
+  private static LineReader lineReader(Charset cs, boolean decode) {
+    LineReader reader = LineReader.forCharset(cs);
+    return decode ? reader : new UndecodedLineReader(reader);
+  }
+
+  /**
+   * Counts how often every distinct line occurs in a file, similar to
+   * {@code sort | uniq -c}.
+   *
+   * <p>Lines are not decoded and no {@link String} is created for them.
+   * Instead the hash, offset and length of every distinct line is stored
+   * in a primitive hash table, on a hash collision the bytes of the lines
+   * are compared in the mapped file. The table needs 16 bytes per slot
+   * and is kept between three eighths and three quarters full, between
+   * 21 and 43 bytes per distinct line independent of the length of the
+   * lines. Lines are compared by their
+   * bytes, not their content.</p>
+   *
+   * <p>The configured line delimiters, maximum line length and line
+   * predicate are used. The returned counter keeps the file mapped until
+   * it is closed.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * <pre><code>
+   * try (LineCounter counter = parser.countDistinct(path, cs)) {
+   *   counter.forEach((line, count) -&gt; {
+   *     System.out.println(count + " " + line.getContent());
+   *   });
+   * }
+   * </code></pre>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @return the counts of the distinct lines, has to be closed
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  public LineCounter countDistinct(Path path, Charset cs) throws IOException {
+    LineCounter counter = LineCounter.open(path, cs);
+    try {
+      this.forEachUndecoded(path, cs, counter::add);
+    } catch (IOException | RuntimeException e) {
+      counter.close();
+      throw e;
+    }
+    return counter;
+  }
+
+  /**
+   * Internal iterator over every line in a file that contains a string,
+   * similar to <a href="https://man.openbsd.org/grep.1">grep -F</a>.
+   *
+   * <p>Instead of creating a {@link Line} for every line and searching its
+   * content the string is encoded once and searched in the mapped bytes.
+   * Only for a match the start and end of the line are searched and a
+   * {@link Line} is created. A string of a single byte is searched eight
+   * bytes at a time, longer strings with the Boyer-Moore-Horspool
+   * algorithm.</p>
+   *
+   * <p>For character sets other than single byte character sets, UTF-8,
+   * UTF-16 and UTF-32 the encoded string may match in the middle of a
+   * character, matching lines are therefore decoded and checked again.</p>
+   *
+   * <p>Lines longer than the mapping make this method fail unless the
+   * oversized line policy is {@link OversizedLinePolicy#SKIP} or
+   * {@link OversizedLinePolicy#TRUNCATE} in which case they are skipped.
+   * The maximum line length applies to matching lines.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @param needle the string to search for, must not contain
+   *  <code>CR</code> or <code>LF</code>
+   * @param lineCallback callback executed for every line that contains
+   *  the string
+   * @return statistics about the parse
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  public ParseStatistics grep(Path path, Charset cs, CharSequence needle, Consumer<Line> lineCallback) throws IOException {
+    Objects.requireNonNull(needle, "needle");
+    Objects.requireNonNull(lineCallback, "lineCallback");
+    String needleString = needle.toString();
+    if (needleString.isEmpty()) {
+      throw new IllegalArgumentException("empty needle");
+    }
+    if ((needleString.indexOf('\r') != -1) || (needleString.indexOf('\n') != -1)) {
+      throw new IllegalArgumentException("needle must not contain a newline");
+    }
+    try (FileInputStream stream = new FileInputStream(path.toFile());
+         FileChannel channel = stream.getChannel()) {
+      long fileSize = channel.size();
+      FileInfo bomInfo = new FileInfo(path, channel, fileSize, LineReader.forCharset(cs), lineCallback, null);
+      Charset actualCharset = this.resolveCharset(bomInfo, cs);
+      FileInfo fileInfo = new FileInfo(path, channel, fileSize, LineReader.forCharset(actualCharset), lineCallback, null);
+      GrepInfo grepInfo = new GrepInfo(actualCharset, needleString);
+      long mapStart = 0L;
+      while (mapStart != FILE_END) {
+        mapStart = this.forEachMatch(fileInfo, grepInfo, mapStart);
+      }
+      return new ParseStatistics(fileInfo.reader.getPeakBufferSize(), fileInfo.oversizedLineCount);
+    }
+  }
+
+  private long forEachMatch(FileInfo fileInfo, GrepInfo grepInfo, long mapStart) throws IOException {
+    int unit = grepInfo.unit;
+    long fileSize = fileInfo.fileSize;
+    int mapSize = this.mapSize(fileInfo, mapStart);
+    boolean lastMapping = (mapSize + mapStart) == fileSize;
+    MappedByteBuffer buffer = map(fileInfo, mapStart, mapSize);
+    try {
+      int searchStart = 0;
+      if (fileInfo.inOversizedLine) {
+        // skip the rest of a line that did not fit into the previous mapping
+        int firstLineStart = grepInfo.nextLineStart(buffer, 0, mapSize);
+        if (firstLineStart == -1) {
+          if (lastMapping) {
+            return FILE_END;
+          }
+          return mapStart + (mapSize - (mapSize % unit));
+        }
+        fileInfo.inOversizedLine = false;
+        searchStart = firstLineStart;
+      }
+
+      // only search complete lines, the last line may continue in the next mapping
+      int searchEnd;
+      if (lastMapping) {
+        searchEnd = mapSize;
       } else {
-        EncodingInfo encodingInfo = new EncodingInfo(cs, cr, lf);
-        this.forEach(fileInfo, encodingInfo);
+        searchEnd = grepInfo.lastLineStart(buffer, mapSize - (mapSize % unit));
+        if (searchEnd <= searchStart) {
+          if (searchStart > 0) {
+            // map again from the start of the line
+            return mapStart + searchStart;
+          }
+          // the line does not fit into a single mapping
+          return this.oversizedLineWithoutMatch(mapStart, mapStart + (mapSize - (mapSize % unit)), fileInfo);
+        }
+      }
+
+      int position = searchStart;
+      while (position < searchEnd) {
+        int match = grepInfo.indexOf(buffer, position, searchEnd);
+        if (match == -1) {
+          break;
+        }
+        if ((match % unit) != 0) {
+          // not aligned to a code unit
+          position = match + 1;
+          continue;
+        }
+        int lineStart = grepInfo.lineStart(buffer, position, match);
+        int lineEnd = grepInfo.lineEnd(buffer, match + grepInfo.needle.length, searchEnd);
+        if (grepInfo.isMatch(fileInfo.reader, buffer, lineStart, lineEnd)) {
+          this.lineFound(lineStart, mapStart, lineEnd, buffer, fileInfo);
+        }
+        position = lineEnd;
+      }
+
+      if (!lastMapping) {
+        return mapStart + searchEnd;
+      }
+
+    } finally {
+      Unmapper.unmap(buffer, fileInfo);
+    }
+    return FILE_END;
+  }
+
+  /**
+   * Called when a line does not fit into a mapping during a search.
+   *
+   * @return where to start the next mapping
+   */
+  private long oversizedLineWithoutMatch(long lineStart, long mappingEnd, FileInfo fileInfo) throws IOException {
+    if (this.oversizedLinePolicy == OversizedLinePolicy.FAIL) {
+      throw new LineTooLongException(fileInfo.path.toString(), lineStart,
+              "line longer than " + this.maxMapSize + " bytes");
+    }
+    fileInfo.oversizedLineCount += 1;
+    fileInfo.inOversizedLine = true;
+    return mappingEnd;
+  }
+
+  /**
+   * Internal iterator over every record in a file where records may
+   * contain newlines inside quotes, for example
+   * <a href="https://tools.ietf.org/html/rfc4180">RFC 4180</a> CSV.
+   *
+   * <p>A record ends at a <code>CR</code>, <code>LF</code> or
+   * <code>CR LF</code> that is not inside quotes. Whether we are inside
+   * quotes is tracked by the parity of the quotes seen so far. An escaped
+   * quote consists of two quotes and therefore does not change the parity.
+   * Records are delivered as {@link Line} objects whose offset and length
+   * span all the physical lines of a record.</p>
+   *
+   * <p>The maximum line length applies to records.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @param quote the quote character, usually <code>"</code>
+   * @param recordCallback callback executed for every record
+   * @return statistics about the parse
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  public ParseStatistics forEachRecord(Path path, Charset cs, char quote, Consumer<Line> recordCallback) throws IOException {
+    Objects.requireNonNull(recordCallback, "recordCallback");
+    try (FileInputStream stream = new FileInputStream(path.toFile());
+         FileChannel channel = stream.getChannel()) {
+      long fileSize = channel.size();
+      FileInfo fileInfo = new FileInfo(path, channel, fileSize, LineReader.forCharset(cs), recordCallback, null);
+      Charset actualCharset = this.resolveCharset(fileInfo, cs);
+      RecordEncodingInfo encodingInfo = new RecordEncodingInfo(actualCharset, quote);
+      FileInfo actualFileInfo = new FileInfo(path, channel, fileSize, LineReader.forCharset(actualCharset), recordCallback, null);
+      this.forEachRecord(actualFileInfo, encodingInfo, 0L);
+      return new ParseStatistics(actualFileInfo.reader.getPeakBufferSize(), actualFileInfo.oversizedLineCount);
+    }
+  }
+
+  /**
+   * Parallel internal iterator over every record in a file where records
+   * may contain newlines inside quotes.
+   *
+   * <p>Same as {@link #forEachRecord(Path, Charset, char, Consumer)} but
+   * the file is split into chunks that are parsed in parallel in the
+   * {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}.
+   * Whether the start of a chunk is inside quotes can not be known
+   * without parsing every chunk before. Therefore every chunk is first
+   * scanned speculatively for both cases, recording the parity of the
+   * quotes in the chunk and the start of the first record if the chunk
+   * started outside or inside quotes. Once all chunks are scanned the
+   * actual state at the start of every chunk follows from the parities of
+   * the chunks before and with it where the first record of the chunk
+   * starts. Then all chunks are parsed in parallel.</p>
+   *
+   * <p>Records of the same chunk are delivered in order, records of
+   * different chunks are delivered concurrently and in no particular
+   * order. The callback therefore has to be thread safe.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @param quote the quote character, usually <code>"</code>
+   * @param recordCallback callback executed for every record, has to be
+   *  thread safe
+   * @return statistics about the parse, summed over all chunks
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  public ParseStatistics forEachRecordParallel(Path path, Charset cs, char quote, Consumer<Line> recordCallback) throws IOException {
+    Objects.requireNonNull(recordCallback, "recordCallback");
+    long fileSize = Files.size(path);
+    return this.forEachRecordParallel(path, cs, quote, recordCallback, parallelChunkCount(fileSize));
+  }
+
+  /**
+   * Parallel reduction of every line in a file.
+   *
+   * <p>The file is split into chunks at line starts that are parsed in
+   * parallel in the
+   * {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}.
+   * Every chunk gets its own result container from the supplier of the
+   * collector that is only accessed by the thread parsing the chunk,
+   * the accumulator therefore does not have to be thread safe. The
+   * containers are combined in the order of the chunks in the file so
+   * that collectors depending on the encounter order like
+   * {@link java.util.stream.Collectors#toList()} work.</p>
+   *
+   * <p>As with {@link #forEach(Path, Charset, Consumer)} the line is only
+   * valid inside the accumulator, the accumulator must not keep
+   * references to the line or its content.</p>
+   *
+   * <pre><code>
+   * Map&lt;String, Long&gt; countByLevel = parser.collect(path, UTF_8,
+   *     Collectors.groupingBy(line -&gt; level(line.getContent()), Collectors.counting()));
+   * </code></pre>
+   *
+   * <p>Line delimiters configured with {@link #withDelimiters(String...)}
+   * are supported but the file is then parsed in a single chunk.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param <A> the type of the result container
+   * @param <R> the type of the result
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @param collector the collector reducing the lines
+   * @return the result of the collector
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  public <A, R> R collect(Path path, Charset cs, Collector<? super Line, A, R> collector) throws IOException {
+    Objects.requireNonNull(collector, "collector");
+    long fileSize = Files.size(path);
+    return this.collect(path, cs, collector, parallelChunkCount(fileSize));
+  }
+
+  /**
+   * Counts the lines in a file, similar to {@code wc -l}.
+   *
+   * <p>No {@link Line} is created, only the line ends are counted. When
+   * <code>CR</code> and <code>LF</code> are a single byte eight bytes are
+   * compared at a time. A <code>CR LF</code> is a single line end. Unlike
+   * {@code wc -l} a last line without a line end is counted as well so
+   * that the result is the number of lines
+   * {@link #forEach(Path, Charset, Consumer)} reads with no line predicate
+   * and no maximum line length.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to count the lines of
+   * @param cs the character set to use
+   * @return the number of lines in the file
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   * @throws IllegalStateException if delimiters are configured
+   */
+  public long countLines(Path path, Charset cs) throws IOException {
+    return this.countLines(path, cs, 1);
+  }
+
+  /**
+   * Counts the lines in a file in parallel.
+   *
+   * <p>Same as {@link #countLines(Path, Charset)} but the file is split
+   * into chunks that are counted in parallel in the
+   * {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to count the lines of
+   * @param cs the character set to use
+   * @return the number of lines in the file
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   * @throws IllegalStateException if delimiters are configured
+   */
+  public long countLinesParallel(Path path, Charset cs) throws IOException {
+    long fileSize = Files.size(path);
+    return this.countLines(path, cs, parallelChunkCount(fileSize));
+  }
+
+  long countLines(Path path, Charset cs, int chunkCount) throws IOException {
+    Objects.requireNonNull(cs, "cs");
+    if (this.delimiters != null) {
+      throw new IllegalStateException("counting lines does not support delimiters");
+    }
+    try (FileInputStream stream = new FileInputStream(path.toFile());
+         FileChannel channel = stream.getChannel()) {
+      long fileSize = channel.size();
+      if (fileSize == 0L) {
+        return 0L;
+      }
+      FileInfo fileInfo = new FileInfo(path, channel, fileSize, null, null, null);
+      Charset encodingCharset = unambiguous(this.resolveCharset(fileInfo, cs));
+      byte[] cr = "\r".getBytes(encodingCharset);
+      byte[] lf = "\n".getBytes(encodingCharset);
+
+      long lineCount;
+      if (chunkCount == 1) {
+        lineCount = this.countLineEnds(fileInfo, cr, lf, 0L, fileSize);
+      } else {
+        long[] chunkStarts = this.chunkStarts(fileInfo, lf, chunkCount);
+        long[] lineEnds = new long[chunkCount];
+        parallelFor(chunkCount, i -> {
+          lineEnds[i] = this.countLineEnds(fileInfo, cr, lf, chunkStarts[i], chunkStarts[i + 1]);
+        });
+        lineCount = 0L;
+        for (long chunkLineEnds : lineEnds) {
+          lineCount += chunkLineEnds;
+        }
+      }
+      if (!endsWithLineEnd(fileInfo, cr, lf)) {
+        // the last line didn't end in a newline
+        lineCount += 1L;
+      }
+      return lineCount;
+    }
+  }
+
+  private static boolean endsWithLineEnd(FileInfo fileInfo, byte[] cr, byte[] lf) throws IOException {
+    long fileSize = fileInfo.fileSize;
+    int mapSize = (int) Math.min(fileSize, lf.length);
+    MappedByteBuffer buffer = map(fileInfo, fileSize - mapSize, mapSize);
+    try {
+      return endsWithArray(lf, mapSize, buffer) || endsWithArray(cr, mapSize, buffer);
+    } finally {
+      Unmapper.unmap(buffer, fileInfo);
+    }
+  }
+
+  /**
+   * Internal iterator over every line in a file where the lines are
+   * consumed by several threads, partitioned by a key.
+   *
+   * <p>The calling thread parses the file without decoding it and
+   * computes the hash of the key of every line. The line is then handed
+   * to the consumer of the partition of the hash through a bounded
+   * single producer, single consumer queue. Every consumer runs on its
+   * own thread and decodes the lines of its partition. All lines with
+   * the same key are consumed by the same consumer in the order of the
+   * file, for example for sessionization. The consumers do not have to be
+   * thread safe.</p>
+   *
+   * <p>The consumers read the lines from a mapping of the whole file in
+   * windows of 1GB, a window is unmapped once every consumer is done with
+   * the lines in it. This method returns once every line was
+   * consumed. If a consumer throws an exception the parse stops and the
+   * exception is rethrown.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * <pre><code>
+   * parser.forEachPartitioned(path, UTF_8, LineKey.field(UTF_8, ',', 0), 4, partition -&gt; {
+   *   Sessionizer sessions = new Sessionizer();
+   *   return sessions::add;
+   * });
+   * </code></pre>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @param key computes the hash of the key of a line
+   * @param partitionCount the number of partitions and consumer threads,
+   *  positive
+   * @param consumerFactory creates the consumer of every partition,
+   *  called with the index of the partition on the calling thread before
+   *  the parse starts
+   * @return statistics about the parse
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  public ParseStatistics forEachPartitioned(Path path, Charset cs, LineKey key, int partitionCount,
+          IntFunction<? extends Consumer<Line>> consumerFactory) throws IOException {
+    return this.forEachPartitioned(path, cs, key, partitionCount, consumerFactory,
+            PARTITION_RING_CAPACITY, PARTITION_WINDOW_SHIFT);
+  }
+
+  ParseStatistics forEachPartitioned(Path path, Charset cs, LineKey key, int partitionCount,
+          IntFunction<? extends Consumer<Line>> consumerFactory, int ringCapacity, int windowShift) throws IOException {
+    Objects.requireNonNull(key, "key");
+    Objects.requireNonNull(consumerFactory, "consumerFactory");
+    if (partitionCount <= 0) {
+      throw new IllegalArgumentException("partition count must be positive but was " + partitionCount);
+    }
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Consumer<Line>[] consumers = new Consumer[partitionCount];
+    for (int i = 0; i < partitionCount; i++) {
+      consumers[i] = Objects.requireNonNull(consumerFactory.apply(i), "consumer");
+    }
+    return new PartitionedDispatcher(this, key, consumers, ringCapacity, windowShift).dispatch(path, cs);
+  }
+
+  /**
+   * Internal iterator over every line in a file where scanning the file
+   * and consuming the lines run on different threads.
+   *
+   * <p>The calling thread scans the file for lines without decoding them
+   * and publishes the offsets and lengths of the lines in batches through
+   * a bounded queue to a pool of worker threads. The workers decode the
+   * lines and invoke the callback. A slow callback therefore does not
+   * directly slow down reading the file, unless the queue is full.</p>
+   *
+   * <p>With {@link PipelineOrder#ORDERED} the callback is invoked in the
+   * order of the file and never concurrently, the workers still decode
+   * concurrently. For character sets that need decoding the content of
+   * the lines is therefore copied once. With
+   * {@link PipelineOrder#UNORDERED} the callback is invoked concurrently
+   * from all workers and has to be thread safe.</p>
+   *
+   * <p>The workers read the lines from a mapping of the whole file in
+   * windows of 1GB, a window is unmapped once every batch with a line in
+   * it has been consumed. This method returns once every line was
+   * consumed. If the callback throws an exception the parse stops and the
+   * exception is rethrown.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @param workerCount the number of worker threads, positive
+   * @param order the order in which the callback is invoked
+   * @param lineCallback callback executed for every line
+   * @return statistics about the parse
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  public ParseStatistics forEachPipelined(Path path, Charset cs, int workerCount, PipelineOrder order,
+          Consumer<Line> lineCallback) throws IOException {
+    return this.forEachPipelined(path, cs, workerCount, order, lineCallback, PIPELINE_RING_CAPACITY, PARTITION_WINDOW_SHIFT);
+  }
+
+  ParseStatistics forEachPipelined(Path path, Charset cs, int workerCount, PipelineOrder order,
+          Consumer<Line> lineCallback, int ringCapacity, int windowShift) throws IOException {
+    Objects.requireNonNull(order, "order");
+    Objects.requireNonNull(lineCallback, "lineCallback");
+    if (workerCount <= 0) {
+      throw new IllegalArgumentException("worker count must be positive but was " + workerCount);
+    }
+    return new LinePipeline(this, workerCount, order, lineCallback, ringCapacity, windowShift).run(path, cs);
+  }
+
+  /**
+   * Internal iterator over every line in a file that runs on an executor.
+   *
+   * <p>The same as {@link #forEachWithStatistics(Path, Charset, Consumer)}
+   * except that the parse runs on a thread of the executor, once fewer than its
+   * maximum number of concurrent parses are running. The callback is
+   * invoked on that thread.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @param lineCallback callback executed for every line
+   * @param executor the executor to run the parse on
+   * @return the future completed with the statistics about the parse or
+   *  the exception the parse failed with, for example an
+   *  {@link IOException}
+   */
+  public CompletableFuture<ParseStatistics> forEachAsync(Path path, Charset cs, Consumer<Line> lineCallback,
+          ParseExecutor executor) {
+    Objects.requireNonNull(path, "path");
+    Objects.requireNonNull(cs, "cs");
+    Objects.requireNonNull(lineCallback, "lineCallback");
+    Objects.requireNonNull(executor, "executor");
+    return executor.submit(() -> this.forEachWithStatistics(path, cs, lineCallback));
+  }
+
+  /**
+   * Opens a cursor over every line in a file.
+   *
+   * <p>Unlike the other methods the caller pulls the lines, see
+   * {@link LineCursor#next()}. At most one mapping is alive at any time.
+   * The maximum line length and line predicate are used, custom
+   * delimiters are not supported.</p>
+   *
+   * <p>This method is thread safe, the returned cursor is not.</p>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @return the cursor positioned before the first line, has to be closed
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   * @throws IllegalStateException if delimiters are configured
+   */
+  public LineCursor openCursor(Path path, Charset cs) throws IOException {
+    Objects.requireNonNull(cs, "cs");
+    if (this.delimiters != null) {
+      throw new IllegalStateException("cursors do not support delimiters");
+    }
+    FileInputStream stream = new FileInputStream(path.toFile());
+    try {
+      FileChannel channel = stream.getChannel();
+      long fileSize = channel.size();
+      FileInfo bomInfo = new FileInfo(path, channel, fileSize, null, null, null);
+      Charset actualCharset = this.resolveCharset(bomInfo, cs);
+      FileInfo fileInfo = new FileInfo(path, channel, fileSize, LineReader.forCharset(actualCharset), null, null);
+      return new LineCursor(stream, fileInfo, actualCharset, this,
+              this.maxMapSize, this.maxLineLength, this.linePredicate);
+    } catch (IOException | RuntimeException | Error e) {
+      stream.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Creates a publisher of every line in a file that only reads as many
+   * lines as have been requested.
+   *
+   * <p>The file is opened for every subscriber, lines are read through a
+   * {@link LineCursor} on the thread that requests them.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @return the publisher of the lines
+   * @see #openCursor(Path, Charset)
+   */
+  public LinePublisher publisher(Path path, Charset cs) {
+    Objects.requireNonNull(path, "path");
+    Objects.requireNonNull(cs, "cs");
+    return new LinePublisher(this, path, cs);
+  }
+
+  /**
+   * Internal iterator over every fixed length record in a file.
+   *
+   * <p>No newlines are scanned for, record boundaries are computed from
+   * the record length. Mappings are aligned to record boundaries so that
+   * no record spans two mappings. Records are delivered as {@link Line}
+   * objects with the same zero copy content as lines.</p>
+   *
+   * <p>If the file ends in the middle of a record then the last record
+   * is shorter than {@code recordLength}. For UTF-16 and UTF-32 the
+   * records start after the BOM.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @param recordLength the length of every record in bytes, excluding
+   *  the separator
+   * @param separatorLength the length in bytes of the separator after every
+   *  record, eg. {@code 0} for no separator, {@code 1} for {@code LF}
+   *  or {@code 2} for {@code CR LF}
+   * @param recordCallback callback executed for every record
+   * @return statistics about the parse
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   * @see FixedWidthColumns
+   */
+  public ParseStatistics forEachFixedRecord(Path path, Charset cs, int recordLength, int separatorLength,
+          Consumer<Line> recordCallback) throws IOException {
+    Objects.requireNonNull(recordCallback, "recordCallback");
+    if (recordLength <= 0) {
+      throw new IllegalArgumentException("recordLength must be positive but was: " + recordLength);
+    }
+    if (separatorLength < 0) {
+      throw new IllegalArgumentException("separatorLength must not be negative but was: " + separatorLength);
+    }
+    long stride = (long) recordLength + separatorLength;
+    if (stride > this.maxMapSize) {
+      throw new IllegalArgumentException("record does not fit into a mapping");
+    }
+    // align mappings to record boundaries
+    int alignedMapSize = (int) ((this.maxMapSize / stride) * stride);
+    try (FileInputStream stream = new FileInputStream(path.toFile());
+         FileChannel channel = stream.getChannel()) {
+      long fileSize = channel.size();
+      FileInfo fileInfo = new FileInfo(path, channel, fileSize, LineReader.forCharset(cs), recordCallback, null);
+      BomResolutionResult bom = this.resolveBom(fileInfo, cs);
+      LineReader reader = LineReader.forCharset(bom.cs);
+      // records start after the BOM
+      long mapStart = bom.mapStart;
+      while (mapStart < fileSize) {
+        int mapSize = (int) Math.min(alignedMapSize, fileSize - mapStart);
+        MappedByteBuffer buffer = map(fileInfo, mapStart, mapSize);
+        try {
+          for (long recordStart = 0L; recordStart < mapSize; recordStart += stride) {
+            int start = (int) recordStart;
+            int length = Math.min(recordLength, mapSize - start);
+            readLine(start, mapStart, start + length, buffer, reader, recordCallback, 0L);
+          }
+        } finally {
+          Unmapper.unmap(buffer, fileInfo);
+        }
+        mapStart += mapSize;
+      }
+      return new ParseStatistics(reader.getPeakBufferSize(), 0L);
+    }
+  }
+
+  /**
+   * Internal iterator over the lines of a file sorted by timestamp
+   * that fall into a time range.
+   *
+   * <p>Every line is expected to start with an ISO 8601 timestamp as
+   * parsed by {@link TimestampParser}. Lines without a timestamp, eg.
+   * stack traces, belong to the previous line. Instead of scanning the
+   * file from the start the start of the range is found with a binary
+   * search over byte offsets, every probe is moved forward to the start
+   * of the next line with a timestamp. Afterwards only the lines of the
+   * range are read.</p>
+   *
+   * <p>Lines have to be separated by <code>LF</code> or
+   * <code>CR LF</code>. Timestamps without an offset are interpreted
+   * as UTC.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @param from the start of the range, inclusive
+   * @param to the end of the range, exclusive
+   * @param lineCallback callback executed for every line in the range
+   * @return statistics about the parse
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  public ParseStatistics seekTime(Path path, Charset cs, Instant from, Instant to, Consumer<Line> lineCallback) throws IOException {
+    Objects.requireNonNull(from, "from");
+    Objects.requireNonNull(to, "to");
+    Objects.requireNonNull(lineCallback, "lineCallback");
+    TimestampParser timestamps = new TimestampParser();
+    LineProbe probe = (prefix, lineStart) -> {
+      if (!timestamps.parse(prefix, timestampStart(prefix, lineStart), prefix.length())) {
+        return NOT_COMPARABLE;
+      }
+      return timestamps.compareTo(from);
+    };
+    boolean[] inRange = new boolean[1];
+    RangeCallback rangeCallback = line -> {
+      CharSequence content = line.getContent();
+      if (timestamps.parse(content, timestampStart(content, line.getOffset()), content.length())) {
+        if (timestamps.compareTo(to) >= 0) {
+          return false;
+        }
+        inRange[0] = timestamps.compareTo(from) >= 0;
+      }
+      // lines without a timestamp belong to the previous line
+      if (inRange[0]) {
+        lineCallback.accept(line);
+      }
+      return true;
+    };
+    return this.search(path, cs, TIMESTAMP_PREFIX_SIZE, probe, rangeCallback);
+  }
+
+  /**
+   * Internal iterator over the lines of a sorted file that start with a
+   * prefix, similar to <a href="https://man.openbsd.org/look.1">look(1)</a>.
+   *
+   * <p>Instead of scanning the file from the start the first line with
+   * the prefix is found with a binary search over byte offsets, every
+   * probe is moved forward to the start of the next line. Afterwards only
+   * the lines with the prefix are read. This gives logarithmic lookups
+   * without an index.</p>
+   *
+   * <p>Lines are compared by passing the first {@code prefix.length()}
+   * characters of a line, or the whole line if it is shorter, and the
+   * prefix to the comparator. The file has to be sorted by the
+   * comparator and the comparator has to be lexicographic so that
+   * comparing the start of a line is consistent with the order of the
+   * lines. For ISO 8859-1, US-ASCII and UTF-16 the start of a
+   * line is compared without decoding.</p>
+   *
+   * <p>Lines have to be separated by <code>LF</code> or
+   * <code>CR LF</code>.</p>
+   *
+   * <p>This method is thread safe.</p>
+   *
+   * @param path the file to parse
+   * @param cs the character set to use
+   * @param prefix the prefix of the lines to find
+   * @param comparator the comparator by which the lines in the file are sorted
+   * @param lineCallback callback executed for every line with the prefix
+   * @return statistics about the parse
+   * @throws IOException if an exception happens when reading
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  public ParseStatistics lookup(Path path, Charset cs, CharSequence prefix, Comparator<? super CharSequence> comparator,
+          Consumer<Line> lineCallback) throws IOException {
+    Objects.requireNonNull(prefix, "prefix");
+    Objects.requireNonNull(comparator, "comparator");
+    Objects.requireNonNull(lineCallback, "lineCallback");
+    int prefixLength = prefix.length();
+    // Integer.MIN_VALUE is a valid result of the comparator but means not comparable to the search
+    LineProbe probe = (linePrefix, lineStart) ->
+      Integer.signum(comparator.compare(linePrefix.subSequence(0, Math.min(linePrefix.length(), prefixLength)), prefix));
+    RangeCallback rangeCallback = line -> {
+      CharSequence content = line.getContent();
+      if (comparator.compare(content.subSequence(0, Math.min(content.length(), prefixLength)), prefix) != 0) {
+        return false;
+      }
+      lineCallback.accept(line);
+      return true;
+    };
+    int prefixSize = (int) Math.min((prefixLength + 1L) * MAX_BYTES_PER_CHAR, Integer.MAX_VALUE);
+    return this.search(path, cs, prefixSize, probe, rangeCallback);
+  }
+
+  /**
+   * Binary searches the first line for which the probe is not negative
+   * and reads the lines from there as long as the callback returns
+   * {@code true}.
+   *
+   * @param prefixSize the number of bytes at the start of a line the
+   *  probe needs
+   */
+  private ParseStatistics search(Path path, Charset cs, int prefixSize, LineProbe probe,
+          RangeCallback rangeCallback) throws IOException {
+    try (FileInputStream stream = new FileInputStream(path.toFile());
+         FileChannel channel = stream.getChannel()) {
+      long fileSize = channel.size();
+      FileInfo bomInfo = new FileInfo(path, channel, fileSize, LineReader.forCharset(cs), null, null);
+      Charset actualCharset = this.resolveCharset(bomInfo, cs);
+      Charset encodingCharset = unambiguous(actualCharset);
+      byte[] cr = "\r".getBytes(encodingCharset);
+      byte[] lf = "\n".getBytes(encodingCharset);
+
+      FileInfo searchInfo = new FileInfo(path, channel, fileSize, LineReader.forCharset(actualCharset), null, null);
+      long start = this.searchLineStart(searchInfo, lf, prefixSize, probe);
+
+      FileInfo[] rangeInfo = new FileInfo[1];
+      Consumer<Line> lineCallback = line -> {
+        if (!rangeCallback.line(line)) {
+          // stop before the next line instead of scanning the rest of the mapping
+          rangeInfo[0].rangeEnd = line.getOffset();
+        }
+      };
+      FileInfo fileInfo = new FileInfo(path, channel, fileSize, LineReader.forCharset(actualCharset), lineCallback, null);
+      rangeInfo[0] = fileInfo;
+      LineParser rangeParser = new LineParser(Math.min(this.maxMapSize, SEEK_MAP_SIZE),
+              this.maxLineLength, this.oversizedLinePolicy, null, null);
+      boolean useFastPath = (cr.length == 1) && (lf.length == 1);
+      FastEncodingInfo fastEncodingInfo = useFastPath ? new FastEncodingInfo(cr[0], lf[0]) : null;
+      EncodingInfo encodingInfo = new EncodingInfo(actualCharset, cr, lf);
+      long mapStart = (start < fileSize) ? start : FILE_END;
+      while (mapStart != FILE_END) {
+        if (useFastPath) {
+          mapStart = rangeParser.forEachFast(fileInfo, fastEncodingInfo, mapStart);
+        } else {
+          mapStart = rangeParser.forEach(null, fileInfo, encodingInfo, mapStart);
+        }
+      }
+      return new ParseStatistics(fileInfo.reader.getPeakBufferSize(), fileInfo.oversizedLineCount);
+    }
+  }
+
+  /**
+   * Binary search for the first line for which the probe is not negative.
+   *
+   * @return the start of the line after the last line for which the
+   *  probe is negative
+   */
+  private long searchLineStart(FileInfo fileInfo, byte[] lf, int prefixSize, LineProbe probe) throws IOException {
+    int unit = lf.length;
+    // every comparable line starting before low is negative
+    long low = 0L;
+    // every comparable line starting at or after high is not negative
+    long high = fileInfo.fileSize;
+    long[] probeResult = new long[3];
+    while (low < high) {
+      long mid = low + ((((high - low) / 2) / unit) * unit);
+      if (!this.probe(fileInfo, lf, prefixSize, probe, mid, high, probeResult)) {
+        // no comparable line starts in [mid, high)
+        high = mid;
+      } else if (probeResult[2] < 0L) {
+        low = probeResult[1];
+      } else {
+        high = probeResult[0];
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Probes the first comparable line that starts at or after
+   * {@code position} and before {@code end}.
+   *
+   * @param probeResult filled with the start of the line, the start of the
+   *  next line and the result of the probe
+   * @return whether such a line was found
+   */
+  private boolean probe(FileInfo fileInfo, byte[] lf, int prefixSize, LineProbe probe,
+          long position, long end, long[] probeResult) throws IOException {
+    long lineStart = (position == 0L) ? 0L : this.nextLineStart(fileInfo, lf, position - lf.length);
+    while (lineStart < end) {
+      long nextLineStart = this.nextLineStart(fileInfo, lf, lineStart);
+      int result = probeLine(fileInfo, prefixSize, probe, lineStart, nextLineStart);
+      if (result != NOT_COMPARABLE) {
+        probeResult[0] = lineStart;
+        probeResult[1] = nextLineStart;
+        probeResult[2] = result;
+        return true;
+      }
+      lineStart = nextLineStart;
+    }
+    return false;
+  }
+
+  private static int probeLine(FileInfo fileInfo, int prefixSize, LineProbe probe,
+          long lineStart, long nextLineStart) throws IOException {
+    int length = (int) Math.min(nextLineStart - lineStart, prefixSize);
+    if (length == 0) {
+      // the empty last line of a file ending in a newline
+      return NOT_COMPARABLE;
+    }
+    MappedByteBuffer buffer = map(fileInfo, lineStart, length);
+    try {
+      LineReader reader = fileInfo.reader;
+      // don't decode a partial character
+      int prefixLength = reader.characterBoundary(buffer, 0, length);
+      CharSequence prefix = reader.readLine(buffer, 0, prefixLength);
+      return probe.compare(prefix.subSequence(0, newlineIndex(prefix)), lineStart);
+    } finally {
+      Unmapper.unmap(buffer, fileInfo);
+    }
+  }
+
+  /**
+   * Returns the index of the first <code>CR</code> or <code>LF</code>,
+   * the length if there is none.
+   */
+  private static int newlineIndex(CharSequence prefix) {
+    int length = prefix.length();
+    for (int i = 0; i < length; i++) {
+      char c = prefix.charAt(i);
+      if ((c == '\r') || (c == '\n')) {
+        return i;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Skips the BOM at the start of the file.
+   */
+  private static int timestampStart(CharSequence content, long lineStart) {
+    if ((lineStart == 0L) && (content.length() > 0) && (content.charAt(0) == '\uFEFF')) {
+      return 1;
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the start of the line after the first <code>LF</code> at or
+   * after {@code position}, the file size if there is none.
+   */
+  private long nextLineStart(FileInfo fileInfo, byte[] lf, long position) throws IOException {
+    int unit = lf.length;
+    long fileSize = fileInfo.fileSize;
+    long mapStart = position;
+    while (mapStart < fileSize) {
+      int mapSize = (int) Math.min(Math.min(this.maxMapSize, PROBE_MAP_SIZE), fileSize - mapStart);
+      int alignedSize = mapSize - (mapSize % unit);
+      if (alignedSize == 0) {
+        break;
+      }
+      MappedByteBuffer buffer = map(fileInfo, mapStart, alignedSize);
+      try {
+        for (int i = 0; i < alignedSize; i += unit) {
+          if ((buffer.get(i) == lf[0]) && matchesArray(lf, unit, i, buffer)) {
+            return mapStart + i + unit;
+          }
+        }
+      } finally {
+        Unmapper.unmap(buffer, fileInfo);
+      }
+      mapStart += alignedSize;
+    }
+    return fileSize;
+  }
+
+  static int parallelChunkCount(long fileSize) {
+    long processors = Runtime.getRuntime().availableProcessors();
+    return (int) Math.max(1L, Math.min(processors, fileSize / MIN_PARALLEL_CHUNK_SIZE));
+  }
+
+  ParseStatistics forEachRecordParallel(Path path, Charset cs, char quote, Consumer<Line> recordCallback, int chunkCount) throws IOException {
+    try (FileInputStream stream = new FileInputStream(path.toFile());
+         FileChannel channel = stream.getChannel()) {
+      long fileSize = channel.size();
+      FileInfo fileInfo = new FileInfo(path, channel, fileSize, LineReader.forCharset(cs), recordCallback, null);
+      Charset actualCharset = this.resolveCharset(fileInfo, cs);
+      RecordEncodingInfo encodingInfo = new RecordEncodingInfo(actualCharset, quote);
+
+      long[] recordStarts = this.recordStarts(fileInfo, encodingInfo, chunkCount);
+
+      FileInfo[] workers = new FileInfo[chunkCount];
+      parallelFor(chunkCount, i -> {
+        long recordStart = recordStarts[i];
+        if (recordStart == NO_RECORD_START) {
+          // a record spans the entire chunk
+          return;
+        }
+        FileInfo worker = new FileInfo(path, channel, fileSize, LineReader.forCharset(actualCharset), recordCallback, null);
+        worker.rangeEnd = nextRecordStart(recordStarts, i, fileSize);
+        workers[i] = worker;
+        this.forEachRecord(worker, encodingInfo, recordStart);
+      });
+
+      int peakBufferSize = 0;
+      long oversizedLineCount = 0L;
+      for (FileInfo worker : workers) {
+        if (worker != null) {
+          peakBufferSize = Math.max(peakBufferSize, worker.reader.getPeakBufferSize());
+          oversizedLineCount += worker.oversizedLineCount;
+        }
+      }
+      return new ParseStatistics(peakBufferSize, oversizedLineCount);
+    }
+  }
+
+  <A, R> R collect(Path path, Charset cs, Collector<? super Line, A, R> collector, int chunkCount) throws IOException {
+    BiConsumer<A, ? super Line> accumulator = collector.accumulator();
+    List<A> containers;
+    if (this.delimiters != null) {
+      A container = collector.supplier().get();
+      this.parse(path, cs, line -> accumulator.accept(container, line), null);
+      containers = Collections.singletonList(container);
+    } else {
+      containers = this.collectChunks(path, cs, collector, chunkCount);
+    }
+    BinaryOperator<A> combiner = collector.combiner();
+    A result = containers.get(0);
+    for (int i = 1; i < containers.size(); i++) {
+      result = combiner.apply(result, containers.get(i));
+    }
+    if (collector.characteristics().contains(Characteristics.IDENTITY_FINISH)) {
+      @SuppressWarnings("unchecked")
+      R identity = (R) result;
+      return identity;
+    }
+    return collector.finisher().apply(result);
+  }
+
+  private <A> List<A> collectChunks(Path path, Charset cs, Collector<? super Line, A, ?> collector, int chunkCount) throws IOException {
+    try (FileInputStream stream = new FileInputStream(path.toFile());
+         FileChannel channel = stream.getChannel()) {
+      long fileSize = channel.size();
+      FileInfo bomInfo = new FileInfo(path, channel, fileSize, LineReader.forCharset(cs), null, null);
+      Charset actualCharset = this.resolveCharset(bomInfo, cs);
+      Charset encodingCharset = unambiguous(actualCharset);
+      byte[] cr = "\r".getBytes(encodingCharset);
+      byte[] lf = "\n".getBytes(encodingCharset);
+      boolean useFastPath = (cr.length == 1) && (lf.length == 1);
+      FastEncodingInfo fastEncodingInfo = useFastPath ? new FastEncodingInfo(cr[0], lf[0]) : null;
+      EncodingInfo encodingInfo = new EncodingInfo(actualCharset, cr, lf);
+
+      long[] chunkStarts = this.chunkStarts(bomInfo, lf, chunkCount);
+      long[] firstLineNumbers = this.firstLineNumbers(bomInfo, cr, lf, chunkStarts);
+
+      Supplier<A> supplier = collector.supplier();
+      BiConsumer<A, ? super Line> accumulator = collector.accumulator();
+      Object[] containers = new Object[chunkCount];
+      parallelFor(chunkCount, i -> {
+        A container = supplier.get();
+        containers[i] = container;
+        long chunkStart = chunkStarts[i];
+        long chunkEnd = chunkStarts[i + 1];
+        if (chunkStart == chunkEnd) {
+          return;
+        }
+        // the end of the chunk is the start of a line, parse it as if the file ended there
+        FileInfo worker = new FileInfo(path, channel, chunkEnd, LineReader.forCharset(actualCharset),
+                line -> accumulator.accept(container, line), null);
+        worker.lineNumber = firstLineNumbers[i];
+        long mapStart = chunkStart;
+        while (mapStart != FILE_END) {
+          if (useFastPath) {
+            mapStart = this.forEachFast(worker, fastEncodingInfo, mapStart);
+          } else {
+            mapStart = this.forEach(null, worker, encodingInfo, mapStart);
+          }
+        }
+      });
+      List<A> result = new ArrayList<>(chunkCount);
+      for (Object container : containers) {
+        @SuppressWarnings("unchecked")
+        A typed = (A) container;
+        result.add(typed);
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Computes the number of the first line of every chunk.
+   *
+   * <p>The line ends in every chunk are counted in parallel, the number of
+   * the first line of a chunk is one more than the sum of the counts of the
+   * chunks before.</p>
+   */
+  private long[] firstLineNumbers(FileInfo fileInfo, byte[] cr, byte[] lf, long[] chunkStarts) throws IOException {
+    int chunkCount = chunkStarts.length - 1;
+    long[] lineEnds = new long[chunkCount];
+    // the line ends in the last chunk are not needed
+    parallelFor(chunkCount - 1, i -> {
+      lineEnds[i] = this.countLineEnds(fileInfo, cr, lf, chunkStarts[i], chunkStarts[i + 1]);
+    });
+    long[] firstLineNumbers = new long[chunkCount];
+    long lineNumber = 1L;
+    for (int i = 0; i < chunkCount; i++) {
+      firstLineNumbers[i] = lineNumber;
+      lineNumber += lineEnds[i];
+    }
+    return firstLineNumbers;
+  }
+
+  /**
+   * Counts the line ends between two offsets, {@code end} has to be a line
+   * start or the end of the file.
+   */
+  private long countLineEnds(FileInfo fileInfo, byte[] cr, byte[] lf, long start, long end) throws IOException {
+    NewlineCounter counter = new NewlineCounter(cr, lf);
+    long mapStart = start;
+    while (mapStart < end) {
+      int mapSize = (int) Math.min(end - mapStart, this.maxMapSize);
+      boolean lastMapping = (mapStart + mapSize) == end;
+      MappedByteBuffer buffer = map(fileInfo, mapStart, mapSize);
+      try {
+        mapStart += counter.count(buffer, mapSize, lastMapping);
+      } finally {
+        Unmapper.unmap(buffer, fileInfo);
+      }
+    }
+    return counter.getCount();
+  }
+
+  /**
+   * Splits a file into chunks at line starts.
+   *
+   * @return the start of every chunk followed by the file size, chunks
+   *  may be empty
+   */
+  private long[] chunkStarts(FileInfo fileInfo, byte[] lf, int chunkCount) throws IOException {
+    long fileSize = fileInfo.fileSize;
+    int unit = lf.length;
+    long[] chunkStarts = new long[chunkCount + 1];
+    for (int i = 1; i < chunkCount; i++) {
+      long chunkStart = (fileSize / chunkCount) * i;
+      chunkStart -= chunkStart % unit;
+      // a LF right before the nominal start makes it a line start
+      long lineStart = this.nextLineStart(fileInfo, lf, Math.max(0L, chunkStart - unit));
+      chunkStarts[i] = Math.max(lineStart, chunkStarts[i - 1]);
+    }
+    chunkStarts[chunkCount] = fileSize;
+    return chunkStarts;
+  }
+
+  private static long nextRecordStart(long[] recordStarts, int index, long fileSize) {
+    for (int i = index + 1; i < recordStarts.length; i++) {
+      if (recordStarts[i] != NO_RECORD_START) {
+        return recordStarts[i];
+      }
+    }
+    return fileSize;
+  }
+
+  /**
+   * Splits a file into chunks and computes where the first record of
+   * every chunk starts.
+   */
+  private long[] recordStarts(FileInfo fileInfo, RecordEncodingInfo encodingInfo, int chunkCount) throws IOException {
+    long fileSize = fileInfo.fileSize;
+    int unit = encodingInfo.unit;
+    // the scan of a chunk starts one character before the chunk so that
+    // a newline right before the chunk makes the start of the chunk the
+    // start of a record
+    long[] scanStarts = new long[chunkCount + 1];
+    for (int i = 1; i < chunkCount; i++) {
+      long chunkStart = (fileSize / chunkCount) * i;
+      chunkStart -= chunkStart % unit;
+      scanStarts[i] = Math.max(0L, chunkStart - unit);
+    }
+    scanStarts[chunkCount] = fileSize;
+
+    QuoteScan[] scans = new QuoteScan[chunkCount];
+    parallelFor(chunkCount, i -> {
+      scans[i] = this.scanQuotes(fileInfo, encodingInfo, scanStarts[i], scanStarts[i + 1]);
+    });
+
+    // resolve the speculation
+    long[] recordStarts = new long[chunkCount];
+    boolean inQuotes = false;
+    for (int i = 0; i < chunkCount; i++) {
+      QuoteScan scan = scans[i];
+      if (i == 0) {
+        recordStarts[i] = 0L;
+      } else if (inQuotes) {
+        recordStarts[i] = scan.firstRecordStartInside;
+      } else {
+        recordStarts[i] = scan.firstRecordStartOutside;
+      }
+      inQuotes ^= scan.oddQuotes;
+    }
+    return recordStarts;
+  }
+
+  /**
+   * Scans a part of a file for quotes and newlines without knowing
+   * whether the part starts inside quotes.
+   */
+  private QuoteScan scanQuotes(FileInfo fileInfo, RecordEncodingInfo encodingInfo, long start, long end) throws IOException {
+    byte[] cr = encodingInfo.cr;
+    byte[] lf = encodingInfo.lf;
+    byte[] quote = encodingInfo.quote;
+    int crLength = cr.length;
+    int lfLength = lf.length;
+    int quoteLength = quote.length;
+    int unit = encodingInfo.unit;
+    long fileSize = fileInfo.fileSize;
+
+    // whether we are inside quotes assuming we started outside
+    // if we started inside it's the opposite
+    boolean oddQuotes = false;
+    long firstOutside = NO_RECORD_START;
+    long firstInside = NO_RECORD_START;
+
+    long mapStart = start;
+    while (mapStart < end) {
+      int mapSize = this.mapSize(fileInfo, mapStart);
+      int scanEnd = (int) Math.min(end - mapStart, mapSize);
+      if (((mapStart + mapSize) < fileSize) && ((scanEnd + crLength + lfLength) > mapSize)) {
+        // leave room to see the LF of a CR LF, continue in the next mapping
+        scanEnd = mapSize - crLength - lfLength;
+      }
+      MappedByteBuffer buffer = map(fileInfo, mapStart, mapSize);
+      int mapIndex = 0;
+      try {
+        while (mapIndex < scanEnd) {
+          byte value = buffer.get(mapIndex);
+          int newlineLength = 0;
+          if (startsWithArray(value, quote, quoteLength, mapIndex, mapSize, buffer)) {
+            oddQuotes = !oddQuotes;
+            mapIndex += quoteLength;
+          } else if (startsWithArray(value, cr, crLength, mapIndex, mapSize, buffer)) {
+            newlineLength = crLength;
+            if (continuesWithArray(lf, lfLength, crLength, mapIndex, mapSize, buffer)) {
+              newlineLength += lfLength;
+            }
+          } else if (startsWithArray(value, lf, lfLength, mapIndex, mapSize, buffer)) {
+            newlineLength = lfLength;
+          } else {
+            mapIndex += unit;
+          }
+          if (newlineLength > 0) {
+            mapIndex += newlineLength;
+            long recordStart = mapStart + mapIndex;
+            if (!oddQuotes && (firstOutside == NO_RECORD_START)) {
+              firstOutside = recordStart;
+            } else if (oddQuotes && (firstInside == NO_RECORD_START)) {
+              firstInside = recordStart;
+            }
+          }
+        }
+      } finally {
+        Unmapper.unmap(buffer, fileInfo);
+      }
+      mapStart += mapIndex;
+    }
+    return new QuoteScan(oddQuotes, firstOutside, firstInside);
+  }
+
+  @FunctionalInterface
+  interface IndexedTask {
+
+    void run(int index) throws IOException;
+
+  }
+
+  /**
+   * Runs tasks in the common pool and waits for them to finish.
+   */
+  static void parallelFor(int count, IndexedTask task) throws IOException {
+    try {
+      IntStream.range(0, count).parallel().forEach(i -> {
+        try {
+          task.run(i);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Resolves the BOM of a file for threads that decode the lines of an
+   * undecoded parse.
+   */
+  Charset resolveCharset(Path path, Charset cs) throws IOException {
+    if (!isAmbiguous(cs)) {
+      return cs;
+    }
+    try (FileInputStream stream = new FileInputStream(path.toFile());
+         FileChannel channel = stream.getChannel()) {
+      FileInfo bomInfo = new FileInfo(path, channel, channel.size(), null, null, null);
+      return this.resolveCharset(bomInfo, cs);
+    }
+  }
+
+  /**
+   * Resolves the BOM of character sets that need one in order to decode.
+   */
+  private Charset resolveCharset(FileInfo fileInfo, Charset cs) throws IOException {
+    return this.resolveBom(fileInfo, cs).cs;
+  }
+
+  /**
+   * Resolves the BOM of character sets that need one in order to decode,
+   * {@link BomResolutionResult#mapStart} is the length of the BOM.
+   */
+  private BomResolutionResult resolveBom(FileInfo fileInfo, Charset cs) throws IOException {
+    if (!isAmbiguous(cs) || (fileInfo.fileSize < 2L)) {
+      return new BomResolutionResult(cs, 0L);
+    }
+    int mapSize = (int) Math.min(fileInfo.fileSize, 4L);
+    MappedByteBuffer buffer = map(fileInfo, 0L, mapSize);
+    try {
+      return this.resolveBom(cs, buffer);
+    } finally {
+      Unmapper.unmap(buffer, fileInfo);
+    }
+  }
+
+  private void forEachRecord(FileInfo fileInfo, RecordEncodingInfo encodingInfo, long start) throws IOException {
+    long mapStart = start;
+    if (mapStart >= fileInfo.rangeEnd) {
+      return;
+    }
+    while (mapStart != FILE_END) {
+      mapStart = this.forEachRecordInMapping(fileInfo, encodingInfo, mapStart);
+    }
+  }
+
+  private long forEachRecordInMapping(FileInfo fileInfo, RecordEncodingInfo encodingInfo, long mapStart) throws IOException {
+    byte[] cr = encodingInfo.cr;
+    byte[] lf = encodingInfo.lf;
+    byte[] quote = encodingInfo.quote;
+    int unit = encodingInfo.unit;
+    long fileSize = fileInfo.fileSize;
+    long rangeEnd = fileInfo.rangeEnd;
+    int mapSize = this.mapSize(fileInfo, mapStart);
+    boolean lastMapping = (mapSize + mapStart) == fileSize;
+    MappedByteBuffer buffer = map(fileInfo, mapStart, mapSize);
+    try {
+
+      int lineStart = 0; // in buffer
+      int crLength = cr.length;
+      int lfLength = lf.length;
+      int quoteLength = quote.length;
+      // we only start inside quotes if the record started in a previous mapping
+      boolean inQuotes = fileInfo.inQuotes;
+
+      int mapIndex = 0;
+      while (mapIndex < mapSize) {
+        byte value = buffer.get(mapIndex);
+
+        if (startsWithArray(value, quote, quoteLength, mapIndex, mapSize, buffer)) {
+          // an escaped quote is two quotes so the parity stays correct
+          inQuotes = !inQuotes;
+          mapIndex += quoteLength;
+
+        } else if (inQuotes) {
+          // newlines inside quotes are part of the record
+          mapIndex += unit;
+
+        // if (buffer[mapIndex] == CR)
+        } else if (startsWithArray(value, cr, crLength, mapIndex, mapSize, buffer)) {
+
+          if (!lastMapping && ((crLength + lfLength) > (mapSize - mapIndex))) {
+            // CR LF may span two mappings, map again from the start of the record
+            break;
+          }
+
+          // if (buffer[mapIndex] == LF)
+          int newlineLength = crLength;
+          if (continuesWithArray(lf, lfLength, crLength, mapIndex, mapSize, buffer)) {
+            newlineLength += lfLength;
+          }
+
+          // we found the end, read the record
+          this.lineFound(lineStart, mapStart, mapIndex, buffer, fileInfo);
+
+          // fix up loop variable for the next iteration
+          mapIndex = lineStart = mapIndex + newlineLength;
+          if ((mapStart + lineStart) >= rangeEnd) {
+            // the next record belongs to the next chunk
+            return FILE_END;
+          }
+
+        // else if (buffer[mapIndex] == LF)
+        } else if (startsWithArray(value, lf, lfLength, mapIndex, mapSize, buffer)) {
+
+          // we found the end, read the record
+          this.lineFound(lineStart, mapStart, mapIndex, buffer, fileInfo);
+
+          // fix up the loop variable for the next iteration
+          mapIndex = lineStart = mapIndex + lfLength;
+          if ((mapStart + lineStart) >= rangeEnd) {
+            // the next record belongs to the next chunk
+            return FILE_END;
+          }
+        } else {
+          mapIndex += unit;
+        }
+
+      }
+
+      if (!lastMapping) {
+        if (lineStart == 0) {
+          // the record does not fit into a single mapping
+          // mapping again from its start would make no progress
+          fileInfo.inQuotes = inQuotes;
+          return this.oversizedLineAtMappingEnd(mapStart, mapSize, cr, unit, buffer, fileInfo);
+        }
+        // map again from the start of the last record
+        fileInfo.inQuotes = false;
+        return mapStart + lineStart;
+      } else if ((lineStart < mapSize) || fileInfo.inOversizedLine) {
+        // we're at the end of the file
+        // if the last record didn't end in a newline read it now
+        this.lineFound(lineStart, mapStart, mapSize, buffer, fileInfo);
       }
-    }
-  }
 
-  private void forEachFast(FileInfo fileInfo, FastEncodingInfo encodingInfo) throws IOException {
-    long mapInfo = 0L;
-    while (mapInfo != FILE_END) {
-      mapInfo = this.forEachFast(fileInfo, encodingInfo, mapInfo);
+    } finally {
+      Unmapper.unmap(buffer, fileInfo);
     }
+    return FILE_END;
   }
 
-  private void forEach(FileInfo fileInfo, EncodingInfo encodingInfo) throws IOException {
-    long mapStart = 0L;
+  /**
+   * Returns the file info that was actually used, may be different from
+   * {@code fileInfo} if a BOM was resolved.
+   *
+   * @param start where to start, {@code 0} if the BOM has not been
+   *  resolved yet
+   */
+  private FileInfo forEach(FileInfo fileInfo, EncodingInfo encodingInfo, long start) throws IOException {
+    long mapStart = firstMapStart(fileInfo, start);
     FileInfo actualFileInfo;
     EncodingInfo actualEncodingInfo;
     MappedByteBuffer buffer;
@@ -155,15 +2070,18 @@ public final class LineParser {
       byte[] actualCr = "\r".getBytes(actualCharset);
       byte[] actualLf = "\n".getBytes(actualCharset);
       actualEncodingInfo = new EncodingInfo(actualCharset, actualCr, actualLf);
-      actualFileInfo = new FileInfo(fileInfo.path, fileInfo.channel, fileInfo.fileSize, actualReader, fileInfo.lineCallback);
+      actualFileInfo = fileInfo.withReader(actualReader);
     } else {
       actualEncodingInfo = encodingInfo;
       actualFileInfo = fileInfo;
       buffer = null;
     }
     while (mapStart != FILE_END) {
-      mapStart = this.forEach(buffer, actualFileInfo, actualEncodingInfo, mapStart);
+      mapStart = mappingDone(actualFileInfo, this.forEach(buffer, actualFileInfo, actualEncodingInfo, mapStart));
+      // only the first mapping can be reused
+      buffer = null;
     }
+    return actualFileInfo;
   }
 
   private static MappedByteBuffer map(FileInfo fileInfo, long mapStart, int mapSize) throws IOException {
@@ -183,6 +2101,20 @@ public final class LineParser {
     return cs.equals(StandardCharsets.UTF_16) || cs.equals(UTF_32);
   }
 
+  /**
+   * Returns the character set to use for encoding newlines and
+   * delimiters, encoders for ambiguous character sets write a BOM.
+   */
+  static Charset unambiguous(Charset cs) {
+    if (cs.equals(StandardCharsets.UTF_16)) {
+      return StandardCharsets.UTF_16BE;
+    } else if (cs.equals(UTF_32)) {
+      return Objects.requireNonNull(UTF_32BE);
+    } else {
+      return cs;
+    }
+  }
+
   /**
    * Takes a character set that is ambiguous and tries to make it
    * unambiguous by resolving the BOM.
@@ -224,9 +2156,8 @@ public final class LineParser {
     byte[] cr = encodingInfo.cr;
     byte[] lf = encodingInfo.lf;
     long fileSize = fileInfo.fileSize;
-    LineReader reader = fileInfo.reader;
-    Consumer<Line> lineCallback =  fileInfo.lineCallback;
     int mapSize = this.mapSize(fileInfo, mapStart);
+    boolean lastMapping = (mapSize + mapStart) == fileSize;
     if (buffer == null) {
       // in case of a multi byte encoding we may have to have a look at
       // the file first in order to read the BOM in order to determine
@@ -250,6 +2181,11 @@ public final class LineParser {
         // if (buffer[mapIndex] == CR)
         if (startsWithArray(value, cr, crLength, mapIndex, mapSize, buffer)) {
 
+          if (!lastMapping && ((crLength + lfLength) > (mapSize - mapIndex))) {
+            // CR LF may span two mappings, map again from the start of the line
+            break;
+          }
+
           // if (buffer[mapIndex] == LF)
           int newlineLength = crLength;
           if (continuesWithArray(lf, lfLength, crLength, mapIndex, mapSize, buffer)) {
@@ -257,44 +2193,57 @@ public final class LineParser {
           }
 
           // we found the end, read the line
-          readLine(lineStart, mapStart, mapIndex, buffer, reader, lineCallback);
+          this.lineFound(lineStart, mapStart, mapIndex, buffer, fileInfo);
 
           // fix up loop variable for the next iteration
           mapIndex = lineStart = mapIndex + newlineLength;
+          if ((mapStart + lineStart) >= fileInfo.rangeEnd) {
+            // the range ended in the callback
+            return FILE_END;
+          }
 
 
         // else if (buffer[mapIndex] == LF)
         } else if (startsWithArray(value, lf, lfLength, mapIndex, mapSize, buffer)) {
 
           // we found the end, read the line
-          readLine(lineStart, mapStart, mapIndex, buffer, reader, lineCallback);
+          this.lineFound(lineStart, mapStart, mapIndex, buffer, fileInfo);
 
           // fix up the loop variable for the next iteration
           mapIndex = lineStart = mapIndex + lfLength;
+          if ((mapStart + lineStart) >= fileInfo.rangeEnd) {
+            // the range ended in the callback
+            return FILE_END;
+          }
         } else {
           mapIndex += 1;
         }
 
       }
 
-      if ((mapSize + mapStart) < fileSize) {
+      if (!lastMapping) {
+        if (lineStart == 0) {
+          // the line does not fit into a single mapping
+          // mapping again from its start would make no progress
+          return this.oversizedLineAtMappingEnd(mapStart, mapSize, cr, lfLength, buffer, fileInfo);
+        }
         // we could not map the entire file
         // map from the start of the last line
         // and continue reading from there
         return mapStart + lineStart;
-      } else if (lineStart < mapSize) {
+      } else if ((lineStart < mapSize) || fileInfo.inOversizedLine) {
         // we're at the end of the file
         // if the last line didn't end in a newline read it now
-        readLine(lineStart, mapStart, mapIndex, buffer, reader, lineCallback);
+        this.lineFound(lineStart, mapStart, mapIndex, buffer, fileInfo);
       }
 
     } finally {
-      Unmapper.unmap(buffer, fileInfo);
+      unmapLines(buffer, fileInfo);
     }
     return FILE_END;
   }
 
-  private static boolean startsWithArray(byte value, byte[] newLine, int newLineLength,
+  static boolean startsWithArray(byte value, byte[] newLine, int newLineLength,
           int mapIndex, int mapSize, MappedByteBuffer buffer) {
     // mapSize - mapIndex == buffer.remaining() + 1
     if ((value == newLine[0]) && ((newLineLength - 1) < (mapSize - mapIndex))) {
@@ -311,8 +2260,8 @@ public final class LineParser {
     return false;
   }
 
-  private static boolean continuesWithArray(byte[] lf, int lfLength, int offset, int mapIndex, int mapSize, MappedByteBuffer buffer) {
-    if (lfLength < (mapSize - mapIndex)) {
+  static boolean continuesWithArray(byte[] lf, int lfLength, int offset, int mapIndex, int mapSize, MappedByteBuffer buffer) {
+    if ((offset + lfLength) <= (mapSize - mapIndex)) {
       for (int i = 0; i < lfLength; i++) {
         if (buffer.get(mapIndex + offset + i) != lf[i]) {
           // not a lf
@@ -333,9 +2282,8 @@ public final class LineParser {
     byte cr = encodingInfo.cr;
     byte lf = encodingInfo.lf;
     long fileSize = fileInfo.fileSize;
-    LineReader reader = fileInfo.reader;
-    Consumer<Line> lineCallback =  fileInfo.lineCallback;
     int mapSize = this.mapSize(fileInfo, mapStart);
+    boolean lastMapping = (mapSize + mapStart) == fileSize;
     MappedByteBuffer buffer = map(fileInfo, mapStart, mapSize);
     try {
 
@@ -349,48 +2297,191 @@ public final class LineParser {
           int newlineLength;
           // check if lf follows the cr
           // mapSize - mapIndex == buffer.remaining() + 1
-          if (((mapSize - mapIndex) > 1) && (buffer.get(mapIndex + 1) == lf)) {
-            newlineLength = 2;
+          if ((mapSize - mapIndex) > 1) {
+            if (buffer.get(mapIndex + 1) == lf) {
+              newlineLength = 2;
+            } else {
+              newlineLength = 1;
+            }
+          } else if (!lastMapping) {
+            // CR LF may span two mappings, map again from the start of the line
+            break;
           } else {
             newlineLength = 1;
           }
 
           // we found the end, read the line
-          readLine(lineStart, mapStart, mapIndex, buffer, reader, lineCallback);
+          this.lineFound(lineStart, mapStart, mapIndex, buffer, fileInfo);
 
           // fix up loop variable for the next iteration
           mapIndex = lineStart = mapIndex + newlineLength;
+          if ((mapStart + lineStart) >= fileInfo.rangeEnd) {
+            // the range ended in the callback
+            return FILE_END;
+          }
 
         } else if (value == lf) {
 
           // we found the end, read the line
-          readLine(lineStart, mapStart, mapIndex, buffer, reader, lineCallback);
+          this.lineFound(lineStart, mapStart, mapIndex, buffer, fileInfo);
 
           // fix up the loop variable for the next iteration
           mapIndex = lineStart = mapIndex + 1;
+          if ((mapStart + lineStart) >= fileInfo.rangeEnd) {
+            // the range ended in the callback
+            return FILE_END;
+          }
         } else {
           mapIndex += 1;
         }
 
       }
 
-      if ((mapSize + mapStart) < fileSize) {
+      if (!lastMapping) {
+        if (lineStart == 0) {
+          // the line does not fit into a single mapping
+          // mapping again from its start would make no progress
+          return this.oversizedLineAtMappingEnd(mapStart, mapSize, new byte[] {cr}, 1, buffer, fileInfo);
+        }
         // we could not map the entire file
         // map from the start of the last line
         // and continue reading from there
         return mapStart + lineStart; // may result in overlapping mapping
-      } else if (lineStart < mapSize) {
+      } else if ((lineStart < mapSize) || fileInfo.inOversizedLine) {
         // we're at the end of the file
         // if the last line didn't end in a newline read it now
-        readLine(lineStart, mapStart, mapIndex, buffer, reader, lineCallback);
+        this.lineFound(lineStart, mapStart, mapIndex, buffer, fileInfo);
       }
 
     } finally {
-      Unmapper.unmap(buffer, fileInfo);
+      unmapLines(buffer, fileInfo);
+    }
+    return FILE_END;
+  }
+
+  // single byte delimiter version of forEachFast
+  private long forEachSingleByte(FileInfo fileInfo, boolean[] delimiters, long mapStart) throws IOException {
+    long fileSize = fileInfo.fileSize;
+    int mapSize = this.mapSize(fileInfo, mapStart);
+    boolean lastMapping = (mapSize + mapStart) == fileSize;
+    MappedByteBuffer buffer = map(fileInfo, mapStart, mapSize);
+    try {
+
+      int lineStart = 0; // in buffer
+
+      for (int mapIndex = 0; mapIndex < mapSize; mapIndex++) {
+        if (delimiters[Byte.toUnsignedInt(buffer.get(mapIndex))]) {
+          // we found the end, read the line
+          this.lineFound(lineStart, mapStart, mapIndex, buffer, fileInfo);
+          lineStart = mapIndex + 1;
+        }
+      }
+
+      if (!lastMapping) {
+        if (lineStart == 0) {
+          // the line does not fit into a single mapping
+          // mapping again from its start would make no progress
+          return this.oversizedLineUntil(mapStart, mapSize, buffer, fileInfo);
+        }
+        // map from the start of the last line
+        return mapStart + lineStart;
+      } else if ((lineStart < mapSize) || fileInfo.inOversizedLine) {
+        // if the last line didn't end in a delimiter read it now
+        this.lineFound(lineStart, mapStart, mapSize, buffer, fileInfo);
+      }
+
+    } finally {
+      unmapLines(buffer, fileInfo);
+    }
+    return FILE_END;
+  }
+
+  // multi byte delimiter version of forEach
+  private long forEachDelimited(FileInfo fileInfo, DelimiterInfo delimiterInfo, long mapStart) throws IOException {
+    byte[][][] candidates = delimiterInfo.candidates;
+    int unit = delimiterInfo.unit;
+    long fileSize = fileInfo.fileSize;
+    int mapSize = this.mapSize(fileInfo, mapStart);
+    boolean lastMapping = (mapSize + mapStart) == fileSize;
+    MappedByteBuffer buffer = map(fileInfo, mapStart, mapSize);
+    try {
+
+      int lineStart = 0; // in buffer
+
+      int mapIndex = 0;
+      while (mapIndex < mapSize) {
+        byte[][] forByte = candidates[Byte.toUnsignedInt(buffer.get(mapIndex))];
+        int delimiterLength = 0;
+        if (forByte != null) {
+          delimiterLength = matchDelimiter(forByte, mapIndex, mapSize, lastMapping, buffer);
+          if (delimiterLength == DELIMITER_SPANS_MAPPINGS) {
+            // map again from the start of the line
+            break;
+          }
+        }
+        if (delimiterLength > 0) {
+          // we found the end, read the line
+          this.lineFound(lineStart, mapStart, mapIndex, buffer, fileInfo);
+          mapIndex = lineStart = mapIndex + delimiterLength;
+        } else {
+          mapIndex += unit;
+        }
+      }
+
+      if (!lastMapping) {
+        if (lineStart == 0) {
+          // the line does not fit into a single mapping
+          // mapping again from its start would make no progress
+          int end = Math.min(mapIndex, mapSize);
+          return this.oversizedLineUntil(mapStart, end - (end % unit), buffer, fileInfo);
+        }
+        // map from the start of the last line
+        return mapStart + lineStart;
+      } else if ((lineStart < mapSize) || fileInfo.inOversizedLine) {
+        // if the last line didn't end in a delimiter read it now
+        this.lineFound(lineStart, mapStart, mapSize, buffer, fileInfo);
+      }
+
+    } finally {
+      unmapLines(buffer, fileInfo);
     }
     return FILE_END;
   }
 
+  /**
+   * Matches the delimiters starting with the byte at {@code mapIndex}.
+   *
+   * @return the length of the longest matching delimiter, {@code 0} if
+   *  none matches or {@link #DELIMITER_SPANS_MAPPINGS} if a delimiter may
+   *  continue in the next mapping
+   */
+  private static int matchDelimiter(byte[][] candidates, int mapIndex, int mapSize, boolean lastMapping,
+          MappedByteBuffer buffer) {
+    int remaining = mapSize - mapIndex;
+    // candidates are sorted longest first
+    for (byte[] candidate : candidates) {
+      int length = candidate.length;
+      if (length <= remaining) {
+        if (matchesArray(candidate, length, mapIndex, buffer)) {
+          return length;
+        }
+      } else if (!lastMapping && matchesArray(candidate, remaining, mapIndex, buffer)) {
+        return DELIMITER_SPANS_MAPPINGS;
+      }
+    }
+    return 0;
+  }
+
+  private static boolean matchesArray(byte[] array, int length, int mapIndex, MappedByteBuffer buffer) {
+    // the first byte is already known to match
+    for (int i = 1; i < length; i++) {
+      if (buffer.get(mapIndex + i) != array[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   static final class FirstLine {
 
     private static final FirstLine CR_LF = new FirstLine(true, (char) 0);
@@ -413,8 +2504,217 @@ public final class LineParser {
 
   }
 
+  private void lineFound(int lineStart, long mapStart, int lineEnd,
+          MappedByteBuffer buffer, FileInfo fileInfo) throws IOException {
+    Checkpoints checkpoints = fileInfo.checkpoints;
+    if ((checkpoints != null) && !fileInfo.inOversizedLine && (fileInfo.lineNumber >= checkpoints.nextLineNumber)) {
+      // every line before has been delivered
+      checkpoints.reached(mapStart + lineStart, fileInfo.lineNumber);
+    }
+    int length = lineEnd - lineStart;
+    if ((length <= this.maxLineLength) && !fileInfo.inOversizedLine) {
+      LinePredicate predicate = this.linePredicate;
+      if ((predicate == null) || predicate.test(buffer, lineStart, length)) {
+        lineRead(lineStart, mapStart, lineEnd, buffer, fileInfo);
+      }
+    } else {
+      this.oversizedLineFound(lineStart, mapStart, lineEnd, buffer, fileInfo);
+    }
+    if (fileInfo.lineNumber != 0L) {
+      fileInfo.lineNumber += 1L;
+    }
+  }
+
+  /**
+   * Called when the end of a line was found that is either too long or
+   * whose start was in a previous mapping.
+   */
+  private void oversizedLineFound(int lineStart, long mapStart, int lineEnd,
+          MappedByteBuffer buffer, FileInfo fileInfo) throws IOException {
+    if (fileInfo.chunkHandler != null) {
+      this.readChunks(lineStart, lineEnd, true, mapStart, buffer, fileInfo);
+    } else if (!fileInfo.inOversizedLine) {
+      this.applyOversizedLinePolicy(lineStart, lineEnd, mapStart, buffer, fileInfo);
+    }
+    // else the start of the line was already handled in a previous mapping
+    fileInfo.inOversizedLine = false;
+  }
+
+  /**
+   * Called when a mapping contains no line end, we have to make progress
+   * without mapping again from the start of the line.
+   *
+   * @return where to start the next mapping
+   */
+  private long oversizedLineAtMappingEnd(long mapStart, int mapSize, byte[] cr, int characterUnit,
+          MappedByteBuffer buffer, FileInfo fileInfo) throws IOException {
+    int end = oversizedLineEnd(mapStart, mapSize, cr, characterUnit, buffer, fileInfo);
+    return this.oversizedLineUntil(mapStart, end, buffer, fileInfo);
+  }
+
+  /**
+   * Computes up to where the part of a line is read when a mapping
+   * contains no line end.
+   *
+   * @return the end of the part of the line in the mapping, never between
+   *  a CR and a LF or inside a character
+   * @throws LineTooLongException if the mapping is too small to make progress
+   */
+  static int oversizedLineEnd(long mapStart, int mapSize, byte[] cr, int characterUnit,
+          MappedByteBuffer buffer, FileInfo fileInfo) throws LineTooLongException {
+    int end = mapSize - (mapSize % characterUnit);
+    if (endsWithArray(cr, end, buffer)) {
+      // the CR may be followed by a LF in the next mapping
+      end -= cr.length;
+    }
+    if (end <= 0) {
+      throw new LineTooLongException(fileInfo.path.toString(), mapStart, "mapping too small");
+    }
+    return end;
+  }
+
+  /**
+   * Called when a mapping contains no line end, reads the part of the line
+   * up to {@code end}.
+   *
+   * @return where to start the next mapping
+   */
+  private long oversizedLineUntil(long mapStart, int end,
+          MappedByteBuffer buffer, FileInfo fileInfo) throws IOException {
+    if (end <= 0) {
+      throw new LineTooLongException(fileInfo.path.toString(), mapStart, "mapping too small");
+    }
+    if (fileInfo.chunkHandler != null) {
+      return mapStart + this.readChunks(0, end, false, mapStart, buffer, fileInfo);
+    }
+    if (!fileInfo.inOversizedLine) {
+      this.applyOversizedLinePolicy(0, end, mapStart, buffer, fileInfo);
+      // skip the rest of the line
+      fileInfo.inOversizedLine = true;
+    }
+    return mapStart + end;
+  }
+
+  static boolean endsWithArray(byte[] array, int end, MappedByteBuffer buffer) {
+    int length = array.length;
+    if (end < length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (buffer.get((end - length) + i) != array[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void applyOversizedLinePolicy(int lineStart, int lineEnd, long mapStart,
+          MappedByteBuffer buffer, FileInfo fileInfo) throws IOException {
+    int length = this.oversizedLineLength(lineStart, lineEnd, mapStart, buffer, fileInfo);
+    if (length != SKIP_LINE) {
+      lineRead(lineStart, mapStart, lineStart + length, buffer, fileInfo);
+    }
+  }
+
+  /**
+   * Applies the {@link OversizedLinePolicy} to a line that is too long.
+   *
+   * @return how many bytes of the line to read or {@link #SKIP_LINE}
+   * @throws LineTooLongException if the policy is {@link OversizedLinePolicy#FAIL}
+   */
+  int oversizedLineLength(int lineStart, int lineEnd, long mapStart,
+          MappedByteBuffer buffer, FileInfo fileInfo) throws IOException {
+    fileInfo.oversizedLineCount += 1;
+    switch (this.oversizedLinePolicy) {
+      case FAIL:
+        throw new LineTooLongException(fileInfo.path.toString(), mapStart + lineStart,
+                "line longer than " + Math.min(this.maxLineLength, this.maxMapSize) + " bytes");
+      case TRUNCATE:
+        return fileInfo.reader.characterBoundary(buffer, lineStart, Math.min(this.maxLineLength, lineEnd - lineStart));
+      case SKIP:
+        return SKIP_LINE;
+      default:
+        throw new IllegalStateException("unknown policy: " + this.oversizedLinePolicy);
+    }
+  }
+
+  /**
+   * Reads a line or the part of a line contained in the current mapping
+   * as chunks.
+   *
+   * @return up to where the input was read
+   */
+  private int readChunks(int start, int end, boolean lineEnded, long mapStart,
+          MappedByteBuffer buffer, FileInfo fileInfo) throws IOException {
+    LineReader reader = fileInfo.reader;
+    if (!fileInfo.inOversizedLine) {
+      fileInfo.oversizedLineOffset = mapStart + start;
+    }
+    int position = start;
+    while ((end - position) > this.maxLineLength) {
+      int length = reader.characterBoundary(buffer, position, this.maxLineLength);
+      readChunk(position, length, false, mapStart, buffer, fileInfo);
+      position += length;
+    }
+    if (lineEnded) {
+      readChunk(position, end - position, true, mapStart, buffer, fileInfo);
+      return end;
+    } else {
+      // the rest of the line is in the next mapping
+      int length = reader.characterBoundary(buffer, position, end - position);
+      if (length > 0) {
+        readChunk(position, length, false, mapStart, buffer, fileInfo);
+      }
+      return position + length;
+    }
+  }
+
+  private static void readChunk(int chunkStart, int length, boolean last, long mapStart,
+          MappedByteBuffer buffer, FileInfo fileInfo) throws IOException {
+    CharSequence sequence = fileInfo.reader.readLine(buffer, chunkStart, length);
+    Line chunk = new Line(chunkStart + mapStart, length, sequence, buffer, chunkStart, fileInfo.lineNumber);
+    boolean first = !fileInfo.inOversizedLine;
+    if (first && !last) {
+      fileInfo.oversizedLineCount += 1;
+    }
+    try {
+      fileInfo.chunkHandler.chunk(chunk, fileInfo.oversizedLineOffset, first, last);
+    } finally {
+      chunk.release();
+    }
+    fileInfo.inOversizedLine = !last;
+  }
+
+  /**
+   * Delivers a line either to the callback or to the batch.
+   */
+  private static void lineRead(int lineStart, long mapStart, int lineEnd,
+          MappedByteBuffer buffer, FileInfo fileInfo) throws IOException {
+    LineBatch batch = fileInfo.batch;
+    if (batch == null) {
+      readLine(lineStart, mapStart, lineEnd, buffer, fileInfo.reader, fileInfo.lineCallback, fileInfo.lineNumber);
+    } else {
+      batch.add(buffer, mapStart, lineStart, lineEnd - lineStart, fileInfo.reader);
+    }
+  }
+
+  /**
+   * Unmaps a mapping that lines were read from, the lines in the batch
+   * are delivered before.
+   */
+  private static void unmapLines(MappedByteBuffer buffer, FileInfo fileInfo) throws IOException {
+    LineBatch batch = fileInfo.batch;
+    try {
+      if (batch != null) {
+        batch.flush();
+      }
+    } finally {
+      Unmapper.unmap(buffer, fileInfo);
+    }
+  }
+
   private static void readLine(int lineStart, long mapStart, int mapIndex,
-          MappedByteBuffer buffer, LineReader reader, Consumer<Line> lineCallback) throws IOException {
+          MappedByteBuffer buffer, LineReader reader, Consumer<Line> lineCallback, long lineNumber) throws IOException {
 
     // read the current line into a CharSequence
     // create a Line object
@@ -422,8 +2722,49 @@ public final class LineParser {
     int length = mapIndex - lineStart;
     CharSequence sequence = reader.readLine(buffer, lineStart, length);
 
-    Line line = new Line(lineStart + mapStart, length, sequence);
-    lineCallback.accept(line);
+    Line line = new Line(lineStart + mapStart, length, sequence, buffer, lineStart, lineNumber);
+    try {
+      lineCallback.accept(line);
+    } finally {
+      // the buffer may be unmapped even if the callback failed
+      line.release();
+    }
+  }
+
+  /**
+   * Compares the start of a line during a binary search.
+   */
+  @FunctionalInterface
+  interface LineProbe {
+
+    /**
+     * Compares the start of a line to the searched value.
+     *
+     * @param prefix the start of the line without newline
+     * @param lineStart the offset of the line in the file
+     * @return {@code -1} if the line is before the searched value,
+     *  {@code 0} or {@code 1} if not, {@link LineParser#NOT_COMPARABLE}
+     *  if the line can not be compared
+     */
+    int compare(CharSequence prefix, long lineStart);
+
+  }
+
+  /**
+   * Receives the lines after the start found by a binary search.
+   */
+  @FunctionalInterface
+  interface RangeCallback {
+
+    /**
+     * Called for every line after the start of the range.
+     *
+     * @param line the line
+     * @return whether the line was inside the range, if {@code false}
+     *  no more lines are read
+     */
+    boolean line(Line line);
+
   }
 
   static final class FileInfo {
@@ -432,14 +2773,73 @@ public final class LineParser {
     final long fileSize;
     final LineReader reader;
     final Consumer<Line> lineCallback;
+    final LineChunkHandler chunkHandler;
     final Path path;
 
-    FileInfo(Path path, FileChannel channel, long fileSize, LineReader reader, Consumer<Line> lineCallback) {
+    // mutable parse state for lines that are too long
+
+    /**
+     * Whether we are in the middle of a line that is too long, the start
+     * of which was already handled.
+     */
+    boolean inOversizedLine;
+    long oversizedLineOffset;
+    long oversizedLineCount;
+
+    // mutable parse state for records
+
+    /**
+     * Whether the start of the next mapping is inside quotes, only
+     * possible for records that do not fit into a single mapping.
+     */
+    boolean inQuotes;
+
+    /**
+     * Records or lines starting at or after this offset are not parsed,
+     * used for parsing parts of a file in parallel and for ending a
+     * range search as soon as the range ends.
+     */
+    long rangeEnd = Long.MAX_VALUE;
+
+    /**
+     * Collects the lines instead of the line callback, {@code null}
+     * if the lines are delivered one by one.
+     */
+    LineBatch batch;
+
+    /**
+     * The number of the next line, {@code 0} if line numbers are not
+     * tracked because the parse does not start at the first line.
+     */
+    long lineNumber;
+
+    /**
+     * Hands out the positions of the parse, {@code null} if no
+     * positions are needed.
+     */
+    Checkpoints checkpoints;
+
+    FileInfo(Path path, FileChannel channel, long fileSize, LineReader reader,
+            Consumer<Line> lineCallback, LineChunkHandler chunkHandler) {
       this.path = path;
       this.channel = channel;
       this.fileSize = fileSize;
       this.reader = reader;
       this.lineCallback = lineCallback;
+      this.chunkHandler = chunkHandler;
+    }
+
+    /**
+     * Creates a file info for the same parse with a different reader,
+     * used after the BOM has been resolved.
+     */
+    FileInfo withReader(LineReader actualReader) {
+      FileInfo copy = new FileInfo(this.path, this.channel, this.fileSize, actualReader,
+              this.lineCallback, this.chunkHandler);
+      copy.batch = this.batch;
+      copy.lineNumber = this.lineNumber;
+      copy.checkpoints = this.checkpoints;
+      return copy;
     }
 
   }
@@ -470,6 +2870,278 @@ public final class LineParser {
 
   }
 
+  static final class DelimiterInfo {
+
+    /**
+     * For every byte value whether it is a delimiter, {@code null} if
+     * not all delimiters are a single byte.
+     */
+    final boolean[] singleByte;
+
+    /**
+     * For every byte value the delimiters starting with it sorted
+     * longest first, {@code null} entries if no delimiter starts with it.
+     */
+    final byte[][][] candidates;
+
+    /**
+     * The number of bytes to advance when no match is found, the length
+     * of a code unit for UTF-16 and UTF-32.
+     */
+    final int unit;
+
+    DelimiterInfo(Charset cs, String[] delimiters) {
+      Charset encodingCharset = unambiguous(cs);
+      CharsetEncoder encoder = encodingCharset.newEncoder();
+      List<byte[]> encoded = new ArrayList<>(delimiters.length);
+      boolean allSingleByte = true;
+      for (String delimiter : delimiters) {
+        if (!encoder.canEncode(delimiter)) {
+          throw new IllegalArgumentException("delimiter can not be encoded in " + cs.name());
+        }
+        byte[] bytes = delimiter.getBytes(encodingCharset);
+        allSingleByte &= bytes.length == 1;
+        encoded.add(bytes);
+      }
+      this.unit = "\n".getBytes(encodingCharset).length;
+      encoded.sort(Comparator.comparingInt((byte[] bytes) -> bytes.length).reversed());
+
+      byte[][][] candidates = new byte[256][][];
+      for (byte[] bytes : encoded) {
+        int first = Byte.toUnsignedInt(bytes[0]);
+        byte[][] forByte = candidates[first];
+        if (forByte == null) {
+          forByte = new byte[][] {bytes};
+        } else {
+          forByte = Arrays.copyOf(forByte, forByte.length + 1);
+          forByte[forByte.length - 1] = bytes;
+        }
+        candidates[first] = forByte;
+      }
+      this.candidates = candidates;
+
+      if (allSingleByte) {
+        this.singleByte = new boolean[256];
+        for (byte[] bytes : encoded) {
+          this.singleByte[Byte.toUnsignedInt(bytes[0])] = true;
+        }
+      } else {
+        this.singleByte = null;
+      }
+    }
+
+  }
+
+  static final class GrepInfo {
+
+    final byte[] needle;
+    final byte[] cr;
+    final byte[] lf;
+
+    /**
+     * The length of a code unit, matches have to be aligned to it.
+     */
+    final int unit;
+
+    /**
+     * Boyer-Moore-Horspool bad character shifts.
+     */
+    final int[] shifts;
+
+    /**
+     * {@code null} if a byte match is always a character match,
+     * otherwise the string to check in the decoded line.
+     */
+    final String verify;
+
+    GrepInfo(Charset cs, String needle) {
+      Charset encodingCharset = unambiguous(cs);
+      if (!encodingCharset.newEncoder().canEncode(needle)) {
+        throw new IllegalArgumentException("needle can not be encoded in " + cs.name());
+      }
+      this.needle = needle.getBytes(encodingCharset);
+      this.cr = "\r".getBytes(encodingCharset);
+      this.lf = "\n".getBytes(encodingCharset);
+      this.unit = this.lf.length;
+      int length = this.needle.length;
+      this.shifts = new int[256];
+      Arrays.fill(this.shifts, length);
+      for (int i = 0; i < (length - 1); i++) {
+        this.shifts[Byte.toUnsignedInt(this.needle[i])] = length - 1 - i;
+      }
+      if (isSelfSynchronizing(encodingCharset)) {
+        this.verify = null;
+      } else {
+        this.verify = needle;
+      }
+    }
+
+    static boolean isSelfSynchronizing(Charset cs) {
+      return (cs.newEncoder().maxBytesPerChar() == 1.0f)
+              || cs.equals(StandardCharsets.UTF_8)
+              || cs.equals(StandardCharsets.UTF_16BE)
+              || cs.equals(StandardCharsets.UTF_16LE)
+              || cs.equals(UTF_32BE)
+              || cs.equals(UTF_32LE);
+    }
+
+    /**
+     * Returns the index of the first match in {@code [from, to)},
+     * {@code -1} if there is none.
+     */
+    int indexOf(MappedByteBuffer buffer, int from, int to) {
+      if (this.needle.length == 1) {
+        return indexOfByte(buffer, this.needle[0], from, to);
+      }
+      byte[] needle = this.needle;
+      int length = needle.length;
+      byte last = needle[length - 1];
+      int[] shifts = this.shifts;
+      int position = from;
+      int end = to - length;
+      while (position <= end) {
+        byte value = buffer.get((position + length) - 1);
+        if ((value == last) && matchesPrefix(needle, length - 1, position, buffer)) {
+          return position;
+        }
+        position += shifts[Byte.toUnsignedInt(value)];
+      }
+      return -1;
+    }
+
+    private static boolean matchesPrefix(byte[] array, int length, int index, MappedByteBuffer buffer) {
+      for (int i = 0; i < length; i++) {
+        if (buffer.get(index + i) != array[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Searches eight bytes at a time, see
+     * <a href="https://graphics.stanford.edu/~seander/bithacks.html#ZeroInWord">Determine if a word has a zero byte</a>.
+     */
+    private static int indexOfByte(MappedByteBuffer buffer, byte value, int from, int to) {
+      long pattern = (value & 0xFFL) * 0x0101010101010101L;
+      int position = from;
+      // MappedByteBuffer is big endian so the first byte is the most significant
+      while ((position + 8) <= to) {
+        long word = buffer.getLong(position) ^ pattern;
+        // exact, no false positives from borrows
+        long zeros = ~((((word & 0x7F7F7F7F7F7F7F7FL) + 0x7F7F7F7F7F7F7F7FL) | word) | 0x7F7F7F7F7F7F7F7FL);
+        if (zeros != 0L) {
+          return position + (Long.numberOfLeadingZeros(zeros) >>> 3);
+        }
+        position += 8;
+      }
+      while (position < to) {
+        if (buffer.get(position) == value) {
+          return position;
+        }
+        position += 1;
+      }
+      return -1;
+    }
+
+    /**
+     * Checks if there is a <code>CR</code> or <code>LF</code> at {@code index}.
+     */
+    private boolean isNewline(MappedByteBuffer buffer, int index, int end) {
+      return startsWithArray(buffer.get(index), this.lf, this.unit, index, end, buffer)
+              || startsWithArray(buffer.get(index), this.cr, this.cr.length, index, end, buffer);
+    }
+
+    /**
+     * Returns the start of the line containing {@code index} but not
+     * before {@code floor}.
+     */
+    int lineStart(MappedByteBuffer buffer, int floor, int index) {
+      for (int i = index - this.unit; i >= floor; i -= this.unit) {
+        if (this.isNewline(buffer, i, index)) {
+          return i + this.unit;
+        }
+      }
+      return floor;
+    }
+
+    /**
+     * Returns the index of the newline ending the line containing
+     * {@code index}, {@code end} if there is none.
+     */
+    int lineEnd(MappedByteBuffer buffer, int index, int end) {
+      for (int i = index; i < end; i += this.unit) {
+        if (this.isNewline(buffer, i, end)) {
+          return i;
+        }
+      }
+      return end;
+    }
+
+    /**
+     * Returns the start of the line after the first newline in
+     * {@code [from, to)}, {@code -1} if there is none.
+     */
+    int nextLineStart(MappedByteBuffer buffer, int from, int to) {
+      int newline = this.lineEnd(buffer, from, to);
+      if (newline == to) {
+        return -1;
+      }
+      return newline + this.unit;
+    }
+
+    /**
+     * Returns the start of the line after the last newline before
+     * {@code end}, {@code 0} if there is none.
+     */
+    int lastLineStart(MappedByteBuffer buffer, int end) {
+      return this.lineStart(buffer, 0, end);
+    }
+
+    boolean isMatch(LineReader reader, MappedByteBuffer buffer, int lineStart, int lineEnd) throws IOException {
+      if (this.verify == null) {
+        return true;
+      }
+      return reader.readLine(buffer, lineStart, lineEnd - lineStart).toString().contains(this.verify);
+    }
+
+  }
+
+  static final class RecordEncodingInfo {
+
+    final byte[] cr;
+    final byte[] lf;
+    final byte[] quote;
+
+    /**
+     * The number of bytes to advance when no match is found, the length
+     * of a code unit for UTF-16 and UTF-32.
+     */
+    final int unit;
+
+    RecordEncodingInfo(Charset cs, char quote) {
+      this.cr = "\r".getBytes(cs);
+      this.lf = "\n".getBytes(cs);
+      this.quote = String.valueOf(quote).getBytes(cs);
+      this.unit = this.lf.length;
+    }
+
+  }
+
+  static final class QuoteScan {
+
+    final boolean oddQuotes;
+    final long firstRecordStartOutside;
+    final long firstRecordStartInside;
+
+    QuoteScan(boolean oddQuotes, long firstRecordStartOutside, long firstRecordStartInside) {
+      this.oddQuotes = oddQuotes;
+      this.firstRecordStartOutside = firstRecordStartOutside;
+      this.firstRecordStartInside = firstRecordStartInside;
+    }
+
+  }
+
   static final class BomResolutionResult {
 
     final Charset cs;
@@ -0,0 +1,495 @@
+package com.github.marschall.lineparser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import com.github.marschall.lineparser.PartitionedDispatcher.AbortedException;
+
+/**
+ * Parses a file on the calling thread and decodes and consumes the lines
+ * on a pool of worker threads.
+ *
+ * <p>The scanning thread does not decode lines, it collects the offsets
+ * and lengths of the lines of a window of the file in a batch and
+ * publishes full batches through a bounded ring buffer. The workers take
+ * batches from the ring, read the lines from a second mapping of the
+ * file, decode them and invoke the callback. When ordered a worker
+ * decodes a batch before it waits for the batches before it, only
+ * invoking the callback is serialized.</p>
+ *
+ * <p>Every window of the second mapping has a reference count, one for
+ * the scanning thread while it is in the window and one for every batch
+ * with a line touching the window. The window is unmapped when the count
+ * drops to zero.</p>
+ */
+final class LinePipeline {
+
+  /**
+   * Maximum number of lines in a batch.
+   */
+  private static final int BATCH_SIZE = 1024;
+
+  private final LineParser parser;
+  private final int workerCount;
+  private final PipelineOrder order;
+  private final Consumer<Line> lineCallback;
+  private final int ringCapacity;
+  private final int windowShift;
+
+  /**
+   * The first exception thrown by a worker, stops the parse.
+   */
+  private final AtomicReference<Throwable> failure;
+
+  /**
+   * The sequence number of the next batch to consume when ordered.
+   */
+  private final AtomicLong nextSequence;
+
+  LinePipeline(LineParser parser, int workerCount, PipelineOrder order, Consumer<Line> lineCallback,
+          int ringCapacity, int windowShift) {
+    this.parser = parser;
+    this.workerCount = workerCount;
+    this.order = order;
+    this.lineCallback = lineCallback;
+    this.ringCapacity = ringCapacity;
+    this.windowShift = windowShift;
+    this.failure = new AtomicReference<>();
+    this.nextSequence = new AtomicLong();
+  }
+
+  ParseStatistics run(Path path, Charset cs) throws IOException {
+    BatchRing ring = new BatchRing(this.ringCapacity);
+    // the lines are split by the scanner but decoded by the workers
+    Charset actualCharset = this.parser.resolveCharset(path, cs);
+    try (MappedFile file = MappedFile.open(path, this.windowShift)) {
+      WindowReferences references = new WindowReferences(file);
+      Thread[] threads = new Thread[this.workerCount];
+      for (int i = 0; i < this.workerCount; i++) {
+        threads[i] = new Thread(() -> this.work(ring, file, references, actualCharset), "line-parser-worker-" + i);
+        threads[i].setDaemon(true);
+      }
+      for (Thread thread : threads) {
+        thread.start();
+      }
+      Scanner scanner = new Scanner(ring, file, references);
+      ParseStatistics statistics;
+      try {
+        statistics = this.parser.forEachUndecoded(path, cs, scanner::add);
+        scanner.finish();
+      } finally {
+        ring.done = true;
+        joinAll(threads);
+      }
+      this.rethrowFailure();
+      return statistics;
+    } catch (AbortedException e) {
+      this.rethrowFailure();
+      throw e;
+    } catch (UncheckedIOException e) {
+      // from unmapping a window
+      throw e.getCause();
+    }
+  }
+
+  private static void joinAll(Thread[] threads) {
+    boolean interrupted = false;
+    for (Thread thread : threads) {
+      while (true) {
+        try {
+          thread.join();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void rethrowFailure() throws IOException {
+    Throwable cause = this.failure.get();
+    if (cause == null) {
+      return;
+    }
+    if (cause instanceof UncheckedIOException) {
+      throw ((UncheckedIOException) cause).getCause();
+    } else if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    } else if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    throw new IllegalStateException("worker failed", cause);
+  }
+
+  private void work(BatchRing ring, MappedFile file, WindowReferences references, Charset cs) {
+    try {
+      LineReader reader = LineReader.forCharset(cs);
+      // the workers decode concurrently from the same windows
+      ByteBuffer[] views = file.newViews();
+      DecodedBatch decoded = (this.order == PipelineOrder.ORDERED) ? new DecodedBatch() : null;
+      int idleCount = 0;
+      while (this.failure.get() == null) {
+        Batch batch = ring.poll();
+        if (batch == null) {
+          if (ring.done && ring.isEmpty()) {
+            return;
+          }
+          idleCount = PartitionedDispatcher.idle(idleCount);
+          continue;
+        }
+        idleCount = 0;
+        if (decoded != null) {
+          // decoding does not have to wait for the batches before
+          decoded.decode(batch, file, views, reader);
+          if (!this.awaitTurn(batch.sequence)) {
+            return;
+          }
+          try {
+            decoded.consume(this.lineCallback);
+          } finally {
+            this.nextSequence.lazySet(batch.sequence + 1L);
+          }
+        } else {
+          this.consume(batch, file, views, reader);
+        }
+        for (int window = batch.firstWindow; window <= batch.lastWindow; window++) {
+          references.release(window);
+        }
+      }
+    } catch (IOException e) {
+      this.failure.compareAndSet(null, new UncheckedIOException(e));
+    } catch (RuntimeException | Error e) {
+      this.failure.compareAndSet(null, e);
+    }
+  }
+
+  /**
+   * Waits until every batch before has been consumed.
+   *
+   * @return {@code false} if another worker failed
+   */
+  private boolean awaitTurn(long sequence) {
+    int idleCount = 0;
+    while (this.nextSequence.get() != sequence) {
+      if (this.failure.get() != null) {
+        return false;
+      }
+      idleCount = PartitionedDispatcher.idle(idleCount);
+    }
+    return true;
+  }
+
+  private void consume(Batch batch, MappedFile file, ByteBuffer[] views, LineReader reader) throws IOException {
+    for (int i = 0; i < batch.size; i++) {
+      long offset = batch.offsets[i];
+      int length = batch.lengths[i];
+      ByteBuffer buffer = file.buffer(offset, length, views);
+      int start = file.index(offset, length);
+      Line line = new Line(offset, length, reader.readLine(buffer, start, length), buffer, start);
+      try {
+        this.lineCallback.accept(line);
+      } finally {
+        line.release();
+      }
+    }
+  }
+
+  /**
+   * The lines of a batch decoded before it is the turn of the batch,
+   * reused by a worker.
+   *
+   * <p>If the line reader reuses its content the content of every line
+   * is copied into an array of the batch.</p>
+   */
+  static final class DecodedBatch {
+
+    private final Line[] lines;
+    private final ByteBuffer[] buffers;
+    private final int[] bufferIndices;
+
+    /**
+     * The start of the content of every line in {@link #contents} and
+     * the end of the content of the last line.
+     */
+    private final int[] contentStarts;
+    private char[] contents;
+    private int size;
+
+    DecodedBatch() {
+      this.lines = new Line[BATCH_SIZE];
+      this.buffers = new ByteBuffer[BATCH_SIZE];
+      this.bufferIndices = new int[BATCH_SIZE];
+      this.contentStarts = new int[BATCH_SIZE + 1];
+      this.contents = new char[BATCH_SIZE * 16];
+    }
+
+    void decode(Batch batch, MappedFile file, ByteBuffer[] views, LineReader reader) throws IOException {
+      boolean copy = reader.reusesContent();
+      int contentLength = 0;
+      for (int i = 0; i < batch.size; i++) {
+        long offset = batch.offsets[i];
+        int length = batch.lengths[i];
+        ByteBuffer buffer = file.buffer(offset, length, views);
+        int start = file.index(offset, length);
+        CharSequence content = reader.readLine(buffer, start, length);
+        if (copy) {
+          this.contentStarts[i] = contentLength;
+          contentLength = this.append(content, contentLength);
+          this.buffers[i] = buffer;
+          this.bufferIndices[i] = start;
+        } else {
+          this.lines[i] = new Line(offset, length, content, buffer, start);
+        }
+      }
+      if (copy) {
+        this.contentStarts[batch.size] = contentLength;
+        // the contents may have been reallocated while appending
+        for (int i = 0; i < batch.size; i++) {
+          int contentStart = this.contentStarts[i];
+          CharSequence content = CharArrayCharSequence.view(this.contents, contentStart,
+                  this.contentStarts[i + 1] - contentStart);
+          this.lines[i] = new Line(batch.offsets[i], batch.lengths[i], content, this.buffers[i], this.bufferIndices[i]);
+          this.buffers[i] = null;
+        }
+      }
+      this.size = batch.size;
+    }
+
+    private int append(CharSequence content, int contentLength) {
+      int length = content.length();
+      int required = contentLength + length;
+      if (required > this.contents.length) {
+        this.contents = Arrays.copyOf(this.contents, Math.max(this.contents.length * 2, required));
+      }
+      for (int i = 0; i < length; i++) {
+        this.contents[contentLength + i] = content.charAt(i);
+      }
+      return required;
+    }
+
+    void consume(Consumer<Line> lineCallback) {
+      for (int i = 0; i < this.size; i++) {
+        Line line = this.lines[i];
+        this.lines[i] = null;
+        try {
+          lineCallback.accept(line);
+        } finally {
+          line.release();
+        }
+      }
+      this.size = 0;
+    }
+
+  }
+
+  /**
+   * The state of the scanning thread.
+   */
+  final class Scanner {
+
+    private final BatchRing ring;
+    private final MappedFile file;
+    private final WindowReferences references;
+
+    /**
+     * The window the scanning thread is in, it holds a reference to it.
+     */
+    private int currentWindow;
+    private Batch batch;
+    private long nextSequence;
+
+    Scanner(BatchRing ring, MappedFile file, WindowReferences references) {
+      this.ring = ring;
+      this.file = file;
+      this.references = references;
+      this.batch = new Batch(0L);
+    }
+
+    void add(Line line) {
+      if (LinePipeline.this.failure.get() != null) {
+        throw new AbortedException();
+      }
+      long offset = line.getOffset();
+      int length = line.getLength();
+      int window = this.file.window(offset);
+      if ((this.batch.size == BATCH_SIZE) || ((this.batch.size > 0) && (window != this.batch.firstWindow))) {
+        this.publish();
+      }
+      if (window != this.currentWindow) {
+        // every line touching the windows before is in a published batch
+        for (int i = this.currentWindow; i < window; i++) {
+          this.references.release(i);
+        }
+        this.currentWindow = window;
+      }
+      this.batch.add(offset, length, window, this.file.window(offset + Math.max(length, 1) - 1L));
+    }
+
+    void finish() {
+      if (this.batch.size > 0) {
+        this.publish();
+      }
+      for (int i = this.currentWindow; i < this.file.windowCount(); i++) {
+        this.references.release(i);
+      }
+    }
+
+    private void publish() {
+      Batch full = this.batch;
+      for (int window = full.firstWindow; window <= full.lastWindow; window++) {
+        this.references.retain(window);
+      }
+      int idleCount = 0;
+      while (!this.ring.offer(full)) {
+        if (LinePipeline.this.failure.get() != null) {
+          throw new AbortedException();
+        }
+        idleCount = PartitionedDispatcher.idle(idleCount);
+      }
+      this.nextSequence += 1L;
+      this.batch = new Batch(this.nextSequence);
+    }
+
+  }
+
+  /**
+   * The offsets and lengths of consecutive lines.
+   */
+  static final class Batch {
+
+    final long sequence;
+    final long[] offsets;
+    final int[] lengths;
+    int size;
+    int firstWindow;
+    int lastWindow;
+
+    Batch(long sequence) {
+      this.sequence = sequence;
+      this.offsets = new long[BATCH_SIZE];
+      this.lengths = new int[BATCH_SIZE];
+    }
+
+    void add(long offset, int length, int startWindow, int endWindow) {
+      if (this.size == 0) {
+        this.firstWindow = startWindow;
+      }
+      this.lastWindow = Math.max(this.lastWindow, endWindow);
+      this.offsets[this.size] = offset;
+      this.lengths[this.size] = length;
+      this.size += 1;
+    }
+
+  }
+
+  /**
+   * Reference counts of the windows of a mapped file, a window is
+   * unmapped once its count drops to zero.
+   */
+  static final class WindowReferences {
+
+    private final MappedFile file;
+    private final AtomicIntegerArray counts;
+
+    WindowReferences(MappedFile file) {
+      this.file = file;
+      this.counts = new AtomicIntegerArray(file.windowCount());
+      // the reference of the scanning thread
+      for (int i = 0; i < this.counts.length(); i++) {
+        this.counts.set(i, 1);
+      }
+    }
+
+    void retain(int window) {
+      this.counts.incrementAndGet(window);
+    }
+
+    void release(int window) {
+      if (this.counts.decrementAndGet(window) == 0) {
+        try {
+          this.file.release(window);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+
+  }
+
+  /**
+   * A bounded single producer, multiple consumer ring buffer of batches.
+   */
+  static final class BatchRing {
+
+    private final AtomicReferenceArray<Batch> slots;
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * The number of batches taken, consumers claim a batch by
+     * incrementing it.
+     */
+    private final AtomicLong head;
+
+    /**
+     * The number of batches published, only written by the producer.
+     */
+    private final AtomicLong tail;
+
+    /**
+     * Set by the producer after the last batch was published.
+     */
+    volatile boolean done;
+
+    BatchRing(int capacity) {
+      this.slots = new AtomicReferenceArray<>(capacity);
+      this.capacity = capacity;
+      this.mask = capacity - 1;
+      this.head = new AtomicLong();
+      this.tail = new AtomicLong();
+    }
+
+    boolean offer(Batch batch) {
+      long currentTail = this.tail.get();
+      if ((currentTail - this.head.get()) == this.capacity) {
+        return false;
+      }
+      this.slots.lazySet((int) currentTail & this.mask, batch);
+      // publishes the batch
+      this.tail.lazySet(currentTail + 1L);
+      return true;
+    }
+
+    Batch poll() {
+      while (true) {
+        long currentHead = this.head.get();
+        if (currentHead == this.tail.get()) {
+          return null;
+        }
+        Batch batch = this.slots.get((int) currentHead & this.mask);
+        // the slot can only be reused after the head moved past it
+        if (this.head.compareAndSet(currentHead, currentHead + 1L)) {
+          return batch;
+        }
+      }
+    }
+
+    boolean isEmpty() {
+      return this.head.get() == this.tail.get();
+    }
+
+  }
+
+}
@@ -0,0 +1,184 @@
+package com.github.marschall.lineparser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Objects;
+
+/**
+ * Decides based on the undecoded bytes of a line whether the line should
+ * be read.
+ *
+ * <p>Predicates are evaluated before a line is decoded, lines that are
+ * rejected are neither decoded nor is a {@link Line} created for them.
+ * This is useful for character sets that need decoding like UTF-8 when
+ * only few lines are of interest.</p>
+ *
+ * <p>Implementations have to be thread safe if the same parser is used
+ * from several threads.</p>
+ *
+ * <pre><code>
+ * LinePredicate errors = LinePredicate.startsWith(UTF_8, "ERROR", "WARN");
+ * new LineParser().withLinePredicate(errors).forEach(path, UTF_8, line -&gt; {
+ *   // only lines starting with ERROR or WARN
+ * });
+ * </code></pre>
+ *
+ * @see LineParser#withLinePredicate(LinePredicate)
+ */
+@FunctionalInterface
+public interface LinePredicate {
+
+  /**
+   * Evaluates this predicate on the bytes of a line.
+   *
+   * <p>Implementations must not change the position or limit of
+   * {@code buffer} and must only access the bytes of the line.</p>
+   *
+   * @param buffer contains the line, use absolute indices
+   * @param start the index of the first byte of the line in {@code buffer}
+   * @param length the length of the line in bytes without the line end
+   * @return whether the line should be read
+   */
+  boolean test(ByteBuffer buffer, int start, int length);
+
+  /**
+   * Returns a predicate that accepts a line only if both this and the
+   * other predicate accept it. The other predicate is not evaluated if
+   * this predicate rejects the line.
+   *
+   * @param other the other predicate
+   * @return the combined predicate
+   */
+  default LinePredicate and(LinePredicate other) {
+    Objects.requireNonNull(other, "other");
+    return (buffer, start, length) -> this.test(buffer, start, length) && other.test(buffer, start, length);
+  }
+
+  /**
+   * Returns a predicate that accepts a line if either this or the
+   * other predicate accepts it. The other predicate is not evaluated if
+   * this predicate accepts the line.
+   *
+   * @param other the other predicate
+   * @return the combined predicate
+   */
+  default LinePredicate or(LinePredicate other) {
+    Objects.requireNonNull(other, "other");
+    return (buffer, start, length) -> this.test(buffer, start, length) || other.test(buffer, start, length);
+  }
+
+  /**
+   * Returns a predicate that accepts the lines this predicate rejects.
+   *
+   * @return the negated predicate
+   */
+  default LinePredicate negate() {
+    return (buffer, start, length) -> !this.test(buffer, start, length);
+  }
+
+  /**
+   * Returns a predicate that accepts lines starting with any of the given
+   * byte sequences.
+   *
+   * @param prefixes the prefixes in bytes, not empty
+   * @return the predicate
+   */
+  static LinePredicate startsWith(byte[]... prefixes) {
+    Objects.requireNonNull(prefixes, "prefixes");
+    byte[][] copies = new byte[prefixes.length][];
+    for (int i = 0; i < prefixes.length; i++) {
+      copies[i] = Objects.requireNonNull(prefixes[i], "prefix").clone();
+    }
+    return new LinePredicates.PrefixPredicate(copies);
+  }
+
+  /**
+   * Returns a predicate that accepts lines starting with any of the given
+   * strings.
+   *
+   * <p>The strings are encoded with the given character set. For
+   * UTF-16 and UTF-32 big endian is assumed, use the character set with
+   * the explicit byte order of the file otherwise. Note that the first
+   * line of a file starting with a byte order mark starts with the byte
+   * order mark.</p>
+   *
+   * @param cs the character set of the file
+   * @param prefixes the prefixes, not empty
+   * @return the predicate
+   * @throws IllegalArgumentException if a prefix can not be encoded in
+   *  {@code cs}
+   */
+  static LinePredicate startsWith(Charset cs, String... prefixes) {
+    Objects.requireNonNull(cs, "cs");
+    Objects.requireNonNull(prefixes, "prefixes");
+    return new LinePredicates.PrefixPredicate(LinePredicates.encode(cs, prefixes));
+  }
+
+  /**
+   * Returns a predicate that accepts lines where the byte at the given
+   * index is one of the given bytes. Lines that are too short are
+   * rejected.
+   *
+   * <p>For example {@code byteAt(0, (byte) 'E', (byte) 'W')} for an
+   * ASCII compatible character set accepts lines starting with either
+   * {@code 'E'} or {@code 'W'}.</p>
+   *
+   * @param index the index of the byte from the start of the line, not negative
+   * @param values the accepted values of the byte
+   * @return the predicate
+   */
+  static LinePredicate byteAt(int index, byte... values) {
+    if (index < 0) {
+      throw new IllegalArgumentException("index must not be negative but was " + index);
+    }
+    Objects.requireNonNull(values, "values");
+    return new LinePredicates.ByteSetPredicate(index, values);
+  }
+
+  /**
+   * Returns a predicate that accepts lines with a length in bytes in
+   * the given range.
+   *
+   * @param minLength the minimum length in bytes, inclusive
+   * @param maxLength the maximum length in bytes, inclusive
+   * @return the predicate
+   */
+  static LinePredicate lengthBetween(int minLength, int maxLength) {
+    if ((minLength < 0) || (maxLength < minLength)) {
+      throw new IllegalArgumentException("invalid range: " + minLength + " - " + maxLength);
+    }
+    return new LinePredicates.LengthPredicate(minLength, maxLength);
+  }
+
+  /**
+   * Returns a predicate that accepts lines where a field is contained in
+   * a set of keys, a semi-join of the file with the key file.
+   *
+   * <p>Fields are separated by a single delimiter character, quoting is
+   * not supported. The field is hashed over its undecoded bytes and looked
+   * up in the filter, only lines that pass are decoded. For a
+   * {@link KeyFilter#bloom(java.nio.file.Path, Charset, double) Bloom filter}
+   * the callback should verify the field as there are false positives.
+   * Lines with fewer fields are rejected.</p>
+   *
+   * <p>The file has to be in the character set of the key file. Note that
+   * the first field of a file starting with a byte order mark starts
+   * with the byte order mark.</p>
+   *
+   * @param delimiter the character that separates fields
+   * @param column the index of the field, not negative
+   * @param keys the keys to accept
+   * @return the predicate
+   * @throws IllegalArgumentException if the character set of the key
+   *  file is not self synchronizing like UTF-8 or UTF-16, a field could
+   *  then not be found without decoding
+   */
+  static LinePredicate fieldIn(char delimiter, int column, KeyFilter keys) {
+    if (column < 0) {
+      throw new IllegalArgumentException("column must not be negative but was " + column);
+    }
+    Objects.requireNonNull(keys, "keys");
+    return new LinePredicates.FieldInPredicate(delimiter, column, keys);
+  }
+
+}
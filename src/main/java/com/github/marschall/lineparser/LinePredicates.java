@@ -0,0 +1,182 @@
+package com.github.marschall.lineparser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Implementations of the predicates returned by the factory methods in
+ * {@link LinePredicate}.
+ */
+final class LinePredicates {
+
+  private LinePredicates() {
+    // utility class
+  }
+
+  static byte[][] encode(Charset cs, String[] strings) {
+    Charset encodingCharset = LineParser.unambiguous(cs);
+    CharsetEncoder encoder = encodingCharset.newEncoder();
+    byte[][] encoded = new byte[strings.length][];
+    for (int i = 0; i < strings.length; i++) {
+      String s = Objects.requireNonNull(strings[i], "prefix");
+      if (!encoder.canEncode(s)) {
+        throw new IllegalArgumentException("prefix can not be encoded in " + cs.name());
+      }
+      encoded[i] = s.getBytes(encodingCharset);
+    }
+    return encoded;
+  }
+
+  /**
+   * Accepts lines starting with one of several prefixes, the prefixes
+   * are looked up by their first byte.
+   */
+  static final class PrefixPredicate implements LinePredicate {
+
+    /**
+     * For every byte value the prefixes starting with it, {@code null}
+     * if no prefix starts with it.
+     */
+    private final byte[][][] candidates;
+
+    /**
+     * Whether there is an empty prefix which matches every line.
+     */
+    private final boolean matchAll;
+
+    PrefixPredicate(byte[][] prefixes) {
+      if (prefixes.length == 0) {
+        throw new IllegalArgumentException("at least one prefix required");
+      }
+      byte[][][] candidates = new byte[256][][];
+      boolean matchAll = false;
+      for (byte[] prefix : prefixes) {
+        if (prefix.length == 0) {
+          matchAll = true;
+          continue;
+        }
+        int first = Byte.toUnsignedInt(prefix[0]);
+        byte[][] forByte = candidates[first];
+        if (forByte == null) {
+          forByte = new byte[][] {prefix};
+        } else {
+          forByte = Arrays.copyOf(forByte, forByte.length + 1);
+          forByte[forByte.length - 1] = prefix;
+        }
+        candidates[first] = forByte;
+      }
+      this.candidates = candidates;
+      this.matchAll = matchAll;
+    }
+
+    @Override
+    public boolean test(ByteBuffer buffer, int start, int length) {
+      if (this.matchAll) {
+        return true;
+      }
+      if (length == 0) {
+        return false;
+      }
+      byte[][] forByte = this.candidates[Byte.toUnsignedInt(buffer.get(start))];
+      if (forByte == null) {
+        return false;
+      }
+      for (byte[] prefix : forByte) {
+        if (startsWith(prefix, buffer, start, length)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static boolean startsWith(byte[] prefix, ByteBuffer buffer, int start, int length) {
+      if (prefix.length > length) {
+        return false;
+      }
+      // the first byte was already matched by the lookup
+      for (int i = 1; i < prefix.length; i++) {
+        if (buffer.get(start + i) != prefix[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+  }
+
+  /**
+   * Accepts lines where the byte at a fixed index is in a set.
+   */
+  static final class ByteSetPredicate implements LinePredicate {
+
+    private final int index;
+
+    /**
+     * For every byte value whether it is accepted.
+     */
+    private final boolean[] accepted;
+
+    ByteSetPredicate(int index, byte[] values) {
+      this.index = index;
+      this.accepted = new boolean[256];
+      for (byte value : values) {
+        this.accepted[Byte.toUnsignedInt(value)] = true;
+      }
+    }
+
+    @Override
+    public boolean test(ByteBuffer buffer, int start, int length) {
+      return (this.index < length) && this.accepted[Byte.toUnsignedInt(buffer.get(start + this.index))];
+    }
+
+  }
+
+  /**
+   * Accepts lines with a length in a range.
+   */
+  static final class LengthPredicate implements LinePredicate {
+
+    private final int minLength;
+    private final int maxLength;
+
+    LengthPredicate(int minLength, int maxLength) {
+      this.minLength = minLength;
+      this.maxLength = maxLength;
+    }
+
+    @Override
+    public boolean test(ByteBuffer buffer, int start, int length) {
+      return (length >= this.minLength) && (length <= this.maxLength);
+    }
+
+  }
+
+  /**
+   * Accepts lines where the hash of a field is in a {@link KeyFilter}.
+   */
+  static final class FieldInPredicate implements LinePredicate {
+
+    private final LineKeys.FieldFinder finder;
+    private final KeyFilter keys;
+
+    FieldInPredicate(char delimiter, int column, KeyFilter keys) {
+      this.finder = new LineKeys.FieldFinder(keys.getCharset(), delimiter, column);
+      this.keys = keys;
+    }
+
+    @Override
+    public boolean test(ByteBuffer buffer, int start, int length) {
+      long range = this.finder.find(buffer, start, length);
+      if (range == LineKeys.FieldFinder.NOT_FOUND) {
+        return false;
+      }
+      long hash = XxHash64.hash(buffer, LineKeys.FieldFinder.fieldStart(range), LineKeys.FieldFinder.fieldLength(range), 0L);
+      return this.keys.mightContain(hash);
+    }
+
+  }
+
+}
@@ -0,0 +1,303 @@
+package com.github.marschall.lineparser;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the lines of a file to subscribers that signal how many lines
+ * they can accept.
+ *
+ * <p>The interfaces have the same methods and follow the same rules as
+ * the ones in {@code java.util.concurrent.Flow} and
+ * <a href="http://www.reactive-streams.org">Reactive Streams</a>, this
+ * library does not depend on either. They can be adapted with a few lines
+ * of code.</p>
+ *
+ * <pre><code>
+ * Flow.Publisher&lt;String&gt; flowPublisher = flowSubscriber -&gt;
+ *   parser.publisher(path, cs).subscribe(new LinePublisher.Subscriber() {
+ *
+ *     public void onSubscribe(LinePublisher.Subscription subscription) {
+ *       flowSubscriber.onSubscribe(new Flow.Subscription() {
+ *         public void request(long n) { subscription.request(n); }
+ *         public void cancel() { subscription.cancel(); }
+ *       });
+ *     }
+ *
+ *     public void onNext(Line line) {
+ *       flowSubscriber.onNext(line.getContent().toString());
+ *     }
+ *
+ *     public void onError(Throwable throwable) { flowSubscriber.onError(throwable); }
+ *
+ *     public void onComplete() { flowSubscriber.onComplete(); }
+ *   });
+ * </code></pre>
+ *
+ * <p>Lines are read on the thread calling {@link Subscription#request(long)}
+ * and only as many as have been requested. A line is only valid during
+ * {@link Subscriber#onNext(Line)}, content that is used later has to be
+ * copied. At most one mapping of the file is alive per subscriber, it is
+ * unmapped when the last line has been delivered, the subscription is
+ * cancelled or reading fails.</p>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @see LineParser#publisher(Path, Charset)
+ */
+public final class LinePublisher {
+
+  private final LineParser parser;
+  private final Path path;
+  private final Charset cs;
+
+  LinePublisher(LineParser parser, Path path, Charset cs) {
+    this.parser = parser;
+    this.path = path;
+    this.cs = cs;
+  }
+
+  /**
+   * Opens the file and subscribes a subscriber to its lines.
+   *
+   * <p>If the file can not be opened then {@link Subscriber#onError(Throwable)}
+   * is called after {@link Subscriber#onSubscribe(Subscription)}.</p>
+   *
+   * @param subscriber the subscriber, not {@code null}
+   */
+  public void subscribe(Subscriber subscriber) {
+    Objects.requireNonNull(subscriber, "subscriber");
+    LineCursor cursor;
+    try {
+      cursor = this.parser.openCursor(this.path, this.cs);
+    } catch (IOException | RuntimeException e) {
+      subscriber.onSubscribe(EmptySubscription.INSTANCE);
+      subscriber.onError(e);
+      return;
+    }
+    subscriber.onSubscribe(new CursorSubscription(cursor, subscriber));
+  }
+
+  /**
+   * Receives the lines of a file, corresponds to
+   * {@code java.util.concurrent.Flow.Subscriber}.
+   */
+  public interface Subscriber {
+
+    /**
+     * Called once before any other method.
+     *
+     * @param subscription the subscription to request lines from
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Called for every requested line.
+     *
+     * @param line the line, only valid during the call
+     */
+    void onNext(Line line);
+
+    /**
+     * Called if reading the file failed, no further methods are called.
+     *
+     * @param throwable the failure
+     */
+    void onError(Throwable throwable);
+
+    /**
+     * Called after the last line, no further methods are called.
+     */
+    void onComplete();
+
+  }
+
+  /**
+   * Controls the lines delivered to a {@link Subscriber}, corresponds to
+   * {@code java.util.concurrent.Flow.Subscription}.
+   */
+  public interface Subscription {
+
+    /**
+     * Requests additional lines, they are read and delivered before this
+     * method returns unless it is called from
+     * {@link Subscriber#onNext(Line)}.
+     *
+     * @param n the number of additional lines, a non-positive number
+     *  cancels the subscription with an {@link IllegalArgumentException}
+     */
+    void request(long n);
+
+    /**
+     * Stops delivering lines and closes the file, possibly after the
+     * delivery of lines already in progress.
+     */
+    void cancel();
+
+  }
+
+  /**
+   * The subscription when the file could not be opened.
+   */
+  enum EmptySubscription implements Subscription {
+
+    INSTANCE;
+
+    @Override
+    public void request(long n) {
+      // the subscriber already received onError
+    }
+
+    @Override
+    public void cancel() {
+      // nothing to close
+    }
+
+  }
+
+  /**
+   * Delivers lines from a cursor to a subscriber.
+   *
+   * <p>Only one thread at a time reads from the cursor and calls the
+   * subscriber, the thread that increments {@link #workInProgress} from
+   * zero. Requests and cancellations from other threads only increment
+   * it, the delivering thread picks them up before it stops.</p>
+   */
+  static final class CursorSubscription implements Subscription {
+
+    private final LineCursor cursor;
+    private final Subscriber subscriber;
+
+    /**
+     * The number of lines requested but not yet delivered, saturates at
+     * {@link Long#MAX_VALUE}.
+     */
+    private final AtomicLong requested;
+    private final AtomicInteger workInProgress;
+
+    private volatile boolean cancelled;
+    private volatile IllegalArgumentException invalidRequest;
+
+    /**
+     * Whether the cursor has been closed, only accessed by the delivering
+     * thread.
+     */
+    private boolean done;
+
+    CursorSubscription(LineCursor cursor, Subscriber subscriber) {
+      this.cursor = cursor;
+      this.subscriber = subscriber;
+      this.requested = new AtomicLong();
+      this.workInProgress = new AtomicInteger();
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0L) {
+        this.invalidRequest = new IllegalArgumentException("number of lines requested must be positive but was " + n);
+      } else {
+        this.requested.getAndUpdate(current -> {
+          long sum = current + n;
+          return (sum < 0L) ? Long.MAX_VALUE : sum;
+        });
+      }
+      this.drain();
+    }
+
+    @Override
+    public void cancel() {
+      this.cancelled = true;
+      this.drain();
+    }
+
+    private void drain() {
+      if (this.workInProgress.getAndIncrement() != 0) {
+        // the delivering thread will pick up the change
+        return;
+      }
+      int missed = 1;
+      while (true) {
+        if (!this.done) {
+          this.deliver();
+        }
+        missed = this.workInProgress.addAndGet(-missed);
+        if (missed == 0) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Delivers as many lines as requested or the final signal.
+     */
+    private void deliver() {
+      IllegalArgumentException invalid = this.invalidRequest;
+      if (invalid != null) {
+        this.closeCursor();
+        this.subscriber.onError(invalid);
+        return;
+      }
+      long delivered = 0L;
+      long limit = this.requested.get();
+      while (!this.cancelled) {
+        if (delivered == limit) {
+          limit = this.requested.addAndGet(-delivered);
+          delivered = 0L;
+          if (limit == 0L) {
+            return;
+          }
+        }
+        boolean hasNext;
+        try {
+          hasNext = this.cursor.next();
+        } catch (IOException | RuntimeException e) {
+          this.closeCursor();
+          this.subscriber.onError(e);
+          return;
+        }
+        if (!hasNext) {
+          IOException closeFailure = this.closeCursor();
+          if (closeFailure != null) {
+            this.subscriber.onError(closeFailure);
+          } else {
+            this.subscriber.onComplete();
+          }
+          return;
+        }
+        try {
+          this.subscriber.onNext(this.cursor.getLine());
+        } catch (RuntimeException | Error e) {
+          // the subscriber violated the protocol, treat as cancelled
+          this.closeCursor();
+          throw e;
+        }
+        if (limit != Long.MAX_VALUE) {
+          delivered += 1L;
+        }
+      }
+      this.closeCursor();
+    }
+
+    /**
+     * Closes the cursor.
+     *
+     * @return the exception closing failed with, {@code null} if closing
+     *  succeeded
+     */
+    private IOException closeCursor() {
+      this.done = true;
+      try {
+        this.cursor.close();
+        return null;
+      } catch (IOException e) {
+        return e;
+      }
+    }
+
+  }
+
+}
@@ -29,6 +29,41 @@ interface LineReader {
    */
   CharSequence readLine(ByteBuffer buffer, int start, int length) throws IOException;
 
+  /**
+   * Computes the length of the longest prefix of a line that does not
+   * end in the middle of a character.
+   *
+   * @param buffer contains the line
+   * @param start of the line in {@code buffer}
+   * @param maxLength the maximum length of the prefix in bytes
+   * @return the length of the prefix in bytes
+   * @throws IOException if the prefix contains malformed or unmappable input
+   */
+  default int characterBoundary(ByteBuffer buffer, int start, int maxLength) throws IOException {
+    return maxLength;
+  }
+
+  /**
+   * Whether the content returned by {@link #readLine(ByteBuffer, int, int)}
+   * is overwritten by the next call instead of being a view of the line.
+   *
+   * @return whether the content has to be copied in order to read the
+   *  next line before the content is used
+   */
+  default boolean reusesContent() {
+    return false;
+  }
+
+  /**
+   * The largest size in characters of the intermediate buffer that was
+   * used for decoding.
+   *
+   * @return the peak buffer size in characters, {@code 0} if the reader
+   *  does not decode
+   */
+  default int getPeakBufferSize() {
+    return 0;
+  }
 
   /**
    * Creates a new instance for the given character set.
@@ -0,0 +1,587 @@
+package com.github.marschall.lineparser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Sorts files that are larger than the heap by a key of every line, similar
+ * to {@code sort -s}.
+ *
+ * <p>The input file is read in runs of a fixed number of lines. For every
+ * line only a prefix of the key, the offset and the length are stored in
+ * primitive arrays. Lines are only decoded when two keys have the same
+ * prefix, the keys are then compared using the views returned by
+ * {@link Line#getContent()} without creating a {@link String}. Every
+ * sorted run is written to a temporary file as offsets into the input
+ * file. The runs are then merged with a
+ * <a href="https://en.wikipedia.org/wiki/K-way_merge_algorithm#Tournament_Tree">loser tree</a>
+ * and the bytes of the lines are copied from the mapped input file to
+ * the output file.</p>
+ *
+ * <p>Keys are compared character by character like
+ * {@link String#compareTo(String)}. The sort is stable, lines with equal
+ * keys are in the same order as in the input file. Lines in the output
+ * file are terminated by <code>LF</code>.</p>
+ *
+ * <p>Lines are split at <code>CR</code>, <code>LF</code> and
+ * <code>CR LF</code>. For UTF-16 and UTF-32 a character set with an
+ * explicit byte order should be used.</p>
+ *
+ * <p>Instances of this class are immutable, sorting is thread safe if the
+ * key function is thread safe.</p>
+ *
+ * <pre><code>
+ * LineSorter.byField(',', 2).sort(input, UTF_8, output);
+ * </code></pre>
+ */
+public final class LineSorter {
+
+  private static final int DEFAULT_RUN_LENGTH = 1 << 22;
+
+  /**
+   * The number of characters of a key that are stored in the prefix.
+   */
+  private static final int PREFIX_LENGTH = 4;
+
+  /**
+   * Size of a line in a run file: prefix, offset and length.
+   */
+  private static final int RUN_ENTRY_SIZE = 8 + 8 + 4;
+
+  private final Function<? super CharSequence, ? extends CharSequence> key;
+
+  private final int runLength;
+
+  /**
+   * Where to create run files, {@code null} for the default temporary
+   * directory.
+   */
+  private final Path temporaryDirectory;
+
+  /**
+   * Creates a new sorter.
+   *
+   * @param key computes the key of a line from the content of the line,
+   *  should return a {@link CharSequence#subSequence(int, int)} of the
+   *  line in order to not copy
+   */
+  public LineSorter(Function<? super CharSequence, ? extends CharSequence> key) {
+    this(key, DEFAULT_RUN_LENGTH, null);
+  }
+
+  private LineSorter(Function<? super CharSequence, ? extends CharSequence> key, int runLength, Path temporaryDirectory) {
+    Objects.requireNonNull(key, "key");
+    this.key = key;
+    this.runLength = runLength;
+    this.temporaryDirectory = temporaryDirectory;
+  }
+
+  /**
+   * Returns a sorter that sorts by the entire line.
+   *
+   * @return a sorter by line
+   */
+  public static LineSorter byLine() {
+    return new LineSorter(Function.identity());
+  }
+
+  /**
+   * Returns a sorter that sorts by a field of a delimited line, lines with
+   * fewer fields have an empty key. Fields are not unquoted.
+   *
+   * @param delimiter the character that separates fields
+   * @param column the index of the field, starting with {@code 0}
+   * @return a sorter by the given field
+   * @see FieldTokenizer
+   */
+  public static LineSorter byField(char delimiter, int column) {
+    if (column < 0) {
+      throw new IllegalArgumentException("column must not be negative but was " + column);
+    }
+    return new LineSorter(line -> field(line, delimiter, column));
+  }
+
+  private static CharSequence field(CharSequence line, char delimiter, int column) {
+    int length = line.length();
+    int start = 0;
+    int field = 0;
+    for (int i = 0; i < length; i++) {
+      if (line.charAt(i) == delimiter) {
+        if (field == column) {
+          return line.subSequence(start, i);
+        }
+        field += 1;
+        start = i + 1;
+      }
+    }
+    if (field == column) {
+      return line.subSequence(start, length);
+    }
+    return "";
+  }
+
+  /**
+   * Returns a sorter that uses a given number of lines per run.
+   *
+   * <p>Every line in a run needs about 28 bytes of heap, the default is
+   * 4194304 lines. Fewer lines per run need less heap but produce more
+   * runs that have to be merged.</p>
+   *
+   * @param runLength the maximum number of lines in a run, positive
+   * @return a new sorter with the given run length, this sorter is not changed
+   */
+  public LineSorter withRunLength(int runLength) {
+    if (runLength <= 0) {
+      throw new IllegalArgumentException("runLength must be positive but was " + runLength);
+    }
+    return new LineSorter(this.key, runLength, this.temporaryDirectory);
+  }
+
+  /**
+   * Returns a sorter that writes runs to the given directory.
+   *
+   * <p>A run needs 20 bytes per line.</p>
+   *
+   * @param temporaryDirectory the directory for run files
+   * @return a new sorter with the given directory, this sorter is not changed
+   */
+  public LineSorter withTemporaryDirectory(Path temporaryDirectory) {
+    Objects.requireNonNull(temporaryDirectory, "temporaryDirectory");
+    return new LineSorter(this.key, this.runLength, temporaryDirectory);
+  }
+
+  /**
+   * Sorts a file.
+   *
+   * @param input the file to sort
+   * @param cs the character set of the file
+   * @param output the sorted file, is replaced if it exists, must not be
+   *  the input file
+   * @throws IOException if an exception happens when reading or writing
+   * @throws UnmapFailedException if unampping fails, this can happen on non OpenJDK
+   *   JREs or JREs that are newer than expected or security managers
+   */
+  public void sort(Path input, Charset cs, Path output) throws IOException {
+    Objects.requireNonNull(input, "input");
+    Objects.requireNonNull(cs, "cs");
+    Objects.requireNonNull(output, "output");
+    byte[] newline = "\n".getBytes(LineParser.unambiguous(cs));
+    List<Path> runFiles = new ArrayList<>();
+    try (MappedFile file = MappedFile.open(input)) {
+      KeyComparator comparator = new KeyComparator(file, cs, this.key);
+      Run run = new Run(this.runLength);
+      new LineParser().forEach(input, cs, line -> {
+        if (run.size == this.runLength) {
+          this.writeRun(run, comparator, runFiles);
+        }
+        run.add(prefix(this.key.apply(line.getContent())), line.getOffset(), line.getLength());
+      });
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+        LineWriter writer = new LineWriter(file, newline, out);
+        if (runFiles.isEmpty()) {
+          // everything fits into a single run
+          run.sort(comparator);
+          for (int i = 0; i < run.size; i++) {
+            int index = run.order[i];
+            writer.write(run.offsets[index], run.lengths[index]);
+          }
+        } else {
+          if (run.size > 0) {
+            this.writeRun(run, comparator, runFiles);
+          }
+          merge(runFiles, comparator, writer);
+        }
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      for (Path runFile : runFiles) {
+        Files.deleteIfExists(runFile);
+      }
+    }
+  }
+
+  private void writeRun(Run run, KeyComparator comparator, List<Path> runFiles) {
+    try {
+      run.sort(comparator);
+      Path runFile = this.temporaryDirectory != null
+              ? Files.createTempFile(this.temporaryDirectory, "LineSorter", ".run")
+              : Files.createTempFile("LineSorter", ".run");
+      runFiles.add(runFile);
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(runFile)))) {
+        for (int i = 0; i < run.size; i++) {
+          int index = run.order[i];
+          out.writeLong(run.prefixes[index]);
+          out.writeLong(run.offsets[index]);
+          out.writeInt(run.lengths[index]);
+        }
+      }
+      run.clear();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void merge(List<Path> runFiles, KeyComparator comparator, LineWriter writer) throws IOException {
+    int runCount = runFiles.size();
+    DataInputStream[] inputs = new DataInputStream[runCount];
+    try {
+      long[] remaining = new long[runCount];
+      for (int i = 0; i < runCount; i++) {
+        Path runFile = runFiles.get(i);
+        remaining[i] = Files.size(runFile) / RUN_ENTRY_SIZE;
+        // every stream has a buffer, keep them small as there may be many
+        InputStream stream = Files.newInputStream(runFile);
+        inputs[i] = new DataInputStream(new BufferedInputStream(stream, RUN_ENTRY_SIZE * 1024));
+      }
+      LoserTree tree = new LoserTree(inputs, remaining, comparator);
+      int winner = tree.winner();
+      while (!tree.isExhausted(winner)) {
+        writer.write(tree.offsets[winner], tree.lengths[winner]);
+        tree.advance(winner);
+        winner = tree.winner();
+      }
+    } finally {
+      for (DataInputStream input : inputs) {
+        if (input != null) {
+          input.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Packs the first characters of a key into a {@code long} so that
+   * unsigned comparison of prefixes is consistent with comparing the
+   * keys. Missing characters are {@code 0}, therefore equal prefixes
+   * require comparing the keys.
+   */
+  static long prefix(CharSequence key) {
+    int length = Math.min(key.length(), PREFIX_LENGTH);
+    long prefix = 0L;
+    for (int i = 0; i < PREFIX_LENGTH; i++) {
+      prefix <<= Character.SIZE;
+      if (i < length) {
+        prefix |= key.charAt(i);
+      }
+    }
+    return prefix;
+  }
+
+  static int compare(CharSequence first, CharSequence second) {
+    int length = Math.min(first.length(), second.length());
+    for (int i = 0; i < length; i++) {
+      int result = Character.compare(first.charAt(i), second.charAt(i));
+      if (result != 0) {
+        return result;
+      }
+    }
+    return Integer.compare(first.length(), second.length());
+  }
+
+  /**
+   * Compares lines by key, lines are decoded from the mapped file only
+   * if their key prefixes are equal.
+   */
+  static final class KeyComparator {
+
+    private final MappedFile file;
+    private final Function<? super CharSequence, ? extends CharSequence> key;
+
+    // two readers since readers reuse their buffer
+    private final LineReader firstReader;
+    private final LineReader secondReader;
+
+    KeyComparator(MappedFile file, Charset cs, Function<? super CharSequence, ? extends CharSequence> key) {
+      this.file = file;
+      this.key = key;
+      this.firstReader = LineReader.forCharset(cs);
+      this.secondReader = LineReader.forCharset(cs);
+    }
+
+    int compare(long firstPrefix, long firstOffset, int firstLength,
+            long secondPrefix, long secondOffset, int secondLength) {
+      int result = Long.compareUnsigned(firstPrefix, secondPrefix);
+      if (result != 0) {
+        return result;
+      }
+      CharSequence first = this.key.apply(this.read(this.firstReader, firstOffset, firstLength));
+      CharSequence second = this.key.apply(this.read(this.secondReader, secondOffset, secondLength));
+      return LineSorter.compare(first, second);
+    }
+
+    private CharSequence read(LineReader reader, long offset, int length) {
+      try {
+        return reader.readLine(this.file.buffer(offset, length), this.file.index(offset, length), length);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+  }
+
+  /**
+   * The lines of a run in primitive arrays, sorted through an index.
+   */
+  static final class Run {
+
+    private final int maxCapacity;
+    long[] prefixes;
+    long[] offsets;
+    int[] lengths;
+    int[] order;
+    private int[] scratch;
+    int size;
+
+    Run(int maxCapacity) {
+      this.maxCapacity = maxCapacity;
+      // don't allocate the full run length for small files
+      this.allocate(Math.min(maxCapacity, 1024));
+    }
+
+    private void allocate(int capacity) {
+      this.prefixes = new long[capacity];
+      this.offsets = new long[capacity];
+      this.lengths = new int[capacity];
+      this.order = new int[capacity];
+      this.scratch = new int[capacity];
+    }
+
+    void add(long prefix, long offset, int length) {
+      if (this.size == this.prefixes.length) {
+        this.grow();
+      }
+      this.prefixes[this.size] = prefix;
+      this.offsets[this.size] = offset;
+      this.lengths[this.size] = length;
+      this.size += 1;
+    }
+
+    private void grow() {
+      long[] oldPrefixes = this.prefixes;
+      long[] oldOffsets = this.offsets;
+      int[] oldLengths = this.lengths;
+      this.allocate((int) Math.min(this.maxCapacity, this.size * 2L));
+      System.arraycopy(oldPrefixes, 0, this.prefixes, 0, this.size);
+      System.arraycopy(oldOffsets, 0, this.offsets, 0, this.size);
+      System.arraycopy(oldLengths, 0, this.lengths, 0, this.size);
+    }
+
+    void clear() {
+      this.size = 0;
+    }
+
+    /**
+     * Stable merge sort of the index.
+     */
+    void sort(KeyComparator comparator) {
+      for (int i = 0; i < this.size; i++) {
+        this.order[i] = i;
+      }
+      this.sort(comparator, this.order, this.scratch, 0, this.size);
+    }
+
+    private void sort(KeyComparator comparator, int[] indices, int[] buffer, int from, int to) {
+      int length = to - from;
+      if (length < 2) {
+        return;
+      }
+      if (length <= 16) {
+        // insertion sort for small ranges
+        for (int i = from + 1; i < to; i++) {
+          int index = indices[i];
+          int j = i - 1;
+          while ((j >= from) && (this.compare(comparator, indices[j], index) > 0)) {
+            indices[j + 1] = indices[j];
+            j -= 1;
+          }
+          indices[j + 1] = index;
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      this.sort(comparator, indices, buffer, from, middle);
+      this.sort(comparator, indices, buffer, middle, to);
+      if (this.compare(comparator, indices[middle - 1], indices[middle]) <= 0) {
+        // already in order
+        return;
+      }
+      System.arraycopy(indices, from, buffer, from, length);
+      int left = from;
+      int right = middle;
+      for (int i = from; i < to; i++) {
+        if ((right >= to) || ((left < middle) && (this.compare(comparator, buffer[left], buffer[right]) <= 0))) {
+          indices[i] = buffer[left++];
+        } else {
+          indices[i] = buffer[right++];
+        }
+      }
+    }
+
+    private int compare(KeyComparator comparator, int first, int second) {
+      return comparator.compare(this.prefixes[first], this.offsets[first], this.lengths[first],
+              this.prefixes[second], this.offsets[second], this.lengths[second]);
+    }
+
+  }
+
+  /**
+   * Merges the heads of several sorted runs. Every inner node stores the
+   * run that lost the comparison at the node, only the path from the
+   * leaf of the winner to the root has to be replayed after advancing
+   * the winner.
+   */
+  static final class LoserTree {
+
+    private final DataInputStream[] inputs;
+
+    /**
+     * The number of lines not yet read from every run.
+     */
+    private final long[] remaining;
+    private final KeyComparator comparator;
+
+    // the current head of every run
+    final long[] prefixes;
+    final long[] offsets;
+    final int[] lengths;
+    private final boolean[] exhausted;
+
+    /**
+     * The loser at every inner node, the winner at index {@code 0}.
+     */
+    private final int[] tree;
+
+    LoserTree(DataInputStream[] inputs, long[] remaining, KeyComparator comparator) throws IOException {
+      this.inputs = inputs;
+      this.remaining = remaining;
+      this.comparator = comparator;
+      int runCount = inputs.length;
+      this.prefixes = new long[runCount];
+      this.offsets = new long[runCount];
+      this.lengths = new int[runCount];
+      this.exhausted = new boolean[runCount];
+      this.tree = new int[runCount];
+      for (int i = 0; i < runCount; i++) {
+        this.read(i);
+      }
+      this.build();
+    }
+
+    private void build() {
+      int runCount = this.inputs.length;
+      // leaves at runCount to 2 * runCount - 1
+      int[] winners = new int[2 * runCount];
+      for (int i = 0; i < runCount; i++) {
+        winners[runCount + i] = i;
+      }
+      for (int node = runCount - 1; node > 0; node--) {
+        int left = winners[2 * node];
+        int right = winners[(2 * node) + 1];
+        if (this.isLess(right, left)) {
+          winners[node] = right;
+          this.tree[node] = left;
+        } else {
+          winners[node] = left;
+          this.tree[node] = right;
+        }
+      }
+      this.tree[0] = winners[1];
+    }
+
+    int winner() {
+      return this.tree[0];
+    }
+
+    boolean isExhausted(int run) {
+      return this.exhausted[run];
+    }
+
+    void advance(int run) throws IOException {
+      this.read(run);
+      int winner = run;
+      for (int node = (run + this.inputs.length) >>> 1; node > 0; node >>>= 1) {
+        int loser = this.tree[node];
+        if (this.isLess(loser, winner)) {
+          this.tree[node] = winner;
+          winner = loser;
+        }
+      }
+      this.tree[0] = winner;
+    }
+
+    private void read(int run) throws IOException {
+      if (this.remaining[run] == 0L) {
+        this.exhausted[run] = true;
+        return;
+      }
+      this.remaining[run] -= 1L;
+      DataInputStream input = this.inputs[run];
+      this.prefixes[run] = input.readLong();
+      this.offsets[run] = input.readLong();
+      this.lengths[run] = input.readInt();
+    }
+
+    /**
+     * Whether the head of the first run comes before the head of the
+     * second run, ties are broken by the run index for stability.
+     */
+    private boolean isLess(int first, int second) {
+      if (this.exhausted[first]) {
+        return false;
+      }
+      if (this.exhausted[second]) {
+        return true;
+      }
+      int result = this.comparator.compare(this.prefixes[first], this.offsets[first], this.lengths[first],
+              this.prefixes[second], this.offsets[second], this.lengths[second]);
+      if (result != 0) {
+        return result < 0;
+      }
+      return first < second;
+    }
+
+  }
+
+  /**
+   * Copies lines from the mapped input file to the output.
+   */
+  static final class LineWriter {
+
+    private final MappedFile file;
+    private final byte[] newline;
+    private final OutputStream out;
+    private byte[] buffer;
+
+    LineWriter(MappedFile file, byte[] newline, OutputStream out) {
+      this.file = file;
+      this.newline = newline;
+      this.out = out;
+      this.buffer = new byte[8192];
+    }
+
+    void write(long offset, int length) throws IOException {
+      if (length > this.buffer.length) {
+        this.buffer = new byte[Math.max(length, this.buffer.length * 2)];
+      }
+      this.file.get(offset, this.buffer, length);
+      this.out.write(this.buffer, 0, length);
+      this.out.write(this.newline);
+    }
+
+  }
+
+}
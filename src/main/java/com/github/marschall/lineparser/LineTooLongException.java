@@ -0,0 +1,30 @@
+package com.github.marschall.lineparser;
+
+import java.nio.file.FileSystemException;
+
+/**
+ * Thrown when a line is longer than the maximum line length.
+ *
+ * @see OversizedLinePolicy#FAIL
+ */
+public final class LineTooLongException extends FileSystemException {
+
+  private static final long serialVersionUID = 4126021380651935270L;
+
+  private final long lineOffset;
+
+  LineTooLongException(String file, long lineOffset, String reason) {
+    super(file, null, reason + " at offset " + lineOffset);
+    this.lineOffset = lineOffset;
+  }
+
+  /**
+   * The byte offset of the first character of the line that is too long.
+   *
+   * @return the byte offset of the line
+   */
+  public long getLineOffset() {
+    return this.lineOffset;
+  }
+
+}
@@ -0,0 +1,238 @@
+package com.github.marschall.lineparser;
+
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+
+import com.github.marschall.lineparser.LineParser.FileInfo;
+
+/**
+ * A file that is completely mapped for random access to lines by their
+ * offset, for example after a parse.
+ *
+ * <p>The file is mapped in windows of 1GB so that a window can be
+ * looked up from an offset with a shift. Ranges that span two windows
+ * are copied. Windows that are no longer needed can be released before
+ * the file is closed.</p>
+ *
+ * <p>Decoding changes the position and limit of a buffer, threads that
+ * decode concurrently therefore need their own views of the windows, see
+ * {@link #buffer(long, int, ByteBuffer[])}.</p>
+ */
+final class MappedFile implements Closeable {
+
+  private static final int WINDOW_SHIFT = 30;
+
+  private final FileInfo fileInfo;
+
+  private final int windowShift;
+  private final int windowSize;
+
+  /**
+   * {@code null} once closed.
+   */
+  private MappedByteBuffer[] windows;
+
+  private MappedFile(FileInfo fileInfo, int windowShift, MappedByteBuffer[] windows) {
+    this.fileInfo = fileInfo;
+    this.windowShift = windowShift;
+    this.windowSize = 1 << windowShift;
+    this.windows = windows;
+  }
+
+  static MappedFile open(Path path) throws IOException {
+    return open(path, WINDOW_SHIFT);
+  }
+
+  static MappedFile open(Path path, int windowShift) throws IOException {
+    try (FileInputStream stream = new FileInputStream(path.toFile());
+         FileChannel channel = stream.getChannel()) {
+      long fileSize = channel.size();
+      FileInfo fileInfo = new FileInfo(path, channel, fileSize, null, null, null);
+      int windowSize = 1 << windowShift;
+      int windowCount = (int) ((fileSize + (windowSize - 1)) >>> windowShift);
+      MappedByteBuffer[] windows = new MappedByteBuffer[windowCount];
+      try {
+        for (int i = 0; i < windowCount; i++) {
+          long windowStart = (long) i << windowShift;
+          windows[i] = channel.map(MapMode.READ_ONLY, windowStart, Math.min(windowSize, fileSize - windowStart));
+        }
+      } catch (IOException | RuntimeException e) {
+        unmap(windows, fileInfo);
+        throw e;
+      }
+      // mappings stay valid after the channel is closed
+      return new MappedFile(fileInfo, windowShift, windows);
+    }
+  }
+
+  boolean isClosed() {
+    return this.windows == null;
+  }
+
+  /**
+   * Returns a buffer containing a range, either the window containing it
+   * or a copy if the range spans windows.
+   *
+   * @see #index(long, int)
+   */
+  ByteBuffer buffer(long offset, int length) {
+    if (this.isInWindow(offset, length)) {
+      return this.windows[this.window(offset)];
+    }
+    ByteBuffer copy = ByteBuffer.allocate(length);
+    for (int i = 0; i < length; i++) {
+      copy.put(i, this.get(offset + i));
+    }
+    return copy;
+  }
+
+  /**
+   * Returns a buffer containing a range like {@link #buffer(long, int)}
+   * but instead of the window a view of it that is only used by the
+   * calling thread.
+   *
+   * @param views the views of the calling thread, created on demand,
+   *  see {@link #newViews()}
+   */
+  ByteBuffer buffer(long offset, int length, ByteBuffer[] views) {
+    if (this.isInWindow(offset, length)) {
+      int window = this.window(offset);
+      ByteBuffer view = views[window];
+      if (view == null) {
+        view = this.windows[window].duplicate();
+        views[window] = view;
+      }
+      return view;
+    }
+    return this.buffer(offset, length);
+  }
+
+  /**
+   * Creates the array for the views of the windows of a thread.
+   */
+  ByteBuffer[] newViews() {
+    return new ByteBuffer[this.windows.length];
+  }
+
+  /**
+   * Returns the index of the start of a range in the buffer returned by
+   * {@link #buffer(long, int)}.
+   */
+  int index(long offset, int length) {
+    if (this.isInWindow(offset, length)) {
+      return this.windowIndex(offset);
+    }
+    return 0;
+  }
+
+  /**
+   * Copies a range into an array.
+   */
+  void get(long offset, byte[] destination, int length) {
+    if (this.isInWindow(offset, length)) {
+      ByteBuffer window = this.windows[this.window(offset)].duplicate();
+      window.position(this.windowIndex(offset));
+      window.get(destination, 0, length);
+    } else {
+      for (int i = 0; i < length; i++) {
+        destination[i] = this.get(offset + i);
+      }
+    }
+  }
+
+  byte get(long offset) {
+    return this.windows[this.window(offset)].get(this.windowIndex(offset));
+  }
+
+  /**
+   * Compares two ranges of the file.
+   */
+  boolean regionEquals(long first, long second, int length) {
+    if (first == second) {
+      return true;
+    }
+    if (this.isInWindow(first, length) && this.isInWindow(second, length)) {
+      // fast path, neither range spans windows
+      ByteBuffer firstWindow = this.windows[this.window(first)];
+      ByteBuffer secondWindow = this.windows[this.window(second)];
+      int firstIndex = this.windowIndex(first);
+      int secondIndex = this.windowIndex(second);
+      int i = 0;
+      for (; i <= (length - 8); i += 8) {
+        if (firstWindow.getLong(firstIndex + i) != secondWindow.getLong(secondIndex + i)) {
+          return false;
+        }
+      }
+      for (; i < length; i++) {
+        if (firstWindow.get(firstIndex + i) != secondWindow.get(secondIndex + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    for (int i = 0; i < length; i++) {
+      if (this.get(first + i) != this.get(second + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isInWindow(long offset, int length) {
+    return (this.windowIndex(offset) + length) <= this.windowSize;
+  }
+
+  int windowCount() {
+    return this.windows.length;
+  }
+
+  /**
+   * Returns the index of the window containing an offset.
+   */
+  int window(long offset) {
+    return (int) (offset >>> this.windowShift);
+  }
+
+  private int windowIndex(long offset) {
+    return (int) offset & (this.windowSize - 1);
+  }
+
+  /**
+   * Unmaps a single window, afterwards no range in the window may be
+   * accessed.
+   *
+   * @throws UnmapFailedException if unampping fails
+   */
+  void release(int window) throws IOException {
+    MappedByteBuffer[] current = this.windows;
+    if ((current != null) && (current[window] != null)) {
+      MappedByteBuffer toUnmap = current[window];
+      current[window] = null;
+      Unmapper.unmap(toUnmap, this.fileInfo);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    MappedByteBuffer[] toUnmap = this.windows;
+    if (toUnmap != null) {
+      this.windows = null;
+      unmap(toUnmap, this.fileInfo);
+    }
+  }
+
+  private static void unmap(MappedByteBuffer[] windows, FileInfo fileInfo) throws IOException {
+    for (MappedByteBuffer window : windows) {
+      if (window != null) {
+        Unmapper.unmap(window, fileInfo);
+      }
+    }
+  }
+
+}
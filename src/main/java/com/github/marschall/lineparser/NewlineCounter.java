@@ -0,0 +1,142 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.LineParser.continuesWithArray;
+import static com.github.marschall.lineparser.LineParser.startsWithArray;
+
+import java.nio.MappedByteBuffer;
+
+/**
+ * Counts the line ends in consecutive mappings without looking at the
+ * lines.
+ *
+ * <p>A <code>CR LF</code> is a single line end. When <code>CR</code> and
+ * <code>LF</code> are a single byte eight bytes are compared at a time
+ * and the matches are counted with {@link Long#bitCount(long)}, see
+ * <a href="https://graphics.stanford.edu/~seander/bithacks.html#ZeroInWord">Determine if a word has a zero byte</a>.
+ * Otherwise the line ends are found the same way as when parsing.</p>
+ */
+final class NewlineCounter {
+
+  private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+  private final byte[] cr;
+  private final byte[] lf;
+  private final boolean singleByte;
+  private long count;
+
+  NewlineCounter(byte[] cr, byte[] lf) {
+    this.cr = cr;
+    this.lf = lf;
+    this.singleByte = (cr.length == 1) && (lf.length == 1);
+  }
+
+  /**
+   * The number of line ends counted so far.
+   */
+  long getCount() {
+    return this.count;
+  }
+
+  /**
+   * Counts the line ends in a mapping.
+   *
+   * @param buffer the mapping
+   * @param mapSize the size of the mapping
+   * @param lastMapping whether there is no mapping after this one
+   * @return the number of bytes counted, the next mapping has to start
+   *  there
+   */
+  int count(MappedByteBuffer buffer, int mapSize, boolean lastMapping) {
+    if (this.singleByte) {
+      int end = mapSize;
+      if (!lastMapping && (end > 0) && (buffer.get(end - 1) == this.cr[0])) {
+        // the CR may be followed by a LF in the next mapping
+        end -= 1;
+      }
+      this.count += countSingleByte(buffer, 0, end, this.cr[0], this.lf[0]);
+      return end;
+    }
+    return this.countMultiByte(buffer, mapSize, lastMapping);
+  }
+
+  /**
+   * Counts eight bytes at a time, {@code end} must not be between a
+   * <code>CR</code> and a <code>LF</code>.
+   */
+  static long countSingleByte(MappedByteBuffer buffer, int from, int end, byte cr, byte lf) {
+    long crPattern = (cr & 0xFFL) * 0x0101010101010101L;
+    long lfPattern = (lf & 0xFFL) * 0x0101010101010101L;
+    long count = 0L;
+    // whether the byte before position is a CR
+    boolean afterCr = false;
+    int position = from;
+    // MappedByteBuffer is big endian so the first byte is the most significant
+    while ((position + 8) <= end) {
+      long word = buffer.getLong(position);
+      long crs = matches(word ^ crPattern);
+      long lfs = matches(word ^ lfPattern);
+      // the byte after a byte is the next less significant one
+      long crLfs = crs & (lfs << 8);
+      count += (Long.bitCount(crs) + Long.bitCount(lfs)) - Long.bitCount(crLfs);
+      if (afterCr && (lfs < 0L)) {
+        // CR LF across two words
+        count -= 1L;
+      }
+      afterCr = (crs & 0x80L) != 0L;
+      position += 8;
+    }
+    while (position < end) {
+      byte value = buffer.get(position);
+      if (value == lf) {
+        if (!afterCr) {
+          count += 1L;
+        }
+        afterCr = false;
+      } else if (value == cr) {
+        count += 1L;
+        afterCr = true;
+      } else {
+        afterCr = false;
+      }
+      position += 1;
+    }
+    return count;
+  }
+
+  /**
+   * Sets the high bit of every byte that is zero, exact, no false
+   * positives from borrows.
+   */
+  private static long matches(long word) {
+    return ~((((word & LOW_SEVEN_BITS) + LOW_SEVEN_BITS) | word) | LOW_SEVEN_BITS);
+  }
+
+  private int countMultiByte(MappedByteBuffer buffer, int mapSize, boolean lastMapping) {
+    byte[] crBytes = this.cr;
+    byte[] lfBytes = this.lf;
+    int crLength = crBytes.length;
+    int lfLength = lfBytes.length;
+    // a line end starting before the limit is completely in the mapping
+    int limit = lastMapping ? mapSize : (mapSize - (crLength + lfLength));
+    long lineEnds = 0L;
+    int mapIndex = 0;
+    while (mapIndex < limit) {
+      byte value = buffer.get(mapIndex);
+      if (startsWithArray(value, crBytes, crLength, mapIndex, mapSize, buffer)) {
+        lineEnds += 1L;
+        mapIndex += crLength;
+        if (continuesWithArray(lfBytes, lfLength, 0, mapIndex, mapSize, buffer)) {
+          mapIndex += lfLength;
+        }
+      } else if (startsWithArray(value, lfBytes, lfLength, mapIndex, mapSize, buffer)) {
+        lineEnds += 1L;
+        mapIndex += lfLength;
+      } else {
+        mapIndex += 1;
+      }
+    }
+    this.count += lineEnds;
+    return lastMapping ? mapSize : mapIndex;
+  }
+
+}
@@ -0,0 +1,615 @@
+package com.github.marschall.lineparser;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Parses numbers directly from a {@link CharSequence} or bytes without
+ * allocating.
+ *
+ * <p>Instead of {@code Long.parseLong(field.toString())}, which allocates
+ * a {@link String} for every number, the digits are read directly from
+ * the {@link CharSequence}s returned by {@link Line#getContent()} or
+ * {@link FieldTokenizer#getField(int)}, or from the bytes of an ASCII
+ * compatible encoding.</p>
+ *
+ * <p>Errors are not reported with exceptions, every parse method returns
+ * whether the input was valid. The result is available through
+ * {@link #getInt()}, {@link #getLong()} or {@link #getDouble()}, in case
+ * of an error {@link #getErrorIndex()} returns the index of the first
+ * invalid character.</p>
+ *
+ * <p>The accepted syntax is an optional sign followed by decimal digits.
+ * Decimals and doubles may additionally have a fraction separated by
+ * {@code '.'}, doubles may additionally have an exponent. Whitespace,
+ * {@code NaN}, {@code Infinity} and hexadecimal notation are not
+ * accepted.</p>
+ *
+ * <p>Doubles are parsed with the algorithm of Clinger if possible and
+ * with the algorithm of Eisel and Lemire otherwise, see
+ * <a href="https://arxiv.org/abs/2101.11408">Number Parsing at a Gigabyte
+ * per Second</a>. Only numbers with more than 19 significant digits
+ * allocate in order to fall back to {@link Double#parseDouble(String)}.
+ * The result is always the same as with {@link Double#parseDouble(String)}.</p>
+ *
+ * <p>Instances of this class are not thread safe.</p>
+ *
+ * <pre><code>
+ * NumberParser numbers = new NumberParser();
+ * parser.forEach(path, cs, line -&gt; {
+ *   CharSequence content = line.getContent();
+ *   if (numbers.parseLong(content, 0, content.length())) {
+ *     long value = numbers.getLong();
+ *   }
+ * });
+ * </code></pre>
+ */
+public final class NumberParser {
+
+  /**
+   * Smallest decimal exponent for which the Eisel-Lemire algorithm is
+   * used, smaller exponents always result in zero.
+   */
+  private static final int SMALLEST_POWER_OF_TEN = -342;
+
+  /**
+   * Largest decimal exponent for which the Eisel-Lemire algorithm is
+   * used, larger exponents always result in infinity.
+   */
+  private static final int LARGEST_POWER_OF_TEN = 308;
+
+  /**
+   * Powers of ten that are exact as a double.
+   */
+  private static final double[] EXACT_POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+    1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+    1e21, 1e22
+  };
+
+  private static final long[] POWERS_OF_TEN = {
+    1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L,
+    100_000_000L, 1_000_000_000L, 10_000_000_000L, 100_000_000_000L,
+    1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+    1_000_000_000_000_000L, 10_000_000_000_000_000L, 100_000_000_000_000_000L,
+    1_000_000_000_000_000_000L
+  };
+
+  /**
+   * The most significant 128 bits of every power of five from
+   * {@link #SMALLEST_POWER_OF_TEN} to {@link #LARGEST_POWER_OF_TEN},
+   * high and low 64 bits interleaved.
+   */
+  private static final long[] POWERS_OF_FIVE = computePowersOfFive();
+
+  private static final int MAX_SIGNIFICANT_DIGITS = 19;
+
+  private static final int NO_ERROR = -1;
+
+  private final ByteView byteView;
+
+  private long longValue;
+  private double doubleValue;
+  private int errorIndex;
+
+  /**
+   * Creates a new parser.
+   */
+  public NumberParser() {
+    this.byteView = new ByteView();
+    this.errorIndex = NO_ERROR;
+  }
+
+  private static long[] computePowersOfFive() {
+    int count = (LARGEST_POWER_OF_TEN - SMALLEST_POWER_OF_TEN) + 1;
+    long[] table = new long[count * 2];
+    BigInteger twoTo128 = BigInteger.ONE.shiftLeft(128);
+    for (int q = SMALLEST_POWER_OF_TEN; q <= LARGEST_POWER_OF_TEN; q++) {
+      BigInteger value;
+      if (q < 0) {
+        // a rounded up approximation of 1 / 5^-q
+        BigInteger powerOfFive = BigInteger.valueOf(5L).pow(-q);
+        int z = powerOfFive.bitLength();
+        if (q >= -27) {
+          value = BigInteger.ONE.shiftLeft(z + 127).divide(powerOfFive).add(BigInteger.ONE);
+        } else {
+          value = BigInteger.ONE.shiftLeft((2 * z) + 128).divide(powerOfFive).add(BigInteger.ONE);
+          while (value.compareTo(twoTo128) >= 0) {
+            value = value.shiftRight(1);
+          }
+        }
+      } else {
+        // 5^q truncated to the most significant 128 bits
+        value = BigInteger.valueOf(5L).pow(q);
+        int shift = 128 - value.bitLength();
+        if (shift >= 0) {
+          value = value.shiftLeft(shift);
+        } else {
+          value = value.shiftRight(-shift);
+        }
+      }
+      int index = (q - SMALLEST_POWER_OF_TEN) * 2;
+      table[index] = value.shiftRight(64).longValue();
+      table[index + 1] = value.longValue();
+    }
+    return table;
+  }
+
+  /**
+   * Returns the result of the last successful {@link #parseInt(CharSequence, int, int)}.
+   *
+   * @return the parsed int
+   */
+  public int getInt() {
+    return (int) this.longValue;
+  }
+
+  /**
+   * Returns the result of the last successful {@link #parseLong(CharSequence, int, int)}
+   * or {@link #parseDecimal(CharSequence, int, int, int)}.
+   *
+   * @return the parsed long, for a decimal the unscaled value
+   */
+  public long getLong() {
+    return this.longValue;
+  }
+
+  /**
+   * Returns the result of the last successful {@link #parseDouble(CharSequence, int, int)}.
+   *
+   * @return the parsed double
+   */
+  public double getDouble() {
+    return this.doubleValue;
+  }
+
+  /**
+   * Returns the index of the first character that was invalid in the
+   * last parse.
+   *
+   * <p>If the input is too short, eg. empty or only a sign, this is
+   * the end index. If the value overflows this is the index of the
+   * digit that caused the overflow.</p>
+   *
+   * @return the index in the input of the first invalid character,
+   *  {@code -1} if the last parse was successful
+   */
+  public int getErrorIndex() {
+    return this.errorIndex;
+  }
+
+  /**
+   * Parses an int.
+   *
+   * @param s the input
+   * @param start the index of the first character to parse, inclusive
+   * @param end the index of the last character to parse, exclusive
+   * @return whether the input is a valid int
+   */
+  public boolean parseInt(CharSequence s, int start, int end) {
+    return this.parseInteger(s, start, end, Integer.MIN_VALUE);
+  }
+
+  /**
+   * Parses an int from the bytes of an ASCII compatible encoding.
+   *
+   * @param buffer the input, absolute indices are used and the
+   *  position is not changed
+   * @param start the index of the first byte to parse, inclusive
+   * @param end the index of the last byte to parse, exclusive
+   * @return whether the input is a valid int
+   */
+  public boolean parseInt(ByteBuffer buffer, int start, int end) {
+    return this.parseInt(this.byteView.view(buffer), start, end);
+  }
+
+  /**
+   * Parses a long.
+   *
+   * @param s the input
+   * @param start the index of the first character to parse, inclusive
+   * @param end the index of the last character to parse, exclusive
+   * @return whether the input is a valid long
+   */
+  public boolean parseLong(CharSequence s, int start, int end) {
+    return this.parseInteger(s, start, end, Long.MIN_VALUE);
+  }
+
+  /**
+   * Parses a long from the bytes of an ASCII compatible encoding.
+   *
+   * @param buffer the input, absolute indices are used and the
+   *  position is not changed
+   * @param start the index of the first byte to parse, inclusive
+   * @param end the index of the last byte to parse, exclusive
+   * @return whether the input is a valid long
+   */
+  public boolean parseLong(ByteBuffer buffer, int start, int end) {
+    return this.parseLong(this.byteView.view(buffer), start, end);
+  }
+
+  /**
+   * Parses a fixed point decimal into its unscaled value.
+   *
+   * <p>For example {@code "12.3"} with a scale of {@code 2} results in
+   * {@code 1230}. Inputs with more fraction digits than the scale are
+   * invalid as they can not be represented without rounding.</p>
+   *
+   * @param s the input
+   * @param start the index of the first character to parse, inclusive
+   * @param end the index of the last character to parse, exclusive
+   * @param scale the number of fraction digits of the result,
+   *  from 0 to 18
+   * @return whether the input is a valid decimal whose unscaled value
+   *  fits into a long
+   */
+  public boolean parseDecimal(CharSequence s, int start, int end, int scale) {
+    if ((scale < 0) || (scale >= POWERS_OF_TEN.length)) {
+      throw new IllegalArgumentException("scale must be from 0 to " + (POWERS_OF_TEN.length - 1) + " but was: " + scale);
+    }
+    Objects.requireNonNull(s, "s");
+    int index = start;
+    boolean negative = false;
+    if (index < end) {
+      char first = s.charAt(index);
+      if ((first == '-') || (first == '+')) {
+        negative = first == '-';
+        index += 1;
+      }
+    }
+    // accumulate negatively in order to be able to represent Long.MIN_VALUE
+    long result = 0L;
+    long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+    int digits = 0;
+    int fractionDigits = -1;
+    for (; index < end; index++) {
+      char c = s.charAt(index);
+      if ((c == '.') && (fractionDigits == -1)) {
+        fractionDigits = 0;
+        continue;
+      }
+      int digit = c - '0';
+      if ((digit < 0) || (digit > 9) || (fractionDigits == scale)) {
+        return this.error(index);
+      }
+      if ((result < (Long.MIN_VALUE / 10)) || ((result * 10) < (limit + digit))) {
+        return this.error(index);
+      }
+      result = (result * 10) - digit;
+      digits += 1;
+      if (fractionDigits != -1) {
+        fractionDigits += 1;
+      }
+    }
+    if (digits == 0) {
+      return this.error(end);
+    }
+    if (fractionDigits < scale) {
+      long factor = POWERS_OF_TEN[scale - Math.max(fractionDigits, 0)];
+      if (result < (limit / factor)) {
+        return this.error(end);
+      }
+      result *= factor;
+    }
+    this.longValue = negative ? result : -result;
+    this.errorIndex = NO_ERROR;
+    return true;
+  }
+
+  /**
+   * Parses a fixed point decimal into its unscaled value from the bytes
+   * of an ASCII compatible encoding.
+   *
+   * @param buffer the input, absolute indices are used and the
+   *  position is not changed
+   * @param start the index of the first byte to parse, inclusive
+   * @param end the index of the last byte to parse, exclusive
+   * @param scale the number of fraction digits of the result,
+   *  from 0 to 18
+   * @return whether the input is a valid decimal whose unscaled value
+   *  fits into a long
+   * @see #parseDecimal(CharSequence, int, int, int)
+   */
+  public boolean parseDecimal(ByteBuffer buffer, int start, int end, int scale) {
+    return this.parseDecimal(this.byteView.view(buffer), start, end, scale);
+  }
+
+  /**
+   * Parses a double.
+   *
+   * @param s the input
+   * @param start the index of the first character to parse, inclusive
+   * @param end the index of the last character to parse, exclusive
+   * @return whether the input is a valid double
+   */
+  public boolean parseDouble(CharSequence s, int start, int end) {
+    Objects.requireNonNull(s, "s");
+    int index = start;
+    boolean negative = false;
+    if (index < end) {
+      char first = s.charAt(index);
+      if ((first == '-') || (first == '+')) {
+        negative = first == '-';
+        index += 1;
+      }
+    }
+
+    long mantissa = 0L;
+    int significantDigits = 0;
+    int digits = 0;
+    // decimal exponent adjustment from the fraction and dropped digits
+    int exponent = 0;
+    boolean truncated = false;
+    boolean inFraction = false;
+    for (; index < end; index++) {
+      char c = s.charAt(index);
+      if ((c == '.') && !inFraction) {
+        inFraction = true;
+        continue;
+      }
+      int digit = c - '0';
+      if ((digit < 0) || (digit > 9)) {
+        break;
+      }
+      digits += 1;
+      if (significantDigits < MAX_SIGNIFICANT_DIGITS) {
+        mantissa = (mantissa * 10) + digit;
+        if (mantissa != 0L) {
+          // leading zeros are not significant
+          significantDigits += 1;
+        }
+        if (inFraction) {
+          exponent -= 1;
+        }
+      } else {
+        truncated |= digit != 0;
+        if (!inFraction) {
+          exponent += 1;
+        }
+      }
+    }
+    if (digits == 0) {
+      return this.error(index);
+    }
+
+    if ((index < end) && ((s.charAt(index) == 'e') || (s.charAt(index) == 'E'))) {
+      index += 1;
+      boolean negativeExponent = false;
+      if (index < end) {
+        char first = s.charAt(index);
+        if ((first == '-') || (first == '+')) {
+          negativeExponent = first == '-';
+          index += 1;
+        }
+      }
+      int explicitExponent = 0;
+      int exponentDigits = 0;
+      for (; index < end; index++) {
+        int digit = s.charAt(index) - '0';
+        if ((digit < 0) || (digit > 9)) {
+          break;
+        }
+        exponentDigits += 1;
+        if (explicitExponent < 100_000) {
+          // larger exponents all result in zero or infinity
+          explicitExponent = (explicitExponent * 10) + digit;
+        }
+      }
+      if (exponentDigits == 0) {
+        return this.error(index);
+      }
+      exponent += negativeExponent ? -explicitExponent : explicitExponent;
+    }
+    if (index < end) {
+      return this.error(index);
+    }
+
+    double value;
+    if (truncated) {
+      // rare, more than 19 significant digits
+      value = Math.abs(Double.parseDouble(s.subSequence(start, end).toString()));
+    } else {
+      value = toDouble(mantissa, exponent);
+      if (Double.isNaN(value)) {
+        value = Math.abs(Double.parseDouble(s.subSequence(start, end).toString()));
+      }
+    }
+    this.doubleValue = negative ? -value : value;
+    this.errorIndex = NO_ERROR;
+    return true;
+  }
+
+  /**
+   * Parses a double from the bytes of an ASCII compatible encoding.
+   *
+   * @param buffer the input, absolute indices are used and the
+   *  position is not changed
+   * @param start the index of the first byte to parse, inclusive
+   * @param end the index of the last byte to parse, exclusive
+   * @return whether the input is a valid double
+   */
+  public boolean parseDouble(ByteBuffer buffer, int start, int end) {
+    return this.parseDouble(this.byteView.view(buffer), start, end);
+  }
+
+  /**
+   * Computes {@code mantissa * 10^exponent} correctly rounded.
+   *
+   * @param mantissa up to 19 decimal digits, unsigned
+   *
+   * @return the result, {@link Double#NaN} if the fast algorithm can
+   *  not decide the rounding
+   */
+  static double toDouble(long mantissa, int exponent) {
+    if (mantissa == 0L) {
+      return 0.0d;
+    }
+    // Clinger's fast path, both operands and the result are exact
+    if ((exponent >= -22) && (exponent <= 22) && (Long.compareUnsigned(mantissa, 1L << 53) <= 0)) {
+      if (exponent < 0) {
+        return mantissa / EXACT_POWERS_OF_TEN[-exponent];
+      } else {
+        return mantissa * EXACT_POWERS_OF_TEN[exponent];
+      }
+    }
+    if (exponent < SMALLEST_POWER_OF_TEN) {
+      return 0.0d;
+    }
+    if (exponent > LARGEST_POWER_OF_TEN) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return eiselLemire(mantissa, exponent);
+  }
+
+  private static double eiselLemire(long mantissa, int exponent) {
+    int leadingZeros = Long.numberOfLeadingZeros(mantissa);
+    long w = mantissa << leadingZeros;
+    int index = (exponent - SMALLEST_POWER_OF_TEN) * 2;
+    long powerHigh = POWERS_OF_FIVE[index];
+    long powerLow = POWERS_OF_FIVE[index + 1];
+
+    long high = unsignedMultiplyHigh(w, powerHigh);
+    long low = w * powerHigh;
+    // the precision mask for 52 explicit mantissa bits plus 3 bits
+    long precisionMask = 0x1FFL;
+    if ((high & precisionMask) == precisionMask) {
+      // the truncated product may not be precise enough, take the next 64 bits into account
+      long secondHigh = unsignedMultiplyHigh(w, powerLow);
+      long newLow = low + secondHigh;
+      if (Long.compareUnsigned(secondHigh, newLow) > 0) {
+        high += 1;
+      }
+      low = newLow;
+      if (((high & precisionMask) == precisionMask) && (low == -1L)) {
+        // can not decide
+        return Double.NaN;
+      }
+    }
+
+    int upperBit = (int) (high >>> 63);
+    long resultMantissa = high >>> (upperBit + 9);
+    int power2 = (((217706 * exponent) >> 16) + 63 + upperBit) - leadingZeros + 1023;
+
+    if (power2 <= 0) {
+      // subnormal
+      if ((-power2 + 1) >= 64) {
+        return 0.0d;
+      }
+      resultMantissa >>>= -power2 + 1;
+      resultMantissa += resultMantissa & 1L;
+      resultMantissa >>>= 1;
+      power2 = (resultMantissa < (1L << 52)) ? 0 : 1;
+      return Double.longBitsToDouble(resultMantissa | ((long) power2 << 52));
+    }
+
+    if ((Long.compareUnsigned(low, 1L) <= 0) && (exponent >= -4) && (exponent <= 23) && ((resultMantissa & 3L) == 1L)) {
+      // exactly between two doubles, round to even
+      if ((resultMantissa << (upperBit + 9)) == high) {
+        resultMantissa &= ~1L;
+      }
+    }
+    resultMantissa += resultMantissa & 1L;
+    resultMantissa >>>= 1;
+    if (resultMantissa >= (2L << 52)) {
+      resultMantissa = 1L << 52;
+      power2 += 1;
+    }
+    resultMantissa &= ~(1L << 52);
+    if (power2 >= 0x7FF) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return Double.longBitsToDouble(resultMantissa | ((long) power2 << 52));
+  }
+
+  /**
+   * Returns the high 64 bits of the unsigned 128 bit product.
+   */
+  static long unsignedMultiplyHigh(long x, long y) {
+    long x0 = x & 0xFFFFFFFFL;
+    long x1 = x >>> 32;
+    long y0 = y & 0xFFFFFFFFL;
+    long y1 = y >>> 32;
+    long p00 = x0 * y0;
+    long p01 = x0 * y1;
+    long p10 = x1 * y0;
+    long p11 = x1 * y1;
+    long middle = p10 + (p00 >>> 32) + (p01 & 0xFFFFFFFFL);
+    return p11 + (middle >>> 32) + (p01 >>> 32);
+  }
+
+  private boolean parseInteger(CharSequence s, int start, int end, long minValue) {
+    Objects.requireNonNull(s, "s");
+    int index = start;
+    boolean negative = false;
+    if (index < end) {
+      char first = s.charAt(index);
+      if ((first == '-') || (first == '+')) {
+        negative = first == '-';
+        index += 1;
+      }
+    }
+    if (index == end) {
+      return this.error(end);
+    }
+    // accumulate negatively in order to be able to represent the minimum value
+    long limit = negative ? minValue : minValue + 1;
+    long multiplicationLimit = minValue / 10;
+    long result = 0L;
+    for (; index < end; index++) {
+      int digit = s.charAt(index) - '0';
+      if ((digit < 0) || (digit > 9)) {
+        return this.error(index);
+      }
+      if ((result < multiplicationLimit) || ((result * 10) < (limit + digit))) {
+        return this.error(index);
+      }
+      result = (result * 10) - digit;
+    }
+    this.longValue = negative ? result : -result;
+    this.errorIndex = NO_ERROR;
+    return true;
+  }
+
+  private boolean error(int index) {
+    this.errorIndex = index;
+    return false;
+  }
+
+  /**
+   * Reusable view of the bytes of a buffer so that the {@link ByteBuffer}
+   * methods don't allocate.
+   */
+  static final class ByteView implements CharSequence {
+
+    private ByteBuffer buffer;
+
+    CharSequence view(ByteBuffer buffer) {
+      this.buffer = Objects.requireNonNull(buffer, "buffer");
+      return this;
+    }
+
+    @Override
+    public int length() {
+      return this.buffer.capacity();
+    }
+
+    @Override
+    public char charAt(int index) {
+      return (char) Byte.toUnsignedInt(this.buffer.get(index));
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      byte[] bytes = new byte[end - start];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = this.buffer.get(start + i);
+      }
+      return new String(bytes, ISO_8859_1);
+    }
+
+  }
+
+}
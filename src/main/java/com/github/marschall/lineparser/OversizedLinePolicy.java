@@ -0,0 +1,26 @@
+package com.github.marschall.lineparser;
+
+/**
+ * What to do with a line that is longer than the maximum line length.
+ *
+ * @see LineParser#withMaxLineLength(int, OversizedLinePolicy)
+ */
+public enum OversizedLinePolicy {
+
+  /**
+   * Fail the parse with a {@link LineTooLongException}.
+   */
+  FAIL,
+
+  /**
+   * Skip the line, the callback is not invoked for it.
+   */
+  SKIP,
+
+  /**
+   * Deliver only the first maximum line length bytes of the line,
+   * the rest of the line is skipped.
+   */
+  TRUNCATE;
+
+}
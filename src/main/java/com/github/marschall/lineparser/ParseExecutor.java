@@ -0,0 +1,231 @@
+package com.github.marschall.lineparser;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs many independent parses, usually one per file, concurrently.
+ *
+ * <p>On Java 21 and later every parse runs on its own virtual thread so
+ * that a parse blocked on a page fault in a mapped read does not block a
+ * platform thread. On earlier versions the parses run on a bounded pool
+ * of platform threads.</p>
+ *
+ * <p>The number of parses that run at the same time is limited, this
+ * limits the number of files that are mapped and open at the same time.
+ * Parses over the limit wait until a running parse has finished.</p>
+ *
+ * <pre><code>
+ * try (ParseExecutor executor = ParseExecutor.create(64)) {
+ *   List&lt;CompletableFuture&lt;ParseStatistics&gt;&gt; futures = new ArrayList&lt;&gt;();
+ *   for (Path path : uploads) {
+ *     futures.add(parser.forEachAsync(path, cs, line -&gt; index(path, line), executor));
+ *   }
+ *   CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+ * }
+ * </code></pre>
+ *
+ * <p>This class is thread safe.</p>
+ *
+ * @see LineParser#forEachAsync(Path, Charset, Consumer, ParseExecutor)
+ */
+public final class ParseExecutor implements AutoCloseable {
+
+  /**
+   * {@code Executors.newVirtualThreadPerTaskExecutor()}, {@code null} if
+   * the VM does not support virtual threads.
+   */
+  private static final MethodHandle NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR;
+
+  static {
+    MethodHandle factory;
+    try {
+      factory = MethodHandles.publicLookup().findStatic(Executors.class,
+              "newVirtualThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class));
+    } catch (ReflectiveOperationException e) {
+      // Java 20 or earlier
+      factory = null;
+    }
+    NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = factory;
+  }
+
+  private final ExecutorService executor;
+
+  /**
+   * One permit for every parse that may run.
+   */
+  private final Semaphore permits;
+
+  private final int maxConcurrentParses;
+  private final boolean virtual;
+
+  private ParseExecutor(ExecutorService executor, int maxConcurrentParses, boolean virtual) {
+    this.executor = executor;
+    this.permits = new Semaphore(maxConcurrentParses);
+    this.maxConcurrentParses = maxConcurrentParses;
+    this.virtual = virtual;
+  }
+
+  /**
+   * Creates an executor that uses virtual threads if supported and
+   * platform threads otherwise.
+   *
+   * @param maxConcurrentParses the maximum number of parses that run at
+   *  the same time, positive
+   * @return the new executor, has to be closed
+   */
+  public static ParseExecutor create(int maxConcurrentParses) {
+    checkMaxConcurrentParses(maxConcurrentParses);
+    ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+    if (virtualExecutor != null) {
+      return new ParseExecutor(virtualExecutor, maxConcurrentParses, true);
+    }
+    return platform(maxConcurrentParses);
+  }
+
+  /**
+   * Creates an executor that uses a pool of platform threads even if
+   * virtual threads are supported.
+   */
+  static ParseExecutor platform(int maxConcurrentParses) {
+    checkMaxConcurrentParses(maxConcurrentParses);
+    ExecutorService pool = Executors.newFixedThreadPool(maxConcurrentParses, new DaemonThreadFactory());
+    return new ParseExecutor(pool, maxConcurrentParses, false);
+  }
+
+  private static void checkMaxConcurrentParses(int maxConcurrentParses) {
+    if (maxConcurrentParses <= 0) {
+      throw new IllegalArgumentException("maximum number of concurrent parses must be positive but was " + maxConcurrentParses);
+    }
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+      return null;
+    }
+    try {
+      return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invokeExact();
+    } catch (UnsupportedOperationException e) {
+      // preview feature not enabled on Java 19 or 20
+      return null;
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new IllegalStateException("could not create virtual thread executor", e);
+    }
+  }
+
+  /**
+   * Whether parses run on virtual threads.
+   *
+   * @return {@code true} if parses run on virtual threads,
+   *  {@code false} if they run on platform threads
+   */
+  public boolean isVirtual() {
+    return this.virtual;
+  }
+
+  /**
+   * The maximum number of parses that run at the same time.
+   *
+   * @return the maximum number of concurrent parses
+   */
+  public int getMaxConcurrentParses() {
+    return this.maxConcurrentParses;
+  }
+
+  /**
+   * Runs a parse once a permit is available.
+   *
+   * @return the future completed with the result of the parse or the
+   *  exception it failed with
+   */
+  <T> CompletableFuture<T> submit(ParseTask<T> task) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      this.executor.execute(() -> this.run(task, future));
+    } catch (RejectedExecutionException e) {
+      future.completeExceptionally(e);
+    }
+    return future;
+  }
+
+  private <T> void run(ParseTask<T> task, CompletableFuture<T> future) {
+    try {
+      this.permits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.completeExceptionally(e);
+      return;
+    }
+    try {
+      if (!future.isDone()) {
+        // not cancelled while waiting for a permit
+        future.complete(task.call());
+      }
+    } catch (IOException | RuntimeException | Error e) {
+      future.completeExceptionally(e);
+    } finally {
+      this.permits.release();
+    }
+  }
+
+  /**
+   * Stops accepting parses and waits until every submitted parse has
+   * finished.
+   */
+  @Override
+  public void close() {
+    this.executor.shutdown();
+    boolean interrupted = false;
+    while (true) {
+      try {
+        if (this.executor.awaitTermination(1L, TimeUnit.DAYS)) {
+          break;
+        }
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * A parse that can be submitted.
+   */
+  @FunctionalInterface
+  interface ParseTask<T> {
+
+    T call() throws IOException;
+
+  }
+
+  static final class DaemonThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "line-parser-executor-" + this.threadCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    }
+
+  }
+
+}
@@ -0,0 +1,93 @@
+package com.github.marschall.lineparser;
+
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystemException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+/**
+ * The position of a parse between two lines, a parse can be resumed from
+ * it.
+ *
+ * <p>Besides the byte offset and number of the next line the position
+ * contains the character set after resolving a BOM and the size, last
+ * modified time and key of the file. A parse can only be resumed if these
+ * are unchanged.</p>
+ *
+ * <p>This class is immutable and serializable.</p>
+ *
+ * @see LineParser#forEach(Path, Charset, java.util.function.Consumer, int, java.util.function.Consumer)
+ * @see LineParser#resume(Path, ParsePosition, java.util.function.Consumer)
+ */
+public final class ParsePosition implements Serializable {
+
+  private static final long serialVersionUID = -2378104726937148725L;
+
+  private final long offset;
+  private final long lineNumber;
+  private final String charsetName;
+  private final long fileSize;
+  private final long lastModified;
+
+  /**
+   * {@link BasicFileAttributes#fileKey()} as a string, {@code null} if
+   * not supported.
+   */
+  private final String fileKey;
+
+  ParsePosition(long offset, long lineNumber, Charset cs, long fileSize, BasicFileAttributes attributes) {
+    this.offset = offset;
+    this.lineNumber = lineNumber;
+    this.charsetName = cs.name();
+    this.fileSize = fileSize;
+    this.lastModified = attributes.lastModifiedTime().toMillis();
+    this.fileKey = fileKey(attributes);
+  }
+
+  private static String fileKey(BasicFileAttributes attributes) {
+    Object key = attributes.fileKey();
+    return (key != null) ? key.toString() : null;
+  }
+
+  /**
+   * The byte offset of the start of the next line into the file.
+   *
+   * @return the byte offset of the next line
+   */
+  public long getOffset() {
+    return this.offset;
+  }
+
+  /**
+   * The number of the next line, see {@link Line#getLineNumber()}.
+   *
+   * @return the number of the next line
+   */
+  public long getLineNumber() {
+    return this.lineNumber;
+  }
+
+  /**
+   * The character set the file is parsed with after resolving a BOM.
+   *
+   * @return the character set
+   */
+  public Charset getCharset() {
+    return Charset.forName(this.charsetName);
+  }
+
+  /**
+   * Checks that a file is the same and unchanged since this position was
+   * taken.
+   */
+  void checkSameFile(Path path, long currentFileSize, BasicFileAttributes attributes) throws FileSystemException {
+    if ((this.fileSize != currentFileSize)
+            || (this.lastModified != attributes.lastModifiedTime().toMillis())
+            || !Objects.equals(this.fileKey, fileKey(attributes))) {
+      throw new FileSystemException(path.toString(), null, "file changed since the position was taken");
+    }
+  }
+
+}
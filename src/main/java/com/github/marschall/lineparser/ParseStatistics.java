@@ -0,0 +1,42 @@
+package com.github.marschall.lineparser;
+
+/**
+ * Statistics about a finished parse.
+ */
+public final class ParseStatistics {
+
+  private final int peakDecodeBufferSize;
+  private final long oversizedLineCount;
+
+  ParseStatistics(int peakDecodeBufferSize, long oversizedLineCount) {
+    this.peakDecodeBufferSize = peakDecodeBufferSize;
+    this.oversizedLineCount = oversizedLineCount;
+  }
+
+  /**
+   * The largest size in characters the buffer used for decoding lines
+   * had during the parse.
+   *
+   * <p>This is {@code 0} for character sets for which no decoding is
+   * necessary like ISO 8859-1 or UTF-16.</p>
+   *
+   * @return the peak size of the decode buffer in characters
+   */
+  public int getPeakDecodeBufferSize() {
+    return this.peakDecodeBufferSize;
+  }
+
+  /**
+   * The number of lines that were longer than the maximum line length.
+   *
+   * <p>Depending on the {@link OversizedLinePolicy} these lines were
+   * skipped or truncated. When parsing chunks this is the number of
+   * lines that were split into multiple chunks.</p>
+   *
+   * @return the number of lines that were too long
+   */
+  public long getOversizedLineCount() {
+    return this.oversizedLineCount;
+  }
+
+}
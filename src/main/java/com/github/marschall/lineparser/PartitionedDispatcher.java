@@ -0,0 +1,358 @@
+package com.github.marschall.lineparser;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Parses a file on the calling thread and hands every line to one of
+ * several consumer threads based on the hash of its key.
+ *
+ * <p>The parsing thread does not decode lines, it only hashes the key
+ * and writes the offset and length of the line into a single producer,
+ * single consumer ring buffer of the partition. Every consumer thread
+ * reads the lines of its partition from a second mapping of the file
+ * and decodes them. Lines with the same key are therefore always
+ * consumed by the same thread in the order of the file.</p>
+ *
+ * <p>The second mapping is split into windows. A window is unmapped once
+ * the parsing thread has moved past it and every partition has consumed
+ * every line that was published until then.</p>
+ */
+final class PartitionedDispatcher {
+
+  /**
+   * Number of {@code long}s per entry in a ring, the offset and length
+   * of a line.
+   */
+  private static final int ENTRY_SIZE = 2;
+
+  /**
+   * Number of times a waiting thread yields before it parks.
+   */
+  private static final int YIELDS_BEFORE_PARK = 100;
+
+  private static final long PARK_NANOS = 50_000L;
+
+  private final LineParser parser;
+  private final LineKey key;
+  private final Consumer<Line>[] consumers;
+  private final int ringCapacity;
+  private final int windowShift;
+
+  /**
+   * The first exception thrown by a consumer, stops the parse.
+   */
+  private final AtomicReference<Throwable> failure;
+
+  PartitionedDispatcher(LineParser parser, LineKey key, Consumer<Line>[] consumers, int ringCapacity, int windowShift) {
+    this.parser = parser;
+    this.key = key;
+    this.consumers = consumers;
+    this.ringCapacity = ringCapacity;
+    this.windowShift = windowShift;
+    this.failure = new AtomicReference<>();
+  }
+
+  ParseStatistics dispatch(Path path, Charset cs) throws IOException {
+    int partitionCount = this.consumers.length;
+    Ring[] rings = new Ring[partitionCount];
+    for (int i = 0; i < partitionCount; i++) {
+      rings[i] = new Ring(this.ringCapacity);
+    }
+    // the lines are split by the parse but decoded by the consumers
+    Charset actualCharset = this.parser.resolveCharset(path, cs);
+    try (MappedFile file = MappedFile.open(path, this.windowShift)) {
+      Thread[] threads = new Thread[partitionCount];
+      for (int i = 0; i < partitionCount; i++) {
+        Ring ring = rings[i];
+        Consumer<Line> consumer = this.consumers[i];
+        threads[i] = new Thread(() -> this.consume(ring, file, actualCharset, consumer), "line-parser-partition-" + i);
+        threads[i].setDaemon(true);
+      }
+      for (Thread thread : threads) {
+        thread.start();
+      }
+      Producer producer = new Producer(rings, file);
+      ParseStatistics statistics;
+      try {
+        statistics = this.parser.forEachUndecoded(path, cs, producer::publish);
+      } finally {
+        for (Ring ring : rings) {
+          ring.done = true;
+        }
+        joinAll(threads);
+      }
+      this.rethrowFailure();
+      return statistics;
+    } catch (AbortedException e) {
+      this.rethrowFailure();
+      throw e;
+    } catch (UncheckedIOException e) {
+      // from unmapping a window
+      throw e.getCause();
+    }
+  }
+
+  private static void joinAll(Thread[] threads) {
+    boolean interrupted = false;
+    for (Thread thread : threads) {
+      while (true) {
+        try {
+          thread.join();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void rethrowFailure() throws IOException {
+    Throwable cause = this.failure.get();
+    if (cause == null) {
+      return;
+    }
+    if (cause instanceof UncheckedIOException) {
+      throw ((UncheckedIOException) cause).getCause();
+    } else if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    } else if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    throw new IllegalStateException("consumer failed", cause);
+  }
+
+  private void consume(Ring ring, MappedFile file, Charset cs, Consumer<Line> consumer) {
+    try {
+      LineReader reader = LineReader.forCharset(cs);
+      // the consumers decode concurrently from the same windows
+      ByteBuffer[] views = file.newViews();
+      long[] entries = ring.entries;
+      int mask = ring.mask;
+      long head = ring.head.get();
+      int idleCount = 0;
+      while (this.failure.get() == null) {
+        long tail = ring.tail.get();
+        if (head == tail) {
+          // read done before tail so that no entry published before done is missed
+          if (ring.done && (head == ring.tail.get())) {
+            return;
+          }
+          idleCount = idle(idleCount);
+          continue;
+        }
+        idleCount = 0;
+        while (head < tail) {
+          int index = (int) (head & mask) * ENTRY_SIZE;
+          long offset = entries[index];
+          int length = (int) entries[index + 1];
+          ByteBuffer buffer = file.buffer(offset, length, views);
+          int start = file.index(offset, length);
+          Line line = new Line(offset, length, reader.readLine(buffer, start, length), buffer, start);
+          try {
+            consumer.accept(line);
+          } finally {
+            line.release();
+          }
+          head += 1L;
+          // the line is done, the producer may reuse the entry and release the window
+          ring.head.lazySet(head);
+        }
+      }
+    } catch (IOException e) {
+      this.failure.compareAndSet(null, new UncheckedIOException(e));
+    } catch (RuntimeException | Error e) {
+      this.failure.compareAndSet(null, e);
+    }
+  }
+
+  /**
+   * Waits a little, first by yielding then by parking.
+   *
+   * @return the updated idle count
+   */
+  static int idle(int idleCount) {
+    if (idleCount < YIELDS_BEFORE_PARK) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(PARK_NANOS);
+    }
+    return idleCount + 1;
+  }
+
+  /**
+   * The state of the parsing thread.
+   */
+  final class Producer {
+
+    private final Ring[] rings;
+    private final MappedFile file;
+
+    /**
+     * The windows the parsing thread has moved past that are still
+     * mapped, in order.
+     */
+    private final Deque<PendingWindow> pendingWindows;
+
+    /**
+     * The window of the start of the last line published.
+     */
+    private int currentWindow;
+
+    Producer(Ring[] rings, MappedFile file) {
+      this.rings = rings;
+      this.file = file;
+      this.pendingWindows = new ArrayDeque<>();
+    }
+
+    void publish(Line line) {
+      if (PartitionedDispatcher.this.failure.get() != null) {
+        throw new AbortedException();
+      }
+      long offset = line.getOffset();
+      int window = this.file.window(offset);
+      if (window != this.currentWindow) {
+        this.movePast(window);
+      }
+      int partition = (int) Long.remainderUnsigned(line.hash(PartitionedDispatcher.this.key), this.rings.length);
+      Ring ring = this.rings[partition];
+      long tail = ring.tail.get();
+      if ((tail - ring.cachedHead) == ring.capacity) {
+        ring.cachedHead = ring.head.get();
+        int idleCount = 0;
+        while ((tail - ring.cachedHead) == ring.capacity) {
+          if (PartitionedDispatcher.this.failure.get() != null) {
+            throw new AbortedException();
+          }
+          this.releaseWindows();
+          idleCount = idle(idleCount);
+          ring.cachedHead = ring.head.get();
+        }
+      }
+      int index = (int) (tail & ring.mask) * ENTRY_SIZE;
+      ring.entries[index] = offset;
+      ring.entries[index + 1] = line.getLength();
+      // publishes the entry
+      ring.tail.lazySet(tail + 1L);
+    }
+
+    /**
+     * Called when a line starts in a later window, every line touching
+     * the windows before has been published.
+     */
+    private void movePast(int window) {
+      long[] tails = new long[this.rings.length];
+      for (int i = 0; i < tails.length; i++) {
+        tails[i] = this.rings[i].tail.get();
+      }
+      for (int i = this.currentWindow; i < window; i++) {
+        this.pendingWindows.add(new PendingWindow(i, tails));
+      }
+      this.currentWindow = window;
+      this.releaseWindows();
+    }
+
+    /**
+     * Unmaps the windows every partition has consumed.
+     */
+    private void releaseWindows() {
+      while (!this.pendingWindows.isEmpty()) {
+        PendingWindow pending = this.pendingWindows.peekFirst();
+        for (int i = 0; i < this.rings.length; i++) {
+          if (this.rings[i].head.get() < pending.tails[i]) {
+            return;
+          }
+        }
+        this.pendingWindows.removeFirst();
+        try {
+          this.file.release(pending.window);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    }
+
+  }
+
+  /**
+   * A window that can be unmapped once every partition has consumed the
+   * entries published before the parsing thread moved past it.
+   */
+  static final class PendingWindow {
+
+    final int window;
+    final long[] tails;
+
+    PendingWindow(int window, long[] tails) {
+      this.window = window;
+      this.tails = tails;
+    }
+
+  }
+
+  /**
+   * A single producer, single consumer ring buffer of line references.
+   */
+  static final class Ring {
+
+    final long[] entries;
+    final int capacity;
+    final int mask;
+
+    /**
+     * The number of entries consumed, only written by the consumer.
+     */
+    final AtomicLong head;
+
+    /**
+     * The number of entries published, only written by the producer.
+     */
+    final AtomicLong tail;
+
+    /**
+     * The last head read by the producer, avoids reading the head of
+     * the consumer for every entry.
+     */
+    long cachedHead;
+
+    /**
+     * Set by the producer after the last entry was published.
+     */
+    volatile boolean done;
+
+    Ring(int capacity) {
+      this.entries = new long[capacity * ENTRY_SIZE];
+      this.capacity = capacity;
+      this.mask = capacity - 1;
+      this.head = new AtomicLong();
+      this.tail = new AtomicLong();
+    }
+
+  }
+
+  /**
+   * Stops the parse after a consumer failed.
+   */
+  static final class AbortedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    AbortedException() {
+      super("consumer failed", null, false, false);
+    }
+
+  }
+
+}
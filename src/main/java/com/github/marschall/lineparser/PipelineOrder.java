@@ -0,0 +1,24 @@
+package com.github.marschall.lineparser;
+
+/**
+ * In which order the workers of a pipelined parse invoke the callback.
+ *
+ * @see LineParser#forEachPipelined(java.nio.file.Path, java.nio.charset.Charset, int, PipelineOrder, java.util.function.Consumer)
+ */
+public enum PipelineOrder {
+
+  /**
+   * Invoke the callback for the lines in the order of the file, never
+   * concurrently. The workers decode batches concurrently and take turns
+   * invoking the callback, scanning the file still overlaps with
+   * consuming the lines.
+   */
+  ORDERED,
+
+  /**
+   * Invoke the callback concurrently from all workers. The lines of a
+   * batch are delivered in order, batches in no particular order.
+   */
+  UNORDERED;
+
+}
@@ -0,0 +1,326 @@
+package com.github.marschall.lineparser;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Objects;
+
+/**
+ * Parses an <a href="https://en.wikipedia.org/wiki/ISO_8601">ISO 8601</a>
+ * timestamp at the start of a line without allocating.
+ *
+ * <p>The accepted format is {@code yyyy-MM-dd'T'HH:mm:ss} optionally
+ * followed by a fraction separated by {@code '.'} or {@code ','},
+ * optionally followed by an offset that is either {@code 'Z'},
+ * {@code +HH}, {@code +HHmm} or {@code +HH:mm}. Digits of the fraction
+ * after the ninth are ignored. Instead of {@code 'T'} a space is
+ * accepted as well. Timestamps without an offset use the default offset
+ * given in the constructor.</p>
+ *
+ * <p>Only a prefix is parsed, whatever follows the timestamp is
+ * ignored, see {@link #getEnd()}.</p>
+ *
+ * <p>Errors are not reported with exceptions, see {@link NumberParser}.</p>
+ *
+ * <p>Instances of this class are not thread safe.</p>
+ *
+ * <pre><code>
+ * TimestampParser timestamps = new TimestampParser();
+ * parser.forEach(path, cs, line -&gt; {
+ *   CharSequence content = line.getContent();
+ *   if (timestamps.parse(content, 0, content.length())) {
+ *     long epochSecond = timestamps.getEpochSecond();
+ *   }
+ * });
+ * </code></pre>
+ */
+public final class TimestampParser {
+
+  private static final int NO_ERROR = -1;
+
+  private static final long DAYS_0000_TO_1970 = (146_097L * 5L) - ((30L * 365L) + 7L);
+
+  private static final int[] NANOS_FACTOR = {
+    100_000_000, 10_000_000, 1_000_000, 100_000, 10_000, 1_000, 100, 10, 1
+  };
+
+  private final int defaultOffsetSeconds;
+
+  private final NumberParser.ByteView byteView;
+
+  private long epochSecond;
+  private int nano;
+  private int end;
+  private int errorIndex;
+
+  /**
+   * Creates a new parser that interprets timestamps without an offset
+   * as UTC.
+   */
+  public TimestampParser() {
+    this(ZoneOffset.UTC);
+  }
+
+  /**
+   * Creates a new parser.
+   *
+   * @param defaultOffset the offset for timestamps without an offset
+   */
+  public TimestampParser(ZoneOffset defaultOffset) {
+    Objects.requireNonNull(defaultOffset, "defaultOffset");
+    this.defaultOffsetSeconds = defaultOffset.getTotalSeconds();
+    this.byteView = new NumberParser.ByteView();
+    this.errorIndex = NO_ERROR;
+  }
+
+  /**
+   * Returns the seconds since the epoch of the last successful parse.
+   *
+   * @return the seconds since 1970-01-01T00:00:00Z
+   * @see Instant#getEpochSecond()
+   */
+  public long getEpochSecond() {
+    return this.epochSecond;
+  }
+
+  /**
+   * Returns the fraction of a second of the last successful parse.
+   *
+   * @return the nanoseconds, from 0 to 999,999,999
+   * @see Instant#getNano()
+   */
+  public int getNano() {
+    return this.nano;
+  }
+
+  /**
+   * Returns the index after the last character of the timestamp of the
+   * last successful parse.
+   *
+   * @return the index after the timestamp in the input
+   */
+  public int getEnd() {
+    return this.end;
+  }
+
+  /**
+   * Returns the index of the first character that was invalid in the
+   * last parse.
+   *
+   * @return the index in the input of the first invalid character,
+   *  {@code -1} if the last parse was successful
+   */
+  public int getErrorIndex() {
+    return this.errorIndex;
+  }
+
+  /**
+   * Returns the result of the last successful parse as an {@link Instant}.
+   *
+   * <p>Unlike the other methods this allocates.</p>
+   *
+   * @return the instant of the last successful parse
+   */
+  public Instant toInstant() {
+    return Instant.ofEpochSecond(this.epochSecond, this.nano);
+  }
+
+  /**
+   * Compares the result of the last successful parse to an instant
+   * without allocating.
+   *
+   * @param instant the instant to compare to
+   * @return a negative value if the timestamp is before the instant,
+   *  zero if it is equal and a positive value if it is after
+   */
+  public int compareTo(Instant instant) {
+    int result = Long.compare(this.epochSecond, instant.getEpochSecond());
+    if (result != 0) {
+      return result;
+    }
+    return Integer.compare(this.nano, instant.getNano());
+  }
+
+  /**
+   * Parses the timestamp at the start of a byte range of an ASCII
+   * compatible encoding.
+   *
+   * @param buffer the input, absolute indices are used and the
+   *  position is not changed
+   * @param start the index of the first byte of the timestamp
+   * @param end the index after the last byte that may be part of
+   *  the timestamp
+   * @return whether the input starts with a valid timestamp
+   */
+  public boolean parse(ByteBuffer buffer, int start, int end) {
+    return this.parse(this.byteView.view(buffer), start, end);
+  }
+
+  /**
+   * Parses the timestamp at the start of a character range.
+   *
+   * @param s the input, usually {@link Line#getContent()}
+   * @param start the index of the first character of the timestamp
+   * @param end the index after the last character that may be part of
+   *  the timestamp
+   * @return whether the input starts with a valid timestamp
+   */
+  public boolean parse(CharSequence s, int start, int end) {
+    Objects.requireNonNull(s, "s");
+    // yyyy-MM-ddTHH:mm:ss
+    if ((end - start) < 19) {
+      return this.error(end);
+    }
+    int year = digits(s, start, 4);
+    if ((year < 0) || (s.charAt(start + 4) != '-')) {
+      return this.error(start);
+    }
+    int month = digits(s, start + 5, 2);
+    if ((month < 1) || (month > 12) || (s.charAt(start + 7) != '-')) {
+      return this.error(start + 5);
+    }
+    int day = digits(s, start + 8, 2);
+    if ((day < 1) || (day > lengthOfMonth(year, month))) {
+      return this.error(start + 8);
+    }
+    char separator = s.charAt(start + 10);
+    if ((separator != 'T') && (separator != ' ')) {
+      return this.error(start + 10);
+    }
+    int hour = digits(s, start + 11, 2);
+    if ((hour < 0) || (hour > 23) || (s.charAt(start + 13) != ':')) {
+      return this.error(start + 11);
+    }
+    int minute = digits(s, start + 14, 2);
+    if ((minute < 0) || (minute > 59) || (s.charAt(start + 16) != ':')) {
+      return this.error(start + 14);
+    }
+    int second = digits(s, start + 17, 2);
+    if ((second < 0) || (second > 59)) {
+      return this.error(start + 17);
+    }
+
+    int index = start + 19;
+    int nanos = 0;
+    if ((index < end) && ((s.charAt(index) == '.') || (s.charAt(index) == ','))) {
+      index += 1;
+      int fractionDigits = 0;
+      while (index < end) {
+        int digit = s.charAt(index) - '0';
+        if ((digit < 0) || (digit > 9)) {
+          break;
+        }
+        if (fractionDigits < NANOS_FACTOR.length) {
+          nanos += digit * NANOS_FACTOR[fractionDigits];
+        }
+        // digits beyond nanoseconds are ignored but have to be consumed
+        // so that the offset after them is found
+        fractionDigits += 1;
+        index += 1;
+      }
+      if (fractionDigits == 0) {
+        return this.error(index);
+      }
+    }
+
+    int offsetSeconds = this.defaultOffsetSeconds;
+    if (index < end) {
+      char c = s.charAt(index);
+      if (c == 'Z') {
+        offsetSeconds = 0;
+        index += 1;
+      } else if ((c == '+') || (c == '-')) {
+        int offsetHours = ((index + 2) < end) ? digits(s, index + 1, 2) : -1;
+        if ((offsetHours < 0) || (offsetHours > 18)) {
+          return this.error(index);
+        }
+        int offsetMinutes = 0;
+        int offsetEnd = index + 3;
+        if ((offsetEnd < end) && (s.charAt(offsetEnd) == ':')) {
+          offsetMinutes = ((offsetEnd + 2) < end) ? digits(s, offsetEnd + 1, 2) : -1;
+          offsetEnd += 3;
+        } else if (((offsetEnd + 1) < end) && isDigit(s.charAt(offsetEnd))) {
+          offsetMinutes = digits(s, offsetEnd, 2);
+          offsetEnd += 2;
+        }
+        if ((offsetMinutes < 0) || (offsetMinutes > 59)) {
+          return this.error(index);
+        }
+        offsetSeconds = (offsetHours * 3600) + (offsetMinutes * 60);
+        if (c == '-') {
+          offsetSeconds = -offsetSeconds;
+        }
+        index = offsetEnd;
+      }
+    }
+
+    long secondOfDay = (hour * 3600L) + (minute * 60L) + second;
+    this.epochSecond = ((toEpochDay(year, month, day) * 86_400L) + secondOfDay) - offsetSeconds;
+    this.nano = nanos;
+    this.end = index;
+    this.errorIndex = NO_ERROR;
+    return true;
+  }
+
+  private static boolean isDigit(char c) {
+    return (c >= '0') && (c <= '9');
+  }
+
+  /**
+   * Parses a fixed number of digits.
+   *
+   * @return the value, {@code -1} if not all characters are digits
+   */
+  private static int digits(CharSequence s, int start, int count) {
+    int value = 0;
+    for (int i = 0; i < count; i++) {
+      int digit = s.charAt(start + i) - '0';
+      if ((digit < 0) || (digit > 9)) {
+        return -1;
+      }
+      value = (value * 10) + digit;
+    }
+    return value;
+  }
+
+  private static boolean isLeapYear(long year) {
+    return ((year & 3) == 0) && (((year % 100) != 0) || ((year % 400) == 0));
+  }
+
+  private static int lengthOfMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        return isLeapYear(year) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /**
+   * Same as {@link java.time.LocalDate#toEpochDay()} for non-negative years.
+   */
+  private static long toEpochDay(long year, long month, long day) {
+    long total = 365L * year;
+    total += ((year + 3) / 4) - ((year + 99) / 100) + ((year + 399) / 400);
+    total += ((367 * month) - 362) / 12;
+    total += day - 1;
+    if (month > 2) {
+      total -= 1;
+      if (!isLeapYear(year)) {
+        total -= 1;
+      }
+    }
+    return total - DAYS_0000_TO_1970;
+  }
+
+  private boolean error(int index) {
+    this.errorIndex = index;
+    return false;
+  }
+
+}
@@ -0,0 +1,31 @@
+package com.github.marschall.lineparser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Does not read the content of lines at all, for callbacks that only need
+ * the offset, length or bytes of a line.
+ */
+final class UndecodedLineReader implements LineReader {
+
+  private final LineReader delegate;
+
+  UndecodedLineReader(LineReader delegate) {
+    this.delegate = delegate;
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public CharSequence readLine(ByteBuffer buffer, int start, int length) {
+    return "";
+  }
+
+  @Override
+  public int characterBoundary(ByteBuffer buffer, int start, int maxLength) throws IOException {
+    return this.delegate.characterBoundary(buffer, start, maxLength);
+  }
+
+}
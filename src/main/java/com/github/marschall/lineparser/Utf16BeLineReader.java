@@ -10,4 +10,18 @@ final class Utf16BeLineReader implements LineReader {
     return new Utf16BeCharSequence(buffer, start, length);
   }
 
+  @Override
+  public int characterBoundary(ByteBuffer buffer, int start, int maxLength) {
+    int length = maxLength & ~0b1;
+    if (length >= 2) {
+      int position = (start + length) - 2;
+      int highByte = buffer.get(position) & 0xFF;
+      if ((highByte & 0b11111100) == 0xD8) {
+        // don't split a surrogate pair
+        length -= 2;
+      }
+    }
+    return length;
+  }
+
 }
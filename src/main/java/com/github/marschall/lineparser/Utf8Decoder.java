@@ -104,6 +104,40 @@ final class Utf8Decoder {
     return outPosition;
   }
 
+  /**
+   * Computes the length of the longest prefix that does not end in the
+   * middle of a character.
+   */
+  static int characterBoundary(ByteBuffer buffer, int start, int maxLength) {
+    int end = start + maxLength;
+    // a character is at most four bytes, look for the first byte of the last one
+    int lowerBound = Math.max(start, end - 4);
+    for (int i = end - 1; i >= lowerBound; i--) {
+      int value = buffer.get(i) & 0xFF;
+      if (value < 0b10000000) {
+        // 0xxxxxxx
+        return maxLength;
+      } else if (value >= 0b11000000) {
+        int characterLength;
+        if (value < 0b11100000) {
+          characterLength = 2;
+        } else if (value < 0b11110000) {
+          characterLength = 3;
+        } else {
+          characterLength = 4;
+        }
+        if ((i + characterLength) <= end) {
+          return maxLength;
+        } else {
+          return i - start;
+        }
+      }
+      // 10xxxxxx, continue looking
+    }
+    // malformed, let the decoder report it
+    return maxLength;
+  }
+
   static int determineLength(ByteBuffer buffer) {
     return 0;
   }
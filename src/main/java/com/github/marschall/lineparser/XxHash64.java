@@ -0,0 +1,162 @@
+package com.github.marschall.lineparser;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Computes the <a href="https://github.com/Cyan4973/xxHash">xxHash64</a>
+ * of a range of a {@link ByteBuffer}.
+ *
+ * <p>Eight bytes are read at a time and the bytes are read in little
+ * endian order as required by the specification, independent of the
+ * order of the buffer.</p>
+ *
+ * <p>The hash of a range of a {@link CharSequence} is the hash of its
+ * UTF-16LE encoding, four characters are read at a time.</p>
+ */
+final class XxHash64 {
+
+  private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+  private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+  private static final long PRIME_3 = 0x165667B19E3779F9L;
+  private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+  private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+
+  private XxHash64() {
+    // utility class
+  }
+
+  static long hash(ByteBuffer buffer, int start, int length, long seed) {
+    boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+    int end = start + length;
+    int index = start;
+    long hash;
+    if (length >= 32) {
+      long v1 = seed + PRIME_1 + PRIME_2;
+      long v2 = seed + PRIME_2;
+      long v3 = seed;
+      long v4 = seed - PRIME_1;
+      int limit = end - 32;
+      do {
+        v1 = round(v1, getLong(buffer, index, bigEndian));
+        v2 = round(v2, getLong(buffer, index + 8, bigEndian));
+        v3 = round(v3, getLong(buffer, index + 16, bigEndian));
+        v4 = round(v4, getLong(buffer, index + 24, bigEndian));
+        index += 32;
+      } while (index <= limit);
+      hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+      hash = mergeRound(hash, v1);
+      hash = mergeRound(hash, v2);
+      hash = mergeRound(hash, v3);
+      hash = mergeRound(hash, v4);
+    } else {
+      hash = seed + PRIME_5;
+    }
+    hash += length;
+
+    while ((end - index) >= 8) {
+      hash ^= round(0L, getLong(buffer, index, bigEndian));
+      hash = (Long.rotateLeft(hash, 27) * PRIME_1) + PRIME_4;
+      index += 8;
+    }
+    if ((end - index) >= 4) {
+      hash ^= getUnsignedInt(buffer, index, bigEndian) * PRIME_1;
+      hash = (Long.rotateLeft(hash, 23) * PRIME_2) + PRIME_3;
+      index += 4;
+    }
+    while (index < end) {
+      hash ^= Byte.toUnsignedLong(buffer.get(index)) * PRIME_5;
+      hash = Long.rotateLeft(hash, 11) * PRIME_1;
+      index += 1;
+    }
+    return avalanche(hash);
+  }
+
+  static long hash(CharSequence s, int start, int end, long seed) {
+    int length = (end - start) * 2;
+    int index = start;
+    long hash;
+    if (length >= 32) {
+      long v1 = seed + PRIME_1 + PRIME_2;
+      long v2 = seed + PRIME_2;
+      long v3 = seed;
+      long v4 = seed - PRIME_1;
+      int limit = end - 16;
+      do {
+        v1 = round(v1, getLong(s, index));
+        v2 = round(v2, getLong(s, index + 4));
+        v3 = round(v3, getLong(s, index + 8));
+        v4 = round(v4, getLong(s, index + 12));
+        index += 16;
+      } while (index <= limit);
+      hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+      hash = mergeRound(hash, v1);
+      hash = mergeRound(hash, v2);
+      hash = mergeRound(hash, v3);
+      hash = mergeRound(hash, v4);
+    } else {
+      hash = seed + PRIME_5;
+    }
+    hash += length;
+
+    while ((end - index) >= 4) {
+      hash ^= round(0L, getLong(s, index));
+      hash = (Long.rotateLeft(hash, 27) * PRIME_1) + PRIME_4;
+      index += 4;
+    }
+    if ((end - index) >= 2) {
+      long value = s.charAt(index) | ((long) s.charAt(index + 1) << 16);
+      hash ^= value * PRIME_1;
+      hash = (Long.rotateLeft(hash, 23) * PRIME_2) + PRIME_3;
+      index += 2;
+    }
+    if (index < end) {
+      char c = s.charAt(index);
+      hash ^= (c & 0xFFL) * PRIME_5;
+      hash = Long.rotateLeft(hash, 11) * PRIME_1;
+      hash ^= (c >>> 8) * PRIME_5;
+      hash = Long.rotateLeft(hash, 11) * PRIME_1;
+    }
+    return avalanche(hash);
+  }
+
+  /**
+   * Reads four characters in little endian order.
+   */
+  private static long getLong(CharSequence s, int index) {
+    return s.charAt(index)
+            | ((long) s.charAt(index + 1) << 16)
+            | ((long) s.charAt(index + 2) << 32)
+            | ((long) s.charAt(index + 3) << 48);
+  }
+
+  private static long getLong(ByteBuffer buffer, int index, boolean bigEndian) {
+    long value = buffer.getLong(index);
+    return bigEndian ? Long.reverseBytes(value) : value;
+  }
+
+  private static long getUnsignedInt(ByteBuffer buffer, int index, boolean bigEndian) {
+    int value = buffer.getInt(index);
+    return Integer.toUnsignedLong(bigEndian ? Integer.reverseBytes(value) : value);
+  }
+
+  private static long round(long accumulator, long input) {
+    long result = accumulator + (input * PRIME_2);
+    result = Long.rotateLeft(result, 31);
+    return result * PRIME_1;
+  }
+
+  private static long mergeRound(long accumulator, long value) {
+    long result = accumulator ^ round(0L, value);
+    return (result * PRIME_1) + PRIME_4;
+  }
+
+  private static long avalanche(long hash) {
+    long result = hash ^ (hash >>> 33);
+    result *= PRIME_2;
+    result ^= result >>> 29;
+    result *= PRIME_3;
+    return result ^ (result >>> 32);
+  }
+
+}
@@ -0,0 +1,150 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.TestFiles.writeLines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class CollectTest {
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\r\n"},
+            new Object[] {StandardCharsets.UTF_8, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r"},
+            new Object[] {StandardCharsets.UTF_16LE, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16BE, "\n"},
+            new Object[] {StandardCharsets.UTF_16, "\r\n"}
+            );
+  }
+
+  private static List<String> lines() {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      lines.add((i % 7 == 0) ? "" : "line \u00E4 " + i + " " + (i % 3));
+    }
+    return lines;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void toList(Charset cs, String newline) throws IOException {
+    Path tempFile = writeLines(lines(), cs, newline);
+    try {
+      // the first line of a file with a BOM starts with the BOM
+      List<String> expected = new ArrayList<>();
+      new LineParser().forEach(tempFile, cs, line -> expected.add(line.getContent().toString()));
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 128}) {
+        for (int chunkCount = 1; chunkCount < 40; chunkCount++) {
+          List<String> actual = new LineParser(mapSize).collect(tempFile, cs,
+                  Collectors.mapping(line -> line.getContent().toString(), Collectors.toList()), chunkCount);
+          assertEquals(expected, actual, "chunk count: " + chunkCount);
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void offsets(Charset cs, String newline) throws IOException {
+    List<String> lines = lines();
+    Path tempFile = writeLines(lines, cs, newline);
+    try {
+      List<Long> expected = new ArrayList<>();
+      new LineParser().forEach(tempFile, cs, line -> expected.add(line.getOffset()));
+      List<Long> actual = new LineParser().collect(tempFile, cs,
+              Collectors.mapping(Line::getOffset, Collectors.toList()), 9);
+      assertEquals(expected, actual);
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void groupingBy() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    List<String> lines = lines();
+    Path tempFile = writeLines(lines, cs, "\n");
+    try {
+      Map<Integer, Long> expected = new TreeMap<>();
+      for (String line : lines) {
+        expected.merge(line.length(), 1L, Long::sum);
+      }
+      Map<Integer, Long> actual = new LineParser().collect(tempFile, cs,
+              Collectors.groupingBy(line -> line.getContent().length(), TreeMap::new, Collectors.counting()), 5);
+      assertEquals(expected, actual);
+      long count = new LineParser().collect(tempFile, cs, Collectors.counting());
+      assertEquals(lines.size(), count);
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void noTrailingNewline() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path tempFile = Files.createTempFile("CollectTest", null);
+    try {
+      Files.write(tempFile, "a\nb\nc".getBytes(cs));
+      for (int chunkCount = 1; chunkCount < 8; chunkCount++) {
+        List<String> actual = new LineParser().collect(tempFile, cs,
+                Collectors.mapping(line -> line.getContent().toString(), Collectors.toList()), chunkCount);
+        List<String> expected = new ArrayList<>();
+        expected.add("a");
+        expected.add("b");
+        expected.add("c");
+        assertEquals(expected, actual, "chunk count: " + chunkCount);
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void emptyFile() throws IOException {
+    Path tempFile = Files.createTempFile("CollectTest", null);
+    try {
+      List<String> actual = new LineParser().collect(tempFile, StandardCharsets.UTF_8,
+              Collectors.mapping(line -> line.getContent().toString(), Collectors.toList()), 4);
+      assertEquals(Collections.emptyList(), actual);
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void delimiters() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path tempFile = Files.createTempFile("CollectTest", null);
+    try {
+      Files.write(tempFile, "a;b;c".getBytes(cs));
+      List<String> actual = new LineParser().withDelimiters(";").collect(tempFile, cs,
+              Collectors.mapping(line -> line.getContent().toString(), Collectors.toList()));
+      List<String> expected = new ArrayList<>();
+      expected.add("a");
+      expected.add("b");
+      expected.add("c");
+      assertEquals(expected, actual);
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+}
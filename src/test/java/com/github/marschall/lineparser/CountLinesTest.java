@@ -0,0 +1,95 @@
+package com.github.marschall.lineparser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class CountLinesTest {
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\r\n"},
+            new Object[] {StandardCharsets.UTF_8, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r"},
+            new Object[] {StandardCharsets.UTF_16, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16LE, "\n"},
+            new Object[] {StandardCharsets.UTF_16BE, "\r"}
+            );
+  }
+
+  private static Path writeLines(Charset cs, String newline, boolean trailingNewline) throws IOException {
+    Path tempFile = Files.createTempFile("CountLinesTest", null);
+    try (BufferedWriter writer = Files.newBufferedWriter(tempFile, cs)) {
+      for (int i = 0; i < 777; i++) {
+        for (int j = 0; j < (i % 17); j++) {
+          writer.append('\u00E4');
+        }
+        // mixed newlines, CR LF on every position of a word
+        writer.append((i % 5 == 0) ? "\r\n" : newline);
+      }
+      if (!trailingNewline) {
+        writer.append("last");
+      }
+    }
+    return tempFile;
+  }
+
+  private static long forEachCount(LineParser parser, Path path, Charset cs) throws IOException {
+    long[] count = new long[1];
+    parser.forEach(path, cs, line -> count[0] += 1L);
+    return count[0];
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void sameAsForEach(Charset cs, String newline) throws IOException {
+    for (boolean trailingNewline : new boolean[] {true, false}) {
+      Path tempFile = writeLines(cs, newline, trailingNewline);
+      try {
+        for (int mapSize : new int[] {Integer.MAX_VALUE, 128}) {
+          LineParser parser = new LineParser(mapSize);
+          long expected = forEachCount(parser, tempFile, cs);
+          assertEquals(trailingNewline ? 777L : 778L, expected);
+          assertEquals(expected, parser.countLines(tempFile, cs));
+          assertEquals(expected, parser.countLinesParallel(tempFile, cs));
+          for (int chunkCount : new int[] {2, 5, 64}) {
+            assertEquals(expected, parser.countLines(tempFile, cs, chunkCount), "chunks: " + chunkCount);
+          }
+        }
+      } finally {
+        Files.delete(tempFile);
+      }
+    }
+  }
+
+  @Test
+  public void edgeCases() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path tempFile = Files.createTempFile("CountLinesTest", null);
+    try {
+      LineParser parser = new LineParser();
+      assertEquals(0L, parser.countLines(tempFile, cs));
+      Files.write(tempFile, new byte[] {'a'});
+      assertEquals(1L, parser.countLines(tempFile, cs));
+      Files.write(tempFile, new byte[] {'\r'});
+      assertEquals(1L, parser.countLines(tempFile, cs));
+      Files.write(tempFile, new byte[] {'\r', '\n', '\n', '\r', '\r'});
+      assertEquals(4L, parser.countLines(tempFile, cs));
+      assertThrows(IllegalStateException.class, () -> parser.withDelimiters(",").countLines(tempFile, cs));
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+}
@@ -0,0 +1,140 @@
+package com.github.marschall.lineparser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class DelimiterTest {
+
+  private static final List<String> LINES = Arrays.asList(
+          "./src/main",
+          "with\nnewline",
+          "",
+          "\u00E4\u00F6\u00FC",
+          "last");
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\0"},
+            new Object[] {StandardCharsets.ISO_8859_1, "\u001E"},
+            new Object[] {StandardCharsets.ISO_8859_1, "<EOR>"},
+            new Object[] {StandardCharsets.UTF_8, "\0"},
+            new Object[] {StandardCharsets.UTF_8, "<EOR>"},
+            new Object[] {StandardCharsets.UTF_8, "\u2028"},
+            new Object[] {StandardCharsets.UTF_16LE, "\0"},
+            new Object[] {StandardCharsets.UTF_16BE, "<EOR>"},
+            new Object[] {StandardCharsets.UTF_16, "\u2028"}
+            );
+  }
+
+  private static Path write(String content, Charset cs) throws IOException {
+    Path tempFile = Files.createTempFile("DelimiterTest", null);
+    Files.write(tempFile, content.getBytes(cs));
+    return tempFile;
+  }
+
+  private static List<String> expected(Charset cs, List<String> lines) {
+    List<String> expected = new ArrayList<>(lines);
+    if (cs.equals(StandardCharsets.UTF_16)) {
+      // the BOM is part of the first line
+      expected.set(0, "\uFEFF" + expected.get(0));
+    }
+    return expected;
+  }
+
+  private static List<String> parse(LineParser parser, Path path, Charset cs) throws IOException {
+    List<String> actual = new ArrayList<>();
+    parser.forEach(path, cs, line -> actual.add(line.getContent().toString()));
+    return actual;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void forEach(Charset cs, String delimiter) throws IOException {
+    StringBuilder content = new StringBuilder();
+    for (String line : LINES) {
+      content.append(line).append(delimiter);
+    }
+    Path tempFile = write(content.toString(), cs);
+    try {
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 37, 40}) {
+        LineParser parser = new LineParser(mapSize).withDelimiters(delimiter);
+        assertEquals(expected(cs, LINES), parse(parser, tempFile, cs), "map size: " + mapSize);
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void noTrailingDelimiter(Charset cs, String delimiter) throws IOException {
+    Path tempFile = write("a" + delimiter + "b", cs);
+    try {
+      LineParser parser = new LineParser().withDelimiters(delimiter);
+      assertEquals(expected(cs, Arrays.asList("a", "b")), parse(parser, tempFile, cs));
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void longestMatchWins() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path tempFile = write("a\r\nb\rc\nd\u0085e\u2028f\u2029g", cs);
+    try {
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 4, 5, 6}) {
+        LineParser parser = new LineParser(mapSize).withDelimiters("\r", "\n", "\r\n", "\u0085", "\u2028", "\u2029");
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e", "f", "g"), parse(parser, tempFile, cs), "map size: " + mapSize);
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void singleByteSet() throws IOException {
+    Charset cs = StandardCharsets.ISO_8859_1;
+    Path tempFile = write("a;b,c;;d\u0085e", cs);
+    try {
+      LineParser parser = new LineParser().withDelimiters(";", ",", "\u0085");
+      assertEquals(Arrays.asList("a", "b", "c", "", "d", "e"), parse(parser, tempFile, cs));
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void invalidDelimiters() {
+    LineParser parser = new LineParser();
+    assertThrows(IllegalArgumentException.class, () -> parser.withDelimiters());
+    assertThrows(IllegalArgumentException.class, () -> parser.withDelimiters(""));
+    assertThrows(NullPointerException.class, () -> parser.withDelimiters((String) null));
+  }
+
+  @Test
+  public void unencodableDelimiter() throws IOException {
+    Charset cs = StandardCharsets.ISO_8859_1;
+    Path tempFile = write("a", cs);
+    try {
+      LineParser parser = new LineParser().withDelimiters("\u2028");
+      assertThrows(IllegalArgumentException.class, () -> parse(parser, tempFile, cs));
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+}
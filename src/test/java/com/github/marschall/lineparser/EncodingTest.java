@@ -50,6 +50,20 @@ public class EncodingTest {
     assertEquals(MESSAGE_WITHOUT_BOM, this.parse("utf32le-with-bom.txt", utf32));
   }
 
+  @Test
+  public void peakDecodeBufferSize() throws IOException {
+    Path base = Paths.get("src/test/resources/examples");
+    ParseStatistics statistics = this.parser.forEachWithStatistics(base.resolve("utf8-no-bom.txt"), UTF_8, line -> {
+      // ignore
+    });
+    assertEquals(2048, statistics.getPeakDecodeBufferSize());
+
+    statistics = this.parser.forEachWithStatistics(base.resolve("utf16le-with-bom.txt"), UTF_16, line -> {
+      // ignore
+    });
+    assertEquals(0, statistics.getPeakDecodeBufferSize());
+  }
+
   private List<String> parse(String fileName, Charset cs) throws IOException {
     Path base = Paths.get("src/test/resources/examples");
     List<String> lines  = new ArrayList<>(2);
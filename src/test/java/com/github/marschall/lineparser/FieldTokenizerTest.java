@@ -0,0 +1,94 @@
+package com.github.marschall.lineparser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class FieldTokenizerTest {
+
+  private static List<String> fields(FieldTokenizer tokenizer, String line) {
+    ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.ISO_8859_1));
+    CharSequence sequence = new ByteBufferCharSequence(buffer);
+    tokenizer.tokenize(sequence);
+    List<String> fields = new ArrayList<>(tokenizer.getFieldCount());
+    for (int i = 0; i < tokenizer.getFieldCount(); i++) {
+      CharSequence field = tokenizer.getField(i);
+      fields.add(field != null ? field.toString() : null);
+    }
+    return fields;
+  }
+
+  @Test
+  public void tsv() {
+    FieldTokenizer tokenizer = FieldTokenizer.tsv();
+    assertEquals(Arrays.asList("a", "bc", "", "d"), fields(tokenizer, "a\tbc\t\td"));
+    assertEquals(Arrays.asList(""), fields(tokenizer, ""));
+    assertEquals(Arrays.asList("a", ""), fields(tokenizer, "a\t"));
+    assertEquals(Arrays.asList("\"a", "b\""), fields(tokenizer, "\"a\tb\""));
+  }
+
+  @Test
+  public void manyFields() {
+    FieldTokenizer tokenizer = new FieldTokenizer(';');
+    StringBuilder line = new StringBuilder();
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      if (i > 0) {
+        line.append(';');
+      }
+      line.append(i);
+      expected.add(Integer.toString(i));
+    }
+    assertEquals(expected, fields(tokenizer, line.toString()));
+  }
+
+  @Test
+  public void csvQuoting() {
+    FieldTokenizer tokenizer = FieldTokenizer.csv();
+    assertEquals(Arrays.asList("a,b", "c", ""), fields(tokenizer, "\"a,b\",c,\"\""));
+    // doubled quotes are not unescaped
+    assertEquals(Arrays.asList("say \"\"hi\"\"", "x"), fields(tokenizer, "\"say \"\"hi\"\"\",x"));
+    // unterminated
+    assertEquals(Arrays.asList("a", "b,c"), fields(tokenizer, "a,\"b,c"));
+  }
+
+  @Test
+  public void positions() {
+    FieldTokenizer tokenizer = FieldTokenizer.csv();
+    assertEquals(2, tokenizer.tokenize("ab,\"cd\""));
+    assertEquals(0, tokenizer.getFieldStart(0));
+    assertEquals(2, tokenizer.getFieldEnd(0));
+    assertEquals(4, tokenizer.getFieldStart(1));
+    assertEquals(6, tokenizer.getFieldEnd(1));
+    assertThrows(IndexOutOfBoundsException.class, () -> tokenizer.getField(2));
+  }
+
+  @Test
+  public void projection() {
+    FieldTokenizer tokenizer = FieldTokenizer.csv().withColumns(3, 1);
+    assertEquals(Arrays.asList("d", "b"), fields(tokenizer, "a,b,c,d,e,f"));
+    assertEquals(Arrays.asList("d,d", "b"), fields(tokenizer, "a,b,c,\"d,d\""));
+
+    assertEquals(1, tokenizer.tokenize("a,b"));
+    assertEquals(2, tokenizer.getFieldCount());
+    assertNull(tokenizer.getField(0));
+    assertEquals("b", tokenizer.getField(1).toString());
+  }
+
+  @Test
+  public void invalidProjection() {
+    FieldTokenizer tokenizer = FieldTokenizer.csv();
+    assertThrows(IllegalArgumentException.class, () -> tokenizer.withColumns());
+    assertThrows(IllegalArgumentException.class, () -> tokenizer.withColumns(-1));
+    assertThrows(IllegalArgumentException.class, () -> tokenizer.withColumns(1, 1));
+  }
+
+}
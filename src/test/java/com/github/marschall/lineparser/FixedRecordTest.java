@@ -0,0 +1,149 @@
+package com.github.marschall.lineparser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class FixedRecordTest {
+
+  private static final FixedWidthColumns COLUMNS = new FixedWidthColumns(4, 6, 3);
+
+  private static final List<String> RECORDS = Arrays.asList(
+          "0001Alice 042",
+          "0002Bob   007",
+          "0003\u00C4rger 100",
+          "0004      000",
+          "0005Eve   999");
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, ""},
+            new Object[] {StandardCharsets.ISO_8859_1, "\n"},
+            new Object[] {StandardCharsets.ISO_8859_1, "\r\n"},
+            new Object[] {Charset.forName("IBM037"), ""},
+            new Object[] {StandardCharsets.UTF_16BE, "\n"}
+            );
+  }
+
+  private static Path writeRecords(Charset cs, String separator, String trailer) throws IOException {
+    StringBuilder content = new StringBuilder();
+    for (String record : RECORDS) {
+      content.append(record).append(separator);
+    }
+    content.append(trailer);
+    Path tempFile = Files.createTempFile("FixedRecordTest", null);
+    Files.write(tempFile, content.toString().getBytes(cs));
+    return tempFile;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void forEachFixedRecord(Charset cs, String separator) throws IOException {
+    Path tempFile = writeRecords(cs, separator, "");
+    int recordLength = RECORDS.get(0).getBytes(cs).length;
+    int separatorLength = separator.getBytes(cs).length;
+    try {
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 2 * (recordLength + separatorLength) + 1}) {
+        List<Line> records = new ArrayList<>();
+        List<String> actual = new ArrayList<>();
+        new LineParser(mapSize).forEachFixedRecord(tempFile, cs, recordLength, separatorLength, record -> {
+          records.add(record);
+          actual.add(record.getContent().toString());
+        });
+        assertEquals(RECORDS, actual);
+        for (int i = 0; i < records.size(); i++) {
+          assertEquals((long) i * (recordLength + separatorLength), records.get(i).getOffset());
+          assertEquals(recordLength, records.get(i).getLength());
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void bom() throws IOException {
+    Path tempFile = Files.createTempFile("FixedRecordTest", null);
+    try {
+      Charset[][] charsets = {
+          {StandardCharsets.UTF_16, StandardCharsets.UTF_16BE},
+          {StandardCharsets.UTF_16, StandardCharsets.UTF_16LE},
+          {Charset.forName("UTF-32"), Charset.forName("UTF-32LE")}
+      };
+      for (Charset[] pair : charsets) {
+        Charset cs = pair[0];
+        Charset bomCharset = pair[1];
+        Files.write(tempFile, "\uFEFFabcdef".getBytes(bomCharset));
+        int recordLength = "ab".getBytes(bomCharset).length;
+        List<Line> records = new ArrayList<>();
+        List<String> actual = new ArrayList<>();
+        new LineParser().forEachFixedRecord(tempFile, cs, recordLength, 0, record -> {
+          records.add(record);
+          actual.add(record.getContent().toString());
+        });
+        assertEquals(Arrays.asList("ab", "cd", "ef"), actual);
+        int bomLength = recordLength / 2;
+        assertEquals(bomLength, records.get(0).getOffset());
+        assertEquals(bomLength + recordLength, records.get(1).getOffset());
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void truncatedLastRecord() throws IOException {
+    Charset cs = StandardCharsets.ISO_8859_1;
+    Path tempFile = writeRecords(cs, "\n", "0006Tr");
+    try {
+      List<String> names = new ArrayList<>();
+      new LineParser().forEachFixedRecord(tempFile, cs, COLUMNS.getRecordLength(), 1,
+          record -> names.add(COLUMNS.getTrimmed(record.getContent(), 1).toString()));
+      assertEquals(Arrays.asList("Alice", "Bob", "\u00C4rger", "", "Eve", "Tr"), names);
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void invalidArguments() {
+    LineParser parser = new LineParser(16);
+    Path path = Paths.get("does-not-exist");
+    Charset cs = StandardCharsets.ISO_8859_1;
+    assertThrows(IllegalArgumentException.class, () -> parser.forEachFixedRecord(path, cs, 0, 0, record -> { }));
+    assertThrows(IllegalArgumentException.class, () -> parser.forEachFixedRecord(path, cs, 4, -1, record -> { }));
+    assertThrows(IllegalArgumentException.class, () -> parser.forEachFixedRecord(path, cs, 16, 1, record -> { }));
+  }
+
+  @Test
+  public void columns() {
+    String record = RECORDS.get(1);
+    assertEquals(3, COLUMNS.getColumnCount());
+    assertEquals(13, COLUMNS.getRecordLength());
+    assertEquals("0002", COLUMNS.get(record, 0).toString());
+    assertEquals("Bob   ", COLUMNS.get(record, 1).toString());
+    assertEquals("Bob", COLUMNS.getTrimmed(record, 1).toString());
+    assertEquals("007", COLUMNS.get(record, 2).toString());
+    assertEquals(4, COLUMNS.getStart(1));
+    assertEquals(10, COLUMNS.getEnd(1));
+    assertEquals("", COLUMNS.get("0002B", 2).toString());
+    assertThrows(IndexOutOfBoundsException.class, () -> COLUMNS.get(record, 3));
+    assertThrows(IllegalArgumentException.class, () -> new FixedWidthColumns());
+    assertThrows(IllegalArgumentException.class, () -> new FixedWidthColumns(1, -1));
+  }
+
+}
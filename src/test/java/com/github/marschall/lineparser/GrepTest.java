@@ -0,0 +1,166 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.TestFiles.writeLines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class GrepTest {
+
+  private static final String[] NEEDLES = {
+      "x", "needle", "\u00E4", "\u00E4b", "\u0100", "line 1", "not found", "e 99"
+  };
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r"},
+            new Object[] {StandardCharsets.UTF_16LE, "\n"},
+            new Object[] {StandardCharsets.UTF_16BE, "\r\n"},
+            new Object[] {Charset.forName("Shift_JIS"), "\n"}
+            );
+  }
+
+  private static List<String> lines(Charset cs) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      switch (i % 6) {
+        case 0:
+          lines.add("line " + i);
+          break;
+        case 1:
+          lines.add("a needle in line " + i);
+          break;
+        case 2:
+          lines.add("");
+          break;
+        case 3:
+          if (cs.newEncoder().canEncode('\u00E4')) {
+            lines.add("\u00E4b x " + i);
+          } else {
+            lines.add("b x " + i);
+          }
+          break;
+        case 4:
+          // may match \u0100 at an odd offset in UTF-16
+          lines.add("\u0001\u0000 " + i);
+          break;
+        default:
+          if (cs.newEncoder().canEncode('\u30A2')) {
+            // 0x83 0x41 in Shift_JIS, the second byte is 'A'
+            lines.add("\u30A2 " + i);
+          } else {
+            lines.add("A " + i);
+          }
+          break;
+      }
+    }
+    return lines;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void grep(Charset cs, String newline) throws IOException {
+    List<String> lines = lines(cs);
+    Path tempFile = writeLines(lines, cs, newline);
+    try {
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 128}) {
+        LineParser parser = new LineParser(mapSize);
+        List<String> needles = new ArrayList<>();
+        for (String needle : NEEDLES) {
+          if (cs.newEncoder().canEncode(needle)) {
+            needles.add(needle);
+          }
+        }
+        needles.add("A");
+        for (String needle : needles) {
+          List<String> expected = new ArrayList<>();
+          for (String line : lines) {
+            if (line.contains(needle)) {
+              expected.add(line);
+            }
+          }
+          List<String> actual = new ArrayList<>();
+          parser.grep(tempFile, cs, needle, line -> actual.add(line.getContent().toString()));
+          assertEquals(expected, actual, needle + " map size: " + mapSize);
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void offsetAndLength() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path tempFile = writeLines(lines(cs), cs, "\r\n");
+    try {
+      List<Line> grepLines = new ArrayList<>();
+      new LineParser().grep(tempFile, cs, "needle", grepLines::add);
+      List<Line> allLines = new ArrayList<>();
+      new LineParser().forEach(tempFile, cs, line -> {
+        if (line.getContent().toString().contains("needle")) {
+          allLines.add(line);
+        }
+      });
+      assertEquals(allLines.size(), grepLines.size());
+      for (int i = 0; i < allLines.size(); i++) {
+        assertEquals(allLines.get(i).getOffset(), grepLines.get(i).getOffset());
+        assertEquals(allLines.get(i).getLength(), grepLines.get(i).getLength());
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void oversizedLines() throws IOException {
+    Charset cs = StandardCharsets.ISO_8859_1;
+    List<String> lines = new ArrayList<>();
+    StringBuilder longLine = new StringBuilder("x");
+    for (int i = 0; i < 100; i++) {
+      longLine.append(i);
+    }
+    lines.add("x short");
+    lines.add(longLine.toString());
+    lines.add("x after");
+    Path tempFile = writeLines(lines, cs, "\n");
+    try {
+      LineParser parser = new LineParser(64);
+      assertThrows(LineTooLongException.class, () -> parser.grep(tempFile, cs, "x", line -> { }));
+
+      List<String> actual = new ArrayList<>();
+      ParseStatistics statistics = parser.withMaxLineLength(64, OversizedLinePolicy.SKIP)
+              .grep(tempFile, cs, "x", line -> actual.add(line.getContent().toString()));
+      List<String> expected = new ArrayList<>();
+      expected.add("x short");
+      expected.add("x after");
+      assertEquals(expected, actual);
+      assertEquals(1L, statistics.getOversizedLineCount());
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void invalidNeedle() {
+    LineParser parser = new LineParser();
+    Path path = null;
+    assertThrows(IllegalArgumentException.class, () -> parser.grep(path, StandardCharsets.UTF_8, "", line -> { }));
+    assertThrows(IllegalArgumentException.class, () -> parser.grep(path, StandardCharsets.UTF_8, "a\nb", line -> { }));
+  }
+
+}
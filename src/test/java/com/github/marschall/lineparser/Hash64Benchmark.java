@@ -0,0 +1,72 @@
+package com.github.marschall.lineparser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class Hash64Benchmark {
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+            .include(".*Hash64Benchmark.*")
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .forks(10)
+            .build();
+    new Runner(options).run();
+  }
+
+  @Param({"16", "80", "400"})
+  public int length;
+
+  private ByteBuffer buffer;
+
+  private LineReader reader;
+
+  private Line line;
+
+  @Setup
+  public void setup() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < this.length; i++) {
+      builder.append((char) ('a' + (i % 26)));
+    }
+    // we need to make sure Buffer.hasArray() returns false so we get the same
+    // code path has with MappedByteBuffer
+    byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+    this.buffer = ByteBuffer.allocateDirect(bytes.length);
+    this.buffer.put(bytes);
+    this.buffer.flip();
+    this.reader = LineReader.forCharset(StandardCharsets.UTF_8);
+    this.line = new Line(0L, bytes.length, null, this.buffer, 0);
+  }
+
+  @Benchmark
+  public int stringHashCode() throws IOException {
+    // what user code has to do without hash64(): decode and copy
+    return this.reader.readLine(this.buffer, 0, this.length).toString().hashCode();
+  }
+
+  @Benchmark
+  public long hash64() {
+    return this.line.hash64();
+  }
+
+}
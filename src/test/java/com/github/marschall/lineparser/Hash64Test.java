@@ -0,0 +1,143 @@
+package com.github.marschall.lineparser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class Hash64Test {
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16LE, "\n"}
+            );
+  }
+
+  private static long hash(byte[] bytes, ByteOrder order) {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 3).order(order);
+    // make sure unaligned reads work
+    buffer.position(3);
+    buffer.put(bytes);
+    return XxHash64.hash(buffer, 3, bytes.length, 0L);
+  }
+
+  private static long hash(String s) {
+    byte[] bytes = s.getBytes(StandardCharsets.US_ASCII);
+    long littleEndian = hash(bytes, ByteOrder.LITTLE_ENDIAN);
+    assertEquals(littleEndian, hash(bytes, ByteOrder.BIG_ENDIAN), s);
+    return littleEndian;
+  }
+
+  @Test
+  public void referenceValues() {
+    assertEquals(0xEF46DB3751D8E999L, hash(""));
+    assertEquals(0xD24EC4F1A98C6E5BL, hash("a"));
+    assertEquals(0x44BC2CF5AD770999L, hash("abc"));
+  }
+
+  @Test
+  public void allLengths() {
+    StringBuilder builder = new StringBuilder();
+    long previous = hash("");
+    for (int i = 0; i < 100; i++) {
+      builder.append((char) ('a' + (i % 26)));
+      long current = hash(builder.toString());
+      assertNotEquals(previous, current);
+      previous = current;
+    }
+  }
+
+  @Test
+  public void charSequence() {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 50; i++) {
+      String s = builder.toString();
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_16LE);
+      assertEquals(hash(bytes, ByteOrder.LITTLE_ENDIAN), XxHash64.hash(s, 0, s.length(), 0L), s);
+      builder.append((char) ('\u00E0' + i));
+    }
+    assertEquals(XxHash64.hash("bc", 0, 2, 0L), XxHash64.hash("abcd", 1, 3, 0L));
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void lines(Charset cs, String newline) throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      StringBuilder line = new StringBuilder("line \u00E4 ");
+      for (int j = 0; j < (i % 50); j++) {
+        line.append(j);
+      }
+      lines.add(line.toString());
+    }
+    Path tempFile = Files.createTempFile("Hash64Test", null);
+    try {
+      try (BufferedWriter writer = Files.newBufferedWriter(tempFile, cs)) {
+        for (String line : lines) {
+          writer.append(line);
+          writer.append(newline);
+        }
+      }
+      List<Long> expected = new ArrayList<>();
+      for (String line : lines) {
+        expected.add(hash(line.getBytes(cs), ByteOrder.BIG_ENDIAN));
+      }
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 256}) {
+        List<Long> actual = new ArrayList<>();
+        new LineParser(mapSize).forEach(tempFile, cs, line -> actual.add(line.hash64()));
+        assertEquals(expected, actual, "map size: " + mapSize);
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void afterCallback() throws IOException {
+    Path tempFile = Files.createTempFile("Hash64Test", null);
+    try {
+      Files.write(tempFile, "line\n".getBytes(StandardCharsets.US_ASCII));
+      List<Line> lines = new ArrayList<>();
+      new LineParser().forEach(tempFile, StandardCharsets.US_ASCII, lines::add);
+      assertEquals(1, lines.size());
+      assertThrows(IllegalStateException.class, () -> lines.get(0).hash64());
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void afterFailedCallback() throws IOException {
+    Path tempFile = Files.createTempFile("Hash64Test", null);
+    try {
+      Files.write(tempFile, "line\n".getBytes(StandardCharsets.US_ASCII));
+      List<Line> lines = new ArrayList<>();
+      assertThrows(IllegalArgumentException.class, () -> new LineParser().forEach(tempFile, StandardCharsets.US_ASCII, line -> {
+        lines.add(line);
+        throw new IllegalArgumentException();
+      }));
+      assertEquals(1, lines.size());
+      assertThrows(IllegalStateException.class, () -> lines.get(0).hash64());
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+}
@@ -0,0 +1,150 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.TestFiles.writeLines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class KeyFilterTest {
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16LE, "\n"},
+            new Object[] {StandardCharsets.UTF_16BE, "\r"}
+            );
+  }
+
+  private static String field(String line, int column) {
+    String[] fields = line.split(";", -1);
+    return column < fields.length ? fields[column] : null;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void semiJoin(Charset cs, String newline) throws IOException {
+    Random random = new Random(42L);
+    Set<String> keys = new HashSet<>();
+    List<String> keyLines = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      String key = "k\u00E4" + random.nextInt(2_000);
+      keys.add(key);
+      keyLines.add(key);
+    }
+    keyLines.add("");
+    List<String> dataLines = new ArrayList<>();
+    for (int i = 0; i < 5_000; i++) {
+      dataLines.add(i + ";k\u00E4" + random.nextInt(2_000) + ";" + random.nextInt(10));
+    }
+    dataLines.add("");
+    dataLines.add("no fields");
+    dataLines.add(";");
+
+    List<String> expected = new ArrayList<>();
+    for (String line : dataLines) {
+      if (keys.contains(field(line, 1))) {
+        expected.add(line);
+      }
+    }
+
+    Path keyFile = writeLines(keyLines, cs, newline);
+    Path dataFile = writeLines(dataLines, cs, newline);
+    try {
+      KeyFilter exact = KeyFilter.exact(keyFile, cs);
+      assertEquals(keys.size(), exact.getKeyCount());
+      List<String> actual = new ArrayList<>();
+      new LineParser()
+        .withLinePredicate(LinePredicate.fieldIn(';', 1, exact))
+        .forEach(dataFile, cs, line -> actual.add(line.getContent().toString()));
+      assertEquals(expected, actual);
+
+      KeyFilter bloom = KeyFilter.bloom(keyFile, cs, 0.01d);
+      assertEquals(keyLines.size() - 1, bloom.getKeyCount());
+      List<String> candidates = new ArrayList<>();
+      new LineParser()
+        .withLinePredicate(LinePredicate.fieldIn(';', 1, bloom))
+        .forEach(dataFile, cs, line -> candidates.add(line.getContent().toString()));
+      assertTrue(candidates.containsAll(expected));
+      // about 1% of the non matching lines
+      assertTrue((candidates.size() - expected.size()) < ((dataLines.size() - expected.size()) / 20));
+    } finally {
+      Files.delete(keyFile);
+      Files.delete(dataFile);
+    }
+  }
+
+  @Test
+  public void firstAndLastField() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    List<String> keyLines = new ArrayList<>();
+    keyLines.add("a");
+    keyLines.add("b");
+    List<String> dataLines = new ArrayList<>();
+    dataLines.add("a");
+    dataLines.add("a,b");
+    dataLines.add("b,a");
+    dataLines.add("c,c");
+    dataLines.add("ab,");
+    Path keyFile = writeLines(keyLines, cs, "\n");
+    Path dataFile = writeLines(dataLines, cs, "\n");
+    try {
+      KeyFilter keys = KeyFilter.exact(keyFile, cs);
+
+      List<String> first = new ArrayList<>();
+      new LineParser()
+        .withLinePredicate(LinePredicate.fieldIn(',', 0, keys))
+        .forEach(dataFile, cs, line -> first.add(line.getContent().toString()));
+      List<String> expected = new ArrayList<>();
+      expected.add("a");
+      expected.add("a,b");
+      expected.add("b,a");
+      assertEquals(expected, first);
+
+      List<String> second = new ArrayList<>();
+      new LineParser()
+        .withLinePredicate(LinePredicate.fieldIn(',', 1, keys))
+        .forEach(dataFile, cs, line -> second.add(line.getContent().toString()));
+      expected.clear();
+      expected.add("a,b");
+      expected.add("b,a");
+      assertEquals(expected, second);
+    } finally {
+      Files.delete(keyFile);
+      Files.delete(dataFile);
+    }
+  }
+
+  @Test
+  public void invalidArguments() throws IOException {
+    Path keyFile = Files.createTempFile("KeyFilterTest", null);
+    try {
+      assertThrows(IllegalArgumentException.class, () -> KeyFilter.bloom(keyFile, StandardCharsets.UTF_8, 0.0d));
+      assertThrows(IllegalArgumentException.class, () -> KeyFilter.bloom(keyFile, StandardCharsets.UTF_8, 1.0d));
+      KeyFilter keys = KeyFilter.exact(keyFile, Charset.forName("Shift_JIS"));
+      assertEquals(0L, keys.getKeyCount());
+      assertThrows(IllegalArgumentException.class, () -> LinePredicate.fieldIn(',', 0, keys));
+      KeyFilter utf8 = KeyFilter.exact(keyFile, StandardCharsets.UTF_8);
+      assertThrows(IllegalArgumentException.class, () -> LinePredicate.fieldIn(',', -1, utf8));
+    } finally {
+      Files.delete(keyFile);
+    }
+  }
+
+}
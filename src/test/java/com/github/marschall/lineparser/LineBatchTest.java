@@ -0,0 +1,118 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.TestFiles.describeLines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class LineBatchTest {
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\r\n"},
+            new Object[] {StandardCharsets.UTF_8, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r"},
+            new Object[] {StandardCharsets.UTF_16LE, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16BE, "\n"}
+            );
+  }
+
+  private static Path writeLines(Charset cs, String newline) throws IOException {
+    Path tempFile = Files.createTempFile("LineBatchTest", null);
+    try (BufferedWriter writer = Files.newBufferedWriter(tempFile, cs)) {
+      for (int i = 0; i < 500; i++) {
+        writer.append((i % 9 == 0) ? "" : "line \u00E4 " + i);
+        writer.append(newline);
+      }
+    }
+    return tempFile;
+  }
+
+  private static String describe(Line line) {
+    return describe(line.getOffset(), line.getLength(), line.getContent(), line.hash64());
+  }
+
+  private static String describe(long offset, int length, CharSequence content, long hash) {
+    return offset + " " + length + " " + content + " " + hash;
+  }
+
+  private static List<String> actual(LineParser parser, Path path, Charset cs, int batchSize) throws IOException {
+    List<String> actual = new ArrayList<>();
+    parser.forEachBatch(path, cs, batchSize, batch -> {
+      assertTrue(batch.size() > 0);
+      assertTrue(batch.size() <= batchSize);
+      long[] offsets = batch.getOffsets();
+      int[] lengths = batch.getLengths();
+      for (int i = 0; i < batch.size(); i++) {
+        try {
+          actual.add(describe(offsets[i], lengths[i], batch.getContent(i), batch.hash64(i)));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    });
+    return actual;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void sameAsForEach(Charset cs, String newline) throws IOException {
+    Path tempFile = writeLines(cs, newline);
+    try {
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 128}) {
+        LineParser parser = new LineParser(mapSize);
+        List<String> expected = describeLines(parser, tempFile, cs, LineBatchTest::describe);
+        for (int batchSize : new int[] {1, 7, 1024}) {
+          assertEquals(expected, actual(parser, tempFile, cs, batchSize), "batch size: " + batchSize);
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void delimitersAndPredicate() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path tempFile = writeLines(cs, "\n");
+    try {
+      LineParser delimited = new LineParser().withDelimiters("\n", " ");
+      assertEquals(describeLines(delimited, tempFile, cs, LineBatchTest::describe), actual(delimited, tempFile, cs, 10));
+      LineParser filtered = new LineParser().withLinePredicate(LinePredicate.lengthBetween(1, 10));
+      assertEquals(describeLines(filtered, tempFile, cs, LineBatchTest::describe), actual(filtered, tempFile, cs, 10));
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void onlyValidDuringCallback() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path tempFile = writeLines(cs, "\n");
+    try {
+      List<LineBatch> batches = new ArrayList<>();
+      new LineParser().forEachBatch(tempFile, cs, 1024, batches::add);
+      assertEquals(1, batches.size());
+      assertThrows(IllegalStateException.class, () -> batches.get(0).hash64(0));
+      assertThrows(IllegalStateException.class, () -> batches.get(0).getBuffer());
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+}
@@ -0,0 +1,116 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.TestFiles.writeLines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class LineCounterTest {
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16LE, "\n"},
+            new Object[] {StandardCharsets.UTF_16BE, "\r\n"}
+            );
+  }
+
+  private static List<String> lines() {
+    Random random = new Random(42L);
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      // enough distinct lines for the table to grow
+      int value = random.nextInt(2_000);
+      StringBuilder line = new StringBuilder("line \u00E4 ");
+      line.append(value);
+      if ((value % 3) == 0) {
+        // longer lines with a common prefix
+        line.append(" 0123456789abcdef0123456789abcdef");
+      }
+      lines.add(line.toString());
+    }
+    lines.add("");
+    lines.add("");
+    return lines;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void countDistinct(Charset cs, String newline) throws IOException {
+    List<String> lines = lines();
+    Map<String, Long> expected = new HashMap<>();
+    for (String line : lines) {
+      expected.merge(line, 1L, Long::sum);
+    }
+    Path tempFile = writeLines(lines, cs, newline);
+    try {
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 256}) {
+        try (LineCounter counter = new LineParser(mapSize).countDistinct(tempFile, cs)) {
+          assertEquals(expected.size(), counter.getDistinctCount());
+          assertEquals(lines.size(), counter.getTotalCount());
+          Map<String, Long> actual = new HashMap<>();
+          counter.forEach((line, count) -> actual.put(line.getContent().toString(), count));
+          assertEquals(expected, actual, "map size: " + mapSize);
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void linePredicate() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      lines.add(((i % 2) == 0 ? "even " : "odd ") + (i % 5));
+    }
+    Path tempFile = writeLines(lines, cs, "\n");
+    try {
+      LineParser parser = new LineParser().withLinePredicate(LinePredicate.startsWith(cs, "even"));
+      try (LineCounter counter = parser.countDistinct(tempFile, cs)) {
+        Map<String, Long> actual = new HashMap<>();
+        counter.forEach((line, count) -> actual.put(line.getContent().toString(), count));
+        Map<String, Long> expected = new HashMap<>();
+        for (int i = 0; i < 5; i++) {
+          expected.put("even " + i, 10L);
+        }
+        assertEquals(expected, actual);
+        assertEquals(50L, counter.getTotalCount());
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void closed() throws IOException {
+    Path tempFile = Files.createTempFile("LineCounterTest", null);
+    try {
+      LineCounter counter = new LineParser().countDistinct(tempFile, StandardCharsets.UTF_8);
+      assertEquals(0L, counter.getDistinctCount());
+      counter.close();
+      counter.close();
+      assertThrows(IllegalStateException.class, () -> counter.forEach((line, count) -> { }));
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+}
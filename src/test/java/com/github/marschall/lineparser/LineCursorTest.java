@@ -0,0 +1,244 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.TestFiles.describeLines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class LineCursorTest {
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\r\n"},
+            new Object[] {StandardCharsets.UTF_8, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r"},
+            new Object[] {StandardCharsets.UTF_16, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16LE, "\n"},
+            new Object[] {StandardCharsets.UTF_16BE, "\r"}
+            );
+  }
+
+  private static Path writeLines(Charset cs, String newline) throws IOException {
+    Path tempFile = Files.createTempFile("LineCursorTest", null);
+    try (BufferedWriter writer = Files.newBufferedWriter(tempFile, cs)) {
+      for (int i = 0; i < 300; i++) {
+        if (i % 50 == 7) {
+          // longer than the smallest mapping
+          for (int j = 0; j < 40; j++) {
+            writer.append("long \u00E4 ");
+          }
+        } else if (i % 9 != 0) {
+          writer.append("line \u00E4 " + i);
+        }
+        writer.append(newline);
+      }
+      // no newline at the end
+      writer.append("last");
+    }
+    return tempFile;
+  }
+
+  private static String describe(Line line) {
+    return line.getOffset() + " " + line.getLength() + " " + line.getContent();
+  }
+
+  private static List<String> actual(LineParser parser, Path path, Charset cs) throws IOException {
+    List<String> actual = new ArrayList<>();
+    try (LineCursor cursor = parser.openCursor(path, cs)) {
+      while (cursor.next()) {
+        actual.add(describe(cursor.getLine()));
+      }
+      assertFalse(cursor.next());
+    }
+    return actual;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void sameAsForEach(Charset cs, String newline) throws IOException {
+    Path tempFile = writeLines(cs, newline);
+    try {
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 512, 128}) {
+        List<LineParser> parsers = new ArrayList<>();
+        LineParser parser = new LineParser(mapSize);
+        LineParser skipping = parser.withMaxLineLength(200, OversizedLinePolicy.SKIP);
+        parsers.add(skipping);
+        parsers.add(parser.withMaxLineLength(200, OversizedLinePolicy.TRUNCATE));
+        parsers.add(skipping.withLinePredicate(LinePredicate.lengthBetween(1, 20)));
+        if (mapSize > 512) {
+          parsers.add(parser);
+        }
+        for (LineParser each : parsers) {
+          assertEquals(describeLines(each, tempFile, cs, LineCursorTest::describe), actual(each, tempFile, cs), "map size: " + mapSize);
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void lineTooLong() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path tempFile = writeLines(cs, "\n");
+    try (LineCursor cursor = new LineParser(128).openCursor(tempFile, cs)) {
+      assertThrows(LineTooLongException.class, () -> {
+        while (cursor.next()) {
+          assertNotNull(cursor.getLine());
+        }
+      });
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void emptyFileAndClosed() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path tempFile = Files.createTempFile("LineCursorTest", null);
+    try {
+      LineCursor cursor = new LineParser().openCursor(tempFile, cs);
+      assertThrows(IllegalStateException.class, cursor::getLine);
+      assertFalse(cursor.next());
+      cursor.close();
+      cursor.close();
+      assertThrows(IllegalStateException.class, cursor::next);
+      assertThrows(IllegalStateException.class, () -> new LineParser().withDelimiters(",").openCursor(tempFile, cs));
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  /**
+   * Records the signals, requests more lines from {@link #onNext(Line)}
+   * or cancels after a number of lines.
+   */
+  static final class RecordingSubscriber implements LinePublisher.Subscriber {
+
+    final List<String> lines = new ArrayList<>();
+    LinePublisher.Subscription subscription;
+    Throwable error;
+    boolean completed;
+    int requestInOnNext;
+    int cancelAfter = Integer.MAX_VALUE;
+
+    @Override
+    public void onSubscribe(LinePublisher.Subscription s) {
+      assertEquals(null, this.subscription);
+      this.subscription = s;
+    }
+
+    @Override
+    public void onNext(Line line) {
+      assertFalse(this.completed);
+      this.lines.add(describe(line));
+      if (this.lines.size() == this.cancelAfter) {
+        this.subscription.cancel();
+      } else if (this.requestInOnNext > 0) {
+        this.subscription.request(this.requestInOnNext);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      assertEquals(null, this.error);
+      this.error = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+      assertFalse(this.completed);
+      this.completed = true;
+    }
+
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void publisher(Charset cs, String newline) throws IOException {
+    Path tempFile = writeLines(cs, newline);
+    try {
+      LineParser parser = new LineParser(512).withMaxLineLength(200, OversizedLinePolicy.TRUNCATE);
+      List<String> expected = describeLines(parser, tempFile, cs, LineCursorTest::describe);
+      LinePublisher publisher = parser.publisher(tempFile, cs);
+
+      // only as many lines as requested
+      RecordingSubscriber stepwise = new RecordingSubscriber();
+      publisher.subscribe(stepwise);
+      assertEquals(0, stepwise.lines.size());
+      stepwise.subscription.request(3L);
+      assertEquals(expected.subList(0, 3), stepwise.lines);
+      stepwise.subscription.request(10L);
+      assertEquals(expected.subList(0, 13), stepwise.lines);
+      stepwise.subscription.request(Long.MAX_VALUE);
+      stepwise.subscription.request(Long.MAX_VALUE);
+      assertEquals(expected, stepwise.lines);
+      assertTrue(stepwise.completed);
+      assertEquals(null, stepwise.error);
+
+      // requesting from onNext
+      RecordingSubscriber reentrant = new RecordingSubscriber();
+      reentrant.requestInOnNext = 1;
+      publisher.subscribe(reentrant);
+      reentrant.subscription.request(1L);
+      assertEquals(expected, reentrant.lines);
+      assertTrue(reentrant.completed);
+
+      // cancelling from onNext
+      RecordingSubscriber cancelling = new RecordingSubscriber();
+      cancelling.cancelAfter = 5;
+      publisher.subscribe(cancelling);
+      cancelling.subscription.request(100L);
+      cancelling.subscription.request(100L);
+      assertEquals(expected.subList(0, 5), cancelling.lines);
+      assertFalse(cancelling.completed);
+      assertEquals(null, cancelling.error);
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void publisherErrors() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path tempFile = writeLines(cs, "\n");
+    try {
+      RecordingSubscriber invalid = new RecordingSubscriber();
+      new LineParser().publisher(tempFile, cs).subscribe(invalid);
+      invalid.subscription.request(0L);
+      assertTrue(invalid.error instanceof IllegalArgumentException);
+      invalid.subscription.request(1L);
+      assertEquals(0, invalid.lines.size());
+
+      RecordingSubscriber tooLong = new RecordingSubscriber();
+      new LineParser(128).publisher(tempFile, cs).subscribe(tooLong);
+      tooLong.subscription.request(Long.MAX_VALUE);
+      assertTrue(tooLong.error instanceof LineTooLongException);
+      assertFalse(tooLong.completed);
+    } finally {
+      Files.delete(tempFile);
+    }
+    RecordingSubscriber missing = new RecordingSubscriber();
+    new LineParser().publisher(tempFile, cs).subscribe(missing);
+    assertNotNull(missing.subscription);
+    assertTrue(missing.error instanceof NoSuchFileException || missing.error instanceof IOException);
+  }
+
+}
@@ -0,0 +1,138 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.TestFiles.describeLines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class LineNumberTest {
+
+  private static final String[] NEWLINES = {"\n", "\r\n", "\r", "\r\n", "\r\n"};
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1},
+            new Object[] {StandardCharsets.UTF_8},
+            new Object[] {StandardCharsets.UTF_16LE},
+            new Object[] {StandardCharsets.UTF_16BE}
+            );
+  }
+
+  /**
+   * Writes lines of varying length with mixed newlines so that line ends
+   * fall on every position of a word, the content of every line is its
+   * number.
+   */
+  private static Path writeLines(Charset cs) throws IOException {
+    Path tempFile = Files.createTempFile("LineNumberTest", null);
+    try (BufferedWriter writer = Files.newBufferedWriter(tempFile, cs)) {
+      for (int i = 1; i <= 1_000; i++) {
+        if (i % 13 != 0) {
+          writer.append(Integer.toString(i));
+          for (int j = 0; j < (i % 11); j++) {
+            writer.append('\u00E4');
+          }
+        }
+        writer.append(NEWLINES[i % NEWLINES.length]);
+      }
+      writer.append("1001");
+    }
+    return tempFile;
+  }
+
+  private static String describe(Line line) {
+    String content = line.getContent().toString();
+    int numberEnd = 0;
+    while ((numberEnd < content.length()) && Character.isDigit(content.charAt(numberEnd))) {
+      numberEnd += 1;
+    }
+    return line.getLineNumber() + " " + content.substring(0, numberEnd);
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void forEach(Charset cs) throws IOException {
+    Path tempFile = writeLines(cs);
+    try {
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 128}) {
+        List<String> actual = describeLines(new LineParser(mapSize), tempFile, cs, LineNumberTest::describe);
+        assertEquals(1001, actual.size());
+        for (int i = 0; i < actual.size(); i++) {
+          long lineNumber = i + 1L;
+          boolean empty = ((lineNumber % 13) == 0) && (lineNumber != 1001L);
+          assertEquals(empty ? lineNumber + " " : lineNumber + " " + lineNumber, actual.get(i));
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void skippedLinesAreCounted(Charset cs) throws IOException {
+    Path tempFile = writeLines(cs);
+    try {
+      LineParser parser = new LineParser(128)
+              .withMaxLineLength(20, OversizedLinePolicy.SKIP)
+              .withLinePredicate(LinePredicate.lengthBetween(1, Integer.MAX_VALUE));
+      List<String> actual = describeLines(parser, tempFile, cs, LineNumberTest::describe);
+      for (String line : actual) {
+        String[] numbers = line.split(" ");
+        assertEquals(numbers[0], numbers[1]);
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void parallel(Charset cs) throws IOException {
+    Path tempFile = writeLines(cs);
+    try {
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 128}) {
+        LineParser parser = new LineParser(mapSize);
+        List<String> expected = describeLines(parser, tempFile, cs, LineNumberTest::describe);
+        for (int chunkCount : new int[] {1, 2, 7, 64}) {
+          List<String> actual = parser.collect(tempFile, cs,
+                  Collectors.mapping(LineNumberTest::describe, Collectors.toList()), chunkCount);
+          assertEquals(expected, actual, "chunks: " + chunkCount);
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void cursor(Charset cs) throws IOException {
+    Path tempFile = writeLines(cs);
+    try {
+      LineParser parser = new LineParser(128);
+      List<String> actual = new ArrayList<>();
+      try (LineCursor cursor = parser.openCursor(tempFile, cs)) {
+        while (cursor.next()) {
+          actual.add(describe(cursor.getLine()));
+        }
+      }
+      assertEquals(describeLines(parser, tempFile, cs, LineNumberTest::describe), actual);
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+}
@@ -10,6 +10,7 @@ import static org.junit.jupiter.api.Assertions.fail;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 
 import org.junit.jupiter.api.Test;
 
@@ -48,6 +49,37 @@ public class LineParserDecodeTest {
     assertSame(charBuffer, reader.getOut());
   }
 
+  @Test
+  public void shrinkAfterLongLine() throws IOException {
+    StringBuilder longLine = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      longLine.append('a');
+    }
+    ByteBuffer longBuffer = ByteBuffer.wrap(longLine.toString().getBytes(US_ASCII));
+    ByteBuffer shortBuffer = ByteBuffer.wrap("bbb".getBytes(US_ASCII));
+    DecodingLineReader reader = new DecodingLineReader(US_ASCII, 3);
+
+    assertEquals(longLine.toString(), reader.readLine(longBuffer, 0, 100).toString());
+    assertEquals(100, reader.getOut().capacity());
+
+    for (int i = 0; i < (DecodingLineReader.SHRINK_INTERVAL * 2); i++) {
+      assertEquals("bbb", reader.readLine(shortBuffer, 0, 3).toString());
+    }
+    assertEquals(3, reader.getOut().capacity());
+    assertEquals(100, reader.getPeakBufferSize());
+  }
+
+  @Test
+  public void underestimatedLength() throws IOException {
+    // Shift_JIS averages 0.5 chars per byte but ASCII is 1 char per byte
+    Charset shiftJis = Charset.forName("Shift_JIS");
+    byte[] bytes = "abcdef\u3042".getBytes(shiftJis);
+    ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+    DecodingLineReader reader = new DecodingLineReader(shiftJis, 1);
+
+    assertEquals("abcdef\u3042", reader.readLine(byteBuffer, 0, bytes.length).toString());
+  }
+
   @Test
   public void invalidUtf8() throws IOException {
     DecodingLineReader reader = new DecodingLineReader(UTF_8, 3);
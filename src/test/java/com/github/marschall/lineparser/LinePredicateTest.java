@@ -0,0 +1,147 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.TestFiles.writeLines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class LinePredicateTest {
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16LE, "\n"},
+            new Object[] {StandardCharsets.UTF_16BE, "\r\n"}
+            );
+  }
+
+  private static List<String> lines() {
+    List<String> lines = new ArrayList<>();
+    String[] tags = {"ERROR", "WARN", "INFO", "DEBUG", "", "\u00E4"};
+    for (int i = 0; i < 300; i++) {
+      String tag = tags[i % tags.length];
+      lines.add(tag + " message " + i);
+    }
+    return lines;
+  }
+
+  private static List<String> parse(LineParser parser, Path path, Charset cs) throws IOException {
+    List<String> actual = new ArrayList<>();
+    parser.forEach(path, cs, line -> actual.add(line.getContent().toString()));
+    return actual;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void predicates(Charset cs, String newline) throws IOException {
+    List<String> lines = lines();
+    Path tempFile = writeLines(lines, cs, newline);
+    try {
+      int unit = "\n".getBytes(cs).length;
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 128}) {
+        LineParser parser = new LineParser(mapSize);
+
+        LinePredicate prefix = LinePredicate.startsWith(cs, "ERROR", "WARN", "\u00E4");
+        assertEquals(filter(lines, line -> line.startsWith("ERROR") || line.startsWith("WARN") || line.startsWith("\u00E4")),
+                parse(parser.withLinePredicate(prefix), tempFile, cs), "prefix map size: " + mapSize);
+
+        Predicate<String> lengthRange = line -> {
+          int byteLength = line.getBytes(cs).length;
+          return (byteLength >= (13 * unit)) && (byteLength <= (14 * unit));
+        };
+        LinePredicate length = LinePredicate.lengthBetween(13 * unit, 14 * unit);
+        assertEquals(filter(lines, lengthRange),
+                parse(parser.withLinePredicate(length), tempFile, cs), "length map size: " + mapSize);
+
+        Predicate<String> notPrefix = line -> !line.startsWith("ERROR") && !line.startsWith("WARN") && !line.startsWith("\u00E4");
+        assertEquals(filter(lines, notPrefix.and(lengthRange)),
+                parse(parser.withLinePredicate(prefix.negate().and(length)), tempFile, cs), "combined map size: " + mapSize);
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  private static List<String> filter(List<String> lines, Predicate<String> predicate) {
+    return lines.stream()
+            .filter(predicate)
+            .collect(Collectors.toList());
+  }
+
+  @Test
+  public void rejectedLinesAreNotDecoded() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    List<String> lines = new ArrayList<>();
+    lines.add("short");
+    StringBuilder longLine = new StringBuilder();
+    for (int i = 0; i < 10_000; i++) {
+      longLine.append('x');
+    }
+    lines.add(longLine.toString());
+    lines.add("short again");
+    Path tempFile = writeLines(lines, cs, "\n");
+    try {
+      ParseStatistics unfiltered = new LineParser().forEachWithStatistics(tempFile, cs, line -> { });
+      assertTrue(unfiltered.getPeakDecodeBufferSize() >= 10_000);
+
+      List<String> actual = new ArrayList<>();
+      ParseStatistics filtered = new LineParser()
+              .withLinePredicate(LinePredicate.lengthBetween(0, 100))
+              .forEachWithStatistics(tempFile, cs, line -> actual.add(line.getContent().toString()));
+      assertTrue(filtered.getPeakDecodeBufferSize() < 10_000);
+      assertEquals(filter(lines, line -> line.startsWith("short")), actual);
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void byteAt() {
+    LinePredicate predicate = LinePredicate.byteAt(1, (byte) 'a', (byte) 0xE4);
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] {'x', 'a', 'b', (byte) 0xE4, 'c'});
+    assertTrue(predicate.test(buffer, 0, 2));
+    assertFalse(predicate.test(buffer, 0, 1));
+    assertFalse(predicate.test(buffer, 1, 4));
+    assertTrue(predicate.test(buffer, 2, 2));
+    assertThrows(IllegalArgumentException.class, () -> LinePredicate.byteAt(-1, (byte) 'a'));
+  }
+
+  @Test
+  public void startsWithBytes() {
+    LinePredicate predicate = LinePredicate.startsWith(new byte[] {'a', 'b'}, new byte[] {'a', 'c', 'd'});
+    ByteBuffer buffer = ByteBuffer.wrap(new byte[] {'a', 'b', 'a', 'c', 'd', 'a'});
+    assertTrue(predicate.test(buffer, 0, 2));
+    assertFalse(predicate.test(buffer, 0, 1));
+    assertTrue(predicate.test(buffer, 2, 3));
+    assertFalse(predicate.test(buffer, 2, 2));
+    assertFalse(predicate.test(buffer, 5, 1));
+    assertFalse(predicate.test(buffer, 0, 0));
+    assertTrue(LinePredicate.startsWith(new byte[0]).test(buffer, 0, 0));
+  }
+
+  @Test
+  public void invalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> LinePredicate.lengthBetween(2, 1));
+    assertThrows(IllegalArgumentException.class, () -> LinePredicate.startsWith(StandardCharsets.US_ASCII, "\u00E4"));
+    assertThrows(IllegalArgumentException.class, () -> LinePredicate.startsWith(new byte[0][]));
+  }
+
+}
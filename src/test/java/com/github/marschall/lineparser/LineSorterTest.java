@@ -0,0 +1,134 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.TestFiles.writeLines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class LineSorterTest {
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16LE, "\n"},
+            new Object[] {StandardCharsets.UTF_16BE, "\r\n"}
+            );
+  }
+
+  private static List<String> lines() {
+    Random random = new Random(42L);
+    String[] prefixes = {"", "a", "ab", "abcd", "abcde", "\u00E4b", "\u00E4", "b\u0000", "z"};
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      String key = prefixes[random.nextInt(prefixes.length)] + random.nextInt(20);
+      lines.add(i + "," + key + "," + random.nextInt(100));
+    }
+    return lines;
+  }
+
+  private static String field(String line, int column) {
+    String[] fields = line.split(",", -1);
+    return column < fields.length ? fields[column] : "";
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void sortByField(Charset cs, String newline) throws IOException {
+    List<String> lines = lines();
+    List<String> expected = new ArrayList<>(lines);
+    // List.sort is stable
+    expected.sort(Comparator.comparing(line -> field(line, 1)));
+    Path input = writeLines(lines, cs, newline);
+    Path output = Files.createTempFile("LineSorterTest", null);
+    try {
+      for (int runLength : new int[] {1, 7, 100, 1_000, Integer.MAX_VALUE}) {
+        LineSorter.byField(',', 1).withRunLength(runLength).sort(input, cs, output);
+        assertEquals(expected, Files.readAllLines(output, cs), "run length: " + runLength);
+      }
+    } finally {
+      Files.delete(input);
+      Files.delete(output);
+    }
+  }
+
+  @Test
+  public void sortByLine() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    List<String> lines = lines();
+    Collections.shuffle(lines, new Random(1L));
+    List<String> expected = new ArrayList<>(lines);
+    Collections.sort(expected);
+    Path input = writeLines(lines, cs, "\n");
+    Path output = Files.createTempFile("LineSorterTest", null);
+    try {
+      LineSorter.byLine().withRunLength(64).sort(input, cs, output);
+      assertEquals(expected, Files.readAllLines(output, cs));
+    } finally {
+      Files.delete(input);
+      Files.delete(output);
+    }
+  }
+
+  @Test
+  public void missingFields() throws IOException {
+    Charset cs = StandardCharsets.US_ASCII;
+    List<String> lines = new ArrayList<>();
+    lines.add("a,c");
+    lines.add("b");
+    lines.add("");
+    lines.add("c,a,x");
+    lines.add("d,");
+    List<String> expected = new ArrayList<>();
+    expected.add("b");
+    expected.add("");
+    expected.add("d,");
+    expected.add("c,a,x");
+    expected.add("a,c");
+    Path input = writeLines(lines, cs, "\n");
+    Path output = Files.createTempFile("LineSorterTest", null);
+    try {
+      LineSorter.byField(',', 1).withRunLength(2).sort(input, cs, output);
+      assertEquals(expected, Files.readAllLines(output, cs));
+    } finally {
+      Files.delete(input);
+      Files.delete(output);
+    }
+  }
+
+  @Test
+  public void emptyFile() throws IOException {
+    Path input = Files.createTempFile("LineSorterTest", null);
+    Path output = Files.createTempFile("LineSorterTest", null);
+    try {
+      LineSorter.byLine().sort(input, StandardCharsets.UTF_8, output);
+      assertEquals(0L, Files.size(output));
+    } finally {
+      Files.delete(input);
+      Files.delete(output);
+    }
+  }
+
+  @Test
+  public void prefix() {
+    assertEquals(0L, LineSorter.prefix(""));
+    assertEquals(0x0061_0062_0000_0000L, LineSorter.prefix("ab"));
+    assertEquals(0x0061_0062_0063_0064L, LineSorter.prefix("abcde"));
+    assertEquals(0xFFFF_0000_0000_0000L, LineSorter.prefix("\uFFFF"));
+  }
+
+}
@@ -0,0 +1,136 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.TestFiles.writeLines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class LookupTest {
+
+  private static final Comparator<CharSequence> LEXICOGRAPHIC = (a, b) -> {
+    int length = Math.min(a.length(), b.length());
+    for (int i = 0; i < length; i++) {
+      int result = Character.compare(a.charAt(i), b.charAt(i));
+      if (result != 0) {
+        return result;
+      }
+    }
+    return Integer.compare(a.length(), b.length());
+  };
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16LE, "\n"},
+            new Object[] {StandardCharsets.UTF_16BE, "\r\n"}
+            );
+  }
+
+  private static List<String> lines() {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 2000; i += 3) {
+      StringBuilder line = new StringBuilder(String.format("key%05d", i));
+      if ((i % 2) == 0) {
+        line.append(",payload \u00E4");
+        for (int j = 0; j < (i % 17); j++) {
+          line.append(j);
+        }
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void lookup(Charset cs, String newline) throws IOException {
+    List<String> lines = lines();
+    Path tempFile = writeLines(lines, cs, newline);
+    try {
+      String[] prefixes = {
+          "key00000", // first line
+          "key01998", // last line
+          "key00999",
+          "key01000", // missing
+          "key001", // several lines
+          "key0", // all lines
+          "a", // before the first line
+          "z", // after the last line
+          "key00999,", // longer than some lines
+          "",
+      };
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 256}) {
+        LineParser parser = new LineParser(mapSize);
+        for (String prefix : prefixes) {
+          List<String> expected = lines.stream()
+                  .filter(line -> line.startsWith(prefix))
+                  .collect(Collectors.toList());
+          List<String> actual = new ArrayList<>();
+          parser.lookup(tempFile, cs, prefix, LEXICOGRAPHIC, line -> actual.add(line.getContent().toString()));
+          assertEquals(expected, actual, prefix + " map size: " + mapSize);
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void comparatorReturningMinValue() throws IOException {
+    Charset cs = StandardCharsets.ISO_8859_1;
+    Path tempFile = writeLines(Arrays.asList("a", "b", "c", "d", "e"), cs, "\n");
+    try {
+      // Integer.MIN_VALUE is a valid result for less than
+      Comparator<CharSequence> comparator = (a, b) -> {
+        int result = LEXICOGRAPHIC.compare(a, b);
+        return (result < 0) ? Integer.MIN_VALUE : result;
+      };
+      for (String prefix : new String[] {"a", "d", "e"}) {
+        List<String> actual = new ArrayList<>();
+        new LineParser().lookup(tempFile, cs, prefix, comparator, line -> actual.add(line.getContent().toString()));
+        assertEquals(Arrays.asList(prefix), actual);
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void stopsAfterRange() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    bytes.write("a\nb\nb1\nc\nd".getBytes(cs));
+    for (int i = 0; i < 40; i++) {
+      bytes.write('x');
+    }
+    // malformed, decoding this line fails
+    bytes.write(0xFF);
+    bytes.write("\ne\n".getBytes(cs));
+    Path tempFile = Files.createTempFile("LookupTest", null);
+    try {
+      Files.write(tempFile, bytes.toByteArray());
+      List<String> actual = new ArrayList<>();
+      new LineParser().lookup(tempFile, cs, "b", LEXICOGRAPHIC, line -> actual.add(line.getContent().toString()));
+      assertEquals(Arrays.asList("b", "b1"), actual);
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+}
@@ -0,0 +1,98 @@
+package com.github.marschall.lineparser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NumberParserBenchmark {
+
+  public static void main(String[] args) throws RunnerException {
+    Options options = new OptionsBuilder()
+            .include(".*NumberParserBenchmark.*")
+            .warmupIterations(10)
+            .measurementIterations(10)
+            .forks(10)
+            .build();
+    new Runner(options).run();
+  }
+
+  private NumberParser parser;
+
+  private CharSequence longSequence;
+
+  private ByteBuffer longBuffer;
+
+  private CharSequence doubleSequence;
+
+  private ByteBuffer doubleBuffer;
+
+  @Setup
+  public void setup() {
+    this.parser = new NumberParser();
+    this.longBuffer = this.asNativeBuffer("1234567890123");
+    this.longSequence = new ByteBufferCharSequence(this.longBuffer);
+    this.doubleBuffer = this.asNativeBuffer("-12345.678901e-3");
+    this.doubleSequence = new ByteBufferCharSequence(this.doubleBuffer);
+  }
+
+  private ByteBuffer asNativeBuffer(String s) {
+    // we need to make sure Buffer.hasArray() returns false so we get the same
+    // code path has with MappedByteBuffer
+    byte[] bytes = s.getBytes(StandardCharsets.US_ASCII);
+    ByteBuffer nativeBuffer = ByteBuffer.allocateDirect(bytes.length);
+    nativeBuffer.put(bytes);
+    nativeBuffer.flip();
+    return nativeBuffer;
+  }
+
+  @Benchmark
+  public long parseLongJdk() {
+    // the subSequence is what user code has to do to get a String
+    return Long.parseLong(this.longSequence.subSequence(0, this.longSequence.length()).toString());
+  }
+
+  @Benchmark
+  public long parseLongSequence() {
+    this.parser.parseLong(this.longSequence, 0, this.longSequence.length());
+    return this.parser.getLong();
+  }
+
+  @Benchmark
+  public long parseLongBuffer() {
+    this.parser.parseLong(this.longBuffer, 0, this.longBuffer.capacity());
+    return this.parser.getLong();
+  }
+
+  @Benchmark
+  public double parseDoubleJdk() {
+    return Double.parseDouble(this.doubleSequence.subSequence(0, this.doubleSequence.length()).toString());
+  }
+
+  @Benchmark
+  public double parseDoubleSequence() {
+    this.parser.parseDouble(this.doubleSequence, 0, this.doubleSequence.length());
+    return this.parser.getDouble();
+  }
+
+  @Benchmark
+  public double parseDoubleBuffer() {
+    this.parser.parseDouble(this.doubleBuffer, 0, this.doubleBuffer.capacity());
+    return this.parser.getDouble();
+  }
+
+}
@@ -0,0 +1,189 @@
+package com.github.marschall.lineparser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class NumberParserTest {
+
+  private final NumberParser parser = new NumberParser();
+
+  private void assertInt(int expected, String s) {
+    assertTrue(this.parser.parseInt(s, 0, s.length()), s);
+    assertEquals(expected, this.parser.getInt());
+    assertEquals(-1, this.parser.getErrorIndex());
+  }
+
+  private void assertLong(long expected, String s) {
+    assertTrue(this.parser.parseLong(s, 0, s.length()), s);
+    assertEquals(expected, this.parser.getLong());
+    ByteBuffer buffer = ByteBuffer.wrap(("x" + s + "x").getBytes(StandardCharsets.US_ASCII));
+    assertTrue(this.parser.parseLong(buffer, 1, s.length() + 1), s);
+    assertEquals(expected, this.parser.getLong());
+  }
+
+  private void assertDecimal(long expected, String s, int scale) {
+    assertTrue(this.parser.parseDecimal(s, 0, s.length(), scale), s);
+    assertEquals(expected, this.parser.getLong());
+  }
+
+  private void assertDouble(String s) {
+    assertTrue(this.parser.parseDouble(s, 0, s.length()), s);
+    assertEquals(Double.doubleToLongBits(Double.parseDouble(s)), Double.doubleToLongBits(this.parser.getDouble()), s);
+  }
+
+  private void assertError(int expectedIndex, boolean valid) {
+    assertFalse(valid);
+    assertEquals(expectedIndex, this.parser.getErrorIndex());
+  }
+
+  @Test
+  public void parseInt() {
+    this.assertInt(0, "0");
+    this.assertInt(42, "42");
+    this.assertInt(42, "+42");
+    this.assertInt(-42, "-0042");
+    this.assertInt(Integer.MAX_VALUE, Integer.toString(Integer.MAX_VALUE));
+    this.assertInt(Integer.MIN_VALUE, Integer.toString(Integer.MIN_VALUE));
+  }
+
+  @Test
+  public void parseIntErrors() {
+    this.assertError(0, this.parser.parseInt("", 0, 0));
+    this.assertError(1, this.parser.parseInt("-", 0, 1));
+    this.assertError(1, this.parser.parseInt("1a", 0, 2));
+    this.assertError(0, this.parser.parseInt(" 1", 0, 2));
+    this.assertError(9, this.parser.parseInt("2147483648", 0, 10));
+    this.assertError(10, this.parser.parseInt("-2147483649", 0, 11));
+  }
+
+  @Test
+  public void parseLong() {
+    this.assertLong(0L, "0");
+    this.assertLong(-123456789012L, "-123456789012");
+    this.assertLong(Long.MAX_VALUE, Long.toString(Long.MAX_VALUE));
+    this.assertLong(Long.MIN_VALUE, Long.toString(Long.MIN_VALUE));
+    this.assertError(18, this.parser.parseLong("9223372036854775808", 0, 19));
+    this.assertError(1, this.parser.parseLong("1.0", 0, 3));
+
+    Random random = new Random(42L);
+    for (int i = 0; i < 10_000; i++) {
+      long value = random.nextLong() >> random.nextInt(64);
+      this.assertLong(value, Long.toString(value));
+    }
+  }
+
+  @Test
+  public void subSequence() {
+    this.assertError(3, this.parser.parseLong("ab-12cd", 2, 3));
+    assertTrue(this.parser.parseLong("ab-12cd", 2, 5));
+    assertEquals(-12L, this.parser.getLong());
+  }
+
+  @Test
+  public void parseDecimal() {
+    this.assertDecimal(1230L, "12.3", 2);
+    this.assertDecimal(1234L, "12.34", 2);
+    this.assertDecimal(-5L, "-0.05", 2);
+    this.assertDecimal(1200L, "12", 2);
+    this.assertDecimal(1200L, "12.", 2);
+    this.assertDecimal(50L, ".5", 2);
+    this.assertDecimal(12L, "12", 0);
+    this.assertDecimal(Long.MIN_VALUE, "-922337203685477.5808", 4);
+
+    this.assertError(5, this.parser.parseDecimal("12.345", 0, 6, 2));
+    this.assertError(3, this.parser.parseDecimal("1.2.3", 0, 5, 2));
+    this.assertError(1, this.parser.parseDecimal("-", 0, 1, 2));
+    this.assertError(1, this.parser.parseDecimal("..", 0, 2, 2));
+    this.assertError(19, this.parser.parseDecimal("9223372036854775807", 0, 19, 1));
+    assertThrows(IllegalArgumentException.class, () -> this.parser.parseDecimal("1", 0, 1, 19));
+  }
+
+  @Test
+  public void parseDouble() {
+    String[] values = {
+        "0", "-0", "0.0", "1", "-1", "1.5", ".5", "5.", "1e10", "1E-10", "1e+10",
+        "3.141592653589793", "2.718281828459045", "0.1", "0.2", "0.3",
+        "123456789012345678", "1234567890123456789", "9999999999999999999",
+        "12345678901234567890", "1.2345678901234567890123",
+        "0.000000000000000000000000000001234",
+        "1.7976931348623157e308", "1.7976931348623159e308", "1e309",
+        "4.9e-324", "2.4703282292062327e-324", "2.4703282292062328e-324",
+        "2.2250738585072011e-308", "2.2250738585072014e-308",
+        "1e-400", "9007199254740993", "9007199254740992.5",
+        "1e23", "8.41e21", "7.3177701707893310e+15",
+        "00000000000000000000000001", "1e0000000000000000001"
+    };
+    for (String value : values) {
+      this.assertDouble(value);
+    }
+  }
+
+  @Test
+  public void parseDoubleRandom() {
+    Random random = new Random(42L);
+    for (int i = 0; i < 100_000; i++) {
+      double value = Double.longBitsToDouble(random.nextLong());
+      if (Double.isNaN(value) || Double.isInfinite(value)) {
+        continue;
+      }
+      this.assertDouble(Double.toString(value));
+    }
+    for (int i = 0; i < 100_000; i++) {
+      // random digits with a random exponent
+      StringBuilder buffer = new StringBuilder();
+      int digits = 1 + random.nextInt(19);
+      String mantissa = new BigInteger(64, random).toString();
+      buffer.append(mantissa, 0, Math.min(digits, mantissa.length()));
+      if (random.nextBoolean()) {
+        buffer.insert(random.nextInt(buffer.length() + 1), '.');
+      }
+      buffer.append('e').append(random.nextInt(700) - 350);
+      this.assertDouble(buffer.toString());
+    }
+  }
+
+  @Test
+  public void parseDoubleErrors() {
+    this.assertError(0, this.parser.parseDouble("", 0, 0));
+    this.assertError(1, this.parser.parseDouble("-", 0, 1));
+    this.assertError(1, this.parser.parseDouble(".", 0, 1));
+    this.assertError(2, this.parser.parseDouble("1e", 0, 2));
+    this.assertError(3, this.parser.parseDouble("1e+", 0, 3));
+    this.assertError(3, this.parser.parseDouble("1.2.3", 0, 5));
+    this.assertError(0, this.parser.parseDouble("NaN", 0, 3));
+    this.assertError(1, this.parser.parseDouble("1 ", 0, 2));
+  }
+
+  @Test
+  public void parseDoubleBytes() {
+    ByteBuffer buffer = ByteBuffer.wrap("x,-12.5e-1,y".getBytes(StandardCharsets.US_ASCII));
+    assertTrue(this.parser.parseDouble(buffer, 2, 10));
+    assertEquals(-1.25d, this.parser.getDouble());
+    // fallback
+    buffer = ByteBuffer.wrap("1.00000000000000000000000000001".getBytes(StandardCharsets.US_ASCII));
+    assertTrue(this.parser.parseDouble(buffer, 0, buffer.capacity()));
+    assertEquals(1.0d, this.parser.getDouble());
+  }
+
+  @Test
+  public void unsignedMultiplyHigh() {
+    Random random = new Random(42L);
+    BigInteger mask = BigInteger.ONE.shiftLeft(64).subtract(BigInteger.ONE);
+    for (int i = 0; i < 10_000; i++) {
+      long x = random.nextLong();
+      long y = random.nextLong();
+      BigInteger product = new BigInteger(Long.toUnsignedString(x)).multiply(new BigInteger(Long.toUnsignedString(y)));
+      assertEquals(product.shiftRight(64).and(mask).longValue(), NumberParser.unsignedMultiplyHigh(x, y));
+    }
+  }
+
+}
@@ -0,0 +1,186 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.TestFiles.writeLines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class OversizedLineTest {
+
+  private static final int MAP_SIZE = 64;
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\r\n"},
+            new Object[] {StandardCharsets.ISO_8859_1, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r"},
+            new Object[] {StandardCharsets.UTF_16LE, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16LE, "\n"},
+            new Object[] {StandardCharsets.UTF_16BE, "\r\n"}
+            );
+  }
+
+  private static List<String> lines(Charset cs) {
+    String mixed;
+    if (cs.newEncoder().canEncode("\uD83D\uDE02")) {
+      mixed = "a\u00E4\uD83D\uDE02";
+    } else {
+      mixed = "a\u00E4";
+    }
+    return Arrays.asList(
+            "short",
+            repeat(mixed, 50), // longer than the mapping
+            "",
+            repeat("b", 20),
+            repeat("\u00E4", 200), // longer than the mapping
+            "end");
+  }
+
+  private static String repeat(String s, int times) {
+    StringBuilder buffer = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      buffer.append(s);
+    }
+    return buffer.toString();
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void chunks(Charset cs, String newline) throws IOException {
+    List<String> expected = lines(cs);
+    Path tempFile = writeLines(expected, cs, newline);
+    try {
+      for (int maxLineLength : new int[] {Integer.MAX_VALUE, 16}) {
+        LineParser parser = new LineParser(MAP_SIZE);
+        if (maxLineLength != Integer.MAX_VALUE) {
+          parser = parser.withMaxLineLength(maxLineLength, OversizedLinePolicy.FAIL);
+        }
+        int maxChunkLength = Math.min(maxLineLength, MAP_SIZE);
+        List<String> actual = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        long[] lineOffset = new long[] {-1L};
+        ParseStatistics statistics = parser.forEachChunk(tempFile, cs, (chunk, offset, first, last) -> {
+          assertTrue(chunk.getLength() <= maxChunkLength);
+          if (first) {
+            assertEquals(0, current.length());
+            assertEquals(offset, chunk.getOffset());
+            lineOffset[0] = offset;
+          } else {
+            assertEquals(lineOffset[0], offset);
+          }
+          current.append(chunk.getContent());
+          if (last) {
+            actual.add(current.toString());
+            current.setLength(0);
+          }
+        });
+        assertEquals(expected, actual);
+        assertTrue(statistics.getOversizedLineCount() >= 2L);
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void skip(Charset cs, String newline) throws IOException {
+    Path tempFile = writeLines(lines(cs), cs, newline);
+    try {
+      LineParser parser = new LineParser(MAP_SIZE).withMaxLineLength(48, OversizedLinePolicy.SKIP);
+      List<String> actual = new ArrayList<>();
+      ParseStatistics statistics = parser.forEachWithStatistics(tempFile, cs, line -> actual.add(line.getContent().toString()));
+
+      List<String> expected = new ArrayList<>();
+      for (String line : lines(cs)) {
+        if (line.getBytes(cs).length <= 48) {
+          expected.add(line);
+        }
+      }
+      assertEquals(expected, actual);
+      assertEquals(lines(cs).size() - expected.size(), statistics.getOversizedLineCount());
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void truncate(Charset cs, String newline) throws IOException {
+    Path tempFile = writeLines(lines(cs), cs, newline);
+    try {
+      int maxLineLength = 24;
+      LineParser parser = new LineParser(MAP_SIZE).withMaxLineLength(maxLineLength, OversizedLinePolicy.TRUNCATE);
+      List<String> actual = new ArrayList<>();
+      parser.forEach(tempFile, cs, line -> {
+        assertTrue(line.getLength() <= maxLineLength);
+        actual.add(line.getContent().toString());
+      });
+
+      List<String> expected = lines(cs);
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+        String truncated = actual.get(i);
+        assertTrue(expected.get(i).startsWith(truncated));
+        if (expected.get(i).getBytes(cs).length <= maxLineLength) {
+          assertEquals(expected.get(i), truncated);
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void fail(Charset cs, String newline) throws IOException {
+    Path tempFile = writeLines(lines(cs), cs, newline);
+    try {
+      LineParser parser = new LineParser(MAP_SIZE);
+      LineTooLongException exception = assertThrows(LineTooLongException.class,
+              () -> parser.forEach(tempFile, cs, line -> { }));
+      assertEquals(("short" + newline).getBytes(cs).length, exception.getLineOffset());
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void unmappable() throws IOException {
+    Charset cs = Charset.forName("windows-1252");
+    byte[] line = new byte[40];
+    Arrays.fill(line, (byte) 'a');
+    // 0x81 is not mapped in windows-1252
+    line[8] = (byte) 0x81;
+    Path tempFile = Files.createTempFile("OversizedLineTest", null);
+    try {
+      Files.write(tempFile, line);
+      LineParser chunked = new LineParser(MAP_SIZE).withMaxLineLength(8, OversizedLinePolicy.FAIL);
+      assertThrows(CharacterCodingException.class,
+              () -> chunked.forEachChunk(tempFile, cs, (chunk, offset, first, last) -> { }));
+
+      LineParser truncating = new LineParser(16).withMaxLineLength(16, OversizedLinePolicy.TRUNCATE);
+      assertThrows(CharacterCodingException.class,
+              () -> truncating.forEach(tempFile, cs, l -> { }));
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+}
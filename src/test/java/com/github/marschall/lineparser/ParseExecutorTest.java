@@ -0,0 +1,118 @@
+package com.github.marschall.lineparser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class ParseExecutorTest {
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {ParseExecutor.create(3)},
+            new Object[] {ParseExecutor.platform(3)}
+            );
+  }
+
+  private static Path writeLines(int fileIndex, Charset cs) throws IOException {
+    Path tempFile = Files.createTempFile("ParseExecutorTest", null);
+    try (BufferedWriter writer = Files.newBufferedWriter(tempFile, cs)) {
+      for (int i = 0; i < 100; i++) {
+        writer.append("file \u00E4 " + fileIndex + " line " + i);
+        writer.append('\n');
+      }
+    }
+    return tempFile;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void forEachAsync(ParseExecutor executor) throws Exception {
+    Charset cs = StandardCharsets.UTF_8;
+    List<Path> files = new ArrayList<>();
+    try (ParseExecutor closing = executor) {
+      for (int i = 0; i < 20; i++) {
+        files.add(writeLines(i, cs));
+      }
+      LineParser parser = new LineParser();
+      List<List<String>> actual = new ArrayList<>();
+      List<CompletableFuture<ParseStatistics>> futures = new ArrayList<>();
+      for (Path file : files) {
+        List<String> lines = new ArrayList<>();
+        actual.add(lines);
+        futures.add(parser.forEachAsync(file, cs, line -> lines.add(line.getContent().toString()), closing));
+      }
+      for (CompletableFuture<ParseStatistics> future : futures) {
+        assertEquals(0L, future.get().getOversizedLineCount());
+      }
+      for (int i = 0; i < files.size(); i++) {
+        assertEquals(Files.readAllLines(files.get(i), cs), actual.get(i));
+      }
+    } finally {
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void concurrencyLimit(ParseExecutor executor) throws Exception {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    List<CompletableFuture<Integer>> futures = new ArrayList<>();
+    try (ParseExecutor closing = executor) {
+      for (int i = 0; i < 30; i++) {
+        int task = i;
+        futures.add(closing.submit(() -> {
+          int current = running.incrementAndGet();
+          maxRunning.accumulateAndGet(current, Math::max);
+          try {
+            Thread.sleep(2L);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          running.decrementAndGet();
+          return task;
+        }));
+      }
+    }
+    for (int i = 0; i < futures.size(); i++) {
+      assertEquals(Integer.valueOf(i), futures.get(i).getNow(null));
+    }
+    assertTrue(maxRunning.get() <= 3, "max running: " + maxRunning.get());
+  }
+
+  @Test
+  public void failure() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path missing = Files.createTempFile("ParseExecutorTest", null);
+    Files.delete(missing);
+    try (ParseExecutor executor = ParseExecutor.create(1)) {
+      CompletableFuture<ParseStatistics> future = new LineParser().forEachAsync(missing, cs, line -> { }, executor);
+      ExecutionException e = assertThrows(ExecutionException.class, future::get);
+      assertTrue(e.getCause() instanceof IOException);
+    }
+    ParseExecutor closed = ParseExecutor.platform(1);
+    closed.close();
+    assertTrue(new LineParser().forEachAsync(missing, cs, line -> { }, closed).isCompletedExceptionally());
+    assertThrows(IllegalArgumentException.class, () -> ParseExecutor.create(0));
+  }
+
+}
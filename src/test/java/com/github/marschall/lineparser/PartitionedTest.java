@@ -0,0 +1,149 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.TestFiles.writeLines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class PartitionedTest {
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16LE, "\n"},
+            new Object[] {StandardCharsets.UTF_16BE, "\r"}
+            );
+  }
+
+  private static List<String> lines() {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 2_000; i++) {
+      lines.add("user\u00E4" + (i % 13) + "," + i);
+    }
+    return lines;
+  }
+
+  /**
+   * Groups the lines by key, for every key the sequence numbers in order.
+   */
+  private static Map<String, List<Integer>> byKey(List<String> lines) {
+    Map<String, List<Integer>> byKey = new HashMap<>();
+    for (String line : lines) {
+      int comma = line.indexOf(',');
+      byKey.computeIfAbsent(line.substring(0, comma), k -> new ArrayList<>())
+        .add(Integer.parseInt(line.substring(comma + 1)));
+    }
+    return byKey;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void keyOrder(Charset cs, String newline) throws IOException {
+    List<String> lines = lines();
+    Path tempFile = writeLines(lines, cs, newline);
+    try {
+      // small windows and rings to exercise unmapping and waiting
+      for (int windowShift : new int[] {6, 30}) {
+        for (int partitionCount : new int[] {1, 3, 8}) {
+          List<List<String>> partitions = new ArrayList<>();
+          for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new ArrayList<>());
+          }
+          new LineParser().forEachPartitioned(tempFile, cs, LineKey.field(cs, ',', 0), partitionCount,
+                  partition -> line -> partitions.get(partition).add(line.getContent().toString()), 4, windowShift);
+
+          Map<String, List<Integer>> actual = new HashMap<>();
+          for (List<String> partition : partitions) {
+            Map<String, List<Integer>> partitionByKey = byKey(partition);
+            for (Map.Entry<String, List<Integer>> entry : partitionByKey.entrySet()) {
+              // every key is consumed by a single partition
+              assertEquals(null, actual.put(entry.getKey(), entry.getValue()));
+            }
+          }
+          assertEquals(byKey(lines), actual, "partitions: " + partitionCount);
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void bom() throws IOException {
+    List<String> lines = lines();
+    for (Charset bomCharset : new Charset[] {StandardCharsets.UTF_16LE, StandardCharsets.UTF_16BE}) {
+      Path tempFile = Files.createTempFile("PartitionedTest", null);
+      try {
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, bomCharset)) {
+          writer.append('\uFEFF');
+          for (String line : lines) {
+            writer.append(line);
+            writer.append('\n');
+          }
+        }
+        Charset cs = StandardCharsets.UTF_16;
+        List<String> expected = new ArrayList<>();
+        new LineParser().forEach(tempFile, cs, line -> expected.add(line.getContent().toString()));
+
+        List<String> actual = new ArrayList<>();
+        new LineParser().forEachPartitioned(tempFile, cs, LineKey.line(), 1,
+                partition -> line -> actual.add(line.getContent().toString()));
+        assertEquals(expected, actual, bomCharset.name());
+      } finally {
+        Files.delete(tempFile);
+      }
+    }
+  }
+
+  @Test
+  public void consumerFailure() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path tempFile = writeLines(lines(), cs, "\n");
+    try {
+      IllegalStateException failure = new IllegalStateException("failed");
+      IllegalStateException thrown = assertThrows(IllegalStateException.class, () ->
+        new LineParser().forEachPartitioned(tempFile, cs, LineKey.line(), 4, partition -> line -> {
+          if (line.getOffset() > 1_000L) {
+            throw failure;
+          }
+        }, 4, 6));
+      assertSame(failure, thrown);
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void keys() {
+    Charset cs = StandardCharsets.UTF_8;
+    ByteBuffer line = ByteBuffer.wrap("ab,cd".getBytes(cs));
+    ByteBuffer field = ByteBuffer.wrap("cd".getBytes(cs));
+    ByteBuffer empty = ByteBuffer.allocate(0);
+    long fieldHash = LineKey.line().hash(field, 0, 2);
+    assertEquals(fieldHash, LineKey.field(cs, ',', 1).hash(line, 0, 5));
+    assertEquals(fieldHash, LineKey.bytes(3, 10).hash(line, 0, 5));
+    assertEquals(LineKey.line().hash(empty, 0, 0), LineKey.field(cs, ',', 2).hash(line, 0, 5));
+    assertEquals(LineKey.line().hash(empty, 0, 0), LineKey.bytes(7, 10).hash(line, 0, 5));
+    assertThrows(IllegalArgumentException.class, () -> LineKey.field(Charset.forName("Shift_JIS"), ',', 0));
+    assertThrows(IllegalArgumentException.class, () -> LineKey.bytes(2, 1));
+  }
+
+}
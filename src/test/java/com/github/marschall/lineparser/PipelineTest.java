@@ -0,0 +1,155 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.TestFiles.writeLines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class PipelineTest {
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16LE, "\n"},
+            new Object[] {StandardCharsets.UTF_16BE, "\r"}
+            );
+  }
+
+  private static List<String> lines() {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 5_000; i++) {
+      lines.add((i % 11 == 0) ? "" : "line \u00E4 " + i);
+    }
+    return lines;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void ordered(Charset cs, String newline) throws IOException {
+    List<String> lines = lines();
+    Path tempFile = writeLines(lines, cs, newline);
+    try {
+      // small windows and rings to exercise unmapping and waiting
+      for (int windowShift : new int[] {6, 30}) {
+        for (int workerCount : new int[] {1, 4}) {
+          List<String> actual = new ArrayList<>();
+          new LineParser().forEachPipelined(tempFile, cs, workerCount, PipelineOrder.ORDERED,
+                  line -> actual.add(line.getContent().toString()), 2, windowShift);
+          assertEquals(lines, actual, "workers: " + workerCount);
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void unordered(Charset cs, String newline) throws IOException {
+    List<String> lines = lines();
+    Path tempFile = writeLines(lines, cs, newline);
+    try {
+      for (int windowShift : new int[] {6, 30}) {
+        List<Object[]> actual = Collections.synchronizedList(new ArrayList<>());
+        new LineParser().forEachPipelined(tempFile, cs, 4, PipelineOrder.UNORDERED,
+                line -> actual.add(new Object[] {line.getOffset(), line.getContent().toString()}), 2, windowShift);
+        actual.sort(Comparator.comparingLong(offsetAndContent -> (Long) offsetAndContent[0]));
+        List<String> contents = new ArrayList<>();
+        for (Object[] offsetAndContent : actual) {
+          contents.add((String) offsetAndContent[1]);
+        }
+        assertEquals(lines, contents);
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void orderedLongLines() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 3_000; i++) {
+      StringBuilder line = new StringBuilder();
+      for (int j = 0; j < (i % 97); j++) {
+        line.append('\u00E4');
+      }
+      lines.add(line.append(i).toString());
+    }
+    Path tempFile = writeLines(lines, cs, "\n");
+    try {
+      // more content per batch than initially reserved for decoding ahead
+      List<String> actual = new ArrayList<>();
+      new LineParser().forEachPipelined(tempFile, cs, 3, PipelineOrder.ORDERED,
+              line -> actual.add(line.getContent().toString()), 2, 30);
+      assertEquals(lines, actual);
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void bom() throws IOException {
+    List<String> lines = lines();
+    for (Charset bomCharset : new Charset[] {StandardCharsets.UTF_16LE, StandardCharsets.UTF_16BE}) {
+      Path tempFile = Files.createTempFile("PipelineTest", null);
+      try {
+        try (BufferedWriter writer = Files.newBufferedWriter(tempFile, bomCharset)) {
+          writer.append('\uFEFF');
+          for (String line : lines) {
+            writer.append(line);
+            writer.append('\n');
+          }
+        }
+        Charset cs = StandardCharsets.UTF_16;
+        List<String> expected = new ArrayList<>();
+        new LineParser().forEach(tempFile, cs, line -> expected.add(line.getContent().toString()));
+
+        List<String> actual = new ArrayList<>();
+        new LineParser().forEachPipelined(tempFile, cs, 2, PipelineOrder.ORDERED,
+                line -> actual.add(line.getContent().toString()));
+        assertEquals(expected, actual, bomCharset.name());
+      } finally {
+        Files.delete(tempFile);
+      }
+    }
+  }
+
+  @Test
+  public void callbackFailure() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path tempFile = writeLines(lines(), cs, "\n");
+    try {
+      IllegalStateException failure = new IllegalStateException("failed");
+      for (PipelineOrder order : PipelineOrder.values()) {
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () ->
+          new LineParser().forEachPipelined(tempFile, cs, 3, order, line -> {
+            if (line.getOffset() > 1_000L) {
+              throw failure;
+            }
+          }, 2, 6));
+        assertSame(failure, thrown);
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+}
@@ -0,0 +1,126 @@
+package com.github.marschall.lineparser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class RecordParserTest {
+
+  private static final List<String> RECORDS = Arrays.asList(
+          "id,text",
+          "1,\"single line\"",
+          "2,\"two\nlines\"",
+          "3,\"quoted \"\"newline\"\"\r\nwith CR LF\"",
+          "",
+          "4,\"\"\"\"",
+          "5,\"a\rb\",\"c\n\nd\"",
+          "6,plain");
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\r\n"},
+            new Object[] {StandardCharsets.ISO_8859_1, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r"},
+            new Object[] {StandardCharsets.UTF_16LE, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16BE, "\n"}
+            );
+  }
+
+  private static Path writeRecords(Charset cs, String newline, int repetitions) throws IOException {
+    Path tempFile = Files.createTempFile("RecordParserTest", null);
+    try (BufferedWriter writer = Files.newBufferedWriter(tempFile, cs)) {
+      for (int i = 0; i < repetitions; i++) {
+        for (String record : RECORDS) {
+          writer.append(record);
+          writer.append(newline);
+        }
+      }
+    }
+    return tempFile;
+  }
+
+  private static List<String> expected(int repetitions) {
+    List<String> expected = new ArrayList<>(RECORDS.size() * repetitions);
+    for (int i = 0; i < repetitions; i++) {
+      expected.addAll(RECORDS);
+    }
+    return expected;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void sequential(Charset cs, String newline) throws IOException {
+    Path tempFile = writeRecords(cs, newline, 3);
+    try {
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 128}) {
+        List<String> actual = new ArrayList<>();
+        new LineParser(mapSize).forEachRecord(tempFile, cs, '"', record -> actual.add(record.getContent().toString()));
+        assertEquals(expected(3), actual);
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void offsetAndLength(Charset cs, String newline) throws IOException {
+    Path tempFile = writeRecords(cs, newline, 1);
+    try {
+      List<Line> records = new ArrayList<>();
+      new LineParser().forEachRecord(tempFile, cs, '"', records::add);
+      long offset = 0L;
+      for (int i = 0; i < RECORDS.size(); i++) {
+        int length = RECORDS.get(i).getBytes(cs).length;
+        assertEquals(offset, records.get(i).getOffset());
+        assertEquals(length, records.get(i).getLength());
+        offset += length + newline.getBytes(cs).length;
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void parallel(Charset cs, String newline) throws IOException {
+    int repetitions = 20;
+    Path tempFile = writeRecords(cs, newline, repetitions);
+    try {
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 128}) {
+        for (int chunkCount = 1; chunkCount < 40; chunkCount++) {
+          List<Line> records = Collections.synchronizedList(new ArrayList<>());
+          new LineParser(mapSize).forEachRecordParallel(tempFile, cs, '"', record -> {
+            // force decoding while the buffer is still valid
+            record.getContent().toString();
+            records.add(record);
+          }, chunkCount);
+          records.sort(Comparator.comparingLong(Line::getOffset));
+          List<String> actual = new ArrayList<>(records.size());
+          for (Line record : records) {
+            actual.add(record.getContent().toString());
+          }
+          assertEquals(expected(repetitions), actual, "chunk count: " + chunkCount);
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+}
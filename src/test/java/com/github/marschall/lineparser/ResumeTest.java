@@ -0,0 +1,222 @@
+package com.github.marschall.lineparser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class ResumeTest {
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\r\n"},
+            new Object[] {StandardCharsets.UTF_8, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r"},
+            new Object[] {StandardCharsets.UTF_16, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16LE, "\n"}
+            );
+  }
+
+  private static Path writeLines(Charset cs, String newline) throws IOException {
+    Path tempFile = Files.createTempFile("ResumeTest", null);
+    try (BufferedWriter writer = Files.newBufferedWriter(tempFile, cs)) {
+      for (int i = 1; i <= 500; i++) {
+        writer.append(Integer.toString(i));
+        for (int j = 0; j < (i % 7); j++) {
+          writer.append('\u00E4');
+        }
+        writer.append(newline);
+      }
+      writer.append("501");
+    }
+    return tempFile;
+  }
+
+  private static String describe(Line line) {
+    return line.getLineNumber() + " " + line.getOffset() + " " + line.getContent();
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void resumeFromEveryCheckpoint(Charset cs, String newline) throws IOException {
+    Path tempFile = writeLines(cs, newline);
+    try {
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 128}) {
+        LineParser parser = new LineParser(mapSize);
+        List<String> expected = new ArrayList<>();
+        parser.forEach(tempFile, cs, line -> expected.add(describe(line)));
+        assertEquals(501, expected.size());
+
+        for (int interval : new int[] {1, 10, 1_000}) {
+          List<String> actual = new ArrayList<>();
+          List<ParsePosition> positions = new ArrayList<>();
+          parser.forEach(tempFile, cs, line -> actual.add(describe(line)), interval, positions::add);
+          assertEquals(expected, actual);
+          if (interval < 501) {
+            assertFalse(positions.isEmpty());
+          }
+
+          long previousLineNumber = 1L;
+          for (ParsePosition position : positions) {
+            long lineNumber = position.getLineNumber();
+            assertTrue(lineNumber > previousLineNumber);
+            assertTrue(lineNumber - previousLineNumber <= interval);
+            previousLineNumber = lineNumber;
+            // the position is the start of the next line
+            String next = expected.get((int) (lineNumber - 1L));
+            assertTrue(next.startsWith(lineNumber + " " + position.getOffset() + " "), next);
+
+            List<String> resumed = new ArrayList<>();
+            parser.resume(tempFile, position, line -> resumed.add(describe(line)));
+            assertEquals(expected.subList((int) (lineNumber - 1L), expected.size()), resumed);
+          }
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void resumeWithCheckpoints(Charset cs, String newline) throws IOException {
+    Path tempFile = writeLines(cs, newline);
+    try {
+      LineParser parser = new LineParser(128);
+      List<String> expected = new ArrayList<>();
+      parser.forEach(tempFile, cs, line -> expected.add(describe(line)));
+
+      // simulate a parse that is interrupted and resumed several times
+      List<String> actual = new ArrayList<>();
+      List<ParsePosition> positions = new ArrayList<>();
+      parser.forEach(tempFile, cs, line -> {
+        if (positions.isEmpty()) {
+          actual.add(describe(line));
+        }
+      }, 50, positions::add);
+      ParsePosition position = positions.get(0);
+      while (position != null) {
+        ParsePosition start = position;
+        List<ParsePosition> next = new ArrayList<>();
+        parser.resume(tempFile, start, line -> {
+          if (next.isEmpty()) {
+            actual.add(describe(line));
+          }
+        }, 50, next::add);
+        position = next.isEmpty() ? null : next.get(0);
+      }
+      assertEquals(expected, actual);
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void delimiters() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path tempFile = Files.createTempFile("ResumeTest", null);
+    try {
+      StringBuilder content = new StringBuilder();
+      for (int i = 1; i <= 200; i++) {
+        content.append("record ").append(i).append((i % 3 == 0) ? ";;" : ";");
+      }
+      Files.write(tempFile, content.toString().getBytes(cs));
+      LineParser parser = new LineParser(64).withDelimiters(";;", ";");
+      List<String> expected = new ArrayList<>();
+      parser.forEach(tempFile, cs, line -> expected.add(describe(line)));
+
+      List<ParsePosition> positions = new ArrayList<>();
+      parser.forEach(tempFile, cs, line -> { }, 7, positions::add);
+      assertFalse(positions.isEmpty());
+      for (ParsePosition position : positions) {
+        List<String> resumed = new ArrayList<>();
+        parser.resume(tempFile, position, line -> resumed.add(describe(line)));
+        assertEquals(expected.subList((int) (position.getLineNumber() - 1L), expected.size()), resumed);
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void serialization() throws IOException, ClassNotFoundException {
+    Charset cs = StandardCharsets.UTF_16;
+    Path tempFile = writeLines(cs, "\n");
+    try {
+      LineParser parser = new LineParser();
+      List<ParsePosition> positions = new ArrayList<>();
+      parser.forEach(tempFile, cs, line -> { }, 100, positions::add);
+      ParsePosition position = positions.get(positions.size() - 1);
+
+      ByteArrayOutputStream bos = new ByteArrayOutputStream();
+      try (ObjectOutputStream stream = new ObjectOutputStream(bos)) {
+        stream.writeObject(position);
+      }
+      ParsePosition deserialized;
+      try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+        deserialized = (ParsePosition) stream.readObject();
+      }
+      assertEquals(position.getOffset(), deserialized.getOffset());
+      assertEquals(position.getLineNumber(), deserialized.getLineNumber());
+      // the BOM has been resolved
+      assertEquals(StandardCharsets.UTF_16BE, deserialized.getCharset());
+
+      List<String> resumed = new ArrayList<>();
+      parser.resume(tempFile, deserialized, line -> resumed.add(line.getContent().toString()));
+      assertEquals(501L - deserialized.getLineNumber() + 1L, resumed.size());
+      assertEquals("501", resumed.get(resumed.size() - 1));
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void changedFile() throws IOException {
+    Charset cs = StandardCharsets.UTF_8;
+    Path tempFile = writeLines(cs, "\n");
+    try {
+      LineParser parser = new LineParser();
+      List<ParsePosition> positions = new ArrayList<>();
+      parser.forEach(tempFile, cs, line -> { }, 100, positions::add);
+      ParsePosition position = positions.get(0);
+
+      Files.write(tempFile, "502\n".getBytes(cs), StandardOpenOption.APPEND);
+      assertThrows(FileSystemException.class, () -> parser.resume(tempFile, position, line -> { }));
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void invalidInterval() throws IOException {
+    Path tempFile = writeLines(StandardCharsets.UTF_8, "\n");
+    try {
+      LineParser parser = new LineParser();
+      assertThrows(IllegalArgumentException.class,
+              () -> parser.forEach(tempFile, StandardCharsets.UTF_8, line -> { }, 0, position -> { }));
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+}
@@ -0,0 +1,110 @@
+package com.github.marschall.lineparser;
+
+import static com.github.marschall.lineparser.TestFiles.writeLines;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+public class SeekTimeTest {
+
+  private static final Instant START = Instant.parse("2018-07-21T10:00:00Z");
+
+  private static final int ENTRIES = 500;
+
+  public static Stream<Object[]> data() {
+    return Stream.of(
+            new Object[] {StandardCharsets.ISO_8859_1, "\n"},
+            new Object[] {StandardCharsets.UTF_8, "\r\n"},
+            new Object[] {StandardCharsets.UTF_16LE, "\n"},
+            new Object[] {StandardCharsets.UTF_16, "\r\n"}
+            );
+  }
+
+  /**
+   * Entries are every three seconds, every seventh entry has a stack
+   * trace, every fifth timestamp appears twice.
+   */
+  private static List<String> lines() {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < ENTRIES; i++) {
+      Instant timestamp = START.plusSeconds(i * 3L);
+      lines.add(timestamp + " INFO entry " + i + " \u00E4");
+      if ((i % 5) == 0) {
+        lines.add(timestamp + " DEBUG entry " + i);
+      }
+      if ((i % 7) == 0) {
+        lines.add("java.lang.IllegalStateException: entry " + i);
+        lines.add("\tat com.example.Main.main(Main.java:" + i + ")");
+      }
+    }
+    return lines;
+  }
+
+  /**
+   * The expected result using a linear scan.
+   */
+  private static List<String> expected(List<String> lines, Instant from, Instant to) {
+    List<String> expected = new ArrayList<>();
+    boolean inRange = false;
+    for (String line : lines) {
+      if (!line.startsWith("java") && !line.startsWith("\t")) {
+        Instant timestamp = Instant.parse(line.substring(0, line.indexOf(' ')));
+        inRange = !timestamp.isBefore(from) && timestamp.isBefore(to);
+      }
+      if (inRange) {
+        expected.add(line);
+      }
+    }
+    return expected;
+  }
+
+  private static List<String> removeBom(List<String> lines) {
+    if (!lines.isEmpty() && (lines.get(0).charAt(0) == '\uFEFF')) {
+      lines.set(0, lines.get(0).substring(1));
+    }
+    return lines;
+  }
+
+  @ParameterizedTest
+  @MethodSource("data")
+  public void seekTime(Charset cs, String newline) throws IOException {
+    List<String> lines = lines();
+    Path tempFile = writeLines(lines, cs, newline);
+    try {
+      long[][] ranges = {
+          {0L, 60L}, // start of the file
+          {-100L, 10L}, // before the start of the file
+          {300L, 330L},
+          {301L, 302L}, // empty
+          {299L, 300L}, // single entry
+          {1400L, 10_000L}, // end of the file
+          {2000L, 3000L}, // after the end of the file
+          {0L, 3 * ENTRIES}, // all
+      };
+      for (int mapSize : new int[] {Integer.MAX_VALUE, 256}) {
+        LineParser parser = new LineParser(mapSize);
+        for (long[] range : ranges) {
+          Instant from = START.plusSeconds(range[0]);
+          Instant to = START.plusSeconds(range[1]);
+          List<String> actual = new ArrayList<>();
+          parser.seekTime(tempFile, cs, from, to, line -> actual.add(line.getContent().toString()));
+          assertEquals(expected(lines, from, to), removeBom(actual), from + " - " + to + " map size: " + mapSize);
+        }
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+}
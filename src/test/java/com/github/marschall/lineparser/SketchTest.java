@@ -0,0 +1,141 @@
+package com.github.marschall.lineparser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.jupiter.api.Test;
+
+public class SketchTest {
+
+  @Test
+  public void hyperLogLog() {
+    HyperLogLog first = new HyperLogLog(14);
+    HyperLogLog second = new HyperLogLog(14);
+    for (int i = 0; i < 100_000; i++) {
+      first.add("value" + i);
+      // duplicates
+      first.add("value" + (i / 2));
+      second.add("value" + (i + 50_000));
+    }
+    assertEstimate(100_000L, first.estimate(), 14);
+    first.merge(second);
+    assertEstimate(150_000L, first.estimate(), 14);
+  }
+
+  @Test
+  public void hyperLogLogSmall() {
+    HyperLogLog sketch = new HyperLogLog(10);
+    assertEquals(0L, sketch.estimate());
+    for (int i = 0; i < 10; i++) {
+      sketch.add("a");
+      sketch.add("b");
+    }
+    assertEquals(2L, sketch.estimate());
+  }
+
+  private static void assertEstimate(long expected, long actual, int precision) {
+    // three times the standard error
+    double error = 3.0d * 1.04d / Math.sqrt(1 << precision);
+    assertTrue(Math.abs(actual - expected) <= (expected * error), "estimate: " + actual + " expected: " + expected);
+  }
+
+  @Test
+  public void hyperLogLogInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+    assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(10).merge(new HyperLogLog(11)));
+  }
+
+  @Test
+  public void lines() throws IOException {
+    Path tempFile = Files.createTempFile("SketchTest", null);
+    try {
+      try (BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+        for (int i = 0; i < 10_000; i++) {
+          // value n occurs n times for the first 100 values
+          int value = 1;
+          int remaining = i;
+          while ((value < 100) && (remaining >= value)) {
+            remaining -= value;
+            value += 1;
+          }
+          if (value == 100) {
+            value += remaining;
+          }
+          writer.append("line \u00E4 " + value);
+          writer.append('\n');
+        }
+      }
+      HyperLogLog distinct = new HyperLogLog(12);
+      CountMinSketch frequent = new CountMinSketch(1024, 4, 5);
+      new LineParser().forEach(tempFile, StandardCharsets.UTF_8, line -> {
+        distinct.add(line);
+        frequent.add(line);
+      });
+      // 99 values that occur multiple times and 5050 that occur once
+      assertEstimate(99L + (10_000L - 4950L), distinct.estimate(), 12);
+
+      Map<String, Long> topK = frequent.getTopK();
+      assertEquals(5, topK.size());
+      Iterator<Entry<String, Long>> entries = topK.entrySet().iterator();
+      for (int value = 99; value > 94; value--) {
+        Entry<String, Long> entry = entries.next();
+        assertEquals("line \u00E4 " + value, entry.getKey());
+        assertTrue(entry.getValue() >= value);
+      }
+    } finally {
+      Files.delete(tempFile);
+    }
+  }
+
+  @Test
+  public void countMinMerge() {
+    List<CountMinSketch> sketches = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      sketches.add(new CountMinSketch(256, 4, 3));
+    }
+    for (int i = 0; i < 1_000; i++) {
+      CountMinSketch sketch = sketches.get(i % sketches.size());
+      sketch.add("rare" + i);
+      if ((i % 2) == 0) {
+        sketch.add("frequent");
+      }
+      if ((i % 5) == 0) {
+        sketch.add("less frequent");
+      }
+      if ((i % 7) == 0) {
+        sketch.add("even less frequent");
+      }
+    }
+    CountMinSketch merged = sketches.get(0);
+    for (int i = 1; i < sketches.size(); i++) {
+      merged.merge(sketches.get(i));
+    }
+    assertEquals(1_000L + 500L + 200L + 143L, merged.getTotalCount());
+    assertTrue(merged.estimate("frequent") >= 500L);
+    List<String> top = new ArrayList<>(merged.getTopK().keySet());
+    assertEquals(3, top.size());
+    assertEquals("frequent", top.get(0));
+    assertEquals("less frequent", top.get(1));
+    assertEquals("even less frequent", top.get(2));
+  }
+
+  @Test
+  public void countMinInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(100, 4, 10));
+    assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(128, 0, 10));
+    assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(128, 4, 10).merge(new CountMinSketch(256, 4, 10)));
+  }
+
+}
@@ -0,0 +1,48 @@
+package com.github.marschall.lineparser;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Fixtures shared by the tests.
+ */
+final class TestFiles {
+
+  private TestFiles() {
+    // utility class
+  }
+
+  /**
+   * Writes lines to a temporary file, every line followed by a newline.
+   * The caller has to delete the file.
+   */
+  static Path writeLines(List<String> lines, Charset cs, String newline) throws IOException {
+    Path tempFile = Files.createTempFile("TestFiles", null);
+    try (BufferedWriter writer = Files.newBufferedWriter(tempFile, cs)) {
+      for (String line : lines) {
+        writer.append(line);
+        writer.append(newline);
+      }
+    }
+    return tempFile;
+  }
+
+  /**
+   * Describes every line of a file as parsed by
+   * {@link LineParser#forEach(Path, Charset, java.util.function.Consumer)},
+   * the reference for the other ways of reading lines.
+   */
+  static List<String> describeLines(LineParser parser, Path path, Charset cs,
+          Function<Line, String> describe) throws IOException {
+    List<String> lines = new ArrayList<>();
+    parser.forEach(path, cs, line -> lines.add(describe.apply(line)));
+    return lines;
+  }
+
+}
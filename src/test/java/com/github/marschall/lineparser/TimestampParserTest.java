@@ -0,0 +1,90 @@
+package com.github.marschall.lineparser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TimestampParserTest {
+
+  private final TimestampParser parser = new TimestampParser();
+
+  private void assertTimestamp(String expected, String s, int expectedEnd) {
+    assertTrue(this.parser.parse(s, 0, s.length()), s);
+    assertEquals(OffsetDateTime.parse(expected).toInstant(), this.parser.toInstant(), s);
+    assertEquals(expectedEnd, this.parser.getEnd());
+    assertEquals(-1, this.parser.getErrorIndex());
+  }
+
+  @Test
+  public void formats() {
+    this.assertTimestamp("2018-07-21T10:15:30Z", "2018-07-21T10:15:30 INFO started", 19);
+    this.assertTimestamp("2018-07-21T10:15:30Z", "2018-07-21 10:15:30", 19);
+    this.assertTimestamp("2018-07-21T10:15:30.5Z", "2018-07-21T10:15:30.5Z", 22);
+    this.assertTimestamp("2018-07-21T10:15:30.123Z", "2018-07-21 10:15:30,123 [main]", 23);
+    this.assertTimestamp("2018-07-21T10:15:30.123456789Z", "2018-07-21T10:15:30.1234567891", 30);
+    this.assertTimestamp("2024-01-01T10:00:00.123456789+02:00", "2024-01-01T10:00:00.1234567891+02:00", 36);
+    this.assertTimestamp("2018-07-21T10:15:30+02:00", "2018-07-21T10:15:30+02:00", 25);
+    this.assertTimestamp("2018-07-21T10:15:30+02:00", "2018-07-21T10:15:30+0200", 24);
+    this.assertTimestamp("2018-07-21T10:15:30+02:00", "2018-07-21T10:15:30+02 x", 22);
+    this.assertTimestamp("2018-07-21T10:15:30-05:30", "2018-07-21T10:15:30.000-05:30", 29);
+    this.assertTimestamp("2016-02-29T23:59:59Z", "2016-02-29T23:59:59", 19);
+    this.assertTimestamp("1969-12-31T23:59:59Z", "1969-12-31T23:59:59", 19);
+  }
+
+  @Test
+  public void defaultOffset() {
+    TimestampParser offsetParser = new TimestampParser(ZoneOffset.ofHours(1));
+    assertTrue(offsetParser.parse("2018-07-21T10:15:30", 0, 19));
+    assertEquals(Instant.parse("2018-07-21T09:15:30Z"), offsetParser.toInstant());
+    assertTrue(offsetParser.parse("2018-07-21T10:15:30Z", 0, 20));
+    assertEquals(Instant.parse("2018-07-21T10:15:30Z"), offsetParser.toInstant());
+  }
+
+  @Test
+  public void errors() {
+    assertFalse(this.parser.parse("2018-07-21T10:15", 0, 16));
+    assertFalse(this.parser.parse("2018-13-21T10:15:30", 0, 19));
+    assertEquals(5, this.parser.getErrorIndex());
+    assertFalse(this.parser.parse("2017-02-29T10:15:30", 0, 19));
+    assertFalse(this.parser.parse("2018-07-21X10:15:30", 0, 19));
+    assertFalse(this.parser.parse("2018-07-21T24:15:30", 0, 19));
+    assertFalse(this.parser.parse("2018-07-21T10:15:30.", 0, 20));
+    assertFalse(this.parser.parse("at java.lang.Thread.run", 0, 23));
+  }
+
+  @Test
+  public void bytes() {
+    ByteBuffer buffer = ByteBuffer.wrap("x2018-07-21T10:15:30Z".getBytes(StandardCharsets.US_ASCII));
+    assertTrue(this.parser.parse(buffer, 1, buffer.capacity()));
+    assertEquals(Instant.parse("2018-07-21T10:15:30Z"), this.parser.toInstant());
+  }
+
+  @Test
+  public void compareTo() {
+    assertTrue(this.parser.parse("2018-07-21T10:15:30.5", 0, 21));
+    assertEquals(0, this.parser.compareTo(Instant.parse("2018-07-21T10:15:30.500Z")));
+    assertTrue(this.parser.compareTo(Instant.parse("2018-07-21T10:15:30.501Z")) < 0);
+    assertTrue(this.parser.compareTo(Instant.parse("2018-07-21T10:15:29.999Z")) > 0);
+  }
+
+  @Test
+  public void random() {
+    Random random = new Random(42L);
+    for (int i = 0; i < 10_000; i++) {
+      Instant instant = Instant.ofEpochSecond(random.nextInt(Integer.MAX_VALUE) * 4L, random.nextInt(1_000_000_000));
+      String s = instant.toString();
+      assertTrue(this.parser.parse(s, 0, s.length()), s);
+      assertEquals(instant, this.parser.toInstant());
+    }
+  }
+
+}